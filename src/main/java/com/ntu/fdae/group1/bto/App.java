@@ -1,7 +1,12 @@
 package com.ntu.fdae.group1.bto;
 
 // Essential Imports
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 // Models (Specific User types needed for casting)
 import com.ntu.fdae.group1.bto.models.user.User;
@@ -24,16 +29,23 @@ import com.ntu.fdae.group1.bto.controllers.enquiry.*;
 
 // Services (Interfaces and Concrete implementations needed for initialisation)
 import com.ntu.fdae.group1.bto.services.user.*;
+import com.ntu.fdae.group1.bto.utils.FileUtil;
 import com.ntu.fdae.group1.bto.utils.IdGenerator;
 import com.ntu.fdae.group1.bto.services.project.*;
 import com.ntu.fdae.group1.bto.services.booking.*;
 import com.ntu.fdae.group1.bto.services.enquiry.*;
 
 // Repositories (Interfaces and Concrete implementations needed for initialisation)
+import com.ntu.fdae.group1.bto.repository.IRepository;
+import com.ntu.fdae.group1.bto.repository.RepositoryBootstrap;
 import com.ntu.fdae.group1.bto.repository.user.*;
 import com.ntu.fdae.group1.bto.repository.project.*;
 import com.ntu.fdae.group1.bto.repository.booking.*;
 import com.ntu.fdae.group1.bto.repository.enquiry.*;
+import com.ntu.fdae.group1.bto.repository.util.WriteBehindFlusher;
+
+// Network server mode
+import com.ntu.fdae.group1.bto.server.SessionServer;
 
 // Exceptions
 import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
@@ -47,11 +59,35 @@ import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
  * component that connects controllers with views and manages the application
  * lifecycle.
  * </p>
+ * <p>
+ * An App instance runs one user session. Started normally, the application
+ * runs a single session on the console. Started with
+ * {@code --server [port]}, it instead accepts any number of concurrent
+ * sessions over TCP through a {@link SessionServer}, all sharing one
+ * {@link ControllerContainer}.
+ * </p>
  * 
  * @author Group 1
  * @version 1.0
  */
 public class App {
+    /**
+     * Maximum time to wait at shutdown for background writes to complete.
+     */
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Maximum time to wait at shutdown for network sessions to end.
+     */
+    private static final long SHUTDOWN_SESSION_TIMEOUT_SECONDS = 10;
+
+    /**
+     * All repositories loaded during initialisation, checkpointed at shutdown.
+     * Filled only once every repository has loaded, so that a repository left
+     * empty by a failed load can never be checkpointed over its files.
+     */
+    private static final List<IRepository<?, ?>> REPOSITORIES = new ArrayList<>();
+
     /**
      * Container holding all controllers used by the application.
      * Provides centralized access to controller instances.
@@ -63,6 +99,21 @@ public class App {
      */
     private final Scanner scanner;
 
+    /**
+     * Stream of the remote session this App serves, or null for the console.
+     */
+    private final PrintStream session;
+
+    /**
+     * Stream for normal output: System.out, or the session's stream.
+     */
+    private final PrintStream out;
+
+    /**
+     * Stream for error output: System.err, or the session's stream.
+     */
+    private final PrintStream err;
+
     /**
      * UI component responsible for handling main menu.
      */
@@ -83,9 +134,25 @@ public class App {
      * @param scanner             Scanner instance for handling user input
      */
     public App(ControllerContainer controllerContainer, Scanner scanner) {
+        this(controllerContainer, scanner, null);
+    }
+
+    /**
+     * Constructs a new App instance for the console or for one remote session.
+     *
+     * @param controllerContainer Container with all the application controllers,
+     *                            which may be shared between sessions
+     * @param scanner             Scanner instance for handling user input
+     * @param session             Stream of the remote session, which receives all
+     *                            output; null for the console
+     */
+    public App(ControllerContainer controllerContainer, Scanner scanner, PrintStream session) {
         this.controllerContainer = controllerContainer;
         this.scanner = scanner;
-        this.mainMenuUI = new MainMenuUI(controllerContainer.authController, scanner);
+        this.session = session;
+        this.out = session == null ? System.out : session;
+        this.err = session == null ? System.err : session;
+        this.mainMenuUI = new MainMenuUI(controllerContainer.authController, scanner, session);
     }
 
     /**
@@ -93,8 +160,12 @@ public class App {
      * Handles potential critical errors during initialisation.
      * <p>
      * This method follows a specific initialization order:
-     * 1. Repositories are created first
-     * 2. Data is loaded from persistent storage
+     * 1. Repositories are created first (empty)
+     * 2. Data is loaded from persistent storage, all repositories in parallel,
+     * and ID generators are initialised once every load has completed. If any
+     * repository fails to load, initialisation stops: continuing would let
+     * the empty repository be saved or checkpointed over its data, and would
+     * start ID generation from nothing
      * 3. Services are created with their repository dependencies
      * 4. Controllers are created with their service dependencies
      * 5. A controller container is created to manage all controllers
@@ -111,15 +182,21 @@ public class App {
             IBookingRepository bookingRepository = new BookingRepository();
             IEnquiryRepository enquiryRepository = new EnquiryRepository();
             IOfficerRegistrationRepository officerRegRepository = new OfficerRegistrationRepository();
+            RepositoryBootstrap bootstrap = new RepositoryBootstrap()
+                    .register("users", userRepository)
+                    .register("projects", projectRepository)
+                    .register("applications", applicationRepository)
+                    .register("bookings", bookingRepository)
+                    .register("enquiries", enquiryRepository)
+                    .register("officerRegistrations", officerRegRepository);
             // System.out.println("Repositories initialised.");
 
             try {
-                userRepository.loadAll();
-                projectRepository.loadAll();
-                applicationRepository.loadAll();
-                bookingRepository.loadAll();
-                enquiryRepository.loadAll();
-                officerRegRepository.loadAll();
+                bootstrap.loadAll();
+                System.out.println(bootstrap.describeTimings());
+                for (String problem : applicationRepository.verifyIndexes()) {
+                    System.err.println("Warning: Application index inconsistency: " + problem);
+                }
 
                 IdGenerator.initialise(
                         projectRepository,
@@ -130,10 +207,11 @@ public class App {
                 // System.out.println("Data loaded successfully.");
             } catch (DataAccessException e) {
                 System.err.println("FATAL: Failed to load initial data: " + e.getMessage());
-                // Optionally: Create default files or handle differently
-                // For now, we might continue with empty repositories or exit
-                System.err.println("Continuing with potentially empty data stores.");
+                // Saving or checkpointing a repository that failed to load would overwrite its data
+                System.err.println("No data has been changed. Fix or restore the data files and restart.");
+                return null;
             }
+            REPOSITORIES.addAll(bootstrap.getRepositories());
 
             // 2. initialise Services (Inject Repositories and other Services)
             EligibilityService eligibilityService = new EligibilityService(projectRepository);
@@ -187,22 +265,40 @@ public class App {
      * Starts and runs the main application loop.
      * <p>
      * This method controls the application's main lifecycle:
+     * 1. Runs one session, as described for {@link #runSession()}
+     * 2. Performs cleanup when the application terminates, waiting for any
+     * write-behind repository flushes to complete and checkpointing every
+     * repository so the next start-up can load from snapshots
+     * </p>
+     */
+    public void run() {
+        runSession();
+        shutdown();
+        scanner.close();
+    }
+
+    /**
+     * Runs one user session until the user chooses to exit.
+     * <p>
      * 1. Displays a welcome message
      * 2. Shows the main menu UI if no user is logged in
      * 3. Routes logged-in users to their role-specific UI
      * 4. Handles logout by resetting the current user
-     * 5. Performs cleanup when the application terminates
+     * </p>
+     * <p>
+     * Input that ends early (for example, a disconnected session) ends the
+     * session with a {@link java.util.NoSuchElementException} from the scanner.
      * </p>
      */
-    public void run() {
-        System.out.println("   ___    _____    ___   __  __    ___  ");
-        System.out.println("  | _ )  |_   _|  / _ \\ |  \\/  |  / __| ");
-        System.out.println("  | _ \\    | |   | (_) || |\\/| |  \\__ \\ ");
-        System.out.println("  |___/   _|_|_   \\___/ |_|__|_|  |___/ ");
-        System.out.println("_|\"\"\"\"\"|_|\"\"\"\"\"|_|\"\"\"\"\"|_|\"\"\"\"\"|_|\"\"\"\"\"|");
-        System.out.println("\"`-0-0-'\"`-0-0-'\"`-0-0-'\"`-0-0-'\"`-0-0-'");
+    public void runSession() {
+        out.println("   ___    _____    ___   __  __    ___  ");
+        out.println("  | _ )  |_   _|  / _ \\ |  \\/  |  / __| ");
+        out.println("  | _ \\    | |   | (_) || |\\/| |  \\__ \\ ");
+        out.println("  |___/   _|_|_   \\___/ |_|__|_|  |___/ ");
+        out.println("_|\"\"\"\"\"|_|\"\"\"\"\"|_|\"\"\"\"\"|_|\"\"\"\"\"|_|\"\"\"\"\"|");
+        out.println("\"`-0-0-'\"`-0-0-'\"`-0-0-'\"`-0-0-'\"`-0-0-'");
 
-        System.out.println("\nWelcome to the BTO Management System!");
+        out.println("\nWelcome to the BTO Management System!");
 
         boolean isApplicationRunning = true;
         while (isApplicationRunning) {
@@ -211,20 +307,46 @@ public class App {
 
                 if (currentUser == null) {
                     // If displayMainMenu returns null, it means the user chose to exit.
-                    System.out.println("Exiting application.");
+                    out.println("Exiting application.");
                     isApplicationRunning = false;
                 }
             } else {
                 // If a user is logged in, route them to their specific UI
                 routeToRoleUI(currentUser);
-                System.out.println("\nYou have been logged out.");
+                out.println("\nYou have been logged out.");
                 currentUser = null; // Reset currentUser to null
             }
         }
 
-        // Cleanup before exiting
-        scanner.close();
-        System.out.println("\nThank you for using the BTO Management System!");
+        out.println("\nThank you for using the BTO Management System!");
+    }
+
+    /**
+     * Cleans up when the application terminates, waiting for any write-behind
+     * repository flushes to complete, checkpointing every repository so the
+     * next start-up can load from snapshots, and syncing any writes whose
+     * batched fsync is still pending.
+     */
+    public static void shutdown() {
+        if (!WriteBehindFlusher.shutdown(SHUTDOWN_FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            System.err.println("Warning: Some pending changes could not be written to disk.");
+        }
+        checkpointRepositories();
+        FileUtil.syncPending();
+    }
+
+    /**
+     * Checkpoints every repository, writing its CSV file and binary snapshot.
+     * A failure in one repository is reported and does not stop the others.
+     */
+    private static void checkpointRepositories() {
+        for (IRepository<?, ?> repository : REPOSITORIES) {
+            try {
+                repository.checkpoint();
+            } catch (DataAccessException e) {
+                System.err.println("Warning: Checkpoint failed: " + e.getMessage());
+            }
+        }
     }
 
     /**
@@ -249,7 +371,7 @@ public class App {
                             controllerContainer.projectController,
                             controllerContainer.appController,
                             controllerContainer.enquiryController,
-                            controllerContainer.authController, scanner);
+                            controllerContainer.authController, scanner, session);
                     applicantUI.displayMainMenu();
                     break;
 
@@ -264,7 +386,7 @@ public class App {
                             controllerContainer.receiptController,
                             controllerContainer.enquiryController,
                             controllerContainer.authController,
-                            scanner);
+                            scanner, session);
                     officerUI.displayMainMenu();
                     break;
 
@@ -278,21 +400,21 @@ public class App {
                             controllerContainer.enquiryController,
                             controllerContainer.reportController,
                             controllerContainer.authController,
-                            scanner);
+                            scanner, session);
                     managerUI.displayMainMenu();
                     break;
 
                 default:
                     // Should not happen with proper enum usage, but handle defensively
-                    System.err.println("Error: Unknown user role encountered: " + user.getRole());
-                    System.out.println("Logging out due to role error.");
+                    err.println("Error: Unknown user role encountered: " + user.getRole());
+                    out.println("Logging out due to role error.");
                     // currentUser will be set to null in the main loop, prompting login again
                     break;
             }
         } catch (ClassCastException cce) {
-            System.err.println("Error: Role mismatch during UI routing. Logging out.");
+            err.println("Error: Role mismatch during UI routing. Logging out.");
         } catch (Exception e) {
-            System.err.println("An unexpected error occurred in the user interface. Logging out.");
+            err.println("An unexpected error occurred in the user interface. Logging out.");
         }
     }
 
@@ -306,8 +428,16 @@ public class App {
      * 4. Starts the application by calling run()
      * 5. Handles any critical initialization failures
      * </p>
+     * <p>
+     * With {@code --server [port]}, steps 2 to 4 are replaced by starting a
+     * {@link SessionServer} that serves network sessions until the process is
+     * stopped; cleanup then runs from a shutdown hook. The server listens on
+     * the loopback interface unless the {@value SessionServer#BIND_ADDRESS_PROPERTY}
+     * system property names another address.
+     * </p>
      *
-     * @param args Command line arguments (not used)
+     * @param args Command line arguments: none for a console session, or
+     *             {@code --server [port]} for server mode
      */
     public static void main(String[] args) {
         ControllerContainer controllers = initialiseComponents();
@@ -316,8 +446,57 @@ public class App {
             return;
         }
 
+        if (args.length > 0 && "--server".equals(args[0])) {
+            startServer(controllers, args.length > 1 ? args[1] : null);
+            return;
+        }
+
         Scanner scanner = new Scanner(System.in);
         App app = new App(controllers, scanner);
         app.run();
     }
+
+    /**
+     * Starts serving network sessions. The server's thread keeps the process
+     * running; stopping the process disconnects every session, waits for the
+     * sessions to end, and then cleans up as {@link #run()} does.
+     *
+     * @param controllers The controllers shared by all sessions
+     * @param portArg     The port to listen on, or null for the default
+     */
+    private static void startServer(ControllerContainer controllers, String portArg) {
+        int port = SessionServer.DEFAULT_PORT;
+        if (portArg != null) {
+            try {
+                port = Integer.parseInt(portArg);
+            } catch (NumberFormatException e) {
+                System.err.println("FATAL: Invalid port: " + portArg);
+                return;
+            }
+        }
+        SessionServer server;
+        try {
+            server = new SessionServer(controllers, SessionServer.configuredBindAddress(), port,
+                    SessionServer.configuredMaxSessions());
+            server.start();
+        } catch (IOException e) {
+            System.err.println("FATAL: Could not listen on port " + port + ": " + e.getMessage());
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            try {
+                // Sessions may be in the middle of a save; let them finish before the final checkpoint
+                if (!server.awaitSessions(TimeUnit.SECONDS.toMillis(SHUTDOWN_SESSION_TIMEOUT_SECONDS))) {
+                    System.err.println("Warning: Some sessions were still running at shutdown.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            shutdown();
+            System.out.println("Server stopped after " + server.getSessionCount() + " sessions.");
+        }, "server-shutdown"));
+        System.out.println("Serving BTO sessions on " + server.getBindAddress().getHostAddress() + " port "
+                + server.getPort() + ". Press Ctrl+C to stop.");
+    }
 }
\ No newline at end of file
@@ -36,41 +36,46 @@ import com.ntu.fdae.group1.bto.controllers.user.UserController;
  * All controllers are initialized through the constructor, ensuring they are
  * properly set up when the container is created.
  * </p>
+ * <p>
+ * The references are final and the controllers keep no per-user state, so
+ * one container can be shared by any number of concurrent user sessions;
+ * the repositories behind the controllers handle concurrent access.
+ * </p>
  */
 public class ControllerContainer {
     /** Controller handling user authentication, login, and session management. */
-    public AuthenticationController authController;
+    public final AuthenticationController authController;
 
     /** Controller for user profile management and user-related operations. */
-    public UserController userController;
+    public final UserController userController;
 
     /**
      * Controller managing BTO projects, including creation, updates, and queries.
      */
-    public ProjectController projectController;
+    public final ProjectController projectController;
 
     /** Controller for BTO housing applications and application processing. */
-    public ApplicationController appController;
+    public final ApplicationController appController;
 
     /** Controller handling officer registration requests and approval workflows. */
-    public OfficerRegistrationController officerRegController;
+    public final OfficerRegistrationController officerRegController;
 
     /**
      * Controller managing flat booking operations including selection and
      * confirmation.
      */
-    public BookingController bookingController;
+    public final BookingController bookingController;
 
     /**
      * Controller for generating and managing booking receipts and payment records.
      */
-    public ReceiptController receiptController;
+    public final ReceiptController receiptController;
 
     /** Controller handling customer enquiries and support requests. */
-    public EnquiryController enquiryController;
+    public final EnquiryController enquiryController;
 
     /** Controller for generating system reports and analytics. */
-    public ReportController reportController;
+    public final ReportController reportController;
 
     /**
      * Constructs a new ControllerContainer with all required controller instances.
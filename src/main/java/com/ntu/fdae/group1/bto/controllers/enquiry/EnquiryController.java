@@ -223,6 +223,21 @@ public class EnquiryController {
         return enquiryService.viewAllEnquiries();
     }
 
+    /**
+     * Searches all enquiries for the given keywords.
+     * <p>
+     * Enquiry content and replies are matched word by word, ignoring case.
+     * Results are ordered by relevance rather than by status or date.
+     * </p>
+     * 
+     * @param query         The words to search for
+     * @param unrepliedOnly true to return only enquiries not yet replied to
+     * @return List of matching enquiries, best match first
+     */
+    public List<Enquiry> searchEnquiries(String query, boolean unrepliedOnly) {
+        return enquiryService.searchEnquiries(query, null, unrepliedOnly);
+    }
+
     /**
      * Retrieves enquiries associated with a specific project, performing
      * authorization checks.
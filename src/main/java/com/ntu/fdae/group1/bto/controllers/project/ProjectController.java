@@ -5,10 +5,12 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import com.ntu.fdae.group1.bto.enums.FlatType;
 import com.ntu.fdae.group1.bto.enums.UserRole;
 import com.ntu.fdae.group1.bto.exceptions.AuthorizationException;
 import com.ntu.fdae.group1.bto.models.project.Project;
 import com.ntu.fdae.group1.bto.models.project.ProjectFlatInfo;
+import com.ntu.fdae.group1.bto.models.project.ProjectQuery;
 import com.ntu.fdae.group1.bto.models.user.HDBManager;
 import com.ntu.fdae.group1.bto.models.user.HDBOfficer;
 import com.ntu.fdae.group1.bto.models.user.User;
@@ -109,12 +111,12 @@ public class ProjectController {
      * Retrieves projects that are visible to a specific user, with optional
      * filtering.
      *
-     * @param user    The user for whom to retrieve visible projects
-     * @param filters Optional filters to apply to the results (e.g., neighborhood,
-     *                flat types)
+     * @param user  The user for whom to retrieve visible projects
+     * @param query Optional filters to apply to the results (e.g., neighborhood,
+     *              flat types), with the order and limit
      * @return A list of projects visible to the user, filtered as specified
      */
-    public List<Project> getVisibleProjectsForUser(User user, Map<String, Object> filters) {
+    public List<Project> getVisibleProjectsForUser(User user, ProjectQuery query) {
         // No specific authorization needed here usually, as the service filters based
         // on user.
         if (user == null) {
@@ -123,7 +125,7 @@ public class ProjectController {
             return Collections.emptyList();
         }
 
-        return projectService.getVisibleProjectsForUser(user, filters);
+        return projectService.getVisibleProjectsForUser(user, query);
     }
 
     /**
@@ -133,19 +135,19 @@ public class ProjectController {
      * if accessed by regular applicants.
      * </p>
      *
-     * @param user   The user requesting the projects (must be HDB staff)
-     * @param filter Optional filters to apply to the results (e.g., neighborhood,
-     *               flat types)
+     * @param user  The user requesting the projects (must be HDB staff)
+     * @param query Optional filters to apply to the results (e.g., neighborhood,
+     *              flat types), with the order and limit
      * @return A list of all projects, filtered as specified
      * @throws AuthorizationException If the user is not authorized to view all
      *                                projects
      */
-    public List<Project> getAllProjects(User user, Map<String, Object> filter) throws AuthorizationException {
+    public List<Project> getAllProjects(User user, ProjectQuery query) throws AuthorizationException {
         if (user.getRole() != UserRole.HDB_MANAGER) {
             throw new AuthorizationException("Only HDB Managers can view all projects.");
         }
 
-        return projectService.getAllProjects(user, filter);
+        return projectService.getAllProjects(user, query);
     }
 
     /**
@@ -167,18 +169,64 @@ public class ProjectController {
      * filtering.
      *
      * @param manager The HDB manager whose projects to retrieve
-     * @param filters Optional filters to apply to the results (e.g., neighborhood,
-     *                flat types)
+     * @param query   Optional filters to apply to the results (e.g., neighborhood,
+     *                flat types), with the order and limit
      * @return A list of projects managed by the specified manager, filtered as
      *         specified
      */
-    public List<Project> getProjectsManagedBy(HDBManager manager, Map<String, Object> filters) { // Renamed slightly for
-                                                                                                 // clarity
+    public List<Project> getProjectsManagedBy(HDBManager manager, ProjectQuery query) {
         if (manager == null) {
             System.err.println("Controller Warning: Manager object required for getManagedProjects.");
             return Collections.emptyList();
         }
-        return projectService.getProjectsManagedBy(manager.getNric(), filters);
+        return projectService.getProjectsManagedBy(manager.getNric(), query);
+    }
+
+    /**
+     * Finds the cheapest flats of a type that still have units remaining, in
+     * the projects the user may see.
+     *
+     * @param user     The user searching
+     * @param flatType The flat type
+     * @param limit    The maximum number of flats to return
+     * @return The flats, cheapest first
+     */
+    public List<ProjectFlatInfo> findCheapestAvailableFlats(User user, FlatType flatType, int limit) {
+        if (user == null) {
+            System.err.println("Error: User context is required to search flats.");
+            return Collections.emptyList();
+        }
+        return projectService.findCheapestAvailableFlats(user, flatType, limit);
+    }
+
+    /**
+     * Finds the flats of a type within a price range that still have units
+     * remaining, in the projects the user may see.
+     *
+     * @param user     The user searching
+     * @param flatType The flat type
+     * @param minPrice The lowest price to include
+     * @param maxPrice The highest price to include
+     * @return The flats, cheapest first
+     */
+    public List<ProjectFlatInfo> findAvailableFlatsInPriceRange(User user, FlatType flatType, double minPrice,
+            double maxPrice) {
+        if (user == null) {
+            System.err.println("Error: User context is required to search flats.");
+            return Collections.emptyList();
+        }
+        return projectService.findAvailableFlatsInPriceRange(user, flatType, minPrice, maxPrice);
+    }
+
+    /**
+     * Describes how a project query would be executed: which index is read and
+     * which criteria are checked on each candidate. Intended for diagnostics.
+     *
+     * @param query The query to explain
+     * @return The plan, one step per line
+     */
+    public String explainProjectQuery(ProjectQuery query) {
+        return projectService.explainProjectQuery(query);
     }
 
     /**
@@ -0,0 +1,53 @@
+package com.ntu.fdae.group1.bto.exceptions;
+
+/**
+ * Exception thrown when saving an entity would give it a key that must be
+ * unique but already belongs to another entity.
+ * <p>
+ * Repositories check such constraints, for example one booking per
+ * applicant, in the same step as the save itself. When this exception is
+ * thrown, nothing has been changed, so the caller can report the conflict
+ * without cleaning up.
+ * </p>
+ */
+public class DuplicateEntityException extends DataAccessException {
+
+    private final String constraint;
+    private final Object key;
+    private final Object existingId;
+
+    /**
+     * Constructs a new DuplicateEntityException.
+     * 
+     * @param constraint The name of the unique constraint that was violated
+     * @param key        The duplicated key
+     * @param existingId The identifier of the entity that already has the key
+     */
+    public DuplicateEntityException(String constraint, Object key, Object existingId) {
+        super("Duplicate " + constraint + " " + key + ": already used by " + existingId);
+        this.constraint = constraint;
+        this.key = key;
+        this.existingId = existingId;
+    }
+
+    /**
+     * @return The name of the unique constraint that was violated
+     */
+    public String getConstraint() {
+        return constraint;
+    }
+
+    /**
+     * @return The duplicated key
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    /**
+     * @return The identifier of the entity that already has the key
+     */
+    public Object getExistingId() {
+        return existingId;
+    }
+}
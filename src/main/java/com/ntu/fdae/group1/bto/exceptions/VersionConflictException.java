@@ -0,0 +1,56 @@
+package com.ntu.fdae.group1.bto.exceptions;
+
+/**
+ * Exception thrown when saving an entity that has been changed since the
+ * caller read it.
+ * <p>
+ * Versioned entities carry the number of times they have been saved. A
+ * repository only saves such an entity if the stored one still has the same
+ * version; otherwise someone else saved a newer change in the meantime, and
+ * saving would silently overwrite it. When this exception is thrown, nothing
+ * has been changed, so the caller can read the entity again and retry.
+ * </p>
+ */
+public class VersionConflictException extends DataAccessException {
+
+    private final Object entityId;
+    private final int expectedVersion;
+    private final int actualVersion;
+
+    /**
+     * Constructs a new VersionConflictException.
+     *
+     * @param entityId        The identifier of the entity
+     * @param expectedVersion The version the caller's copy was based on
+     * @param actualVersion   The version of the stored entity, or 0 if it no
+     *                        longer exists
+     */
+    public VersionConflictException(Object entityId, int expectedVersion, int actualVersion) {
+        super(entityId + " was changed by someone else (version " + expectedVersion + ", now " + actualVersion
+                + ")");
+        this.entityId = entityId;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    /**
+     * @return The identifier of the entity
+     */
+    public Object getEntityId() {
+        return entityId;
+    }
+
+    /**
+     * @return The version the caller's copy was based on
+     */
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    /**
+     * @return The version of the stored entity, or 0 if it no longer exists
+     */
+    public int getActualVersion() {
+        return actualVersion;
+    }
+}
@@ -43,6 +43,12 @@ public class Booking {
      */
     private LocalDate bookingDate;
 
+    /**
+     * Number of times this booking has been saved, used to detect conflicting
+     * changes. Maintained by the repository.
+     */
+    private int version;
+
     /**
      * Constructs a new Booking with all required fields.
      * 
@@ -116,4 +122,28 @@ public class Booking {
     public LocalDate getBookingDate() {
         return bookingDate;
     }
+
+    /**
+     * Gets the version of this booking: the number of times it has been saved.
+     * <p>
+     * The repository only saves the booking if the stored one still has the
+     * same version, so a change made to an outdated copy is rejected instead
+     * of overwriting a newer change.
+     * </p>
+     *
+     * @return The version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of this booking. Used by the repository when loading and
+     * saving it.
+     *
+     * @param version The version
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
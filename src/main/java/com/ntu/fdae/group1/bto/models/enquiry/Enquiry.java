@@ -54,6 +54,12 @@ public class Enquiry {
      */
     private LocalDate replyDate;
 
+    /**
+     * Number of times this enquiry has been saved, used to detect conflicting
+     * changes. Maintained by the repository.
+     */
+    private int version;
+
     /**
      * Constructs a new Enquiry with the specified details.
      *
@@ -72,6 +78,23 @@ public class Enquiry {
         this.submissionDate = submissionDate;
     }
 
+    /**
+     * Constructs a copy of an enquiry, including its reply and version.
+     * <p>
+     * Services edit or reply to a copy and save it, so two staff replying at
+     * once cannot both succeed and readers never see a partly made change.
+     * </p>
+     *
+     * @param other The enquiry to copy
+     */
+    public Enquiry(Enquiry other) {
+        this(other.enquiryId, other.userNric, other.projectId, other.content, other.submissionDate);
+        this.reply = other.reply;
+        this.isReplied = other.isReplied;
+        this.replyDate = other.replyDate;
+        this.version = other.version;
+    }
+
     /**
      * Gets the unique identifier for this enquiry.
      *
@@ -180,4 +203,28 @@ public class Enquiry {
     public void editContent(String newContent) {
         this.content = newContent;
     }
+
+    /**
+     * Gets the version of this enquiry: the number of times it has been saved.
+     * <p>
+     * The repository only saves the enquiry if the stored one still has the
+     * same version, so a change made to an outdated copy is rejected instead
+     * of overwriting a newer change.
+     * </p>
+     *
+     * @return The version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of this enquiry. Used by the repository when loading and
+     * saving it.
+     *
+     * @param version The version
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
\ No newline at end of file
@@ -62,6 +62,12 @@ public class Application {
      */
     private LocalDate requestedWithdrawalDate;
 
+    /**
+     * Number of times this application has been saved, used to detect conflicting
+     * changes. Maintained by the repository.
+     */
+    private int version;
+
     /**
      * Constructs a new Application with the specified details.
      *
@@ -77,6 +83,23 @@ public class Application {
         this.submissionDate = submissionDate;
     }
 
+    /**
+     * Constructs a copy of an application, including its version.
+     * <p>
+     * Services change a copy and save it, so the stored application is
+     * replaced as a whole and readers never see a partly made change.
+     * </p>
+     *
+     * @param other The application to copy
+     */
+    public Application(Application other) {
+        this(other.applicationId, other.applicantNric, other.projectId, other.submissionDate);
+        this.status = other.status;
+        this.preferredFlatType = other.preferredFlatType;
+        this.requestedWithdrawalDate = other.requestedWithdrawalDate;
+        this.version = other.version;
+    }
+
     /**
      * Gets the unique identifier for this application.
      *
@@ -180,4 +203,28 @@ public class Application {
     public void setRequestedWithdrawalDate(LocalDate requestedWithdrawalDate) {
         this.requestedWithdrawalDate = requestedWithdrawalDate;
     }
+
+    /**
+     * Gets the version of this application: the number of times it has been saved.
+     * <p>
+     * The repository only saves the application if the stored one still has the
+     * same version, so a change made to an outdated copy is rejected instead
+     * of overwriting a newer change.
+     * </p>
+     *
+     * @return The version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of this application. Used by the repository when loading and
+     * saving it.
+     *
+     * @param version The version
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
@@ -54,6 +54,12 @@ public class OfficerRegistration {
 	 */
 	private OfficerRegStatus status;
 
+	/**
+	 * Number of times this registration has been saved, used to detect conflicting
+	 * changes. Maintained by the repository.
+	 */
+	private int version;
+
 	/**
 	 * Constructs a new OfficerRegistration with the specified details.
 	 * <p>
@@ -73,6 +79,21 @@ public class OfficerRegistration {
 		this.status = OfficerRegStatus.PENDING; // Default status for new registrations
 	}
 
+	/**
+	 * Constructs a copy of a registration, including its version.
+	 * <p>
+	 * Services change a copy and save it, so the stored registration is
+	 * replaced as a whole and readers never see a partly made change.
+	 * </p>
+	 *
+	 * @param other The registration to copy
+	 */
+	public OfficerRegistration(OfficerRegistration other) {
+		this(other.registrationId, other.officerNric, other.projectId, other.requestDate);
+		this.status = other.status;
+		this.version = other.version;
+	}
+
 	/**
 	 * Gets the unique identifier for this registration.
 	 *
@@ -160,4 +181,28 @@ public class OfficerRegistration {
 	public boolean isPending() {
 		return status == OfficerRegStatus.PENDING;
 	}
+
+	/**
+	 * Gets the version of this registration: the number of times it has been saved.
+	 * <p>
+	 * The repository only saves the registration if the stored one still has the
+	 * same version, so a change made to an outdated copy is rejected instead
+	 * of overwriting a newer change.
+	 * </p>
+	 *
+	 * @return The version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Sets the version of this registration. Used by the repository when loading and
+	 * saving it.
+	 *
+	 * @param version The version
+	 */
+	public void setVersion(int version) {
+		this.version = version;
+	}
 }
\ No newline at end of file
@@ -89,6 +89,12 @@ public class Project {
      */
     private List<String> approvedOfficerNrics;
 
+    /**
+     * Number of times this project has been saved, used to detect conflicting
+     * changes. Maintained by the repository.
+     */
+    private int version;
+
     /**
      * Constructs a new Project with the specified details.
      * 
@@ -125,6 +131,32 @@ public class Project {
         }
     }
 
+    /**
+     * Constructs a copy of a project, including its version.
+     * <p>
+     * Services change a copy and save it, so the stored project is replaced as
+     * a whole and readers never see a partly made change. The copy has its own
+     * flat type map and officer list but shares the {@link ProjectFlatInfo}
+     * objects, whose unit counts are updated atomically in place.
+     * </p>
+     *
+     * @param other The project to copy
+     */
+    public Project(Project other) {
+        this.projectId = other.projectId;
+        this.projectName = other.projectName;
+        this.neighborhood = other.neighborhood;
+        this.flatTypes = new HashMap<>(other.flatTypes);
+        this.openingDate = other.openingDate;
+        this.closingDate = other.closingDate;
+        this.managerNric = other.managerNric;
+        this.maxOfficerSlots = other.maxOfficerSlots;
+        this.remainingOfficerSlots = other.remainingOfficerSlots;
+        this.isVisible = other.isVisible;
+        this.approvedOfficerNrics = new ArrayList<>(other.approvedOfficerNrics);
+        this.version = other.version;
+    }
+
     /**
      * Gets the unique identifier for this project.
      * 
@@ -445,4 +477,28 @@ public class Project {
                 ", approvedOfficerCount=" + (approvedOfficerNrics != null ? approvedOfficerNrics.size() : 0) +
                 '}';
     }
+
+    /**
+     * Gets the version of this project: the number of times it has been saved.
+     * <p>
+     * The repository only saves the project if the stored one still has the
+     * same version, so a change made to an outdated copy is rejected instead
+     * of overwriting a newer change.
+     * </p>
+     *
+     * @return The version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of this project. Used by the repository when loading and
+     * saving it.
+     *
+     * @param version The version
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
@@ -1,5 +1,7 @@
 package com.ntu.fdae.group1.bto.models.project;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.ntu.fdae.group1.bto.enums.FlatType;
 
 /**
@@ -20,8 +22,35 @@ import com.ntu.fdae.group1.bto.enums.FlatType;
  * that inventory is correctly adjusted during the application and booking
  * processes.
  * </p>
+ * <p>
+ * The unit counts are updated with compare-and-set, without locking, so
+ * managers approving applications for the same flat type at the same time
+ * cannot take more units than remain. Approval takes a unit with
+ * {@link #tryReserve()} immediately followed by {@link #commit()}, before the
+ * approval is saved; the two together are a single take. If the approval
+ * cannot be saved, {@link #returnUnit()} undoes the take. A unit is never
+ * left reserved while an approval is being saved, because the saved count
+ * (see {@link #getUncommittedUnits()}) would still include it.
+ * </p>
+ * <p>
+ * Each persisted flat info has a stable identifier (e.g. "FLAT001") and
+ * records the project it belongs to, so that it can be stored and updated
+ * independently of the project's own details.
+ * </p>
  */
 public class ProjectFlatInfo {
+    /**
+     * The unique identifier of this flat info, or null if it has not been
+     * assigned yet.
+     */
+    private final String flatInfoId;
+
+    /**
+     * The ID of the project this flat info belongs to, or null if it has not
+     * been assigned yet.
+     */
+    private final String projectId;
+
     /**
      * The type of flat (e.g., 2-ROOM, 3-ROOM, 4-ROOM, 5-ROOM).
      */
@@ -33,10 +62,12 @@ public class ProjectFlatInfo {
     private int totalUnits;
 
     /**
-     * The number of units of this flat type that are still available for
-     * application.
+     * The unit inventory, packed into one word so that it changes atomically:
+     * the high 32 bits hold the number of units still available for
+     * application, the low 32 bits the number of those taken by reservations
+     * that are not yet committed.
      */
-    private int remainingUnits;
+    private final AtomicLong inventory;
 
     /**
      * The price of this flat type in Singapore dollars.
@@ -44,7 +75,9 @@ public class ProjectFlatInfo {
     private double price;
 
     /**
-     * Constructs a new ProjectFlatInfo with the specified details.
+     * Constructs a new ProjectFlatInfo with the specified details but no
+     * identity yet. The project service assigns an ID and project when the
+     * project is created.
      *
      * @param flatType       The type of flat (e.g., 2-ROOM, 3-ROOM)
      * @param totalUnits     The total number of units of this flat type in the
@@ -53,43 +86,124 @@ public class ProjectFlatInfo {
      * @param price          The price of this flat type in Singapore dollars
      */
     public ProjectFlatInfo(FlatType flatType, int totalUnits, int remainingUnits, double price) {
+        this(null, null, flatType, totalUnits, remainingUnits, price);
+    }
+
+    /**
+     * Constructs a new ProjectFlatInfo with a stable identity.
+     *
+     * @param flatInfoId     The unique identifier of this flat info
+     * @param projectId      The ID of the project this flat info belongs to
+     * @param flatType       The type of flat (e.g., 2-ROOM, 3-ROOM)
+     * @param totalUnits     The total number of units of this flat type in the
+     *                       project
+     * @param remainingUnits The number of units still available for application
+     * @param price          The price of this flat type in Singapore dollars
+     */
+    public ProjectFlatInfo(String flatInfoId, String projectId, FlatType flatType, int totalUnits,
+            int remainingUnits, double price) {
+        this.flatInfoId = flatInfoId;
+        this.projectId = projectId;
         this.flatType = flatType;
         this.totalUnits = totalUnits;
-        this.remainingUnits = remainingUnits;
+        this.inventory = new AtomicLong(pack(remainingUnits, 0));
         this.price = price;
     }
 
     /**
-     * Decreases the number of remaining units by one, simulating a flat being
-     * reserved.
+     * Reserves one unit if any remain.
      * <p>
-     * This method is typically called when an application is approved, reducing the
-     * available inventory. It prevents the remaining units count from going below
-     * zero.
+     * This is the first half of taking a unit for an approval. The unit stops
+     * counting as remaining at once, so concurrent approvals can never take
+     * more units than remain. The caller must call {@link #commit()} straight
+     * away, before saving anything; an approval that then cannot be saved
+     * gives its unit back with {@link #returnUnit()}.
      * </p>
      *
-     * @return true if a unit was successfully reserved, false if no units were
-     *         available
+     * @return true if a unit was reserved, false if no units remain
      */
-    public boolean decreaseRemainingUnits() {
-        if (remainingUnits > 0) {
-            remainingUnits--;
-            return true;
+    public boolean tryReserve() {
+        while (true) {
+            long current = inventory.get();
+            int remaining = remaining(current);
+            if (remaining <= 0) {
+                return false;
+            }
+            if (inventory.compareAndSet(current, pack(remaining - 1, reserved(current) + 1))) {
+                return true;
+            }
         }
-        return false;
     }
 
     /**
-     * Increases the number of remaining units by one, simulating a flat being
-     * released.
-     * <p>
-     * This method is typically called when an application is withdrawn or
-     * cancelled,
-     * returning a previously reserved unit to the available inventory.
-     * </p>
+     * Completes a take started by {@link #tryReserve()}: the unit stays taken
+     * and is no longer counted by {@link #getUncommittedUnits()}.
+     *
+     * @return true if an uncommitted reservation was completed, false if there
+     *         was none
      */
-    public void increaseRemainingUnits() {
-        remainingUnits++;
+    public boolean commit() {
+        while (true) {
+            long current = inventory.get();
+            int reserved = reserved(current);
+            if (reserved <= 0) {
+                return false;
+            }
+            if (inventory.compareAndSet(current, pack(remaining(current), reserved - 1))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns a committed unit to the remaining units, because an approved
+     * application was withdrawn before the flat was booked or its approval
+     * could not be saved. The remaining units never exceed the total units.
+     *
+     * @return true if the unit was returned, false if all units already
+     *         remain
+     */
+    public boolean returnUnit() {
+        while (true) {
+            long current = inventory.get();
+            int remaining = remaining(current);
+            if (remaining + reserved(current) >= totalUnits) {
+                return false;
+            }
+            if (inventory.compareAndSet(current, pack(remaining + 1, reserved(current)))) {
+                return true;
+            }
+        }
+    }
+
+    private static long pack(int remaining, int reserved) {
+        return ((long) remaining << 32) | (reserved & 0xFFFFFFFFL);
+    }
+
+    private static int remaining(long inventory) {
+        return (int) (inventory >> 32);
+    }
+
+    private static int reserved(long inventory) {
+        return (int) inventory;
+    }
+
+    /**
+     * Gets the unique identifier of this flat info.
+     *
+     * @return The flat info ID, or null if it has not been assigned
+     */
+    public String getFlatInfoId() {
+        return flatInfoId;
+    }
+
+    /**
+     * Gets the ID of the project this flat info belongs to.
+     *
+     * @return The project ID, or null if it has not been assigned
+     */
+    public String getProjectId() {
+        return projectId;
     }
 
     /**
@@ -117,7 +231,24 @@ public class ProjectFlatInfo {
      * @return The number of remaining units
      */
     public int getRemainingUnits() {
-        return remainingUnits;
+        return remaining(inventory.get());
+    }
+
+    /**
+     * Gets the number of units not taken by a committed approval, that is, the
+     * remaining units plus any reserved by {@link #tryReserve()} but not yet
+     * committed.
+     * <p>
+     * This is the count that is saved, so a save that runs between the two
+     * halves of another thread's take does not record that take before its
+     * approval is saved.
+     * </p>
+     *
+     * @return The number of units not committed to an approval
+     */
+    public int getUncommittedUnits() {
+        long current = inventory.get();
+        return remaining(current) + reserved(current);
     }
 
     /**
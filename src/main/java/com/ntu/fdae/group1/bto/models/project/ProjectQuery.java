@@ -0,0 +1,288 @@
+package com.ntu.fdae.group1.bto.models.project;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import com.ntu.fdae.group1.bto.enums.FlatType;
+
+/**
+ * Describes which projects to list, in what order and how many.
+ * <p>
+ * A query is built once, typically from the filters a user enters, and can
+ * then be run repeatedly. Every criterion is optional; a query without
+ * criteria matches all projects. Queries are immutable: each {@code with...}
+ * method returns a copy with one criterion changed, e.g.
+ * </p>
+ *
+ * <pre>
+ * ProjectQuery query = ProjectQuery.all()
+ *         .withNeighborhood("Yishun")
+ *         .withAvailableFlatType(FlatType.THREE_ROOM)
+ *         .sortedBy(ProjectQuery.SortOrder.NAME);
+ * </pre>
+ * <p>
+ * The project repository compiles a query into a plan that reads the most
+ * selective of its indexes and checks the remaining criteria on each
+ * candidate.
+ * </p>
+ */
+public final class ProjectQuery {
+
+    /**
+     * The order in which matching projects are returned.
+     */
+    public enum SortOrder {
+        /**
+         * By project ID, ascending.
+         */
+        PROJECT_ID,
+        /**
+         * By project name, ascending and ignoring case.
+         */
+        NAME
+    }
+
+    private static final ProjectQuery ALL = new ProjectQuery(null, null, null, null, null, null,
+            SortOrder.PROJECT_ID, 0);
+
+    private final String neighborhood;
+    private final FlatType availableFlatType;
+    private final Boolean visible;
+    private final String managerNric;
+    private final LocalDate openOn;
+    private final Set<FlatType> offeredFlatTypes;
+    private final SortOrder sortOrder;
+    private final int limit;
+
+    private ProjectQuery(String neighborhood, FlatType availableFlatType, Boolean visible, String managerNric,
+            LocalDate openOn, Set<FlatType> offeredFlatTypes, SortOrder sortOrder, int limit) {
+        this.neighborhood = neighborhood;
+        this.availableFlatType = availableFlatType;
+        this.visible = visible;
+        this.managerNric = managerNric;
+        this.openOn = openOn;
+        this.offeredFlatTypes = offeredFlatTypes;
+        this.sortOrder = sortOrder;
+        this.limit = limit;
+    }
+
+    /**
+     * Returns a query matching all projects, sorted by project ID, without a
+     * limit.
+     *
+     * @return The unrestricted query
+     */
+    public static ProjectQuery all() {
+        return ALL;
+    }
+
+    /**
+     * Restricts the query to projects in a neighbourhood, compared ignoring
+     * case and surrounding spaces.
+     *
+     * @param neighborhood The neighbourhood, or null or blank for any
+     * @return A copy of this query with the neighbourhood criterion
+     */
+    public ProjectQuery withNeighborhood(String neighborhood) {
+        String trimmed = neighborhood == null || neighborhood.trim().isEmpty() ? null : neighborhood.trim();
+        return new ProjectQuery(trimmed, availableFlatType, visible, managerNric, openOn, offeredFlatTypes,
+                sortOrder, limit);
+    }
+
+    /**
+     * Restricts the query to projects that offer a flat type and still have
+     * units of it remaining.
+     *
+     * @param flatType The flat type, or null for any
+     * @return A copy of this query with the flat type criterion
+     */
+    public ProjectQuery withAvailableFlatType(FlatType flatType) {
+        return new ProjectQuery(neighborhood, flatType, visible, managerNric, openOn, offeredFlatTypes,
+                sortOrder, limit);
+    }
+
+    /**
+     * Restricts the query to projects with the given visibility.
+     *
+     * @param visible true for visible projects, false for hidden ones, or null
+     *                for either
+     * @return A copy of this query with the visibility criterion
+     */
+    public ProjectQuery withVisibility(Boolean visible) {
+        return new ProjectQuery(neighborhood, availableFlatType, visible, managerNric, openOn, offeredFlatTypes,
+                sortOrder, limit);
+    }
+
+    /**
+     * Restricts the query to projects managed by one manager.
+     *
+     * @param managerNric The manager's NRIC, or null for any
+     * @return A copy of this query with the manager criterion
+     */
+    public ProjectQuery withManager(String managerNric) {
+        return new ProjectQuery(neighborhood, availableFlatType, visible, managerNric, openOn, offeredFlatTypes,
+                sortOrder, limit);
+    }
+
+    /**
+     * Restricts the query to projects whose application period includes a
+     * day. Both ends of the period are inclusive; projects without dates never
+     * match.
+     *
+     * @param date The day, or null for any
+     * @return A copy of this query with the open-on criterion
+     */
+    public ProjectQuery withOpenOn(LocalDate date) {
+        return new ProjectQuery(neighborhood, availableFlatType, visible, managerNric, date, offeredFlatTypes,
+                sortOrder, limit);
+    }
+
+    /**
+     * Restricts the query to projects that offer at least one of the given
+     * flat types, whether or not units remain.
+     *
+     * @param flatTypes The flat types, or null for any; an empty collection
+     *                  matches no project
+     * @return A copy of this query with the offered flat types criterion
+     */
+    public ProjectQuery withAnyOfferedFlatType(Collection<FlatType> flatTypes) {
+        Set<FlatType> types = flatTypes == null ? null
+                : Collections.unmodifiableSet(flatTypes.isEmpty() ? EnumSet.noneOf(FlatType.class)
+                        : EnumSet.copyOf(flatTypes));
+        return new ProjectQuery(neighborhood, availableFlatType, visible, managerNric, openOn, types,
+                sortOrder, limit);
+    }
+
+    /**
+     * Sets the order of the results.
+     *
+     * @param sortOrder The order; null restores the default, by project ID
+     * @return A copy of this query with the order
+     */
+    public ProjectQuery sortedBy(SortOrder sortOrder) {
+        return new ProjectQuery(neighborhood, availableFlatType, visible, managerNric, openOn, offeredFlatTypes,
+                sortOrder == null ? SortOrder.PROJECT_ID : sortOrder, limit);
+    }
+
+    /**
+     * Limits the number of results.
+     *
+     * @param limit The maximum number of projects to return, or 0 for no limit
+     * @return A copy of this query with the limit
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public ProjectQuery limitedTo(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative: " + limit);
+        }
+        return new ProjectQuery(neighborhood, availableFlatType, visible, managerNric, openOn, offeredFlatTypes,
+                sortOrder, limit);
+    }
+
+    /**
+     * @return The neighbourhood criterion, or null if none
+     */
+    public String getNeighborhood() {
+        return neighborhood;
+    }
+
+    /**
+     * @return The flat type that must have units remaining, or null if none
+     */
+    public FlatType getAvailableFlatType() {
+        return availableFlatType;
+    }
+
+    /**
+     * @return The required visibility, or null if either is accepted
+     */
+    public Boolean getVisible() {
+        return visible;
+    }
+
+    /**
+     * @return The NRIC of the required manager, or null if none
+     */
+    public String getManagerNric() {
+        return managerNric;
+    }
+
+    /**
+     * @return The day the application period must include, or null if none
+     */
+    public LocalDate getOpenOn() {
+        return openOn;
+    }
+
+    /**
+     * @return The flat types of which a project must offer at least one, or
+     *         null if none are required
+     */
+    public Set<FlatType> getOfferedFlatTypes() {
+        return offeredFlatTypes;
+    }
+
+    /**
+     * @return The order of the results
+     */
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    /**
+     * @return The maximum number of results, or 0 for no limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns whether this query has no filter criteria. The order and limit
+     * are not criteria.
+     *
+     * @return true if the query matches all projects
+     */
+    public boolean isEmpty() {
+        return neighborhood == null && availableFlatType == null && visible == null && managerNric == null
+                && openOn == null && offeredFlatTypes == null;
+    }
+
+    /**
+     * Describes the filter criteria for display, one per line, e.g.
+     * "neighborhood: Yishun".
+     *
+     * @return The criteria descriptions; empty if there are none
+     */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        if (neighborhood != null) {
+            lines.add("neighborhood: " + neighborhood);
+        }
+        if (availableFlatType != null) {
+            lines.add("flatType: " + availableFlatType.name());
+        }
+        if (visible != null) {
+            lines.add("visibility: " + (visible ? "ON" : "OFF"));
+        }
+        if (managerNric != null) {
+            lines.add("manager: " + managerNric);
+        }
+        if (openOn != null) {
+            lines.add("open on: " + openOn);
+        }
+        if (offeredFlatTypes != null) {
+            lines.add("offers any of: " + offeredFlatTypes);
+        }
+        return lines;
+    }
+
+    @Override
+    public String toString() {
+        return "ProjectQuery" + describe() + " sorted by " + sortOrder + (limit > 0 ? " limit " + limit : "");
+    }
+}
@@ -3,6 +3,8 @@ package com.ntu.fdae.group1.bto.repository;
 import java.util.Map;
 
 import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
+import com.ntu.fdae.group1.bto.exceptions.VersionConflictException;
+import com.ntu.fdae.group1.bto.repository.util.UnitOfWork;
 
 /**
  * Generic repository interface defining the core data access operations for all
@@ -55,6 +57,11 @@ public interface IRepository<T, ID> {
      * entity objects as values. If the repository is empty, an empty map is
      * returned.
      * </p>
+     * <p>
+     * The map is a read-only, point-in-time view: it cannot be modified and
+     * does not reflect later saves or deletes. Callers that need a modifiable
+     * map should copy it.
+     * </p>
      * 
      * @return A map containing all entities, with IDs as keys and entity objects as
      *         values
@@ -70,11 +77,37 @@ public interface IRepository<T, ID> {
      * it will be added as a new entry. The repository implementation is responsible
      * for determining how to extract the ID from the entity.
      * </p>
+     * <p>
+     * For versioned entities the save is a compare-and-save: it only succeeds
+     * if the stored entity has the same version as the given one, and then
+     * advances the version. Saving the stored entity itself always succeeds;
+     * saving a copy fails if the stored entity was saved again after the copy
+     * was made.
+     * </p>
      * 
      * @param entity The entity to save
+     * @throws VersionConflictException if the entity is versioned and was
+     *                                  changed since it was read; nothing is
+     *                                  then changed
      */
     void save(T entity);
 
+    /**
+     * Registers a save of an entity with a unit of work instead of saving it
+     * at once.
+     * <p>
+     * The entity is stored and persisted when the unit is committed, together
+     * with the unit's other saves, possibly in other repositories: either all
+     * of them take effect or none does. Until then the repository is
+     * unchanged. Versioned entities are checked as by {@link #save(Object)}
+     * when the unit commits.
+     * </p>
+     * 
+     * @param entity The entity to save
+     * @param work   The unit of work to register the save with
+     */
+    void save(T entity, UnitOfWork work);
+
     /**
      * Saves multiple entities to the repository in a batch operation.
      * <p>
@@ -103,4 +136,17 @@ public interface IRepository<T, ID> {
      * @throws DataAccessException If an error occurs during data loading or parsing
      */
     Map<ID, T> loadAll() throws DataAccessException;
+
+    /**
+     * Writes the complete in-memory state to persistent storage, including any
+     * fast-load snapshot the implementation maintains.
+     * <p>
+     * This method is typically called at clean shutdown. Unlike
+     * {@link #saveAll(Map)} it does not replace the repository's contents; it
+     * only makes sure that what is in memory is fully and compactly persisted.
+     * </p>
+     * 
+     * @throws DataAccessException If an error occurs while writing
+     */
+    void checkpoint() throws DataAccessException;
 }
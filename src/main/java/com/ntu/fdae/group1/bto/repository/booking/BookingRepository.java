@@ -3,12 +3,19 @@ package com.ntu.fdae.group1.bto.repository.booking;
 import com.ntu.fdae.group1.bto.models.booking.Booking;
 import com.ntu.fdae.group1.bto.enums.FlatType;
 import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
+import com.ntu.fdae.group1.bto.exceptions.DuplicateEntityException;
+import com.ntu.fdae.group1.bto.utils.CsvRecord;
 import com.ntu.fdae.group1.bto.utils.FileUtil;
 import com.ntu.fdae.group1.bto.repository.util.CsvRepositoryHelper;
+import com.ntu.fdae.group1.bto.repository.util.IndexedStore;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotCodec;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotInput;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotOutput;
+import com.ntu.fdae.group1.bto.repository.util.UnitOfWork;
+import com.ntu.fdae.group1.bto.repository.util.WriteMode;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -25,40 +32,46 @@ import java.util.Map;
  * <p>
  * The repository maintains thread safety for its internal state and handles
  * serialization and deserialization of booking data to and from the CSV format.
+ * Lookups by application, applicant and project use the indexes of an
+ * {@link IndexedStore}. An applicant has at most one booking and an
+ * application at most one booking; {@link #save(Booking)} enforces both.
  * </p>
  */
 public class BookingRepository implements IBookingRepository {
     private static final String BOOKING_FILE_PATH = "data/bookings.csv";
     private static final String[] BOOKING_CSV_HEADER = new String[] {
             "bookingId", "applicationId", "applicantNric", "projectId",
-            "bookedFlatType", "bookingDate"
+            "bookedFlatType", "bookingDate", "version"
     };
 
-    private Map<String, Booking> bookings;
+    private final IndexedStore<String, Booking> bookings = new IndexedStore<>(Booking::getBookingId);
+    private final IndexedStore.UniqueIndex<String, Booking> byApplicationId = bookings
+            .addUniqueConstraint("applicationId", Booking::getApplicationId);
+    private final IndexedStore.UniqueIndex<String, Booking> byApplicantNric = bookings
+            .addUniqueConstraint("applicantNric", Booking::getApplicantNric);
+    private final IndexedStore.MultiIndex<String, Booking> byProjectId = bookings
+            .addMultiIndex("projectId", Booking::getProjectId);
     private final CsvRepositoryHelper<String, Booking> csvHelper;
 
     /**
      * Constructs a new BookingRepository.
      * <p>
      * Initializes the repository with a CsvRepositoryHelper configured for
-     * Booking entities and attempts to load existing booking data from the CSV
-     * file.
-     * If the initial data load fails, an empty booking collection is created.
+     * Booking entities and an empty booking collection. Existing data is read
+     * by {@link #loadAll()}, normally called through RepositoryBootstrap.
      * </p>
      */
     public BookingRepository() {
+        bookings.enableVersioning(Booking::getVersion, Booking::setVersion);
         this.csvHelper = new CsvRepositoryHelper<>(
                 BOOKING_FILE_PATH,
                 BOOKING_CSV_HEADER,
-                this::deserializeBookings,
-                this::serializeBookings);
-        // Load initial data
-        try {
-            this.bookings = this.csvHelper.loadData();
-        } catch (DataAccessException e) {
-            System.err.println("Initial booking load failed: " + e.getMessage());
-            this.bookings = new HashMap<>(); // Start with empty map on failure
-        }
+                this::mapBookingRow,
+                Booking::getBookingId,
+                this::toBookingRow,
+                WriteMode.JOURNALED);
+        this.csvHelper.enableSnapshots(
+                SnapshotCodec.of(2, Booking::getBookingId, this::writeBookingSnapshot, this::readBookingSnapshot));
     }
 
     /**
@@ -76,13 +89,13 @@ public class BookingRepository implements IBookingRepository {
     /**
      * {@inheritDoc}
      * <p>
-     * Returns a defensive copy of the bookings map to prevent external
-     * modification of the repository's internal state.
+     * Returns an immutable snapshot of the bookings map, taken in constant
+     * time; it does not change when the repository is written to later.
      * </p>
      */
     @Override
     public Map<String, Booking> findAll() {
-        return new HashMap<>(bookings);
+        return bookings.snapshot();
     }
 
     /**
@@ -94,6 +107,15 @@ public class BookingRepository implements IBookingRepository {
      * validation fails, but will throw any DataAccessExceptions from the
      * underlying storage mechanism.
      * </p>
+     * <p>
+     * A booking whose applicant or application already has a different
+     * booking is rejected with a {@link DuplicateEntityException} before
+     * anything is changed. The check and the insert are one step, so two
+     * officers booking for the same applicant at once cannot both succeed.
+     * </p>
+     * 
+     * @throws DuplicateEntityException if the applicant or the application
+     *                                  already has another booking
      */
     @Override
     public void save(Booking booking) {
@@ -101,13 +123,30 @@ public class BookingRepository implements IBookingRepository {
             System.err.println("Attempted to save null booking or booking with null ID");
             return;
         }
-        bookings.put(booking.getBookingId(), booking);
-        try {
-            csvHelper.saveData(bookings);
-        } catch (DataAccessException e) {
-            System.err.println("Failed to save booking " + booking.getBookingId() + ": " + e.getMessage());
-            throw e;
+        long ticket;
+        synchronized (this) {
+            bookings.putIfCurrent(booking);
+            try {
+                ticket = csvHelper.stageEntity(booking.getBookingId(), booking, bookings.snapshot());
+            } catch (DataAccessException e) {
+                System.err.println("Failed to save booking " + booking.getBookingId() + ": " + e.getMessage());
+                throw e;
+            }
         }
+        // Wait outside the lock, so that concurrent saves can join the same group commit
+        csvHelper.awaitDurable(ticket);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(Booking booking, UnitOfWork work) {
+        if (booking == null || booking.getBookingId() == null) {
+            System.err.println("Attempted to stage null booking or booking with null ID");
+            return;
+        }
+        work.stage(this, csvHelper, bookings, booking, null);
     }
 
     /**
@@ -119,10 +158,10 @@ public class BookingRepository implements IBookingRepository {
      * </p>
      */
     @Override
-    public void saveAll(Map<String, Booking> entities) {
-        this.bookings = new HashMap<>(entities);
+    public synchronized void saveAll(Map<String, Booking> entities) {
+        bookings.replaceAll(entities);
         try {
-            csvHelper.saveData(bookings);
+            csvHelper.saveData(bookings.snapshot());
         } catch (DataAccessException e) {
             System.err.println("Failed to save all bookings: " + e.getMessage());
             throw e;
@@ -133,153 +172,166 @@ public class BookingRepository implements IBookingRepository {
      * {@inheritDoc}
      * <p>
      * Reloads all booking data from the CSV file into the in-memory cache,
-     * replacing any existing data. Returns a defensive copy of the loaded
-     * bookings.
+     * replacing any existing data. Returns an immutable
+     * snapshot of the loaded bookings.
      * </p>
      */
     @Override
-    public Map<String, Booking> loadAll() throws DataAccessException {
-        this.bookings = csvHelper.loadData();
-        return new HashMap<>(bookings);
+    public synchronized Map<String, Booking> loadAll() throws DataAccessException {
+        bookings.replaceAll(csvHelper.loadData());
+        return bookings.snapshot();
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Searches the in-memory booking collection for a booking with the
-     * specified applicant NRIC. Returns the first matching booking or
-     * null if none is found.
+     * Rewrites the bookings CSV and stores a binary snapshot of the same
+     * state for fast start-up.
+     * </p>
+     */
+    @Override
+    public synchronized void checkpoint() throws DataAccessException {
+        csvHelper.checkpoint(bookings.snapshot());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Looks up the applicant's booking in the applicant index. Returns null
+     * if none is found.
      * </p>
      */
     @Override
     public Booking findByApplicantNric(String nric) {
-        for (Booking booking : bookings.values()) {
-            if (booking.getApplicantNric().equals(nric)) {
-                return booking;
-            }
-        }
-        return null;
+        return byApplicantNric.get(nric);
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Searches the in-memory booking collection for a booking with the
-     * specified application ID. Returns the first matching booking or
-     * null if none is found.
+     * Looks up the booking for the specified application ID in the
+     * application index. Returns null if none is found.
      * </p>
      */
     @Override
     public Booking findByApplicationId(String applicationId) {
-        for (Booking booking : bookings.values()) {
-            if (booking.getApplicationId().equals(applicationId)) {
-                return booking;
-            }
-        }
-        return null;
+        return byApplicationId.get(applicationId);
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Searches the in-memory booking collection for bookings associated
-     * with the specified project ID. Returns a list of matching bookings.
+     * Returns the bookings associated with the specified project ID from the
+     * project index.
      * </p>
      */
     @Override
     public List<Booking> findByProjectId(String projectId) {
-        List<Booking> projectBookings = new ArrayList<>();
-        for (Booking booking : bookings.values()) {
-            if (booking.getProjectId().equals(projectId)) {
-                projectBookings.add(booking);
-            }
-        }
-        return projectBookings;
+        return byProjectId.get(projectId);
     }
 
     /**
-     * Deserializes booking data from a list of CSV rows into a map of Booking
-     * entities.
+     * Converts one CSV row into a Booking entity.
      * <p>
-     * Each row is expected to contain the following fields in order:
+     * The row is expected to contain the following fields in order:
      * bookingId, applicationId, applicantNric, projectId, bookedFlatType,
-     * bookingDate.
+     * bookingDate, version.
      * Rows with missing or invalid data are skipped.
      * </p>
      *
-     * @param bookingData the list of CSV rows to deserialize
-     * @return a map of Booking entities keyed by bookingId
+     * @param row the CSV record to convert
+     * @return the Booking, or null if the row is invalid
      */
-    private Map<String, Booking> deserializeBookings(List<String[]> bookingData) {
-        Map<String, Booking> bookingMap = new HashMap<>();
-        if (bookingData == null)
-            return bookingMap;
-
-        for (String[] row : bookingData) {
-            if (row.length < 6) {
-                System.err.println("Skipping invalid booking row: " + String.join(",", row));
-                continue;
+    private Booking mapBookingRow(CsvRecord row) {
+        if (row.size() < 6) {
+            System.err.println("Skipping invalid booking row: " + row);
+            return null;
+        }
+        try {
+            // Use a null default if FlatType could be missing/invalid
+            FlatType flatType = row.getEnum(FlatType.class, 4, null);
+            if (flatType == null) { // Handle case where flat type is essential and missing
+                System.err.println("Skipping booking row due to invalid flat type: " + row.get(4));
+                return null;
             }
-            try {
-                String bookingId = row[0];
-                String applicationId = row[1];
-                String applicantNric = row[2];
-                String projectId = row[3];
-                // Use parseEnum with null default if FlatType could be missing/invalid
-                FlatType flatType = FileUtil.parseEnum(FlatType.class, row[4], null);
-                if (flatType == null) { // Handle case where flat type is essential and missing
-                    System.err.println("Skipping booking row due to invalid flat type: " + row[4]);
-                    continue;
-                }
-                LocalDate bookingDate = FileUtil.parseLocalDate(row[5]);
-                if (bookingDate == null) { // Handle case where booking date is essential
-                    System.err.println("Skipping booking row due to invalid booking date: " + row[5]);
-                    continue;
-                }
-
-                Booking booking = new Booking(
-                        bookingId,
-                        applicationId,
-                        applicantNric,
-                        projectId,
-                        flatType,
-                        bookingDate);
-
-                bookingMap.put(bookingId, booking);
-            } catch (Exception e) {
-                System.err.println("Error parsing booking row: " + String.join(",", row) + " - " + e.getMessage());
+            LocalDate bookingDate = row.getDate(5);
+            if (bookingDate == null) { // Handle case where booking date is essential
+                System.err.println("Skipping booking row due to invalid booking date: " + row.get(5));
+                return null;
             }
+            String bookingId = row.get(0);
+            String applicationId = row.get(1);
+            String applicantNric = row.get(2);
+            String projectId = row.get(3);
+
+            Booking booking = new Booking(
+                    bookingId,
+                    applicationId,
+                    applicantNric,
+                    projectId,
+                    flatType,
+                    bookingDate);
+            booking.setVersion(row.size() > 6 ? row.getInt(6, 0) : 0); // Absent in older files
+            return booking;
+        } catch (Exception e) {
+            System.err.println("Error parsing booking row: " + row + " - " + e.getMessage());
+            return null;
         }
-        return bookingMap;
     }
 
     /**
-     * Serializes a map of Booking entities into a list of CSV rows.
+     * Converts a Booking entity into a CSV row.
      * <p>
-     * Each row will contain the following fields in order:
+     * The row will contain the following fields in order:
      * bookingId, applicationId, applicantNric, projectId, bookedFlatType,
      * bookingDate.
      * </p>
      *
-     * @param booksToSerialize the map of Booking entities to serialize
-     * @return a list of CSV rows representing the serialized Booking entities
+     * @param booking the Booking entity to serialize
+     * @return the CSV row representing the booking
      */
-    private List<String[]> serializeBookings(Map<String, Booking> booksToSerialize) {
-        List<String[]> serializedData = new ArrayList<>();
-        if (booksToSerialize == null)
-            return serializedData;
+    private String[] toBookingRow(Booking booking) {
+        return new String[] {
+                booking.getBookingId(),
+                booking.getApplicationId(),
+                booking.getApplicantNric(),
+                booking.getProjectId(),
+                // Ensure bookedFlatType isn't null before calling toString()
+                booking.getBookedFlatType() != null ? booking.getBookedFlatType().toString() : "",
+                FileUtil.formatLocalDate(booking.getBookingDate()), // Util handles null date
+                String.valueOf(booking.getVersion())
+        };
+    }
 
-        for (Booking booking : booksToSerialize.values()) {
-            serializedData.add(new String[] {
-                    booking.getBookingId(),
-                    booking.getApplicationId(),
-                    booking.getApplicantNric(),
-                    booking.getProjectId(),
-                    // Ensure bookedFlatType isn't null before calling toString()
-                    booking.getBookedFlatType() != null ? booking.getBookedFlatType().toString() : "",
-                    FileUtil.formatLocalDate(booking.getBookingDate()) // Util handles null date
-            });
-        }
-        return serializedData;
+    /**
+     * Writes a booking's fields to a binary snapshot.
+     * 
+     * @param booking the booking to write
+     * @param out     the snapshot output
+     * @throws IOException if writing fails
+     */
+    private void writeBookingSnapshot(Booking booking, SnapshotOutput out) throws IOException {
+        out.writeString(booking.getBookingId());
+        out.writeString(booking.getApplicationId());
+        out.writeString(booking.getApplicantNric());
+        out.writeString(booking.getProjectId());
+        out.writeEnum(booking.getBookedFlatType());
+        out.writeDate(booking.getBookingDate());
+        out.writeInt(booking.getVersion());
+    }
+
+    /**
+     * Reads a booking written by
+     * {@link #writeBookingSnapshot(Booking, SnapshotOutput)}.
+     * 
+     * @param in the snapshot input
+     * @return the booking
+     * @throws IOException if the data is invalid
+     */
+    private Booking readBookingSnapshot(SnapshotInput in) throws IOException {
+        Booking booking = new Booking(in.readString(), in.readString(), in.readString(), in.readString(),
+                in.readEnum(FlatType.class), in.readDate());
+        booking.setVersion(in.readInt());
+        return booking;
     }
-}
\ No newline at end of file
+}
@@ -35,10 +35,11 @@ public interface IBookingRepository extends IRepository<Booking, String> {
     Booking findById(String bookingId);
 
     /**
-     * Finds all bookings made by a specific applicant.
+     * Finds the booking made by a specific applicant. An applicant has at most
+     * one booking.
      *
      * @param applicantNric The NRIC of the applicant
-     * @return A booking associated with the specified applicant, or null if not
+     * @return The booking associated with the specified applicant, or null if not
      *         found
      */
     Booking findByApplicantNric(String applicantNric);
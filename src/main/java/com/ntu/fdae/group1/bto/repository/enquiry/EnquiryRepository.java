@@ -2,15 +2,20 @@ package com.ntu.fdae.group1.bto.repository.enquiry;
 
 import com.ntu.fdae.group1.bto.models.enquiry.Enquiry;
 import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
+import com.ntu.fdae.group1.bto.utils.CsvRecord;
 import com.ntu.fdae.group1.bto.utils.FileUtil;
 import com.ntu.fdae.group1.bto.repository.util.CsvRepositoryHelper;
+import com.ntu.fdae.group1.bto.repository.util.IndexedStore;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotCodec;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotInput;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotOutput;
+import com.ntu.fdae.group1.bto.repository.util.UnitOfWork;
+import com.ntu.fdae.group1.bto.repository.util.WriteMode;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Implementation of the IEnquiryRepository interface that persists Enquiry
@@ -26,38 +31,52 @@ import java.util.stream.Collectors;
  * The repository handles serialization and deserialization of enquiry data to
  * and
  * from the CSV format, including conversion of complex fields like timestamps.
+ * Lookups by user and by project use the indexes of an {@link IndexedStore}.
+ * The words of each enquiry's content and reply are kept in an inverted index
+ * that is updated whenever an enquiry is saved or deleted, so searches do not
+ * read every enquiry.
  * </p>
  */
 public class EnquiryRepository implements IEnquiryRepository {
     private static final String ENQUIRY_FILE_PATH = "data/enquiries.csv";
     private static final String[] ENQUIRY_CSV_HEADER = new String[] {
             "enquiryId", "userNric", "projectId", "content", "reply",
-            "isReplied", "submissionDate", "replyDate"
+            "isReplied", "submissionDate", "replyDate", "version"
     };
 
-    private Map<String, Enquiry> enquiries;
+    /**
+     * Project index key for general enquiries, which have no project.
+     */
+    private static final String NO_PROJECT = "";
+
+    private final IndexedStore<String, Enquiry> enquiries = new IndexedStore<>(Enquiry::getEnquiryId);
+    private final IndexedStore.MultiIndex<String, Enquiry> byUserNric = enquiries
+            .addMultiIndex("userNric", Enquiry::getUserNric);
+    private final IndexedStore.MultiIndex<String, Enquiry> byProjectId = enquiries
+            .addMultiIndex("projectId",
+                    enquiry -> enquiry.getProjectId() == null ? NO_PROJECT : enquiry.getProjectId());
+    private final IndexedStore.TextIndex<Enquiry> byText = enquiries
+            .addTextIndex("text", EnquiryRepository::searchableText);
     private final CsvRepositoryHelper<String, Enquiry> csvHelper;
 
     /**
      * Constructs a new EnquiryRepository.
      * <p>
-     * Initializes the repository and loads existing enquiry data from the CSV file.
-     * If the initial data load fails, an empty enquiry collection is created.
+     * Initializes the repository with an empty enquiry collection. Existing data
+     * is read by {@link #loadAll()}, normally called through RepositoryBootstrap.
      * </p>
      */
     public EnquiryRepository() {
+        enquiries.enableVersioning(Enquiry::getVersion, Enquiry::setVersion);
         this.csvHelper = new CsvRepositoryHelper<>(
                 ENQUIRY_FILE_PATH,
                 ENQUIRY_CSV_HEADER,
-                this::deserializeEnquiries,
-                this::serializeEnquiries);
-        // Load initial data
-        try {
-            this.enquiries = this.csvHelper.loadData();
-        } catch (DataAccessException e) {
-            System.err.println("Initial enquiry load failed: " + e.getMessage());
-            this.enquiries = new HashMap<>(); // Start with empty map on failure
-        }
+                this::mapEnquiryRow,
+                Enquiry::getEnquiryId,
+                this::toEnquiryRow,
+                WriteMode.JOURNALED);
+        this.csvHelper.enableSnapshots(
+                SnapshotCodec.of(2, Enquiry::getEnquiryId, this::writeEnquirySnapshot, this::readEnquirySnapshot));
     }
 
     /**
@@ -75,13 +94,13 @@ public class EnquiryRepository implements IEnquiryRepository {
     /**
      * {@inheritDoc}
      * <p>
-     * Returns a defensive copy of the enquiries map to prevent external
-     * modification of the repository's internal state.
+     * Returns an immutable snapshot of the enquiries map, taken in constant
+     * time; it does not change when the repository is written to later.
      * </p>
      */
     @Override
     public Map<String, Enquiry> findAll() {
-        return new HashMap<>(enquiries);
+        return enquiries.snapshot();
     }
 
     /**
@@ -98,13 +117,30 @@ public class EnquiryRepository implements IEnquiryRepository {
             System.err.println("Attempted to save null enquiry or enquiry with null ID");
             return;
         }
-        enquiries.put(enquiry.getEnquiryId(), enquiry);
-        try {
-            csvHelper.saveData(enquiries);
-        } catch (DataAccessException e) {
-            System.err.println("Failed to save enquiry " + enquiry.getEnquiryId() + ": " + e.getMessage());
-            throw e;
+        long ticket;
+        synchronized (this) {
+            enquiries.putIfCurrent(enquiry);
+            try {
+                ticket = csvHelper.stageEntity(enquiry.getEnquiryId(), enquiry, enquiries.snapshot());
+            } catch (DataAccessException e) {
+                System.err.println("Failed to save enquiry " + enquiry.getEnquiryId() + ": " + e.getMessage());
+                throw e;
+            }
         }
+        // Wait outside the lock, so that concurrent saves can join the same group commit
+        csvHelper.awaitDurable(ticket);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(Enquiry enquiry, UnitOfWork work) {
+        if (enquiry == null || enquiry.getEnquiryId() == null) {
+            System.err.println("Attempted to stage null enquiry or enquiry with null ID");
+            return;
+        }
+        work.stage(this, csvHelper, enquiries, enquiry, null);
     }
 
     /**
@@ -115,10 +151,10 @@ public class EnquiryRepository implements IEnquiryRepository {
      * </p>
      */
     @Override
-    public void saveAll(Map<String, Enquiry> entities) {
-        this.enquiries = new HashMap<>(entities); // Replace with a copy
+    public synchronized void saveAll(Map<String, Enquiry> entities) {
+        enquiries.replaceAll(entities); // Replace with a copy
         try {
-            csvHelper.saveData(enquiries);
+            csvHelper.saveData(enquiries.snapshot());
         } catch (DataAccessException e) {
             System.err.println("Failed to save all enquiries: " + e.getMessage());
             throw e;
@@ -129,147 +165,162 @@ public class EnquiryRepository implements IEnquiryRepository {
      * {@inheritDoc}
      * <p>
      * Loads all enquiry data from the CSV file into the in-memory cache,
-     * replacing any existing data. Returns a defensive copy of the loaded
-     * enquiries.
+     * replacing any existing data. Returns an immutable
+     * snapshot of the loaded enquiries.
+     * </p>
+     */
+    @Override
+    public synchronized Map<String, Enquiry> loadAll() throws DataAccessException {
+        enquiries.replaceAll(csvHelper.loadData());
+        return enquiries.snapshot();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Rewrites the enquiries CSV from the in-memory cache and writes a binary
+     * snapshot that the next start-up can load directly.
      * </p>
      */
     @Override
-    public Map<String, Enquiry> loadAll() throws DataAccessException {
-        this.enquiries = csvHelper.loadData();
-        return new HashMap<>(enquiries);
+    public synchronized void checkpoint() throws DataAccessException {
+        csvHelper.checkpoint(enquiries.snapshot());
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Retrieves all enquiries submitted by the user with the specified NRIC.
-     * Returns an empty list if no matching enquiries are found.
+     * Retrieves all enquiries submitted by the user with the specified NRIC
+     * from the user index. Returns an empty list if no matching enquiries are
+     * found.
      * </p>
      */
     @Override
     public List<Enquiry> findByUserNric(String nric) {
-        return enquiries.values().stream()
-                .filter(enquiry -> enquiry.getUserNric().equals(nric))
-                .collect(Collectors.toList());
+        return byUserNric.get(nric);
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Retrieves all enquiries related to the specified project.
-     * Returns an empty list if no matching enquiries are found or if projectId is
-     * null.
+     * Retrieves all enquiries related to the specified project from the
+     * project index. If projectId is null, the general enquiries (those not
+     * tied to a project) are returned. Returns an empty list if no matching
+     * enquiries are found.
      * </p>
      */
     @Override
     public List<Enquiry> findByProjectId(String projectId) {
-        if (projectId == null) {
-            return enquiries.values().stream()
-                    .filter(enquiry -> enquiry.getProjectId() == null)
-                    .collect(Collectors.toList());
-        }
-
-        return enquiries.values().stream()
-                .filter(enquiry -> projectId.equals(enquiry.getProjectId()))
-                .collect(Collectors.toList());
+        return byProjectId.get(projectId == null ? NO_PROJECT : projectId);
     }
 
     /**
-     * Deserializes CSV data into Enquiry objects.
+     * {@inheritDoc}
      * <p>
-     * Converts each CSV row into an Enquiry object, handling all field conversions
-     * including parsing of date-time fields and managing optional reply data.
+     * Answered from the inverted index of enquiry words.
      * </p>
+     */
+    @Override
+    public List<Enquiry> search(String query, String projectId, boolean unrepliedOnly, int limit) {
+        return byText.search(query, enquiry -> (projectId == null || projectId.equals(enquiry.getProjectId()))
+                && !(unrepliedOnly && enquiry.isReplied()), limit);
+    }
+
+    /**
+     * Returns the text of an enquiry that searches match against: its content
+     * and its reply, if any.
      * 
-     * @param enquiryData List of string arrays representing enquiry data from CSV
-     * @return A map of deserialized Enquiry objects, keyed by their IDs
+     * @param enquiry The enquiry
+     * @return The searchable text
      */
-    private Map<String, Enquiry> deserializeEnquiries(List<String[]> enquiryData) {
-        Map<String, Enquiry> enquiryMap = new HashMap<>();
-        if (enquiryData == null)
-            return enquiryMap;
+    private static String searchableText(Enquiry enquiry) {
+        String content = enquiry.getContent() == null ? "" : enquiry.getContent();
+        return enquiry.getReply() == null ? content : content + "\n" + enquiry.getReply();
+    }
 
-        for (String[] row : enquiryData) {
-            if (row.length < 7) {
-                System.err.println("Skipping invalid enquiry row: " + String.join(",", row));
-                continue;
+    /**
+     * Converts one CSV row into an Enquiry object.
+     * <p>
+     * Handles all field conversions including parsing of date fields and
+     * managing optional reply data.
+     * </p>
+     * 
+     * @param row CSV record representing one enquiry
+     * @return The Enquiry, or null if the row is invalid
+     */
+    private Enquiry mapEnquiryRow(CsvRecord row) {
+        if (row.size() < 7) {
+            System.err.println("Skipping invalid enquiry row: " + row);
+            return null;
+        }
+        try {
+            LocalDate submissionDate = row.getDate(6);
+            if (submissionDate == null) {
+                System.err.println("Skipping enquiry row due to invalid submission date: " + row.get(6));
+                return null;
             }
-            try {
-                String enquiryId = row[0];
-                String userNric = row[1];
-                // Handle potentially empty projectId string -> null object
-                String projectId = (row[2] == null || row[2].trim().isEmpty()) ? null : row[2].trim();
-                String content = row[3];
-                // Handle potentially empty reply string -> null object
-                String reply = (row[4] == null || row[4].trim().isEmpty()) ? null : row[4].trim();
-                // Parse boolean safely
-                boolean isReplied = Boolean.parseBoolean(row[5]);
-                LocalDate submissionDate = FileUtil.parseLocalDate(row[6]);
-                if (submissionDate == null) {
-                    System.err.println("Skipping enquiry row due to invalid submission date: " + row[6]);
-                    continue;
-                }
+            String enquiryId = row.get(0);
+            String userNric = row.get(1);
+            // Handle potentially empty projectId string -> null object
+            String projectId = row.getOrNull(2);
+            String content = row.get(3);
+            // Handle potentially empty reply string -> null object
+            String reply = row.getOrNull(4);
+            // Parse boolean safely
+            boolean isReplied = row.getBoolean(5);
 
-                Enquiry enquiry = new Enquiry(enquiryId, userNric, projectId, content, submissionDate);
+            Enquiry enquiry = new Enquiry(enquiryId, userNric, projectId, content, submissionDate);
 
-                // If it's marked as replied, try to parse the reply date (might be missing or
-                // invalid)
-                if (isReplied && reply != null && row.length > 7 && row[7] != null && !row[7].trim().isEmpty()) {
-                    LocalDate replyDate = FileUtil.parseLocalDate(row[7]);
-                    if (replyDate != null) {
-                        enquiry.addReply(reply, replyDate);
-                    } else {
-                        System.err.println(
-                                "Warning: Enquiry " + enquiryId + " marked replied but reply date is invalid/missing.");
-                    }
+            // If it's marked as replied, try to parse the reply date (might be missing or
+            // invalid)
+            if (isReplied && reply != null && row.size() > 7 && !row.isBlank(7)) {
+                LocalDate replyDate = row.getDate(7);
+                if (replyDate != null) {
+                    enquiry.addReply(reply, replyDate);
+                } else {
+                    System.err.println(
+                            "Warning: Enquiry " + enquiryId + " marked replied but reply date is invalid/missing.");
                 }
-                // Ensure content is set even if reply handling was complex
-                enquiry.setContent(content);
-
-                enquiryMap.put(enquiryId, enquiry);
-            } catch (Exception e) {
-                System.err.println("Error parsing enquiry row: " + String.join(",", row) + " - " + e.getMessage());
             }
+            // Ensure content is set even if reply handling was complex
+            enquiry.setContent(content);
+            enquiry.setVersion(row.size() > 8 ? row.getInt(8, 0) : 0); // Absent in older files
+
+            return enquiry;
+        } catch (Exception e) {
+            System.err.println("Error parsing enquiry row: " + row + " - " + e.getMessage());
+            return null;
         }
-        return enquiryMap;
     }
 
     /**
-     * Converts a collection of Enquiry objects to a list of string arrays for CSV
-     * serialization.
+     * Converts an Enquiry object to a string array for CSV serialization.
      * <p>
-     * Each string array represents one row in the CSV file, with elements ordered
-     * according to the CSV_HEADER definition.
+     * The elements are ordered according to the CSV_HEADER definition.
      * </p>
      * 
-     * @param enqsToSerialize The collection of enquiries to serialize
-     * @return A list of string arrays representing the enquiries in CSV format
+     * @param enquiry The enquiry to serialize
+     * @return A string array representing the enquiry in CSV format
      */
-    private List<String[]> serializeEnquiries(Map<String, Enquiry> enqsToSerialize) {
-        List<String[]> serializedData = new ArrayList<>();
-        if (enqsToSerialize == null)
-            return serializedData;
-
-        for (Enquiry enquiry : enqsToSerialize.values()) {
-            String replyDateStr = "";
-            // Only format reply date if the enquiry is actually replied and date is not
-            // null
-            if (enquiry.isReplied() && enquiry.getReplyDate() != null) {
-                replyDateStr = FileUtil.formatLocalDate(enquiry.getReplyDate());
-            }
-
-            serializedData.add(new String[] {
-                    enquiry.getEnquiryId(),
-                    enquiry.getUserNric(),
-                    enquiry.getProjectId() == null ? "" : enquiry.getProjectId(),
-                    enquiry.getContent() == null ? "" : enquiry.getContent(),
-                    enquiry.getReply() == null ? "" : enquiry.getReply(),
-                    String.valueOf(enquiry.isReplied()),
-                    FileUtil.formatLocalDate(enquiry.getSubmissionDate()),
-                    replyDateStr
-            });
+    private String[] toEnquiryRow(Enquiry enquiry) {
+        String replyDateStr = "";
+        // Only format reply date if the enquiry is actually replied and date is not
+        // null
+        if (enquiry.isReplied() && enquiry.getReplyDate() != null) {
+            replyDateStr = FileUtil.formatLocalDate(enquiry.getReplyDate());
         }
-        return serializedData;
+
+        return new String[] {
+                enquiry.getEnquiryId(),
+                enquiry.getUserNric(),
+                enquiry.getProjectId() == null ? "" : enquiry.getProjectId(),
+                enquiry.getContent() == null ? "" : enquiry.getContent(),
+                enquiry.getReply() == null ? "" : enquiry.getReply(),
+                String.valueOf(enquiry.isReplied()),
+                FileUtil.formatLocalDate(enquiry.getSubmissionDate()),
+                replyDateStr,
+                String.valueOf(enquiry.getVersion())
+        };
     }
 
     /**
@@ -286,19 +337,64 @@ public class EnquiryRepository implements IEnquiryRepository {
             System.err.println("Warning: Attempted to delete enquiry with null or empty ID.");
             return;
         }
-        Enquiry removedEnquiry = enquiries.remove(enquiryId);
-        if (removedEnquiry != null) {
+        long ticket;
+        synchronized (this) {
+            Enquiry removedEnquiry = enquiries.remove(enquiryId);
+            if (removedEnquiry == null) {
+                System.out.println("Enquiry with ID '" + enquiryId + "' not found for deletion.");
+                return;
+            }
             System.out.println("Deleted enquiry from memory: " + enquiryId);
             try {
-                // Persist the change by saving the current state of the map
-                this.saveAll(this.enquiries); // Reuses the saveAll logic with the helper
+                // Persist the change as a single delete record
+                ticket = csvHelper.stageDelete(enquiryId, enquiries.snapshot());
             } catch (DataAccessException e) {
                 System.err.println("Error persisting deletion for enquiry: " + enquiryId);
                 // Re-throw the exception
                 throw e;
             }
-        } else {
-            System.out.println("Enquiry with ID '" + enquiryId + "' not found for deletion.");
         }
+        csvHelper.awaitDurable(ticket); // Outside the lock, as in save
+    }
+
+    /**
+     * Writes an enquiry's fields to a binary snapshot.
+     * 
+     * @param enquiry The enquiry to write
+     * @param out     The snapshot output
+     * @throws IOException If writing fails
+     */
+    private void writeEnquirySnapshot(Enquiry enquiry, SnapshotOutput out) throws IOException {
+        out.writeString(enquiry.getEnquiryId());
+        out.writeString(enquiry.getUserNric());
+        out.writeString(enquiry.getProjectId());
+        out.writeString(enquiry.getContent());
+        out.writeDate(enquiry.getSubmissionDate());
+        out.writeBoolean(enquiry.isReplied());
+        out.writeString(enquiry.getReply());
+        out.writeDate(enquiry.getReplyDate());
+        out.writeInt(enquiry.getVersion());
+    }
+
+    /**
+     * Reads an enquiry written by
+     * {@link #writeEnquirySnapshot(Enquiry, SnapshotOutput)}.
+     * 
+     * @param in The snapshot input
+     * @return The enquiry
+     * @throws IOException If the data is invalid
+     */
+    private Enquiry readEnquirySnapshot(SnapshotInput in) throws IOException {
+        Enquiry enquiry = new Enquiry(in.readString(), in.readString(), in.readString(), in.readString(),
+                in.readDate());
+        boolean isReplied = in.readBoolean();
+        String reply = in.readString();
+        LocalDate replyDate = in.readDate();
+        // Same rule as the CSV loader: a reply needs both its text and its date
+        if (isReplied && reply != null && replyDate != null) {
+            enquiry.addReply(reply, replyDate);
+        }
+        enquiry.setVersion(in.readInt());
+        return enquiry;
     }
-}
\ No newline at end of file
+}
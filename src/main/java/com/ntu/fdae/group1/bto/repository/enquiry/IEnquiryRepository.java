@@ -51,6 +51,23 @@ public interface IEnquiryRepository extends IRepository<Enquiry, String> {
      */
     List<Enquiry> findByProjectId(String projectId);
 
+    /**
+     * Searches the content and replies of enquiries for the words of a query.
+     * <p>
+     * Only enquiries containing every word of the query match. Matches are
+     * ranked so that enquiries where the query's rarer words occur, and occur
+     * more often, come first. Word matching ignores case and punctuation.
+     * </p>
+     * 
+     * @param query         The words to search for
+     * @param projectId     The ID of the project to search within, or null to
+     *                      search all enquiries
+     * @param unrepliedOnly Whether to return only enquiries not yet replied to
+     * @param limit         The maximum number of enquiries to return
+     * @return The best matching enquiries, best first; empty if none match
+     */
+    List<Enquiry> search(String query, String projectId, boolean unrepliedOnly, int limit);
+
     /**
      * Deletes the entity with the specified ID.
      * If the ID does not exist, the method might do nothing or throw an exception,
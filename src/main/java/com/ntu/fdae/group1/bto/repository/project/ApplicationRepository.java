@@ -4,15 +4,20 @@ import com.ntu.fdae.group1.bto.models.project.Application;
 import com.ntu.fdae.group1.bto.enums.ApplicationStatus;
 import com.ntu.fdae.group1.bto.enums.FlatType;
 import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
+import com.ntu.fdae.group1.bto.utils.CsvRecord;
 import com.ntu.fdae.group1.bto.utils.FileUtil;
 import com.ntu.fdae.group1.bto.repository.util.CsvRepositoryHelper;
+import com.ntu.fdae.group1.bto.repository.util.IndexedStore;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotCodec;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotInput;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotOutput;
+import com.ntu.fdae.group1.bto.repository.util.UnitOfWork;
+import com.ntu.fdae.group1.bto.repository.util.WriteMode;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Implementation of the IApplicationRepository interface that persists
@@ -30,6 +35,12 @@ import java.util.stream.Collectors;
  * handles
  * the conversion between Application objects and their CSV representation.
  * </p>
+ * <p>
+ * Lookups by applicant, by project, by status and by project and status are
+ * answered from the indexes of an {@link IndexedStore} instead of scanning
+ * every application. An application modified in memory is re-indexed when it
+ * is next saved.
+ * </p>
  */
 public class ApplicationRepository implements IApplicationRepository {
     /**
@@ -43,14 +54,50 @@ public class ApplicationRepository implements IApplicationRepository {
      */
     private static final String[] APPLICATION_CSV_HEADER = new String[] {
             "applicationId", "applicantNric", "projectId", "submissionDate",
-            "status", "requestedWithdrawalDate", "preferredFlatType"
+            "status", "requestedWithdrawalDate", "preferredFlatType", "version"
     };
 
     /**
-     * In-memory cache of applications, keyed by application ID.
+     * In-memory cache of applications, keyed by application ID, with the
+     * lookup indexes below.
      * This improves performance by reducing the need for repeated file I/O.
      */
-    private Map<String, Application> applications;
+    private final IndexedStore<String, Application> applications = new IndexedStore<>(
+            Application::getApplicationId);
+
+    /**
+     * Applications by applicant NRIC.
+     */
+    private final IndexedStore.MultiIndex<String, Application> byApplicant = applications
+            .addMultiIndex("applicantNric", Application::getApplicantNric);
+
+    /**
+     * The active (PENDING, SUCCESSFUL or BOOKED) application of each applicant.
+     * Saving a second active application for an applicant throws
+     * {@link com.ntu.fdae.group1.bto.exceptions.DuplicateEntityException}.
+     */
+    private final IndexedStore.UniqueIndex<String, Application> activeByApplicant = applications
+            .addUniqueConstraint("activeApplicantNric",
+                    app -> isActive(app.getStatus()) ? app.getApplicantNric() : null);
+
+    /**
+     * Applications by project ID.
+     */
+    private final IndexedStore.MultiIndex<String, Application> byProject = applications
+            .addMultiIndex("projectId", Application::getProjectId);
+
+    /**
+     * Applications by status.
+     */
+    private final IndexedStore.MultiIndex<ApplicationStatus, Application> byStatus = applications
+            .addMultiIndex("status", Application::getStatus);
+
+    /**
+     * Applications by project ID and status.
+     */
+    private final IndexedStore.MultiIndex<List<Object>, Application> byProjectStatus = applications
+            .addMultiIndex("projectId+status", app -> app.getStatus() == null ? null
+                    : IndexedStore.key(app.getProjectId(), app.getStatus()));
 
     /**
      * Helper that handles CSV file operations for application data.
@@ -61,23 +108,22 @@ public class ApplicationRepository implements IApplicationRepository {
      * Constructs a new ApplicationRepository.
      * <p>
      * Initializes the repository with a CsvRepositoryHelper configured for
-     * Application entities and attempts to load existing application data
-     * from the CSV file. If the initial data load fails, an empty application
-     * collection is created.
+     * Application entities and an empty application collection. Existing data
+     * is read by {@link #loadAll()}, normally called through
+     * RepositoryBootstrap.
      * </p>
      */
     public ApplicationRepository() {
+        applications.enableVersioning(Application::getVersion, Application::setVersion);
         this.csvHelper = new CsvRepositoryHelper<>(
                 APPLICATION_FILE_PATH,
                 APPLICATION_CSV_HEADER,
-                this::deserializeApplications,
-                this::serializeApplications);
-        try {
-            this.applications = this.csvHelper.loadData();
-        } catch (DataAccessException e) {
-            System.err.println("Initial load failed: " + e.getMessage());
-            this.applications = new HashMap<>();
-        }
+                this::mapApplicationRow,
+                Application::getApplicationId,
+                this::toApplicationRow,
+                WriteMode.JOURNALED);
+        this.csvHelper.enableSnapshots(SnapshotCodec.of(2, Application::getApplicationId,
+                this::writeApplicationSnapshot, this::readApplicationSnapshot));
     }
 
     /**
@@ -95,13 +141,13 @@ public class ApplicationRepository implements IApplicationRepository {
     /**
      * {@inheritDoc}
      * <p>
-     * Returns a defensive copy of the applications map to prevent external
-     * modification of the repository's internal state.
+     * Returns an immutable snapshot of the applications map, taken in constant
+     * time; it does not change when the repository is written to later.
      * </p>
      */
     @Override
     public Map<String, Application> findAll() {
-        return new HashMap<>(applications);
+        return applications.snapshot();
     }
 
     /**
@@ -112,8 +158,10 @@ public class ApplicationRepository implements IApplicationRepository {
      * without saving.
      * </p>
      * <p>
-     * The method updates the in-memory cache first, then delegates the persistence
-     * to the CSV helper. If saving fails, the exception is logged and rethrown.
+     * The method updates the in-memory cache and its indexes first, then
+     * delegates the persistence to the CSV helper, which appends the change to
+     * the repository journal. If saving fails, the exception is logged and
+     * rethrown.
      * </p>
      */
     @Override
@@ -122,15 +170,33 @@ public class ApplicationRepository implements IApplicationRepository {
             System.err.println("Attempted to save null application or application with null ID");
             return;
         }
-        // Modify in-memory map first
-        applications.put(application.getApplicationId(), application);
-        // Delegate saving the entire map to the helper
-        try {
-            csvHelper.saveData(applications);
-        } catch (DataAccessException e) {
-            System.err.println("Failed to save application " + application.getApplicationId() + ": " + e.getMessage());
-            throw e;
+        long ticket;
+        synchronized (this) {
+            // Modify in-memory map and indexes first
+            applications.putIfCurrent(application);
+            // Delegate saving the entire map to the helper
+            try {
+                ticket = csvHelper.stageEntity(application.getApplicationId(), application, applications.snapshot());
+            } catch (DataAccessException e) {
+                System.err.println(
+                        "Failed to save application " + application.getApplicationId() + ": " + e.getMessage());
+                throw e;
+            }
+        }
+        // Wait outside the lock, so that concurrent saves can join the same group commit
+        csvHelper.awaitDurable(ticket);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(Application application, UnitOfWork work) {
+        if (application == null || application.getApplicationId() == null) {
+            System.err.println("Attempted to stage null application or application with null ID");
+            return;
         }
+        work.stage(this, csvHelper, applications, application, null);
     }
 
     /**
@@ -146,12 +212,12 @@ public class ApplicationRepository implements IApplicationRepository {
      * </p>
      */
     @Override
-    public void saveAll(Map<String, Application> entities) {
-        // Replace in-memory map
-        this.applications = new HashMap<>(entities);
+    public synchronized void saveAll(Map<String, Application> entities) {
+        // Replace in-memory map and indexes
+        applications.replaceAll(entities);
         // Delegate saving to the helper
         try {
-            csvHelper.saveData(applications);
+            csvHelper.saveData(applications.snapshot());
         } catch (DataAccessException e) {
             System.err.println("Failed to save all applications: " + e.getMessage());
             throw e;
@@ -162,52 +228,61 @@ public class ApplicationRepository implements IApplicationRepository {
      * {@inheritDoc}
      * <p>
      * Reloads all application data from the CSV file into the in-memory cache,
-     * replacing any existing data. Returns a defensive copy of the loaded
-     * applications.
+     * replacing any existing data. Returns an immutable
+     * snapshot of the loaded applications.
      * </p>
      */
     @Override
-    public Map<String, Application> loadAll() throws DataAccessException {
-        this.applications = csvHelper.loadData();
-        return new HashMap<>(applications); // Return a copy
+    public synchronized Map<String, Application> loadAll() throws DataAccessException {
+        Map<String, Application> loaded = csvHelper.loadData();
+        applications.replaceAll(loaded);
+        return applications.snapshot();
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Searches for an application submitted by the specified applicant.
-     * This method assumes an applicant can have only one active application
-     * in the system at a time, returning the first match found or null if
-     * no application exists for the applicant.
+     * Rewrites the applications CSV and writes a binary snapshot alongside it
+     * for fast loading on the next start-up.
      * </p>
+     */
+    @Override
+    public synchronized void checkpoint() throws DataAccessException {
+        csvHelper.checkpoint(applications.snapshot());
+    }
+
+    /**
+     * {@inheritDoc}
      * <p>
-     * The search is performed on the in-memory cache for optimal performance.
+     * The active application is found with the active-applicant constraint;
+     * otherwise only the applicant's own applications are examined, using the
+     * applicant index.
      * </p>
      * 
      * @param nric The NRIC of the applicant to search for
-     * @return The application associated with the specified applicant, or null if
-     *         not found
+     * @return The applicant's active application, else their latest one, or null
+     *         if not found
      */
     @Override
     public Application findByApplicantNric(String nric) {
-        for (Application application : applications.values()) {
-            if (application.getApplicantNric().equals(nric)) {
-                return application;
+        Application active = activeByApplicant.get(nric);
+        if (active != null) {
+            return active;
+        }
+        Application latest = null;
+        for (Application application : byApplicant.get(nric)) {
+            if (latest == null || isLaterThan(application, latest)) {
+                latest = application;
             }
         }
-        return null;
+        return latest;
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Retrieves all applications for a specific project.
-     * This method filters the in-memory application collection to find all
-     * applications associated with the given project ID, which is useful for
-     * project management and selection processes.
-     * </p>
-     * <p>
-     * The method uses Java 8 Stream API for efficient filtering.
+     * Retrieves all applications for a specific project from the project
+     * index, which is useful for project management and selection processes.
      * </p>
      * 
      * @param projectId The ID of the project to filter by
@@ -216,21 +291,15 @@ public class ApplicationRepository implements IApplicationRepository {
      */
     @Override
     public List<Application> findByProjectId(String projectId) {
-        return applications.values().stream()
-                .filter(app -> app.getProjectId().equals(projectId))
-                .collect(Collectors.toList());
+        return byProject.get(projectId);
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Retrieves all applications with a specific status.
-     * This method filters the in-memory application collection to find all
-     * applications with the given status (e.g., PENDING, APPROVED, REJECTED),
-     * which is useful for batch processing and status reporting.
-     * </p>
-     * <p>
-     * The method uses Java 8 Stream API for efficient filtering.
+     * Retrieves all applications with a specific status (e.g., PENDING,
+     * SUCCESSFUL) from the status index, which is useful for batch processing
+     * and status reporting.
      * </p>
      * 
      * @param status The application status to filter by
@@ -239,101 +308,172 @@ public class ApplicationRepository implements IApplicationRepository {
      */
     @Override
     public List<Application> findByStatus(ApplicationStatus status) {
-        return applications.values().stream()
-                .filter(app -> app.getStatus() == status)
-                .collect(Collectors.toList());
+        return byStatus.get(status);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Answered from the combined project and status index.
+     * </p>
+     */
+    @Override
+    public List<Application> findByProjectIdAndStatus(String projectId, ApplicationStatus status) {
+        return byProjectStatus.get(IndexedStore.key(projectId, status));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Delegates to {@link IndexedStore#verify()}. An application modified in
+     * memory but not yet saved is reported as stale.
+     * </p>
+     */
+    @Override
+    public List<String> verifyIndexes() {
+        return applications.verify();
+    }
+
+    /**
+     * @return true if an application in this status keeps the applicant from
+     *         applying again
+     */
+    private static boolean isActive(ApplicationStatus status) {
+        return status == ApplicationStatus.PENDING || status == ApplicationStatus.SUCCESSFUL
+                || status == ApplicationStatus.BOOKED;
+    }
+
+    /**
+     * Orders applications by submission date, then by ID, so that the most
+     * recent one can be picked deterministically.
+     */
+    private static boolean isLaterThan(Application candidate, Application current) {
+        int byDate = compareDates(candidate.getSubmissionDate(), current.getSubmissionDate());
+        if (byDate != 0) {
+            return byDate > 0;
+        }
+        return String.valueOf(candidate.getApplicationId()).compareTo(String.valueOf(current.getApplicationId())) > 0;
+    }
+
+    private static int compareDates(LocalDate a, LocalDate b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return a.compareTo(b);
     }
 
     // --- Serialization/Deserialization Logic (Specific to Application) ---
     // These methods are now private and used by the helper via method references.
 
     /**
-     * Deserializes CSV data into Application objects.
+     * Converts one CSV row into an Application object.
      * <p>
-     * This method converts each CSV row into an Application object, handling
-     * validation and parsing of various field types including dates and enums.
-     * It provides extensive error checking and gracefully handles invalid data.
+     * This method handles validation and parsing of various field types
+     * including dates and enums. It provides extensive error checking and
+     * gracefully handles invalid data by skipping the row.
      * </p>
      * 
-     * @param applicationData List of string arrays representing application data
-     *                        from CSV
-     * @return A map of deserialized Application objects, keyed by their IDs
+     * @param row CSV record representing one application (never the header)
+     * @return The Application, or null if the row is invalid
      */
-    private Map<String, Application> deserializeApplications(List<String[]> applicationData) {
-        Map<String, Application> applicationMap = new HashMap<>();
-        if (applicationData == null)
-            return applicationMap; // Handle null data
-
-        // Skip header row if present (FileUtil.readCsvLines usually handles this
-        // depending on implementation)
-        // Assuming FileUtil doesn't return the header
-        for (String[] row : applicationData) {
-            if (row.length < 5) {
-                System.err.println("Skipping invalid application row: " + String.join(",", row));
-                continue;
+    private Application mapApplicationRow(CsvRecord row) {
+        if (row.size() < 5) {
+            System.err.println("Skipping invalid application row: " + row);
+            return null;
+        }
+
+        try {
+            LocalDate submissionDate = row.getDate(3);
+            if (submissionDate == null) { // Handle parsing failure
+                System.err.println("Skipping application row due to invalid submission date: " + row.get(3));
+                return null;
             }
+            String applicationId = row.get(0);
+            String applicantNric = row.get(1);
+            String projectId = row.get(2);
+            ApplicationStatus status = row.getEnum(ApplicationStatus.class, 4, ApplicationStatus.PENDING);
 
-            try {
-                String applicationId = row[0];
-                String applicantNric = row[1];
-                String projectId = row[2];
-                LocalDate submissionDate = FileUtil.parseLocalDate(row[3]);
-                if (submissionDate == null) { // Handle parsing failure
-                    System.err.println("Skipping application row due to invalid submission date: " + row[3]);
-                    continue;
-                }
-                ApplicationStatus status = FileUtil.parseEnum(ApplicationStatus.class, row[4],
-                        ApplicationStatus.PENDING);
-
-                Application application = new Application(applicationId, applicantNric, projectId, submissionDate);
-                application.setStatus(status);
-
-                // Optional fields
-                if (row.length > 5 && row[5] != null && !row[5].trim().isEmpty()) {
-                    application.setRequestedWithdrawalDate(FileUtil.parseLocalDate(row[5]));
-                }
-
-                if (row.length > 6 && row[6] != null && !row[6].trim().isEmpty()) {
-                    application.setPreferredFlatType(FileUtil.parseEnum(FlatType.class, row[6], null));
-                }
-
-                applicationMap.put(applicationId, application);
-            } catch (Exception e) { // Catch broader exceptions during parsing/creation
-                System.err.println("Error parsing application row: " + String.join(",", row) + " - " + e.getMessage());
+            Application application = new Application(applicationId, applicantNric, projectId, submissionDate);
+            application.setStatus(status);
+
+            // Optional fields
+            if (row.size() > 5 && !row.isBlank(5)) {
+                application.setRequestedWithdrawalDate(row.getDate(5));
+            }
+
+            if (row.size() > 6 && !row.isBlank(6)) {
+                application.setPreferredFlatType(row.getEnum(FlatType.class, 6, null));
             }
+
+            if (row.size() > 7) { // Absent in older files
+                application.setVersion(row.getInt(7, 0));
+            }
+
+            return application;
+        } catch (Exception e) { // Catch broader exceptions during parsing/creation
+            System.err.println("Error parsing application row: " + row + " - " + e.getMessage());
+            return null;
         }
-        return applicationMap;
     }
 
     /**
-     * Serializes Application objects into CSV format for persistence.
+     * Serializes an Application object into CSV format for persistence.
      * <p>
-     * This method converts each Application object into a string array suitable for
-     * writing to a CSV file. It handles null values safely and ensures all required
-     * fields are properly formatted.
+     * This method converts the Application into a string array suitable for
+     * writing to a CSV file. It handles null values safely and ensures all
+     * required fields are properly formatted.
      * </p>
      * 
-     * @param appsToSerialize Map of Application objects to serialize, keyed by ID
-     * @return List of string arrays representing applications in CSV format
+     * @param application The Application to serialize
+     * @return String array representing the application in CSV format
      */
-    private List<String[]> serializeApplications(Map<String, Application> appsToSerialize) {
-        List<String[]> serializedData = new ArrayList<>();
-        if (appsToSerialize == null)
-            return serializedData;
-
-        for (Application application : appsToSerialize.values()) {
-            serializedData.add(new String[] {
-                    application.getApplicationId(),
-                    application.getApplicantNric(),
-                    application.getProjectId(),
-                    FileUtil.formatLocalDate(application.getSubmissionDate()),
-                    application.getStatus().toString(),
-                    FileUtil.formatLocalDate(application.getRequestedWithdrawalDate()), // Util handles null
-                    application.getPreferredFlatType() != null ? application.getPreferredFlatType().toString() : "" // Handle
-                                                                                                                    // null
-                                                                                                                    // enum
-            });
-        }
-        return serializedData;
+    private String[] toApplicationRow(Application application) {
+        return new String[] {
+                application.getApplicationId(),
+                application.getApplicantNric(),
+                application.getProjectId(),
+                FileUtil.formatLocalDate(application.getSubmissionDate()),
+                application.getStatus().toString(),
+                FileUtil.formatLocalDate(application.getRequestedWithdrawalDate()), // Util handles null
+                // Handle null enum
+                application.getPreferredFlatType() != null ? application.getPreferredFlatType().toString() : "",
+                String.valueOf(application.getVersion())
+        };
+    }
+
+    /**
+     * Writes an application's fields to a binary snapshot.
+     * 
+     * @param application The application to write
+     * @param out         The snapshot output
+     * @throws IOException If writing fails
+     */
+    private void writeApplicationSnapshot(Application application, SnapshotOutput out) throws IOException {
+        out.writeString(application.getApplicationId());
+        out.writeString(application.getApplicantNric());
+        out.writeString(application.getProjectId());
+        out.writeDate(application.getSubmissionDate());
+        out.writeEnum(application.getStatus());
+        out.writeDate(application.getRequestedWithdrawalDate());
+        out.writeEnum(application.getPreferredFlatType());
+        out.writeInt(application.getVersion());
+    }
+
+    /**
+     * Reads an application written by
+     * {@link #writeApplicationSnapshot(Application, SnapshotOutput)}.
+     * 
+     * @param in The snapshot input
+     * @return The application
+     * @throws IOException If the data is invalid
+     */
+    private Application readApplicationSnapshot(SnapshotInput in) throws IOException {
+        Application application = new Application(in.readString(), in.readString(), in.readString(),
+                in.readDate());
+        application.setStatus(in.readEnum(ApplicationStatus.class));
+        application.setRequestedWithdrawalDate(in.readDate());
+        application.setPreferredFlatType(in.readEnum(FlatType.class));
+        application.setVersion(in.readInt());
+        return application;
     }
-}
\ No newline at end of file
+}
@@ -28,6 +28,11 @@ import java.util.List;
 public interface IApplicationRepository extends IRepository<Application, String> {
     /**
      * Finds an application by the applicant's NRIC.
+     * <p>
+     * An applicant may have several applications over time, but at most one
+     * active one (PENDING, SUCCESSFUL or BOOKED). The active application is
+     * returned if there is one; otherwise the most recently submitted one.
+     * </p>
      *
      * @param nric The NRIC (National Registration Identity Card) of the applicant
      * @return The application associated with the given NRIC, or null if none
@@ -50,4 +55,23 @@ public interface IApplicationRepository extends IRepository<Application, String>
      * @return A list of applications with the specified status
      */
     List<Application> findByStatus(ApplicationStatus status);
+
+    /**
+     * Finds all applications for a project that have a specific status.
+     *
+     * @param projectId The unique identifier of the project
+     * @param status    The application status to filter by
+     * @return A list of matching applications
+     */
+    List<Application> findByProjectIdAndStatus(String projectId, ApplicationStatus status);
+
+    /**
+     * Checks that the repository's lookup indexes agree with its stored
+     * applications. Intended to be run after loading, or while diagnosing
+     * unexpected query results.
+     *
+     * @return A description of each inconsistency found; empty if the indexes
+     *         are consistent
+     */
+    List<String> verifyIndexes();
 }
@@ -1,5 +1,6 @@
 package com.ntu.fdae.group1.bto.repository.project;
 
+import com.ntu.fdae.group1.bto.enums.OfficerRegStatus;
 import com.ntu.fdae.group1.bto.models.project.OfficerRegistration;
 import com.ntu.fdae.group1.bto.repository.IRepository;
 
@@ -53,4 +54,38 @@ public interface IOfficerRegistrationRepository extends IRepository<OfficerRegis
      *         list if none exist
      */
     List<OfficerRegistration> findByProjectId(String projectId);
+
+    /**
+     * Retrieves an officer's registration for a project.
+     * <p>
+     * An officer registers at most once per project, so there is at most one
+     * such registration.
+     * </p>
+     * 
+     * @param officerNric The NRIC of the officer
+     * @param projectId   The ID of the project
+     * @return The registration, or null if the officer has not registered for
+     *         the project
+     */
+    OfficerRegistration findByOfficerNricAndProjectId(String officerNric, String projectId);
+
+    /**
+     * Retrieves the officer registrations for a project that have a specific
+     * status.
+     * 
+     * @param projectId The ID of the project
+     * @param status    The registration status to filter by
+     * @return A list of matching registrations, or an empty list if none exist
+     */
+    List<OfficerRegistration> findByProjectIdAndStatus(String projectId, OfficerRegStatus status);
+
+    /**
+     * Counts the officer registrations for a project that have a specific
+     * status, without building a list of them.
+     * 
+     * @param projectId The ID of the project
+     * @param status    The registration status to count
+     * @return The number of matching registrations
+     */
+    int countByProjectIdAndStatus(String projectId, OfficerRegStatus status);
 }
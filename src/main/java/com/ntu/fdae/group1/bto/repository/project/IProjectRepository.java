@@ -1,10 +1,17 @@
 package com.ntu.fdae.group1.bto.repository.project;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
 
+import com.ntu.fdae.group1.bto.enums.FlatType;
 import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
 import com.ntu.fdae.group1.bto.models.project.Project;
+import com.ntu.fdae.group1.bto.models.project.ProjectFlatInfo;
+import com.ntu.fdae.group1.bto.models.project.ProjectQuery;
 import com.ntu.fdae.group1.bto.repository.IRepository;
+import com.ntu.fdae.group1.bto.repository.util.UnitOfWork;
 
 /**
  * Repository interface for accessing and manipulating Project entities in the
@@ -54,6 +61,79 @@ public interface IProjectRepository extends IRepository<Project, String> {
      */
     public Set<String> findAllFlatInfoIds() throws DataAccessException;
 
+    /**
+     * Finds the projects of a manager whose application period shares at
+     * least one day with the given range. Both ends of every period and of the
+     * range are inclusive.
+     * 
+     * @param managerNric The NRIC of the manager
+     * @param from        The first day of the range
+     * @param to          The last day of the range
+     * @return The overlapping projects, or an empty list if there are none
+     */
+    List<Project> findByManagerWithOverlappingPeriod(String managerNric, LocalDate from, LocalDate to);
+
+    /**
+     * Finds the projects that list an officer as approved and whose
+     * application period shares at least one day with the given range. Both
+     * ends of every period and of the range are inclusive.
+     * 
+     * @param officerNric The NRIC of the officer
+     * @param from        The first day of the range
+     * @param to          The last day of the range
+     * @return The overlapping projects, or an empty list if there are none
+     */
+    List<Project> findByOfficerWithOverlappingPeriod(String officerNric, LocalDate from, LocalDate to);
+
+    /**
+     * Finds flat infos of a type that have units remaining, cheapest first.
+     * 
+     * @param flatType      The flat type
+     * @param minPrice      The lowest price to include, or null for no lower
+     *                      bound
+     * @param maxPrice      The highest price to include, or null for no upper
+     *                      bound
+     * @param projectFilter A condition the owning project must meet, or null
+     * @param limit         The maximum number of flat infos to return, or 0 for
+     *                      no limit
+     * @return The matching flat infos, in ascending order of price
+     */
+    List<ProjectFlatInfo> findAvailableFlatsByPrice(FlatType flatType, Double minPrice, Double maxPrice,
+            Predicate<? super Project> projectFilter, int limit);
+
+    /**
+     * Compiles a project query into a plan that reads the most selective
+     * available index and checks the remaining criteria on each candidate.
+     * 
+     * @param query The query to plan; null is treated as
+     *              {@link ProjectQuery#all()}
+     * @return The plan, which can be executed or explained
+     */
+    ProjectQueryPlan plan(ProjectQuery query);
+
+    /**
+     * Persists a change to a single flat info, such as a unit count update,
+     * without rewriting the details of its project.
+     * 
+     * The flat info must already belong to a project in this repository and
+     * must have a flat info ID.
+     * 
+     * 
+     * @param flatInfo The flat info to save
+     * @throws DataAccessException If an error occurs while writing to the data
+     *                             store
+     */
+    void saveFlatInfo(ProjectFlatInfo flatInfo) throws DataAccessException;
+
+    /**
+     * Registers a change to a single flat info with a unit of work, so that it
+     * is saved together with the unit's other saves.
+     * 
+     * @param flatInfo The flat info to save
+     * @param work     The unit of work to register the save with
+     */
+    void saveFlatInfo(ProjectFlatInfo flatInfo, UnitOfWork work);
+
     /**
      * Deletes the Project with the specified ID.
      * If the ID does not exist, the method might do nothing or throw an exception,
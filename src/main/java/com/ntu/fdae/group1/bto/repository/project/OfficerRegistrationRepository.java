@@ -3,15 +3,20 @@ package com.ntu.fdae.group1.bto.repository.project;
 import com.ntu.fdae.group1.bto.models.project.OfficerRegistration;
 import com.ntu.fdae.group1.bto.enums.OfficerRegStatus;
 import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
+import com.ntu.fdae.group1.bto.utils.CsvRecord;
 import com.ntu.fdae.group1.bto.utils.FileUtil;
 import com.ntu.fdae.group1.bto.repository.util.CsvRepositoryHelper;
+import com.ntu.fdae.group1.bto.repository.util.IndexedStore;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotCodec;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotInput;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotOutput;
+import com.ntu.fdae.group1.bto.repository.util.UnitOfWork;
+import com.ntu.fdae.group1.bto.repository.util.WriteMode;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Repository implementation for managing OfficerRegistration entities in the
@@ -30,6 +35,9 @@ import java.util.stream.Collectors;
  * ensuring that changes are persisted to the CSV file. It uses the
  * CsvRepositoryHelper
  * to handle the low-level file operations and serialization/deserialization.
+ * Lookups by officer, by project, by officer and project, and by project and
+ * status use the indexes of an {@link IndexedStore}, so status checks and
+ * pending counts do not scan.
  * </p>
  */
 public class OfficerRegistrationRepository implements IOfficerRegistrationRepository {
@@ -42,13 +50,43 @@ public class OfficerRegistrationRepository implements IOfficerRegistrationReposi
      * CSV header columns for the officer registrations file.
      */
     private static final String[] REGISTRATION_CSV_HEADER = new String[] {
-            "registrationId", "officerNric", "projectId", "requestDate", "status"
+            "registrationId", "officerNric", "projectId", "requestDate", "status", "version"
     };
 
     /**
      * In-memory cache of all officer registrations, indexed by registration ID.
      */
-    private Map<String, OfficerRegistration> registrations;
+    private final IndexedStore<String, OfficerRegistration> registrations = new IndexedStore<>(
+            OfficerRegistration::getRegistrationId);
+
+    /**
+     * Registrations by officer NRIC.
+     */
+    private final IndexedStore.MultiIndex<String, OfficerRegistration> byOfficerNric = registrations
+            .addMultiIndex("officerNric", OfficerRegistration::getOfficerNric);
+
+    /**
+     * Registrations by project ID.
+     */
+    private final IndexedStore.MultiIndex<String, OfficerRegistration> byProjectId = registrations
+            .addMultiIndex("projectId", OfficerRegistration::getProjectId);
+
+    /**
+     * Registrations by officer NRIC and project ID. An officer registers at most
+     * once per project.
+     */
+    private final IndexedStore.UniqueIndex<List<Object>, OfficerRegistration> byOfficerAndProject = registrations
+            .addUniqueIndex("officerNric+projectId",
+                    reg -> IndexedStore.key(reg.getOfficerNric(), reg.getProjectId()));
+
+    /**
+     * Registrations by project ID and status. The size of a bucket is the
+     * number of registrations of a project with that status, kept up to date
+     * as registrations are saved.
+     */
+    private final IndexedStore.MultiIndex<List<Object>, OfficerRegistration> byProjectStatus = registrations
+            .addMultiIndex("projectId+status", reg -> reg.getStatus() == null ? null
+                    : IndexedStore.key(reg.getProjectId(), reg.getStatus()));
 
     /**
      * Helper for CSV file operations, handling serialization and deserialization.
@@ -59,24 +97,21 @@ public class OfficerRegistrationRepository implements IOfficerRegistrationReposi
      * Constructs a new OfficerRegistrationRepository.
      * <p>
      * Initializes the CSV helper with appropriate serializers/deserializers and
-     * loads the initial data from the CSV file. If loading fails, it starts with
-     * an empty registration collection.
+     * starts with an empty registration collection. Existing data is read by
+     * {@link #loadAll()}, normally called through RepositoryBootstrap.
      * </p>
      */
     public OfficerRegistrationRepository() {
+        registrations.enableVersioning(OfficerRegistration::getVersion, OfficerRegistration::setVersion);
         this.csvHelper = new CsvRepositoryHelper<>(
                 OFFICER_REGISTRATION_FILE_PATH,
                 REGISTRATION_CSV_HEADER,
-                this::deserializeRegistrations, // Method reference
-                this::serializeRegistrations // Method reference
-        );
-        // Load initial data
-        try {
-            this.registrations = this.csvHelper.loadData();
-        } catch (DataAccessException e) {
-            System.err.println("Initial officer registration load failed: " + e.getMessage());
-            this.registrations = new HashMap<>(); // Start with empty map on failure
-        }
+                this::mapRegistrationRow, // Method reference
+                OfficerRegistration::getRegistrationId,
+                this::toRegistrationRow, // Method reference
+                WriteMode.JOURNALED);
+        this.csvHelper.enableSnapshots(SnapshotCodec.of(2, OfficerRegistration::getRegistrationId,
+                this::writeRegistrationSnapshot, this::readRegistrationSnapshot));
     }
 
     /**
@@ -94,13 +129,14 @@ public class OfficerRegistrationRepository implements IOfficerRegistrationReposi
     /**
      * {@inheritDoc}
      * <p>
-     * Returns a defensive copy of the in-memory registration map to prevent
-     * external modification of the repository's internal state.
+     * Returns an immutable snapshot of the in-memory registration map, taken in
+     * constant time; it does not change when the repository is written to
+     * later.
      * </p>
      */
     @Override
     public Map<String, OfficerRegistration> findAll() {
-        return new HashMap<>(registrations);
+        return registrations.snapshot();
     }
 
     /**
@@ -118,14 +154,32 @@ public class OfficerRegistrationRepository implements IOfficerRegistrationReposi
             System.err.println("Attempted to save null registration or registration with null ID");
             return;
         }
-        registrations.put(registration.getRegistrationId(), registration);
-        try {
-            csvHelper.saveData(registrations);
-        } catch (DataAccessException e) {
-            System.err.println(
-                    "Failed to save officer registration " + registration.getRegistrationId() + ": " + e.getMessage());
-            throw e;
+        long ticket;
+        synchronized (this) {
+            registrations.putIfCurrent(registration);
+            try {
+                ticket = csvHelper.stageEntity(registration.getRegistrationId(), registration,
+                        registrations.snapshot());
+            } catch (DataAccessException e) {
+                System.err.println("Failed to save officer registration " + registration.getRegistrationId() + ": "
+                        + e.getMessage());
+                throw e;
+            }
+        }
+        // Wait outside the lock, so that concurrent saves can join the same group commit
+        csvHelper.awaitDurable(ticket);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(OfficerRegistration registration, UnitOfWork work) {
+        if (registration == null || registration.getRegistrationId() == null) {
+            System.err.println("Attempted to stage null registration or registration with null ID");
+            return;
         }
+        work.stage(this, csvHelper, registrations, registration, null);
     }
 
     /**
@@ -138,10 +192,10 @@ public class OfficerRegistrationRepository implements IOfficerRegistrationReposi
      * @throws DataAccessException if there is an error writing to the CSV file
      */
     @Override
-    public void saveAll(Map<String, OfficerRegistration> entities) {
-        this.registrations = new HashMap<>(entities);
+    public synchronized void saveAll(Map<String, OfficerRegistration> entities) {
+        registrations.replaceAll(entities);
         try {
-            csvHelper.saveData(registrations);
+            csvHelper.saveData(registrations.snapshot());
         } catch (DataAccessException e) {
             System.err.println("Failed to save all officer registrations: " + e.getMessage());
             throw e;
@@ -158,120 +212,179 @@ public class OfficerRegistrationRepository implements IOfficerRegistrationReposi
      * @throws DataAccessException if there is an error reading from the CSV file
      */
     @Override
-    public Map<String, OfficerRegistration> loadAll() throws DataAccessException {
-        this.registrations = csvHelper.loadData();
-        return new HashMap<>(registrations);
+    public synchronized Map<String, OfficerRegistration> loadAll() throws DataAccessException {
+        registrations.replaceAll(csvHelper.loadData());
+        return registrations.snapshot();
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Filters the in-memory registrations to find those associated with the
-     * specified officer.
-     * Uses Java 8 Stream API for efficient filtering.
+     * Rewrites the officer registrations CSV and saves a binary snapshot of the
+     * registrations for fast loading.
+     * </p>
+     */
+    @Override
+    public synchronized void checkpoint() throws DataAccessException {
+        csvHelper.checkpoint(registrations.snapshot());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Returns the registrations associated with the specified officer from
+     * the officer index.
      * </p>
      */
     @Override
     public List<OfficerRegistration> findByOfficerNric(String nric) {
-        return registrations.values().stream()
-                .filter(registration -> registration.getOfficerNric().equals(nric))
-                .collect(Collectors.toList());
+        return byOfficerNric.get(nric);
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Filters the in-memory registrations to find those associated with the
-     * specified project.
-     * Uses Java 8 Stream API for efficient filtering.
+     * Returns the registrations associated with the specified project from
+     * the project index.
      * </p>
      */
     @Override
     public List<OfficerRegistration> findByProjectId(String projectId) {
-        return registrations.values().stream()
-                .filter(registration -> registration.getProjectId().equals(projectId))
-                .collect(Collectors.toList());
+        return byProjectId.get(projectId);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Answered from the officer and project index.
+     * </p>
+     */
+    @Override
+    public OfficerRegistration findByOfficerNricAndProjectId(String officerNric, String projectId) {
+        return byOfficerAndProject.get(IndexedStore.key(officerNric, projectId));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Answered from the project and status index.
+     * </p>
+     */
+    @Override
+    public List<OfficerRegistration> findByProjectIdAndStatus(String projectId, OfficerRegStatus status) {
+        return byProjectStatus.get(IndexedStore.key(projectId, status));
     }
 
     /**
-     * Deserializes officer registration data from CSV rows into OfficerRegistration
-     * objects.
+     * {@inheritDoc}
+     * <p>
+     * Reads the size of the matching project and status index bucket.
+     * </p>
+     */
+    @Override
+    public int countByProjectIdAndStatus(String projectId, OfficerRegStatus status) {
+        return byProjectStatus.count(IndexedStore.key(projectId, status));
+    }
+
+    /**
+     * Converts one CSV row into an OfficerRegistration object.
      * <p>
      * This method handles potential data format issues and logs errors for
      * problematic rows
      * without throwing exceptions that would disrupt the entire loading process.
      * </p>
      * 
-     * @param registrationData List of CSV row data arrays
-     * @return Map of deserialized OfficerRegistration objects indexed by
-     *         registration ID
+     * @param row CSV record representing one registration
+     * @return The OfficerRegistration, or null if the row is invalid
      */
-    private Map<String, OfficerRegistration> deserializeRegistrations(List<String[]> registrationData) {
-        Map<String, OfficerRegistration> registrationMap = new HashMap<>();
-        if (registrationData == null)
-            return registrationMap;
-
-        for (String[] row : registrationData) {
-            if (row.length < 5) {
-                System.err.println("Skipping invalid officer registration row: " + String.join(",", row));
-                continue;
+    private OfficerRegistration mapRegistrationRow(CsvRecord row) {
+        if (row.size() < 5) {
+            System.err.println("Skipping invalid officer registration row: " + row);
+            return null;
+        }
+        try {
+            LocalDate requestDate = row.getDate(3);
+            if (requestDate == null) {
+                System.err.println("Skipping registration row due to invalid request date: " + row.get(3));
+                return null;
             }
-            try {
-                String registrationId = row[0];
-                String officerNric = row[1];
-                String projectId = row[2];
-                LocalDate requestDate = FileUtil.parseLocalDate(row[3]);
-                if (requestDate == null) {
-                    System.err.println("Skipping registration row due to invalid request date: " + row[3]);
-                    continue;
-                }
-                // Use parseEnum with a default value for robustness
-                OfficerRegStatus status = FileUtil.parseEnum(OfficerRegStatus.class, row[4], OfficerRegStatus.PENDING);
+            String registrationId = row.get(0);
+            String officerNric = row.get(1);
+            String projectId = row.get(2);
+            // Use a default value for robustness
+            OfficerRegStatus status = row.getEnum(OfficerRegStatus.class, 4, OfficerRegStatus.PENDING);
 
-                // Constructor creates with PENDING status by default if model is designed that
-                // way,
-                // otherwise, set it explicitly if the constructor doesn't handle status.
-                OfficerRegistration registration = new OfficerRegistration(
-                        registrationId,
-                        officerNric,
-                        projectId,
-                        requestDate);
-                registration.setStatus(status); // Set parsed status
+            // Constructor creates with PENDING status by default if model is designed that
+            // way,
+            // otherwise, set it explicitly if the constructor doesn't handle status.
+            OfficerRegistration registration = new OfficerRegistration(
+                    registrationId,
+                    officerNric,
+                    projectId,
+                    requestDate);
+            registration.setStatus(status); // Set parsed status
+            registration.setVersion(row.size() > 5 ? row.getInt(5, 0) : 0); // Absent in older files
 
-                registrationMap.put(registrationId, registration);
-            } catch (Exception e) {
-                System.err.println(
-                        "Error parsing officer registration row: " + String.join(",", row) + " - " + e.getMessage());
-            }
+            return registration;
+        } catch (Exception e) {
+            System.err.println(
+                    "Error parsing officer registration row: " + row + " - " + e.getMessage());
+            return null;
         }
-        return registrationMap;
     }
 
     /**
-     * Serializes OfficerRegistration objects into CSV row format for storage.
+     * Serializes an OfficerRegistration object into CSV row format for storage.
      * <p>
      * This method handles potential null values defensively to ensure robust
      * serialization even with incomplete data.
      * </p>
      * 
-     * @param regsToSerialize Map of OfficerRegistration objects to serialize
-     * @return List of CSV row data arrays
+     * @param registration The OfficerRegistration to serialize
+     * @return CSV row data array
      */
-    private List<String[]> serializeRegistrations(Map<String, OfficerRegistration> regsToSerialize) {
-        List<String[]> serializedData = new ArrayList<>();
-        if (regsToSerialize == null)
-            return serializedData;
+    private String[] toRegistrationRow(OfficerRegistration registration) {
+        return new String[] {
+                registration.getRegistrationId(),
+                registration.getOfficerNric(),
+                registration.getProjectId(),
+                FileUtil.formatLocalDate(registration.getRequestDate()), // Util handles null
+                registration.getStatus() != null ? registration.getStatus().toString()
+                        : OfficerRegStatus.PENDING.toString(), // Handle null status defensively
+                String.valueOf(registration.getVersion())
+        };
+    }
 
-        for (OfficerRegistration registration : regsToSerialize.values()) {
-            serializedData.add(new String[] {
-                    registration.getRegistrationId(),
-                    registration.getOfficerNric(),
-                    registration.getProjectId(),
-                    FileUtil.formatLocalDate(registration.getRequestDate()), // Util handles null
-                    registration.getStatus() != null ? registration.getStatus().toString()
-                            : OfficerRegStatus.PENDING.toString() // Handle null status defensively
-            });
-        }
-        return serializedData;
+    /**
+     * Writes an officer registration's fields to a binary snapshot.
+     * 
+     * @param registration The registration to write
+     * @param out          The snapshot output
+     * @throws IOException If writing fails
+     */
+    private void writeRegistrationSnapshot(OfficerRegistration registration, SnapshotOutput out)
+            throws IOException {
+        out.writeString(registration.getRegistrationId());
+        out.writeString(registration.getOfficerNric());
+        out.writeString(registration.getProjectId());
+        out.writeDate(registration.getRequestDate());
+        out.writeEnum(registration.getStatus());
+        out.writeInt(registration.getVersion());
+    }
+
+    /**
+     * Reads an officer registration written by
+     * {@link #writeRegistrationSnapshot(OfficerRegistration, SnapshotOutput)}.
+     * 
+     * @param in The snapshot input
+     * @return The registration
+     * @throws IOException If the data is invalid
+     */
+    private OfficerRegistration readRegistrationSnapshot(SnapshotInput in) throws IOException {
+        OfficerRegistration registration = new OfficerRegistration(in.readString(), in.readString(),
+                in.readString(), in.readDate());
+        registration.setStatus(in.readEnum(OfficerRegStatus.class));
+        registration.setVersion(in.readInt());
+        return registration;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,156 @@
+package com.ntu.fdae.group1.bto.repository.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.ntu.fdae.group1.bto.models.project.Project;
+import com.ntu.fdae.group1.bto.models.project.ProjectQuery;
+
+/**
+ * An executable plan for a {@link ProjectQuery}, produced by
+ * {@link IProjectRepository#plan(ProjectQuery)}.
+ * <p>
+ * A plan reads its candidates from one access path - an AND of bitsets, an
+ * index lookup on the most selective criterion, or a scan of all projects
+ * when the query has no criteria - and then checks every criterion on each
+ * candidate. Checking the indexed criterion again keeps the result
+ * correct even if a project was changed in memory but not yet saved. Matching
+ * projects are then sorted and cut to the query's limit.
+ * </p>
+ * <p>
+ * The estimates are the index counts at planning time. A plan reads the
+ * indexes again when it is executed, so it can be run more than once.
+ * </p>
+ */
+public final class ProjectQueryPlan {
+
+    /**
+     * One criterion of a plan, with its estimated number of matching projects.
+     */
+    static final class Step {
+        final String description;
+        final int estimate;
+        final Predicate<Project> predicate;
+
+        Step(String description, int estimate, Predicate<Project> predicate) {
+            this.description = description;
+            this.estimate = estimate;
+            this.predicate = predicate;
+        }
+    }
+
+    private final ProjectQuery query;
+    private final String accessPath;
+    private final int accessEstimate;
+    private final int totalProjects;
+    private final Supplier<List<Project>> candidates;
+    private final List<Step> filters;
+
+    /**
+     * Creates a plan. The filters are applied in the order given.
+     *
+     * @param query          The query being planned
+     * @param accessPath     A description of how candidates are read
+     * @param accessEstimate The estimated number of candidates
+     * @param totalProjects  The number of projects at planning time
+     * @param candidates     Reads the candidates
+     * @param filters        The criteria checked on each candidate
+     */
+    ProjectQueryPlan(ProjectQuery query, String accessPath, int accessEstimate, int totalProjects,
+            Supplier<List<Project>> candidates, List<Step> filters) {
+        this.query = query;
+        this.accessPath = accessPath;
+        this.accessEstimate = accessEstimate;
+        this.totalProjects = totalProjects;
+        this.candidates = candidates;
+        this.filters = Collections.unmodifiableList(new ArrayList<>(filters));
+    }
+
+    /**
+     * @return The query this plan answers
+     */
+    public ProjectQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * Runs the plan.
+     *
+     * @return The matching projects, sorted and limited as the query specifies
+     */
+    public List<Project> execute() {
+        return execute(null);
+    }
+
+    /**
+     * Runs the plan with an extra condition that is not covered by the query,
+     * such as an applicant's eligibility. The condition is checked after the
+     * query's criteria and before sorting and limiting, so the limit applies
+     * to projects that satisfy it.
+     *
+     * @param residual The extra condition, or null for none
+     * @return The matching projects, sorted and limited as the query specifies
+     */
+    public List<Project> execute(Predicate<? super Project> residual) {
+        Stream<Project> stream = candidates.get().stream();
+        for (Step step : filters) {
+            stream = stream.filter(step.predicate);
+        }
+        if (residual != null) {
+            stream = stream.filter(residual);
+        }
+        stream = stream.sorted(comparator(query.getSortOrder()));
+        if (query.getLimit() > 0) {
+            stream = stream.limit(query.getLimit());
+        }
+        return stream.collect(Collectors.toList());
+    }
+
+    /**
+     * Describes the plan, one step per line, for diagnostics, e.g.
+     *
+     * <pre>
+     * Index scan on neighborhood = 'yishun' (est. 2 of 12 projects)
+     *   Filter: flatType TWO_ROOM has units remaining (est. 7)
+     *   Sort: by project ID
+     *   Limit: 5
+     * </pre>
+     *
+     * @return The description of the plan
+     */
+    public String explain() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(accessPath).append(" (est. ").append(accessEstimate).append(" of ").append(totalProjects)
+                .append(" projects)");
+        for (Step step : filters) {
+            sb.append(System.lineSeparator()).append("  Filter: ").append(step.description)
+                    .append(" (est. ").append(step.estimate).append(")");
+        }
+        sb.append(System.lineSeparator()).append("  Sort: ")
+                .append(query.getSortOrder() == ProjectQuery.SortOrder.NAME ? "by name" : "by project ID");
+        if (query.getLimit() > 0) {
+            sb.append(System.lineSeparator()).append("  Limit: ").append(query.getLimit());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+
+    private static Comparator<Project> comparator(ProjectQuery.SortOrder sortOrder) {
+        if (sortOrder == ProjectQuery.SortOrder.NAME) {
+            return Comparator.comparing(Project::getProjectName,
+                    Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+                    .thenComparing(Project::getProjectId);
+        }
+        return Comparator.comparing(Project::getProjectId);
+    }
+}
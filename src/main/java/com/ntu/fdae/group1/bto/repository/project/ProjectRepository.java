@@ -2,19 +2,31 @@ package com.ntu.fdae.group1.bto.repository.project;
 
 import com.ntu.fdae.group1.bto.models.project.Project;
 import com.ntu.fdae.group1.bto.models.project.ProjectFlatInfo;
+import com.ntu.fdae.group1.bto.models.project.ProjectQuery;
 import com.ntu.fdae.group1.bto.repository.util.CsvRepositoryHelper;
+import com.ntu.fdae.group1.bto.repository.util.IndexedStore;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotCodec;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotInput;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotOutput;
+import com.ntu.fdae.group1.bto.repository.util.UnitOfWork;
+import com.ntu.fdae.group1.bto.repository.util.WriteMode;
 import com.ntu.fdae.group1.bto.enums.FlatType;
 import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
+import com.ntu.fdae.group1.bto.utils.CsvRecord;
 import com.ntu.fdae.group1.bto.utils.FileUtil;
 
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -34,6 +46,27 @@ import java.util.stream.Collectors;
  * associated ProjectFlatInfo objects, ensuring that changes to either are
  * properly synchronized and persisted.
  * </p>
+ * <p>
+ * Each file has its own journaled CSV helper. Flat info rows carry stable IDs
+ * and their project's ID, so a unit count change only journals the affected
+ * flat info row, and a change to a project's details only journals the
+ * project row. Flat infos are kept in an {@link IndexedStore} indexed by
+ * project ID, so a project's flat infos are found without a scan.
+ * </p>
+ * <p>
+ * Application periods are indexed in interval trees partitioned by manager
+ * and by approved officer, so overlapping projects are found in logarithmic
+ * time. A project is re-indexed whenever it is saved, including after its
+ * dates or approved officers change.
+ * </p>
+ * <p>
+ * Projects are also indexed by manager, and in a bitmap index over their
+ * visibility, neighbourhood, flat types offered and with units remaining,
+ * and whether they are open for applications today. {@link #plan} combines
+ * these bitsets with AND, or uses the manager index when that is more
+ * selective. Flat infos with units remaining are kept ordered by price
+ * within each flat type, for cheapest-first and price-range searches.
+ * </p>
  */
 public class ProjectRepository implements IProjectRepository {
     /**
@@ -51,7 +84,7 @@ public class ProjectRepository implements IProjectRepository {
      */
     private static final String[] PROJECT_CSV_HEADER = new String[] {
             "projectId", "projectName", "neighborhood", "openingDate", "closingDate",
-            "managerNric", "maxOfficerSlots", "isVisible", "approvedOfficerNrics"
+            "managerNric", "maxOfficerSlots", "isVisible", "approvedOfficerNrics", "version"
     };
 
     /**
@@ -64,13 +97,70 @@ public class ProjectRepository implements IProjectRepository {
     /**
      * In-memory cache of all projects, indexed by project ID.
      */
-    private Map<String, Project> projects;
+    private final IndexedStore<String, Project> projects = new IndexedStore<>(Project::getProjectId);
+
+    /**
+     * Application periods of projects, partitioned by manager NRIC.
+     */
+    private final IndexedStore.IntervalIndex<String, LocalDate, Project> periodsByManager = projects
+            .addIntervalIndex("managerPeriod", project -> Collections.singletonList(project.getManagerNric()),
+                    Project::getOpeningDate, Project::getClosingDate);
+
+    /**
+     * Application periods of projects, partitioned by approved officer NRIC.
+     */
+    private final IndexedStore.IntervalIndex<String, LocalDate, Project> periodsByOfficer = projects
+            .addIntervalIndex("officerPeriod", Project::getApprovedOfficerNrics,
+                    Project::getOpeningDate, Project::getClosingDate);
+
+    /**
+     * Projects by manager NRIC.
+     */
+    private final IndexedStore.MultiIndex<String, Project> projectsByManager = projects
+            .addMultiIndex("manager", Project::getManagerNric);
+
+    /**
+     * Label of projects whose application period includes
+     * {@link #openBitmapDate}.
+     */
+    private static final List<Object> OPEN = IndexedStore.key("open");
+
+    /**
+     * The day the open label refers to: today, as of the last query, see
+     * {@link #plan(ProjectQuery)}.
+     */
+    private volatile LocalDate openBitmapDate = LocalDate.now();
+
+    /**
+     * Bitsets over projects for visibility, being open on
+     * {@link #openBitmapDate}, neighbourhood, and each flat type offered and
+     * with units remaining.
+     */
+    private final IndexedStore.BitmapIndex<List<Object>, Project> projectBitmap = projects
+            .addBitmapIndex("attributes", this::labelsOf);
 
     /**
-     * Set of all flat info IDs that have been loaded from the CSV file.
-     * Used to track which flat info records exist in the system.
+     * In-memory cache of all flat information, indexed by flat info ID. The
+     * same objects are referenced from their projects' flat type maps.
      */
-    private Set<String> loadedFlatInfoIds = new HashSet<>();
+    private final IndexedStore<String, ProjectFlatInfo> flatInfos = new IndexedStore<>(
+            ProjectFlatInfo::getFlatInfoId);
+
+    /**
+     * Flat infos by the ID of the project they belong to.
+     */
+    private final IndexedStore.MultiIndex<String, ProjectFlatInfo> flatInfosByProjectId = flatInfos
+            .addMultiIndex("projectId", ProjectFlatInfo::getProjectId);
+
+    /**
+     * Flat infos that still have units remaining, by flat type and ordered by
+     * price. A flat info is re-indexed when it is saved, so it leaves the index
+     * when its last unit is taken and returns when a unit is released.
+     */
+    private final IndexedStore.SortedIndex<FlatType, Double, ProjectFlatInfo> availableFlatsByPrice = flatInfos
+            .addSortedIndex("flatType+price",
+                    flatInfo -> flatInfo.getRemainingUnits() > 0 ? flatInfo.getFlatType() : null,
+                    ProjectFlatInfo::getPrice);
 
     /**
      * Helper for CSV file operations, handling serialization and deserialization
@@ -78,30 +168,41 @@ public class ProjectRepository implements IProjectRepository {
      */
     private final CsvRepositoryHelper<String, Project> csvHelper;
 
+    /**
+     * Helper for CSV file operations on the flat info file.
+     */
+    private final CsvRepositoryHelper<String, ProjectFlatInfo> flatInfoHelper;
+
     /**
      * Constructs a new ProjectRepository.
      * <p>
-     * Initializes the CSV helper with appropriate serializers/deserializers and
-     * loads the initial project data from both CSV files. The repository maintains
-     * an in-memory cache of projects which includes their associated flat
-     * information.
-     * </p>
-     * <p>
-     * If loading fails, the repository starts with an empty project collection.
+     * Initializes the CSV helpers for both files with appropriate
+     * serializers/deserializers and starts with an empty project collection. The repository maintains an
+     * in-memory cache of projects which includes their associated flat
+     * information; it is filled from both CSV files by {@link #loadAll()},
+     * normally called through RepositoryBootstrap.
      * </p>
      */
     public ProjectRepository() {
+        projects.enableVersioning(Project::getVersion, Project::setVersion);
         this.csvHelper = new CsvRepositoryHelper<>(
                 PROJECT_FILE_PATH,
                 PROJECT_CSV_HEADER,
-                this::deserializeProjectsAndFlatInfo,
-                this::serializeProjectsAndFlatInfo);
-        try {
-            this.projects = this.csvHelper.loadData();
-        } catch (DataAccessException e) {
-            System.err.println("Initial project load failed: " + e.getMessage());
-            this.projects = new HashMap<>();
-        }
+                this::mapProjectRow,
+                Project::getProjectId,
+                this::toProjectRow,
+                WriteMode.JOURNALED);
+        this.csvHelper.enableSnapshots(
+                SnapshotCodec.of(3, Project::getProjectId, this::writeProjectSnapshot, this::readProjectSnapshot));
+        this.flatInfoHelper = new CsvRepositoryHelper<>(
+                FLAT_INFO_FILE_PATH,
+                FLAT_INFO_CSV_HEADER,
+                this::mapFlatInfoRow,
+                ProjectFlatInfo::getFlatInfoId,
+                this::toFlatInfoRow,
+                WriteMode.JOURNALED);
+        this.flatInfoHelper.enableSnapshots(SnapshotCodec.of(1, ProjectFlatInfo::getFlatInfoId,
+                this::writeFlatInfoSnapshot, this::readFlatInfoSnapshot));
     }
 
     /**
@@ -119,13 +220,14 @@ public class ProjectRepository implements IProjectRepository {
     /**
      * {@inheritDoc}
      * <p>
-     * Returns a defensive copy of the in-memory project map to prevent
-     * external modification of the repository's internal state.
+     * Returns an immutable snapshot of the in-memory project map, taken in
+     * constant time; it does not change when the repository is written to
+     * later.
      * </p>
      */
     @Override
     public Map<String, Project> findAll() {
-        return new HashMap<>(projects);
+        return projects.snapshot();
     }
 
     /**
@@ -136,9 +238,9 @@ public class ProjectRepository implements IProjectRepository {
      * its ID is null before saving.
      * </p>
      * <p>
-     * This method delegates to the CSV helper which in turn calls
-     * serializeProjectsAndFlatInfo
-     * to handle saving data to both the project file and the flat info file.
+     * Only the project's own row is journaled. Flat infos are written only if
+     * they were added to or removed from the project; unit count changes are
+     * saved through {@link #saveFlatInfo(ProjectFlatInfo)}.
      * </p>
      * 
      * @throws DataAccessException if there is an error writing to either CSV file
@@ -149,13 +251,40 @@ public class ProjectRepository implements IProjectRepository {
             System.err.println("Attempted to save null project or project with null ID");
             return;
         }
-        projects.put(project.getProjectId(), project);
-        try {
-            csvHelper.saveData(projects); // Delegates saving BOTH files via serializeProjectsAndFlatInfo
-        } catch (DataAccessException e) {
-            System.err.println("Failed to save project " + project.getProjectId() + ": " + e.getMessage());
-            throw e;
+        long ticket;
+        List<Long> flatInfoTickets = new ArrayList<>();
+        synchronized (this) {
+            projects.putIfCurrent(project);
+            try {
+                ticket = csvHelper.stageEntity(project.getProjectId(), project, projects.snapshot());
+                syncFlatInfo(project, flatInfoTickets);
+            } catch (DataAccessException e) {
+                System.err.println("Failed to save project " + project.getProjectId() + ": " + e.getMessage());
+                throw e;
+            }
         }
+        // Wait outside the lock, so that concurrent saves can join the same group commit
+        csvHelper.awaitDurable(ticket);
+        awaitFlatInfos(flatInfoTickets);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the project's own row is part of the unit. Flat infos added to or
+     * removed from the project are not saved with it; use
+     * {@link #save(Project)} for such changes, or
+     * {@link #saveFlatInfo(ProjectFlatInfo, UnitOfWork)} for a unit count
+     * change.
+     * </p>
+     */
+    @Override
+    public void save(Project project, UnitOfWork work) {
+        if (project == null || project.getProjectId() == null) {
+            System.err.println("Attempted to stage null project or project with null ID");
+            return;
+        }
+        work.stage(this, csvHelper, projects, project, null);
     }
 
     /**
@@ -172,10 +301,20 @@ public class ProjectRepository implements IProjectRepository {
      * @throws DataAccessException if there is an error writing to either CSV file
      */
     @Override
-    public void saveAll(Map<String, Project> entities) {
-        this.projects = new HashMap<>(entities);
+    public synchronized void saveAll(Map<String, Project> entities) {
+        projects.replaceAll(entities);
+        Map<String, ProjectFlatInfo> allFlatInfo = new HashMap<>();
+        for (Project project : entities.values()) {
+            for (ProjectFlatInfo flatInfo : project.getFlatTypes().values()) {
+                if (flatInfo.getFlatInfoId() != null) {
+                    allFlatInfo.put(flatInfo.getFlatInfoId(), flatInfo);
+                }
+            }
+        }
+        flatInfos.replaceAll(allFlatInfo);
         try {
-            csvHelper.saveData(projects);
+            flatInfoHelper.saveData(flatInfos.snapshot());
+            csvHelper.saveData(projects.snapshot());
         } catch (DataAccessException e) {
             System.err.println("Failed to save all projects: " + e.getMessage());
             throw e;
@@ -186,33 +325,420 @@ public class ProjectRepository implements IProjectRepository {
      * {@inheritDoc}
      * <p>
      * Loads all projects and their associated flat information from the CSV files
-     * into the in-memory cache. Returns a defensive copy of the loaded projects.
+     * into the in-memory cache. Returns an immutable snapshot of the loaded
+     * projects.
      * </p>
      * 
      * @throws DataAccessException if there is an error reading from either CSV file
      */
     @Override
-    public Map<String, Project> loadAll() throws DataAccessException {
-        this.projects = csvHelper.loadData(); // Delegates loading BOTH files via deserializeProjectsAndFlatInfo
-        return new HashMap<>(projects);
+    public synchronized Map<String, Project> loadAll() throws DataAccessException {
+        Map<String, ProjectFlatInfo> loadedFlatInfo = flatInfoHelper.loadData();
+        Map<String, Project> loadedProjects = csvHelper.loadData();
+
+        // Link each project to its flat info
+        Map<String, Map<FlatType, ProjectFlatInfo>> flatInfoByProjectId = new HashMap<>();
+        for (ProjectFlatInfo flatInfo : loadedFlatInfo.values()) {
+            flatInfoByProjectId.computeIfAbsent(flatInfo.getProjectId(), k -> new HashMap<>())
+                    .put(flatInfo.getFlatType(), flatInfo);
+        }
+        for (Project project : loadedProjects.values()) {
+            project.setFlatTypes(flatInfoByProjectId.getOrDefault(project.getProjectId(), new HashMap<>()));
+        }
+
+        flatInfos.replaceAll(loadedFlatInfo);
+        projects.replaceAll(loadedProjects);
+        return projects.snapshot();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Rewrites both the projects CSV and the flat info CSV, folding in their
+     * journals, then stores a binary snapshot of each for fast loading on the
+     * next start-up.
+     * </p>
+     */
+    @Override
+    public synchronized void checkpoint() throws DataAccessException {
+        flatInfoHelper.checkpoint(flatInfos.snapshot());
+        csvHelper.checkpoint(projects.snapshot());
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Returns a set of all flat info IDs that have been loaded from the CSV file.
-     * If the projects and flat info IDs are not already loaded, this method will
-     * trigger a load operation.
+     * Returns the IDs of all flat info records in the repository.
+     * If the projects and flat info records are not already loaded, this method
+     * will trigger a load operation.
      * </p>
      * 
      * @throws DataAccessException if there is an error reading from either CSV file
      */
     @Override
-    public Set<String> findAllFlatInfoIds() throws DataAccessException {
-        if (projects.isEmpty() && loadedFlatInfoIds.isEmpty()) {
+    public synchronized Set<String> findAllFlatInfoIds() throws DataAccessException {
+        if (projects.size() == 0 && flatInfos.size() == 0) {
             loadAll();
         }
-        return new HashSet<>(this.loadedFlatInfoIds);
+        return new HashSet<>(flatInfos.snapshot().keySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Answered from the manager's interval tree.
+     * </p>
+     */
+    @Override
+    public List<Project> findByManagerWithOverlappingPeriod(String managerNric, LocalDate from, LocalDate to) {
+        return periodsByManager.findOverlapping(managerNric, from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Answered from the officer's interval tree.
+     * </p>
+     */
+    @Override
+    public List<Project> findByOfficerWithOverlappingPeriod(String officerNric, LocalDate from, LocalDate to) {
+        return periodsByOfficer.findOverlapping(officerNric, from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Criteria on neighbourhood, visibility, open date and flat types are
+     * answered by AND-ing the bitsets of the project bitmap index. A manager
+     * criterion uses the manager index instead when it matches fewer projects
+     * than the bitmaps do. The remaining criteria, and those answered from an
+     * index, are then checked on each candidate. A query without criteria
+     * scans all projects.
+     * </p>
+     * <p>
+     * The open bitset tracks today. The first query after the date changes
+     * rolls it forward, re-indexing every project once; a query for any other
+     * day is answered by checking the dates of each candidate instead.
+     * </p>
+     */
+    @Override
+    public ProjectQueryPlan plan(ProjectQuery query) {
+        if (query == null) {
+            query = ProjectQuery.all();
+        }
+        List<ProjectQueryPlan.Step> bitmapSteps = new ArrayList<>();
+        List<ProjectQueryPlan.Step> otherSteps = new ArrayList<>();
+        List<List<Object>> labels = new ArrayList<>();
+        List<List<Object>> anyOfLabels = null;
+
+        String neighborhood = normalizeNeighborhood(query.getNeighborhood());
+        if (neighborhood != null) {
+            List<Object> label = IndexedStore.key("neighborhood", neighborhood);
+            labels.add(label);
+            bitmapSteps.add(new ProjectQueryPlan.Step("neighborhood = '" + neighborhood + "'",
+                    projectBitmap.cardinality(label),
+                    project -> neighborhood.equals(normalizeNeighborhood(project.getNeighborhood()))));
+        }
+        FlatType flatType = query.getAvailableFlatType();
+        if (flatType != null) {
+            List<Object> label = IndexedStore.key("available", flatType);
+            labels.add(label);
+            bitmapSteps.add(new ProjectQueryPlan.Step("flatType " + flatType + " has units remaining",
+                    projectBitmap.cardinality(label), project -> hasRemainingUnits(project, flatType)));
+        }
+        Boolean visible = query.getVisible();
+        if (visible != null) {
+            List<Object> label = IndexedStore.key("visible", visible);
+            labels.add(label);
+            bitmapSteps.add(new ProjectQueryPlan.Step("visible = " + visible, projectBitmap.cardinality(label),
+                    project -> project.isVisible() == visible));
+        }
+        LocalDate openOn = query.getOpenOn();
+        boolean openFromBitmap = false;
+        if (openOn != null) {
+            ProjectQueryPlan.Step step = new ProjectQueryPlan.Step("open on " + openOn,
+                    projectBitmap.cardinality(OPEN), project -> isOpenOn(project, openOn));
+            openFromBitmap = rollOpenDate(openOn);
+            if (openFromBitmap) {
+                labels.add(OPEN);
+                bitmapSteps.add(step);
+            } else {
+                otherSteps.add(new ProjectQueryPlan.Step(step.description, projects.size(), step.predicate));
+            }
+        }
+        Set<FlatType> offered = query.getOfferedFlatTypes();
+        if (offered != null) {
+            List<List<Object>> anyOf = new ArrayList<>();
+            for (FlatType type : offered) {
+                anyOf.add(IndexedStore.key("offers", type));
+            }
+            anyOfLabels = anyOf;
+            bitmapSteps.add(new ProjectQueryPlan.Step("offers any of " + offered,
+                    projectBitmap.count(Collections.emptyList(), anyOf),
+                    project -> project.getFlatTypes() != null
+                            && offered.stream().anyMatch(project.getFlatTypes()::containsKey)));
+        }
+        String managerNric = query.getManagerNric();
+        ProjectQueryPlan.Step managerStep = null;
+        if (managerNric != null) {
+            managerStep = new ProjectQueryPlan.Step("manager = " + managerNric,
+                    projectsByManager.count(managerNric), project -> managerNric.equals(project.getManagerNric()));
+        }
+
+        int total = projects.size();
+        List<ProjectQueryPlan.Step> filters = new ArrayList<>();
+        if (!bitmapSteps.isEmpty()) {
+            int estimate = projectBitmap.count(requiredLabels(labels, openOn, openFromBitmap), anyOfLabels);
+            if (managerStep == null || estimate <= managerStep.estimate) {
+                if (managerStep != null) {
+                    filters.add(managerStep);
+                }
+                filters.addAll(otherSteps);
+                // Re-checked last; only catches in-memory changes not yet saved
+                filters.addAll(bitmapSteps);
+                String access = "Bitmap AND of " + bitmapSteps.stream()
+                        .map(step -> step.description).collect(Collectors.toList());
+                List<List<Object>> andLabels = labels;
+                List<List<Object>> orLabels = anyOfLabels;
+                boolean useOpen = openFromBitmap;
+                return new ProjectQueryPlan(query, access, estimate, total,
+                        () -> projectBitmap.select(requiredLabels(andLabels, openOn, useOpen), orLabels), filters);
+            }
+        }
+        if (managerStep != null) {
+            filters.addAll(bitmapSteps);
+            filters.addAll(otherSteps);
+            filters.sort(Comparator.comparingInt(step -> step.estimate));
+            filters.add(managerStep);
+            return new ProjectQueryPlan(query, "Index scan on manager = " + managerNric, managerStep.estimate,
+                    total, () -> projectsByManager.get(managerNric), filters);
+        }
+        return new ProjectQueryPlan(query, "Full scan", total, total, projects::values, otherSteps);
+    }
+
+    /**
+     * Rolls the day tracked by the open bitset forward to today, if the date
+     * has changed since it was last set, and checks whether a queried day is
+     * the tracked one.
+     *
+     * @param date The day a query asks about
+     * @return true if the open bitset tracks that day
+     */
+    private synchronized boolean rollOpenDate(LocalDate date) {
+        LocalDate today = LocalDate.now();
+        if (today.isAfter(openBitmapDate)) {
+            openBitmapDate = today;
+            projects.refresh();
+        }
+        return date.equals(openBitmapDate);
+    }
+
+    /**
+     * Returns the labels every candidate of a plan must carry. If the open
+     * bitset was to be used but has since rolled past the queried day, it is
+     * left out, and the dates are checked on each candidate instead.
+     *
+     * @param labels         Labels every project must carry
+     * @param openOn         The queried day, or null
+     * @param openFromBitmap Whether the labels include the open label
+     * @return The labels to AND
+     */
+    private List<List<Object>> requiredLabels(List<List<Object>> labels, LocalDate openOn, boolean openFromBitmap) {
+        if (openFromBitmap && !openOn.equals(openBitmapDate)) {
+            List<List<Object>> required = new ArrayList<>(labels);
+            required.remove(OPEN);
+            return required;
+        }
+        return labels;
+    }
+
+    /**
+     * Returns the bitmap labels of a project: its visibility, whether it is
+     * open on the tracked day, its neighbourhood, and the flat types it
+     * offers and still has units of.
+     *
+     * @param project The project
+     * @return The labels
+     */
+    private List<List<Object>> labelsOf(Project project) {
+        List<List<Object>> labels = new ArrayList<>();
+        labels.add(IndexedStore.key("visible", project.isVisible()));
+        if (isOpenOn(project, openBitmapDate)) {
+            labels.add(OPEN);
+        }
+        String neighborhood = normalizeNeighborhood(project.getNeighborhood());
+        if (neighborhood != null) {
+            labels.add(IndexedStore.key("neighborhood", neighborhood));
+        }
+        if (project.getFlatTypes() != null) {
+            for (Map.Entry<FlatType, ProjectFlatInfo> entry : project.getFlatTypes().entrySet()) {
+                labels.add(IndexedStore.key("offers", entry.getKey()));
+                if (entry.getValue().getRemainingUnits() > 0) {
+                    labels.add(IndexedStore.key("available", entry.getKey()));
+                }
+            }
+        }
+        return labels;
+    }
+
+    private static boolean isOpenOn(Project project, LocalDate date) {
+        return project.getOpeningDate() != null && project.getClosingDate() != null
+                && !date.isBefore(project.getOpeningDate()) && !date.isAfter(project.getClosingDate());
+    }
+
+    private static boolean hasRemainingUnits(Project project, FlatType flatType) {
+        if (project.getFlatTypes() == null) {
+            return false;
+        }
+        ProjectFlatInfo info = project.getFlatTypes().get(flatType);
+        return info != null && info.getRemainingUnits() > 0;
+    }
+
+    private static String normalizeNeighborhood(String neighborhood) {
+        if (neighborhood == null || neighborhood.trim().isEmpty()) {
+            return null;
+        }
+        return neighborhood.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Walks the flat type's partition of the price index from the lower bound
+     * upwards and stops once enough flats are found, so the cost depends on
+     * the number of flats inspected rather than on the number of projects.
+     * </p>
+     */
+    @Override
+    public List<ProjectFlatInfo> findAvailableFlatsByPrice(FlatType flatType, Double minPrice, Double maxPrice,
+            Predicate<? super Project> projectFilter, int limit) {
+        return availableFlatsByPrice.range(flatType, minPrice, maxPrice, flatInfo -> {
+            Project project = projects.get(flatInfo.getProjectId());
+            // Skip flat infos that are no longer part of their project, or changed since saved
+            return project != null && project.getFlatTypes().get(flatType) == flatInfo
+                    && flatInfo.getRemainingUnits() > 0
+                    && (projectFilter == null || projectFilter.test(project));
+        }, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the flat info's own row is journaled; the project file is not
+     * touched. The owning project is re-indexed in memory, so its
+     * units-remaining bits follow the change.
+     * </p>
+     * 
+     * @throws DataAccessException if there is an error writing to the flat info
+     *                             CSV file
+     */
+    @Override
+    public void saveFlatInfo(ProjectFlatInfo flatInfo) throws DataAccessException {
+        if (flatInfo == null || flatInfo.getFlatInfoId() == null) {
+            System.err.println("Attempted to save null flat info or flat info with null ID");
+            return;
+        }
+        long ticket;
+        synchronized (this) {
+            flatInfos.put(flatInfo);
+            Project project = projects.get(flatInfo.getProjectId());
+            if (project != null) {
+                projects.put(project); // Re-index its units-remaining bits
+            }
+            try {
+                ticket = flatInfoHelper.stageEntity(flatInfo.getFlatInfoId(), flatInfo, flatInfos.snapshot());
+            } catch (DataAccessException e) {
+                System.err.println("Failed to save flat info " + flatInfo.getFlatInfoId() + ": " + e.getMessage());
+                throw e;
+            }
+        }
+        flatInfoHelper.awaitDurable(ticket); // Outside the lock, as in save
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * As with {@link #saveFlatInfo(ProjectFlatInfo)}, the owning project is
+     * re-indexed in memory once the unit commits.
+     * </p>
+     */
+    @Override
+    public void saveFlatInfo(ProjectFlatInfo flatInfo, UnitOfWork work) {
+        if (flatInfo == null || flatInfo.getFlatInfoId() == null) {
+            System.err.println("Attempted to stage null flat info or flat info with null ID");
+            return;
+        }
+        work.stage(this, flatInfoHelper, flatInfos, flatInfo, () -> {
+            Project project = projects.get(flatInfo.getProjectId());
+            if (project != null) {
+                projects.put(project); // Re-index its units-remaining bits
+            }
+        });
+    }
+
+    /**
+     * Brings the stored flat infos of a project in line with its flat type map.
+     * <p>
+     * Flat infos that are not yet stored (or have been replaced by a different
+     * object) are saved, and stored flat infos that the project no longer
+     * references are deleted. Flat infos that are unchanged are not written.
+     * </p>
+     * 
+     * @param project The project that was saved
+     * @param tickets Receives the tickets of the staged flat info writes
+     * @throws DataAccessException if there is an error writing to the flat info
+     *                             CSV file
+     */
+    private void syncFlatInfo(Project project, List<Long> tickets) throws DataAccessException {
+        Set<String> currentIds = new HashSet<>();
+        for (ProjectFlatInfo flatInfo : project.getFlatTypes().values()) {
+            String flatInfoId = flatInfo.getFlatInfoId();
+            if (flatInfoId == null) {
+                System.err.println("Warning: Not persisting flat info without ID for project "
+                        + project.getProjectId() + ": " + flatInfo.getTypeName());
+                continue;
+            }
+            currentIds.add(flatInfoId);
+            if (flatInfos.get(flatInfoId) != flatInfo) {
+                flatInfos.put(flatInfo);
+                tickets.add(flatInfoHelper.stageEntity(flatInfoId, flatInfo, flatInfos.snapshot()));
+            }
+        }
+        removeFlatInfo(project.getProjectId(), currentIds, tickets);
+    }
+
+    /**
+     * Deletes the stored flat infos of a project, except those listed.
+     * 
+     * @param projectId The project ID
+     * @param keepIds   IDs of flat infos to keep
+     * @param tickets   Receives the tickets of the staged deletes
+     * @throws DataAccessException if there is an error writing to the flat info
+     *                             CSV file
+     */
+    private void removeFlatInfo(String projectId, Set<String> keepIds, List<Long> tickets)
+            throws DataAccessException {
+        for (ProjectFlatInfo flatInfo : flatInfosByProjectId.get(projectId)) {
+            String flatInfoId = flatInfo.getFlatInfoId();
+            if (!keepIds.contains(flatInfoId)) {
+                flatInfos.remove(flatInfoId);
+                tickets.add(flatInfoHelper.stageDelete(flatInfoId, flatInfos.snapshot()));
+            }
+        }
+    }
+
+    /**
+     * Waits for staged flat info writes, each of which may belong to a
+     * different flush. Called without holding the repository's lock.
+     *
+     * @param tickets Tickets from {@link CsvRepositoryHelper#stageEntity} or
+     *                {@link CsvRepositoryHelper#stageDelete}
+     * @throws DataAccessException if a flush containing one of the writes failed
+     */
+    private void awaitFlatInfos(List<Long> tickets) throws DataAccessException {
+        for (long ticket : tickets) {
+            flatInfoHelper.awaitDurable(ticket);
+        }
     }
 
     /**
@@ -232,197 +758,226 @@ public class ProjectRepository implements IProjectRepository {
             return;
         }
 
-        // Remove from the in-memory map using the 'id' parameter
-        Project removedProject = this.projects.remove(id);
-
-        if (removedProject != null) {
+        long ticket;
+        List<Long> flatInfoTickets = new ArrayList<>();
+        synchronized (this) {
+            // Remove from the in-memory map using the 'id' parameter
+            Project removedProject = projects.remove(id);
+            if (removedProject == null) {
+                System.out.println("Project not found for deletion: " + id);
+                return;
+            }
             System.out.println("Project deleted from memory: " + id);
 
-            // Persist the changes by saving the entire current state
-            // The CsvRepositoryHelper's saveData (called by saveAll) should handle writing
-            // both files
+            // Journal the removal of the project and of its flat info
             try {
-                // saveAll is suitable here as it overwrites files with the current map state
-                this.saveAll(this.projects);
+                ticket = csvHelper.stageDelete(id, projects.snapshot());
+                removeFlatInfo(id, new HashSet<>(), flatInfoTickets);
             } catch (DataAccessException e) {
                 System.err.println(
                         "Error persisting deletion for project: " + id + ". In-memory map may be inconsistent.");
                 throw e;
             }
-        } else {
-            System.out.println("Project not found for deletion: " + id);
         }
+        // Outside the lock, as in save
+        csvHelper.awaitDurable(ticket);
+        awaitFlatInfos(flatInfoTickets);
     }
 
     /**
-     * Deserializes project and flat information data from CSV rows into a map of
-     * Project objects.
+     * Converts one CSV row into a Project.
      * <p>
-     * This method performs a two-step deserialization process:
-     * <ol>
-     * <li>First loads and processes flat information from a separate CSV file</li>
-     * <li>Then processes project data, linking flat information to each
-     * project</li>
-     * </ol>
-     * </p>
-     * <p>
-     * The method handles potential format issues and logs errors for problematic
-     * rows
-     * without throwing exceptions that would disrupt the entire loading process.
-     * It also tracks loaded flat info IDs for reference by other repository
-     * methods.
+     * The project is created without flat types; {@link #loadAll()} links its
+     * flat info once both files have been read. The method handles potential
+     * format issues and logs errors for problematic rows without throwing
+     * exceptions that would disrupt the entire loading process.
      * </p>
      * 
-     * @param projectData List of CSV row data arrays for projects
-     * @return Map of deserialized Project objects indexed by project ID
-     * @throws DataAccessException if there is an error reading from the flat info
-     *                             CSV file
+     * @param row CSV record for one project
+     * @return The Project, or null if the row is invalid
      */
-    private Map<String, Project> deserializeProjectsAndFlatInfo(List<String[]> projectData) throws DataAccessException {
-        this.loadedFlatInfoIds.clear(); // Reset for this load operation
-        Map<String, Project> projectMap = new HashMap<>();
-        Map<String, Map<FlatType, ProjectFlatInfo>> flatInfoByProjectId = new HashMap<>();
-
-        // 1. Read and process Flat Info data first
+    private Project mapProjectRow(CsvRecord row) {
+        if (row.size() < 8)
+            return null;
         try {
-            List<String[]> flatInfoData = FileUtil.readCsvLines(FLAT_INFO_FILE_PATH);
-            if (flatInfoData != null) {
-                for (String[] row : flatInfoData) {
-                    if (row.length < 6)
-                        continue;
-                    try {
-                        String flatInfoId = row[0];
-                        String projId = row[1];
-                        FlatType flatType = FileUtil.parseEnum(FlatType.class, row[2]);
-                        int totalUnits = FileUtil.parseIntOrDefault(row[3], 0);
-                        int remainingUnits = FileUtil.parseIntOrDefault(row[4], 0);
-                        double price = FileUtil.parseDoubleOrDefault(row[5], 0.0);
-
-                        loadedFlatInfoIds.add(flatInfoId); // Track loaded IDs
-
-                        ProjectFlatInfo flatInfo = new ProjectFlatInfo(flatType, totalUnits, remainingUnits, price);
-                        flatInfoByProjectId.computeIfAbsent(projId, k -> new HashMap<>()).put(flatType, flatInfo);
-                    } catch (Exception e) {
-                        System.err.println(
-                                "Error parsing flat info row: " + String.join(",", row) + " - " + e.getMessage());
-                    }
-                }
-            }
-        } catch (IOException e) {
-            throw new DataAccessException(
-                    "Error loading flat info from file: " + FLAT_INFO_FILE_PATH + " - " + e.getMessage(), e);
-        }
-
-        // 2. Process Project data (passed in as argument by the helper)
-        if (projectData != null) {
-            for (String[] row : projectData) {
-                if (row.length < 8)
-                    continue;
-                try {
-                    String projId = row[0];
-                    String projectName = row[1];
-                    String neighborhood = row[2];
-                    LocalDate openingDate = FileUtil.parseLocalDate(row[3]);
-                    LocalDate closingDate = FileUtil.parseLocalDate(row[4]);
-                    String managerNric = row[5];
-                    int maxOfficerSlots = FileUtil.parseIntOrDefault(row[6], 0);
-                    boolean isVisible = Boolean.parseBoolean(row[7]);
-
-                    Map<FlatType, ProjectFlatInfo> projectFlatTypes = flatInfoByProjectId.getOrDefault(projId,
-                            new HashMap<>());
-
-                    Project project = new Project(projId, projectName, neighborhood, projectFlatTypes, openingDate,
-                            closingDate, managerNric, maxOfficerSlots);
-                    project.setVisibility(isVisible);
-
-                    if (row.length > 8 && row[8] != null && !row[8].trim().isEmpty()) {
-                        List<String> approvedOfficers = FileUtil.splitString(row[8], ";");
-                        project.setApprovedOfficerNrics(approvedOfficers.stream().filter(s -> !s.trim().isEmpty())
-                                .collect(Collectors.toList())); // Ensure list is set
-                    }
-                    project.setMaxOfficerSlots(maxOfficerSlots); // Recalculate remaining slots
-
-                    projectMap.put(projId, project);
-                } catch (Exception e) {
-                    System.err.println("Error parsing project row: " + String.join(",", row) + " - " + e.getMessage());
-                }
+            String projId = row.get(0);
+            String projectName = row.get(1);
+            String neighborhood = row.get(2);
+            LocalDate openingDate = row.getDate(3);
+            LocalDate closingDate = row.getDate(4);
+            String managerNric = row.get(5);
+            int maxOfficerSlots = row.getInt(6, 0);
+            boolean isVisible = row.getBoolean(7);
+
+            Project project = new Project(projId, projectName, neighborhood, new HashMap<>(), openingDate,
+                    closingDate, managerNric, maxOfficerSlots);
+            project.setVisibility(isVisible);
+
+            if (row.size() > 8 && !row.isBlank(8)) {
+                List<String> approvedOfficers = FileUtil.splitString(row.get(8), ";");
+                project.setApprovedOfficerNrics(approvedOfficers.stream().filter(s -> !s.trim().isEmpty())
+                        .collect(Collectors.toList())); // Ensure list is set
             }
-        }
+            project.setMaxOfficerSlots(maxOfficerSlots); // Recalculate remaining slots
+            project.setVersion(row.size() > 9 ? row.getInt(9, 0) : 0); // Absent in older files
 
-        return projectMap;
+            return project;
+        } catch (Exception e) {
+            System.err.println("Error parsing project row: " + row + " - " + e.getMessage());
+            return null;
+        }
     }
 
     /**
-     * Serializes Project objects and their associated flat information into CSV row
-     * format for storage.
-     * <p>
-     * This method performs a two-step serialization process:
-     * <ol>
-     * <li>First serializes all Project objects to project CSV rows</li>
-     * <li>Then serializes all associated ProjectFlatInfo objects to flat info CSV
-     * rows</li>
-     * <li>Writes the flat info CSV file directly</li>
-     * <li>Returns the project CSV rows for the helper to write</li>
-     * </ol>
-     * </p>
+     * Converts one row of the flat info CSV into a ProjectFlatInfo.
      * <p>
-     * The method generates unique IDs for flat info records using a simple counter,
-     * and handles potential null values defensively to ensure robust serialization.
+     * Rows with missing fields or an unknown flat type are logged and skipped.
      * </p>
      * 
-     * @param projectsToSerialize Map of Project objects to serialize
-     * @return List of CSV row data arrays for projects
-     * @throws DataAccessException if there is an error writing to the flat info CSV
-     *                             file
+     * @param row CSV record for one flat info
+     * @return The ProjectFlatInfo, or null if the row is invalid
      */
-    private List<String[]> serializeProjectsAndFlatInfo(Map<String, Project> projectsToSerialize)
-            throws DataAccessException {
-        List<String[]> serializedProjectData = new ArrayList<>();
-        List<String[]> serializedFlatInfoData = new ArrayList<>();
-        int flatInfoIdCounter = 1; // Simple counter for flat info IDs
-
-        if (projectsToSerialize != null) {
-            for (Project project : projectsToSerialize.values()) {
-                // Serialize Project data
-                serializedProjectData.add(new String[] {
-                        project.getProjectId(),
-                        project.getProjectName(),
-                        project.getNeighborhood(),
-                        FileUtil.formatLocalDate(project.getOpeningDate()),
-                        FileUtil.formatLocalDate(project.getClosingDate()),
-                        project.getManagerNric(),
-                        String.valueOf(project.getMaxOfficerSlots()),
-                        String.valueOf(project.isVisible()),
-                        FileUtil.joinList(project.getApprovedOfficerNrics(), ";") // Use util
-                });
-
-                // Serialize associated FlatInfo data
-                for (Map.Entry<FlatType, ProjectFlatInfo> entry : project.getFlatTypes().entrySet()) {
-                    ProjectFlatInfo flatInfo = entry.getValue();
-                    String flatInfoId = String.format("FLAT%03d", flatInfoIdCounter++); // Generate ID
-
-                    serializedFlatInfoData.add(new String[] {
-                            flatInfoId,
-                            project.getProjectId(),
-                            entry.getKey().toString(),
-                            String.valueOf(flatInfo.getTotalUnits()),
-                            String.valueOf(flatInfo.getRemainingUnits()),
-                            String.valueOf(flatInfo.getPrice())
-                    });
-                }
+    private ProjectFlatInfo mapFlatInfoRow(CsvRecord row) {
+        if (row.size() < 6 || row.isBlank(0))
+            return null;
+        try {
+            String flatInfoId = row.get(0);
+            String projId = row.get(1);
+            FlatType flatType = row.getEnum(FlatType.class, 2, null);
+            if (flatType == null) {
+                System.err.println("Skipping flat info row due to invalid flat type: " + row.get(2));
+                return null;
             }
+            int totalUnits = row.getInt(3, 0);
+            int remainingUnits = row.getInt(4, 0);
+            double price = row.getDouble(5, 0.0);
+
+            return new ProjectFlatInfo(flatInfoId, projId, flatType, totalUnits, remainingUnits, price);
+        } catch (Exception e) {
+            System.err.println(
+                    "Error parsing flat info row: " + row + " - " + e.getMessage());
+            return null;
         }
+    }
 
-        // Write the secondary file (Flat Info) MANUALLY here
-        try {
-            FileUtil.writeCsvLines(FLAT_INFO_FILE_PATH, serializedFlatInfoData, FLAT_INFO_CSV_HEADER);
-        } catch (IOException e) {
-            throw new DataAccessException(
-                    "Error saving flat info to file: " + FLAT_INFO_FILE_PATH + " - " + e.getMessage(), e);
-        }
+    /**
+     * Serializes a Project into a CSV row for the projects file.
+     * <p>
+     * Flat information is not part of the row; it is stored in the flat info
+     * file by {@link #toFlatInfoRow(ProjectFlatInfo)}.
+     * </p>
+     * 
+     * @param project The Project to serialize
+     * @return CSV row data array for the project
+     */
+    private String[] toProjectRow(Project project) {
+        return new String[] {
+                project.getProjectId(),
+                project.getProjectName(),
+                project.getNeighborhood(),
+                FileUtil.formatLocalDate(project.getOpeningDate()),
+                FileUtil.formatLocalDate(project.getClosingDate()),
+                project.getManagerNric(),
+                String.valueOf(project.getMaxOfficerSlots()),
+                String.valueOf(project.isVisible()),
+                FileUtil.joinList(project.getApprovedOfficerNrics(), ";"), // Use util
+                String.valueOf(project.getVersion())
+        };
+    }
 
-        // Return the PRIMARY file data for the helper to write
-        return serializedProjectData;
+    /**
+     * Serializes a ProjectFlatInfo into a CSV row for the flat info file.
+     * 
+     * @param flatInfo The flat info to serialize
+     * @return CSV row data array for the flat info
+     */
+    private String[] toFlatInfoRow(ProjectFlatInfo flatInfo) {
+        return new String[] {
+                flatInfo.getFlatInfoId(),
+                flatInfo.getProjectId(),
+                flatInfo.getFlatType().toString(),
+                String.valueOf(flatInfo.getTotalUnits()),
+                String.valueOf(flatInfo.getUncommittedUnits()), // Takes still in progress count as remaining
+                String.valueOf(flatInfo.getPrice())
+        };
     }
 
-}
\ No newline at end of file
+    /**
+     * Writes a project's details to a binary snapshot. Flat info is stored in
+     * its own snapshot.
+     * 
+     * @param project The project to write
+     * @param out     The snapshot output
+     * @throws IOException If writing fails
+     */
+    private void writeProjectSnapshot(Project project, SnapshotOutput out) throws IOException {
+        out.writeString(project.getProjectId());
+        out.writeString(project.getProjectName());
+        out.writeString(project.getNeighborhood());
+        out.writeDate(project.getOpeningDate());
+        out.writeDate(project.getClosingDate());
+        out.writeString(project.getManagerNric());
+        out.writeInt(project.getMaxOfficerSlots());
+        out.writeBoolean(project.isVisible());
+        out.writeStringList(project.getApprovedOfficerNrics());
+        out.writeInt(project.getVersion());
+    }
+
+    /**
+     * Reads a project written by
+     * {@link #writeProjectSnapshot(Project, SnapshotOutput)}.
+     * 
+     * @param in The snapshot input
+     * @return The project, without flat types
+     * @throws IOException If the data is invalid
+     */
+    private Project readProjectSnapshot(SnapshotInput in) throws IOException {
+        String projId = in.readString();
+        String projectName = in.readString();
+        String neighborhood = in.readString();
+        LocalDate openingDate = in.readDate();
+        LocalDate closingDate = in.readDate();
+        String managerNric = in.readString();
+        int maxOfficerSlots = in.readInt();
+        boolean isVisible = in.readBoolean();
+        List<String> approvedOfficers = in.readStringList();
+        int version = in.readInt();
+
+        Project project = new Project(projId, projectName, neighborhood, new HashMap<>(), openingDate,
+                closingDate, managerNric, maxOfficerSlots);
+        project.setVisibility(isVisible);
+        project.setApprovedOfficerNrics(approvedOfficers);
+        project.setMaxOfficerSlots(maxOfficerSlots); // Recalculate remaining slots
+        project.setVersion(version);
+        return project;
+    }
+
+    /**
+     * Writes a flat info to a binary snapshot.
+     * 
+     * @param flatInfo The flat info to write
+     * @param out      The snapshot output
+     * @throws IOException If writing fails
+     */
+    private void writeFlatInfoSnapshot(ProjectFlatInfo flatInfo, SnapshotOutput out) throws IOException {
+        out.writeString(flatInfo.getFlatInfoId());
+        out.writeString(flatInfo.getProjectId());
+        out.writeEnum(flatInfo.getFlatType());
+        out.writeInt(flatInfo.getTotalUnits());
+        out.writeInt(flatInfo.getUncommittedUnits());
+        out.writeDouble(flatInfo.getPrice());
+    }
+
+    /**
+     * Reads a flat info written by
+     * {@link #writeFlatInfoSnapshot(ProjectFlatInfo, SnapshotOutput)}.
+     * 
+     * @param in The snapshot input
+     * @return The flat info
+     * @throws IOException If the data is invalid
+     */
+    private ProjectFlatInfo readFlatInfoSnapshot(SnapshotInput in) throws IOException {
+        return new ProjectFlatInfo(in.readString(), in.readString(), in.readEnum(FlatType.class), in.readInt(),
+                in.readInt(), in.readDouble());
+    }
+}
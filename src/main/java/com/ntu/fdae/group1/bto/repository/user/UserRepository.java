@@ -7,12 +7,16 @@ import com.ntu.fdae.group1.bto.models.user.HDBManager;
 import com.ntu.fdae.group1.bto.enums.MaritalStatus;
 import com.ntu.fdae.group1.bto.enums.UserRole;
 import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
-import com.ntu.fdae.group1.bto.utils.FileUtil;
+import com.ntu.fdae.group1.bto.utils.CsvRecord;
 import com.ntu.fdae.group1.bto.repository.util.CsvRepositoryHelper;
+import com.ntu.fdae.group1.bto.repository.util.IndexedStore;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotCodec;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotInput;
+import com.ntu.fdae.group1.bto.repository.util.SnapshotOutput;
+import com.ntu.fdae.group1.bto.repository.util.UnitOfWork;
+import com.ntu.fdae.group1.bto.repository.util.WriteMode;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -33,6 +37,11 @@ import java.util.Map;
  * maintains
  * data consistency between the in-memory cache and the persistent storage.
  * </p>
+ * <p>
+ * Users are held in an {@link IndexedStore}, so logins and other lookups by
+ * NRIC from concurrent sessions do not block each other; writes are
+ * serialized by this repository.
+ * </p>
  */
 public class UserRepository implements IUserRepository {
     /**
@@ -54,7 +63,7 @@ public class UserRepository implements IUserRepository {
      * This cache improves performance by reducing the need to read from the CSV
      * file.
      */
-    private Map<String, User> users;
+    private final IndexedStore<String, User> users = new IndexedStore<>(User::getNric);
 
     /**
      * Helper that handles CSV file operations for user data.
@@ -67,23 +76,20 @@ public class UserRepository implements IUserRepository {
      * Constructs a new UserRepository.
      * <p>
      * Initializes the repository with a CsvRepositoryHelper configured for
-     * User entities and attempts to load existing user data from the CSV file.
-     * If the initial data load fails, an empty user collection is created.
+     * User entities and an empty user collection. Existing data is read by
+     * {@link #loadAll()}, normally called through RepositoryBootstrap.
      * </p>
      */
     public UserRepository() {
         this.csvHelper = new CsvRepositoryHelper<>(
                 USER_FILE_PATH,
                 USER_CSV_HEADER,
-                this::deserializeUsers,
-                this::serializeUsers);
-        // Load initial data
-        try {
-            this.users = this.csvHelper.loadData();
-        } catch (DataAccessException e) {
-            System.err.println("Initial user load failed: " + e.getMessage());
-            this.users = new HashMap<>(); // Start with empty map on failure
-        }
+                this::mapUserRow,
+                User::getNric,
+                this::toUserRow,
+                WriteMode.JOURNALED);
+        this.csvHelper.enableSnapshots(
+                SnapshotCodec.of(1, User::getNric, this::writeUserSnapshot, this::readUserSnapshot));
     }
 
     /**
@@ -101,14 +107,14 @@ public class UserRepository implements IUserRepository {
     /**
      * {@inheritDoc}
      * <p>
-     * Returns a defensive copy of the users map to prevent external
-     * modification of the repository's internal state. Users are
-     * keyed by their NRIC.
+     * Returns an immutable snapshot of the users map, taken in constant
+     * time; it does not change when the repository is written to later.
+     * Users are keyed by their NRIC.
      * </p>
      */
     @Override
     public Map<String, User> findAll() {
-        return new HashMap<>(users);
+        return users.snapshot();
     }
 
     /**
@@ -129,13 +135,30 @@ public class UserRepository implements IUserRepository {
             System.err.println("Attempted to save null user or user with null NRIC");
             return;
         }
-        users.put(entity.getNric(), entity); // Use NRIC as the key
-        try {
-            csvHelper.saveData(users);
-        } catch (DataAccessException e) {
-            System.err.println("Failed to save user " + entity.getNric() + ": " + e.getMessage());
-            throw e;
+        long ticket;
+        synchronized (this) {
+            users.put(entity); // Keyed by NRIC
+            try {
+                ticket = csvHelper.stageEntity(entity.getNric(), entity, users.snapshot());
+            } catch (DataAccessException e) {
+                System.err.println("Failed to save user " + entity.getNric() + ": " + e.getMessage());
+                throw e;
+            }
+        }
+        // Wait outside the lock, so that concurrent saves can join the same group commit
+        csvHelper.awaitDurable(ticket);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(User entity, UnitOfWork work) {
+        if (entity == null || entity.getNric() == null) {
+            System.err.println("Attempted to stage null user or user with null NRIC");
+            return;
         }
+        work.stage(this, csvHelper, users, entity, null);
     }
 
     /**
@@ -151,10 +174,10 @@ public class UserRepository implements IUserRepository {
      * </p>
      */
     @Override
-    public void saveAll(Map<String, User> entities) {
-        this.users = new HashMap<>(entities); // Replace with a copy
+    public synchronized void saveAll(Map<String, User> entities) {
+        users.replaceAll(entities); // Replace with a copy
         try {
-            csvHelper.saveData(users);
+            csvHelper.saveData(users.snapshot());
         } catch (DataAccessException e) {
             System.err.println("Failed to save all users: " + e.getMessage());
             throw e;
@@ -165,114 +188,151 @@ public class UserRepository implements IUserRepository {
      * {@inheritDoc}
      * <p>
      * Reloads all user data from the CSV file into the in-memory cache,
-     * replacing any existing data. Returns a defensive copy of the loaded
-     * users map.
+     * replacing any existing data. Returns an immutable
+     * snapshot of the loaded users.
      * </p>
      */
     @Override
-    public Map<String, User> loadAll() {
-        this.users = csvHelper.loadData();
-        return new HashMap<>(users);
+    public synchronized Map<String, User> loadAll() {
+        users.replaceAll(csvHelper.loadData());
+        return users.snapshot();
     }
 
     /**
-     * Deserializes CSV data into User objects of the appropriate subtype.
+     * {@inheritDoc}
      * <p>
-     * This method converts each CSV row into a User object (Applicant, HDBOfficer,
-     * or HDBManager) based on the role field. It handles validation and error
-     * checking for required fields and data formats.
+     * Rewrites the users CSV from the in-memory cache and stores a binary
+     * snapshot of it, which the next start-up loads instead of parsing the CSV.
      * </p>
-     * 
-     * @param csvData List of string arrays representing user data from CSV
-     * @return A map of deserialized User objects, keyed by their NRICs
      */
-    private Map<String, User> deserializeUsers(List<String[]> csvData) {
-        Map<String, User> userMap = new HashMap<>();
-        if (csvData == null)
-            return userMap;
+    @Override
+    public synchronized void checkpoint() throws DataAccessException {
+        csvHelper.checkpoint(users.snapshot());
+    }
 
-        for (String[] row : csvData) {
-            if (row.length < 6) {
-                System.err.println("Skipping invalid user row: " + String.join(",", row));
-                continue;
+    /**
+     * Converts one CSV row into a User object of the appropriate subtype.
+     * <p>
+     * The row becomes an Applicant, HDBOfficer or HDBManager based on the role
+     * field. This method handles validation and error checking for required
+     * fields and data formats.
+     * </p>
+     * 
+     * @param row CSV record representing one user
+     * @return The User, or null if the row is invalid
+     */
+    private User mapUserRow(CsvRecord row) {
+        if (row.size() < 6) {
+            System.err.println("Skipping invalid user row: " + row);
+            return null;
+        }
+        try {
+            if (row.isBlank(0)) {
+                System.err.println("Skipping user row due to missing NRIC.");
+                return null;
             }
-            try {
-                String nric = row[0];
-                String passwordHash = row[1];
-                String name = row[2];
-                // Use parseIntOrDefault for safer parsing
-                int age = FileUtil.parseIntOrDefault(row[3], 0);
-                // Use parseEnum with null default, handle null later if status is required
-                MaritalStatus maritalStatus = FileUtil.parseEnum(MaritalStatus.class, row[4], null);
-                // Role is critical for determining the object type
-                UserRole role = FileUtil.parseEnum(UserRole.class, row[5], null);
-
-                if (nric == null || nric.trim().isEmpty()) {
-                    System.err.println("Skipping user row due to missing NRIC.");
-                    continue;
-                }
-                if (role == null) {
-                    System.err
-                            .println("Skipping user row for NRIC " + nric + " due to invalid/missing role: " + row[5]);
-                    continue;
-                }
-                if (maritalStatus == null) { // Example: Decide if MaritalStatus can be null or requires a default
-                    System.err.println("Warning: User row for NRIC " + nric
-                            + " has invalid/missing marital status. Setting default or skipping.");
-                    continue; // Skip if marital status is required
-                }
+            String nric = row.get(0);
+            // Role is critical for determining the object type
+            UserRole role = row.getEnum(UserRole.class, 5, null);
+            if (role == null) {
+                System.err.println(
+                        "Skipping user row for NRIC " + nric + " due to invalid/missing role: " + row.get(5));
+                return null;
+            }
+            // Use a null default, handle null below if status is required
+            MaritalStatus maritalStatus = row.getEnum(MaritalStatus.class, 4, null);
+            if (maritalStatus == null) { // Example: Decide if MaritalStatus can be null or requires a default
+                System.err.println("Warning: User row for NRIC " + nric
+                        + " has invalid/missing marital status. Setting default or skipping.");
+                return null; // Skip if marital status is required
+            }
+            String passwordHash = row.get(1);
+            String name = row.get(2);
+            int age = row.getInt(3, 0);
 
-                User user;
-                switch (role) {
-                    case APPLICANT:
-                        user = new Applicant(nric, passwordHash, name, age, maritalStatus);
-                        break;
-                    case HDB_OFFICER:
-                        user = new HDBOfficer(nric, passwordHash, name, age, maritalStatus);
-                        break;
-                    case HDB_MANAGER:
-                        user = new HDBManager(nric, passwordHash, name, age, maritalStatus);
-                        break;
-                    default:
-                        // Should not happen if role parsing worked, but good defensive check
-                        System.err.println("Unsupported user role encountered during instantiation: " + role);
-                        continue;
-                }
-                userMap.put(nric, user);
-            } catch (Exception e) {
-                System.err.println("Error parsing user row: " + String.join(",", row) + " - " + e.getMessage());
+            switch (role) {
+                case APPLICANT:
+                    return new Applicant(nric, passwordHash, name, age, maritalStatus);
+                case HDB_OFFICER:
+                    return new HDBOfficer(nric, passwordHash, name, age, maritalStatus);
+                case HDB_MANAGER:
+                    return new HDBManager(nric, passwordHash, name, age, maritalStatus);
+                default:
+                    // Should not happen if role parsing worked, but good defensive check
+                    System.err.println("Unsupported user role encountered during instantiation: " + role);
+                    return null;
             }
+        } catch (Exception e) {
+            System.err.println("Error parsing user row: " + row + " - " + e.getMessage());
+            return null;
         }
-        return userMap;
     }
 
     /**
-     * Serializes User objects into CSV format for persistence.
+     * Serializes a User object into CSV format for persistence.
      * <p>
-     * This method converts each User object into a string array suitable for
-     * writing to a CSV file. It handles null values safely and ensures all
-     * user types (Applicant, HDBOfficer, HDBManager) are properly serialized.
+     * This method converts the User into a string array suitable for writing to
+     * a CSV file. It handles null values safely and ensures all user types
+     * (Applicant, HDBOfficer, HDBManager) are properly serialized.
      * </p>
      * 
-     * @param usersToSerialize Map of User objects to serialize, keyed by NRIC
-     * @return List of string arrays representing users in CSV format
+     * @param user The User to serialize
+     * @return String array representing the user in CSV format
      */
-    private List<String[]> serializeUsers(Map<String, User> usersToSerialize) {
-        List<String[]> serializedData = new ArrayList<>();
-        if (usersToSerialize == null)
-            return serializedData;
+    private String[] toUserRow(User user) {
+        // Defensive checks for null fields before calling toString()
+        String nric = user.getNric() != null ? user.getNric() : "";
+        String hash = user.getPasswordHash() != null ? user.getPasswordHash() : "";
+        String name = user.getName() != null ? user.getName() : "";
+        String age = String.valueOf(user.getAge()); // Age is primitive, no null check needed
+        String maritalStatus = user.getMaritalStatus() != null ? user.getMaritalStatus().toString() : "";
+        String role = user.getRole() != null ? user.getRole().name() : "";
 
-        for (User user : usersToSerialize.values()) {
-            // Defensive checks for null fields before calling toString()
-            String nric = user.getNric() != null ? user.getNric() : "";
-            String hash = user.getPasswordHash() != null ? user.getPasswordHash() : "";
-            String name = user.getName() != null ? user.getName() : "";
-            String age = String.valueOf(user.getAge()); // Age is primitive, no null check needed
-            String maritalStatus = user.getMaritalStatus() != null ? user.getMaritalStatus().toString() : "";
-            String role = user.getRole() != null ? user.getRole().name() : "";
+        return new String[] { nric, hash, name, age, maritalStatus, role };
+    }
 
-            serializedData.add(new String[] { nric, hash, name, age, maritalStatus, role });
+    /**
+     * Writes a user's fields to a binary snapshot.
+     * 
+     * @param user The user to write
+     * @param out  The snapshot output
+     * @throws IOException If writing fails
+     */
+    private void writeUserSnapshot(User user, SnapshotOutput out) throws IOException {
+        out.writeString(user.getNric());
+        out.writeString(user.getPasswordHash());
+        out.writeString(user.getName());
+        out.writeInt(user.getAge());
+        out.writeEnum(user.getMaritalStatus());
+        out.writeEnum(user.getRole());
+    }
+
+    /**
+     * Reads a user written by {@link #writeUserSnapshot(User, SnapshotOutput)}.
+     * 
+     * @param in The snapshot input
+     * @return The user, of the subtype matching its stored role
+     * @throws IOException If the data is invalid
+     */
+    private User readUserSnapshot(SnapshotInput in) throws IOException {
+        String nric = in.readString();
+        String passwordHash = in.readString();
+        String name = in.readString();
+        int age = in.readInt();
+        MaritalStatus maritalStatus = in.readEnum(MaritalStatus.class);
+        UserRole role = in.readEnum(UserRole.class);
+        if (role == null) {
+            throw new IOException("Missing role for user " + nric);
+        }
+        switch (role) {
+            case APPLICANT:
+                return new Applicant(nric, passwordHash, name, age, maritalStatus);
+            case HDB_OFFICER:
+                return new HDBOfficer(nric, passwordHash, name, age, maritalStatus);
+            case HDB_MANAGER:
+                return new HDBManager(nric, passwordHash, name, age, maritalStatus);
+            default:
+                throw new IOException("Unsupported user role: " + role);
         }
-        return serializedData;
     }
 }
@@ -1,11 +1,22 @@
 package com.ntu.fdae.group1.bto.repository.util;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
 import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
+import com.ntu.fdae.group1.bto.utils.CsvRecord;
 import com.ntu.fdae.group1.bto.utils.FileUtil;
 
 /**
@@ -15,41 +26,208 @@ import com.ntu.fdae.group1.bto.utils.FileUtil;
  * providing a reusable component for repository implementations. It handles
  * serialization and deserialization between entity objects and CSV format.
  * </p>
- * 
+ * <p>
+ * Conversion is streamed one row at a time: while loading, each scanned row is
+ * passed to the repository's {@link RowMapper} and the resulting entity is put
+ * straight into the map under the key returned by the key extractor; while
+ * saving, each entity is turned into a row by the {@link RowSerializer} just
+ * before it is written. Neither direction builds an intermediate list of rows.
+ * </p>
+ * <p>
+ * In {@link WriteMode#JOURNALED} mode, single-entity saves and deletes are
+ * appended to a journal file ({@code <csv>.journal}) instead of rewriting the
+ * CSV. The journal records the size and modification time of the CSV it was
+ * started against, so a journal left behind by an interrupted compaction is
+ * recognised as stale and ignored. The first column of every row is assumed to
+ * hold the entity identifier.
+ * </p>
+ * <p>
+ * With a {@link Durability} other than SYNC, single-entity mutations are
+ * staged in memory and written by the {@link WriteBehindFlusher}. Repeated
+ * saves of the same entity within one commit window collapse into a single
+ * journal record (or a single rewrite in full-rewrite mode). Staging and
+ * waiting are separate steps: a repository stages a mutation while it holds
+ * its own lock and calls {@link #awaitDurable(long)} after releasing it, so
+ * that concurrent saves can join the same group commit.
+ * </p>
+ * <p>
+ * Saves that belong to a {@link UnitOfWork} are first recorded, together
+ * with the unit's saves in other repositories, in the shared
+ * {@link TransactionLog}, and then written here. Loading replays any records
+ * the log still holds for this file, so a unit interrupted by a crash is
+ * completed in every file or in none. If writing a unit's records here
+ * fails, they are owed: every later write to this file first writes them and
+ * removes the file from the unit's log record, and is refused while that
+ * fails, so the log never replays a unit over newer saves.
+ * </p>
+ * <p>
+ * Repositories may also {@link #enableSnapshots enable binary snapshots}. A
+ * snapshot ({@code <csv>.snap}) is written by {@link #checkpoint(Map)} and is
+ * loaded instead of the CSV as long as no journal exists and the CSV (and any
+ * dependent files) are unchanged since it was written. The CSV remains the
+ * authoritative interchange format.
+ * </p>
+ *
  * @param <ID> The type of identifier used for entities
  * @param <T>  The entity type this helper manages
  */
 public class CsvRepositoryHelper<ID, T> {
+    /**
+     * Number of journal records after which the journal is folded back into the
+     * CSV file.
+     */
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 500;
+
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final String JOURNAL_MARKER = "#base";
+    private static final String OP_PUT = "+";
+    private static final String OP_DELETE = "-";
+
     private final String filePath;
+    private final String journalPath;
     private final String[] csvHeader;
-    private final Function<List<String[]>, Map<ID, T>> deserializer;
-    private final Function<Map<ID, T>, List<String[]>> serializer;
+    private final RowMapper<T> rowMapper;
+    private final Function<T, ID> keyExtractor;
+    private final RowSerializer<T> rowSerializer;
+    private final WriteMode writeMode;
+    private volatile Durability durability = Durability.configured();
+    private int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private final String snapshotPath;
+    private SnapshotCodec<ID, T> snapshotCodec = null;
+    private List<String> snapshotSources = Collections.emptyList();
+
+    /**
+     * Serializes all physical writes. Always acquired before {@code this}.
+     */
+    private final Object ioLock = new Object();
 
     /**
-     * Constructs a new CsvRepositoryHelper with the specified parameters.
+     * A committed unit of work whose records have not reached this file.
+     */
+    private static final class OwedUnit<ID, T> {
+        final TransactionLog log;
+        final String id;
+        final List<String[]> records;
+        final Map<ID, T> entities;
+
+        OwedUnit(TransactionLog log, String id, List<String[]> records, Map<ID, T> entities) {
+            this.log = log;
+            this.id = id;
+            this.records = records;
+            this.entities = entities;
+        }
+    }
+
+    // --- Guarded by 'ioLock' ---
+    private final List<OwedUnit<ID, T>> owedUnits = new ArrayList<>();
+
+    // --- State below is guarded by 'this' ---
+    private int journalRecordCount = 0;
+    private final Map<String, String[]> stagedRecords = new LinkedHashMap<>();
+    private Map<ID, T> stagedSnapshot = null;
+    private boolean flushScheduled = false;
+    private long stagedSeq = 0;
+    private long flushedSeq = 0;
+    // GROUP_COMMIT tickets not yet written, in staging order
+    private final Deque<Long> pendingTickets = new ArrayDeque<>();
+    // Tickets whose write failed, until their waiter collects the failure
+    private final Map<Long, DataAccessException> failedTickets = new HashMap<>();
+
+    /**
+     * Constructs a new CsvRepositoryHelper with the specified parameters, using
+     * {@link WriteMode#FULL_REWRITE}.
      *
-     * @param filePath     The path to the CSV file
-     * @param csvHeader    The header row for the CSV file
-     * @param deserializer Function that takes List&lt;String[]&gt; read from CSV
-     *                     and returns Map&lt;ID, T&gt;
-     * @param serializer   Function that takes the current Map&lt;ID, T&gt; and
-     *                     returns List&lt;String[]&gt; to be written
+     * @param filePath      The path to the CSV file
+     * @param csvHeader     The header row for the CSV file
+     * @param rowMapper     Converts one CSV row to an entity, or null to skip it
+     * @param keyExtractor  Returns the identifier an entity is stored under
+     * @param rowSerializer Converts one entity to a CSV row
      */
     public CsvRepositoryHelper(String filePath, String[] csvHeader,
-            Function<List<String[]>, Map<ID, T>> deserializer,
-            Function<Map<ID, T>, List<String[]>> serializer) {
+            RowMapper<T> rowMapper,
+            Function<T, ID> keyExtractor,
+            RowSerializer<T> rowSerializer) {
+        this(filePath, csvHeader, rowMapper, keyExtractor, rowSerializer, WriteMode.FULL_REWRITE);
+    }
+
+    /**
+     * Constructs a new CsvRepositoryHelper with an explicit write mode.
+     *
+     * @param filePath      The path to the CSV file
+     * @param csvHeader     The header row for the CSV file
+     * @param rowMapper     Converts one CSV row to an entity, or null to skip it
+     * @param keyExtractor  Returns the identifier an entity is stored under
+     * @param rowSerializer Converts one entity to a CSV row
+     * @param writeMode     How single-entity mutations are persisted
+     */
+    public CsvRepositoryHelper(String filePath, String[] csvHeader,
+            RowMapper<T> rowMapper,
+            Function<T, ID> keyExtractor,
+            RowSerializer<T> rowSerializer,
+            WriteMode writeMode) {
         this.filePath = filePath;
+        this.journalPath = filePath + JOURNAL_SUFFIX;
+        this.snapshotPath = filePath + SNAPSHOT_SUFFIX;
         this.csvHeader = csvHeader;
-        this.deserializer = deserializer;
-        this.serializer = serializer;
+        this.rowMapper = rowMapper;
+        this.keyExtractor = keyExtractor;
+        this.rowSerializer = rowSerializer;
+        this.writeMode = writeMode;
+    }
+
+    /**
+     * Sets the number of journal records after which the journal is compacted
+     * into the CSV file. Has no effect in {@link WriteMode#FULL_REWRITE} mode.
+     *
+     * @param compactionThreshold Number of records, must be positive
+     */
+    public void setCompactionThreshold(int compactionThreshold) {
+        if (compactionThreshold <= 0) {
+            throw new IllegalArgumentException("Compaction threshold must be positive.");
+        }
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Sets how durable single-entity mutations must be before the save methods
+     * return. Defaults to {@link Durability#configured()}.
+     *
+     * @param durability The durability setting
+     */
+    public void setDurability(Durability durability) {
+        this.durability = durability != null ? durability : Durability.SYNC;
+    }
+
+    /**
+     * Enables binary snapshots for this repository.
+     *
+     * @param codec          Encodes and decodes the repository's entities
+     * @param dependentFiles Other files whose contents the snapshot also
+     *                       mirrors
+     */
+    public void enableSnapshots(SnapshotCodec<ID, T> codec, String... dependentFiles) {
+        List<String> sources = new ArrayList<>();
+        sources.add(filePath);
+        sources.addAll(Arrays.asList(dependentFiles));
+        synchronized (ioLock) {
+            this.snapshotCodec = codec;
+            this.snapshotSources = Collections.unmodifiableList(sources);
+        }
     }
 
     /**
      * Loads data from the CSV file and converts it to a map of entities.
      * <p>
      * This method reads the CSV file at the configured path, skips the header row,
-     * and uses the provided deserializer function to convert the CSV data into
-     * entity objects.
+     * and passes each row to the row mapper as soon as it is scanned. In
+     * journaled mode any valid journal is applied as well: rows the journal
+     * overrides are skipped while streaming the CSV, the journal's own rows are
+     * mapped afterwards, and the result is written back to the CSV. Records of
+     * committed units of work still held by the {@link TransactionLog} are
+     * applied after the journal in the same way. Staged
+     * mutations are flushed before reading. If snapshots are enabled and a
+     * current snapshot exists, it is decoded instead and the CSV is not parsed.
      * </p>
      *
      * @return A map of entities, keyed by their identifiers
@@ -57,36 +235,575 @@ public class CsvRepositoryHelper<ID, T> {
      *                             CSV file
      */
     public Map<ID, T> loadData() throws DataAccessException {
+        flush();
         try {
-            List<String[]> rawData = FileUtil.readCsvLines(filePath);
-            return deserializer.apply(rawData);
+            synchronized (ioLock) {
+                List<CsvRecord> committed = TransactionLog.getDefault().recoveredRecords(filePath);
+                if (snapshotCodec != null && !Files.exists(Paths.get(journalPath)) && committed.isEmpty()) {
+                    Map<ID, T> snapshot = SnapshotFile.read(snapshotPath, snapshotSources, snapshotCodec);
+                    if (snapshot != null) {
+                        return snapshot;
+                    }
+                }
+                Map<String, CsvRecord> journal = writeMode == WriteMode.JOURNALED ? readJournal() : null;
+                if (!committed.isEmpty()) {
+                    // Units of work may not have reached this file before a crash; replay them last
+                    if (journal == null) {
+                        journal = new LinkedHashMap<>();
+                    }
+                    for (CsvRecord record : committed) {
+                        journal.remove(record.get(1));
+                        journal.put(record.get(1), record);
+                    }
+                }
+                Map<ID, T> entities = new HashMap<>();
+                Map<String, CsvRecord> overrides = journal;
+                FileUtil.readCsvRecords(filePath, row -> {
+                    if (overrides == null || !overrides.containsKey(row.get(0))) {
+                        addEntity(row, entities);
+                    }
+                });
+                if (journal != null) {
+                    for (CsvRecord record : journal.values()) {
+                        if (OP_PUT.equals(record.get(0))) {
+                            addEntity(record.tail(1), entities);
+                        }
+                    }
+                    // Fold the journal into the CSV so it is not replayed again
+                    writeFull(entities);
+                }
+                if (!committed.isEmpty()) {
+                    TransactionLog.getDefault().markRecovered(filePath);
+                }
+                owedUnits.clear(); // Replayed from the log above
+                return entities;
+            }
         } catch (IOException e) {
             throw new DataAccessException("Error loading data from file: " + filePath + " - " + e.getMessage(), e);
+        } catch (DataAccessException e) {
+            throw e;
         } catch (Exception e) { // Catch potential deserialization errors too
             throw new DataAccessException("Error deserializing data from file: " + filePath + " - " + e.getMessage(),
                     e);
         }
     }
 
+    /**
+     * Maps one row and adds the entity, unless the mapper rejected the row.
+     */
+    private void addEntity(CsvRecord row, Map<ID, T> entities) {
+        T entity = rowMapper.map(row);
+        if (entity != null) {
+            entities.put(keyExtractor.apply(entity), entity);
+        }
+    }
+
     /**
      * Saves a map of entities to the CSV file.
      * <p>
-     * This method uses the provided serializer function to convert entity objects
-     * into CSV data, then writes that data to the configured file path with the
-     * specified header.
+     * This method uses the provided row serializer to convert entity objects
+     * into CSV rows, writing them to the configured file path with the
+     * specified header. Any journal and any staged mutations are discarded
+     * afterwards, since the CSV now holds the complete state. This write is
+     * always synchronous, whatever the configured durability.
      * </p>
      *
      * @param entities The map of entities to save
      * @throws DataAccessException If an error occurs while writing to the CSV file
      */
     public void saveData(Map<ID, T> entities) throws DataAccessException {
+        synchronized (ioLock) {
+            writeSuperseding(entities);
+        }
+    }
+
+    /**
+     * Writes the complete state to the CSV file and, if snapshots are enabled,
+     * to a binary snapshot that the next {@link #loadData()} can use instead.
+     * <p>
+     * Like {@link #saveData(Map)}, this folds in any journal and supersedes any
+     * staged mutations. It is intended for clean shutdown and for explicit
+     * checkpoints.
+     * </p>
+     *
+     * @param entities The complete entity map
+     * @throws DataAccessException If writing the CSV or the snapshot fails
+     */
+    public void checkpoint(Map<ID, T> entities) throws DataAccessException {
+        synchronized (ioLock) {
+            writeSuperseding(entities);
+            if (snapshotCodec != null) {
+                try {
+                    SnapshotFile.write(snapshotPath, snapshotSources, entities, snapshotCodec);
+                } catch (IOException e) {
+                    throw new DataAccessException("Error writing snapshot: " + snapshotPath + " - " + e.getMessage(),
+                            e);
+                } catch (RuntimeException e) {
+                    throw new DataAccessException("Error encoding snapshot: " + snapshotPath + " - " + e.getMessage(),
+                            e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Persists a single inserted or updated entity, or stages it for the
+     * background flusher.
+     * <p>
+     * In journaled mode only the entity's row is recorded in the journal; the
+     * full map is written when the journal reaches the compaction threshold. In
+     * full-rewrite mode the whole map is rewritten. With a SYNC durability the
+     * write happens before this method returns; otherwise it is left to the
+     * background flusher, and the caller passes the returned ticket to
+     * {@link #awaitDurable(long)} once it has released its own locks.
+     * </p>
+     *
+     * @param id       The identifier of the saved entity
+     * @param entity   The saved entity
+     * @param entities An immutable snapshot of the repository's complete entity
+     *                 map, already containing the entity, such as
+     *                 {@link IndexedStore#snapshot()}; it may be kept until
+     *                 the background flush
+     * @return The ticket to wait for
+     * @throws DataAccessException If an error occurs while writing
+     */
+    public long stageEntity(ID id, T entity, Map<ID, T> entities) throws DataAccessException {
+        List<String[]> records = null;
+        if (writeMode == WriteMode.JOURNALED) {
+            String[] row;
+            try {
+                row = rowSerializer.toRow(entity);
+            } catch (Exception e) {
+                throw new DataAccessException("Error serializing entity " + id + " for file: " + filePath + " - "
+                        + e.getMessage(), e);
+            }
+            records = Collections.singletonList(prepend(OP_PUT, row));
+        }
+        return persist(records, entities);
+    }
+
+    /**
+     * Persists the removal of a single entity, or stages it for the
+     * background flusher.
+     * <p>
+     * In journaled mode a delete record is added to the journal. In full-rewrite
+     * mode the whole map is rewritten. As with
+     * {@link #stageEntity(Object, Object, Map)}, the caller waits for the
+     * returned ticket with {@link #awaitDurable(long)}.
+     * </p>
+     *
+     * @param id       The identifier of the removed entity
+     * @param entities An immutable snapshot of the repository's complete entity
+     *                 map, with the entity already removed
+     * @return The ticket to wait for
+     * @throws DataAccessException If an error occurs while writing
+     */
+    public long stageDelete(ID id, Map<ID, T> entities) throws DataAccessException {
+        List<String[]> records = null;
+        if (writeMode == WriteMode.JOURNALED) {
+            records = Collections.singletonList(new String[] { OP_DELETE, String.valueOf(id) });
+        }
+        return persist(records, entities);
+    }
+
+    /**
+     * Waits until staged mutations are as durable as the durability requires:
+     * under GROUP_COMMIT, until the flush containing the ticket's mutation has
+     * been written. Returns at once for other durabilities. The caller must not
+     * hold a lock that other savers of this repository need, or no other save
+     * could join the group commit.
+     *
+     * @param ticket A ticket returned by {@link #stageEntity} or
+     *               {@link #stageDelete}, or 0
+     * @throws DataAccessException If the write containing the mutation failed
+     */
+    public void awaitDurable(long ticket) throws DataAccessException {
+        if (ticket > 0) {
+            awaitFlushed(ticket);
+        }
+    }
+
+    /**
+     * @return The path of the CSV file this helper manages
+     */
+    String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Serializes an entity into the journal record that saves it, for a
+     * {@link UnitOfWork}.
+     *
+     * @param entity The entity
+     * @return The record: the put operation followed by the entity's row
+     * @throws DataAccessException If the entity cannot be serialized
+     */
+    String[] putRecord(T entity) throws DataAccessException {
         try {
-            List<String[]> serializedData = serializer.apply(entities);
-            FileUtil.writeCsvLines(filePath, serializedData, csvHeader);
+            return prepend(OP_PUT, rowSerializer.toRow(entity));
+        } catch (Exception e) {
+            throw new DataAccessException("Error serializing entity " + keyExtractor.apply(entity) + " for file: "
+                    + filePath + " - " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the records of a committed {@link UnitOfWork} to this file,
+     * synchronously and after any staged mutations, so they are ordered after
+     * every earlier save. The records are already safe in the
+     * {@link TransactionLog}, so the configured durability does not apply.
+     *
+     * @param records  Records created by {@link #putRecord(Object)}
+     * @param entities The repository's complete entity map, already containing
+     *                 the saved entities
+     * @throws DataAccessException If an error occurs while writing
+     */
+    void applyCommitted(List<String[]> records, Map<ID, T> entities) throws DataAccessException {
+        flush();
+        synchronized (ioLock) {
+            writeOwedUnits();
+            if (writeMode == WriteMode.JOURNALED) {
+                appendToJournal(records, entities);
+            } else {
+                writeFull(entities);
+            }
+        }
+    }
+
+    /**
+     * Records that the records of a committed {@link UnitOfWork} could not be
+     * written to this file. They are written before the next write to the
+     * file, which fails instead if they still cannot be.
+     *
+     * @param log      The log holding the unit
+     * @param unitId   The unit's identifier in the log
+     * @param records  The unit's records for this file
+     * @param entities The repository's complete entity map, already containing
+     *                 the saved entities
+     */
+    void deferCommitted(TransactionLog log, String unitId, List<String[]> records, Map<ID, T> entities) {
+        synchronized (ioLock) {
+            owedUnits.add(new OwedUnit<>(log, unitId, records, entities));
+        }
+    }
+
+    /**
+     * Writes or stages a single-entity mutation according to the durability.
+     *
+     * @param records  Journal records for the mutation, or null in full-rewrite
+     *                 mode
+     * @param entities An immutable snapshot of the complete entity map
+     * @return The sequence number to await under GROUP_COMMIT, otherwise 0
+     */
+    private long persist(List<String[]> records, Map<ID, T> entities) {
+        Durability current = durability;
+        if (current.getLevel() == Durability.Level.SYNC) {
+            synchronized (ioLock) {
+                writeOwedUnits();
+                if (records == null) {
+                    writeFull(entities);
+                } else {
+                    appendToJournal(records, entities);
+                }
+            }
+            return 0;
+        }
+
+        long seq;
+        synchronized (this) {
+            if (stagedSnapshot != null || records == null
+                    || journalRecordCount + stagedRecords.size() + records.size() >= compactionThreshold) {
+                // A full write is due anyway: remember the latest snapshot instead of records
+                stagedRecords.clear();
+                stagedSnapshot = entities;
+            } else {
+                for (String[] record : records) {
+                    stagedRecords.put(record[1], record);
+                }
+            }
+            seq = ++stagedSeq;
+            if (current.getLevel() == Durability.Level.GROUP_COMMIT) {
+                pendingTickets.addLast(seq);
+            }
+            if (!flushScheduled) {
+                flushScheduled = true;
+                WriteBehindFlusher.schedule(this, current.getWindowMillis());
+            }
+        }
+        return current.getLevel() == Durability.Level.GROUP_COMMIT ? seq : 0;
+    }
+
+    /**
+     * Writes every staged mutation in one physical write. Called by the
+     * {@link WriteBehindFlusher}, either from its thread or at shutdown.
+     *
+     * @return true if the staged mutations (if any) were written successfully
+     */
+    boolean flush() {
+        synchronized (ioLock) {
+            List<String[]> records;
+            Map<ID, T> snapshot;
+            long coveredSeq;
+            synchronized (this) {
+                flushScheduled = false;
+                if (flushedSeq >= stagedSeq) {
+                    return true;
+                }
+                records = new ArrayList<>(stagedRecords.values());
+                snapshot = stagedSnapshot;
+                stagedRecords.clear();
+                stagedSnapshot = null;
+                coveredSeq = stagedSeq;
+            }
+            try {
+                writeOwedUnits();
+                if (snapshot != null) {
+                    writeFull(snapshot);
+                } else if (!records.isEmpty()) {
+                    appendToJournal(records, null);
+                }
+                markFlushed(coveredSeq);
+                return true;
+            } catch (DataAccessException e) {
+                System.err.println("Background flush failed for " + filePath + ": " + e.getMessage());
+                markFailed(coveredSeq, e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Blocks until the mutation with the given sequence number has been written.
+     *
+     * @param seq The sequence number assigned when the mutation was staged
+     * @throws DataAccessException If the write containing the mutation failed
+     */
+    private synchronized void awaitFlushed(long seq) {
+        boolean interrupted = false;
+        while (flushedSeq < seq) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        DataAccessException failure = failedTickets.remove(seq);
+        if (failure != null) {
+            throw new DataAccessException("Group commit failed for file: " + filePath, failure);
+        }
+    }
+
+    /**
+     * Writes the complete state, superseding any staged mutations, and wakes
+     * their waiters with the outcome. Caller must hold {@code ioLock}.
+     *
+     * @param entities The complete entity map
+     * @throws DataAccessException If the write fails
+     */
+    private void writeSuperseding(Map<ID, T> entities) {
+        long coveredSeq = discardStaged();
+        try {
+            writeFull(entities);
+        } catch (DataAccessException e) {
+            markFailed(coveredSeq, e);
+            throw e;
+        }
+        settleOwedUnits();
+        markFlushed(coveredSeq);
+    }
+
+    /**
+     * Drops all staged mutations, e.g. because a full write or reload supersedes
+     * them.
+     *
+     * @return The sequence number up to which staged mutations are now covered
+     */
+    private synchronized long discardStaged() {
+        stagedRecords.clear();
+        stagedSnapshot = null;
+        return stagedSeq;
+    }
+
+    private synchronized void markFlushed(long seq) {
+        while (!pendingTickets.isEmpty() && pendingTickets.peekFirst() <= seq) {
+            pendingTickets.removeFirst();
+        }
+        flushedSeq = Math.max(flushedSeq, seq);
+        notifyAll();
+    }
+
+    /**
+     * Records that the write covering every mutation up to a sequence number
+     * failed. Each pending ticket in that range keeps the failure until its
+     * waiter collects it, so a later failure cannot hide an earlier one.
+     */
+    private synchronized void markFailed(long seq, DataAccessException failure) {
+        while (!pendingTickets.isEmpty() && pendingTickets.peekFirst() <= seq) {
+            failedTickets.put(pendingTickets.removeFirst(), failure);
+        }
+        markFlushed(seq);
+    }
+
+    /**
+     * Writes the records of units of work that are owed to this file, so that
+     * they are ordered before the write about to happen, and removes this file
+     * from their log records. Caller must hold {@code ioLock}.
+     *
+     * @throws DataAccessException If they still cannot be written; the write
+     *                             about to happen must then not happen either
+     */
+    private void writeOwedUnits() {
+        if (owedUnits.isEmpty()) {
+            return;
+        }
+        if (writeMode == WriteMode.JOURNALED) {
+            List<String[]> records = new ArrayList<>();
+            for (OwedUnit<ID, T> unit : owedUnits) {
+                records.addAll(unit.records);
+            }
+            appendToJournal(records, null);
+        } else {
+            writeFull(owedUnits.get(owedUnits.size() - 1).entities);
+        }
+        settleOwedUnits();
+    }
+
+    /**
+     * Removes this file from the log records of the owed units, once the file
+     * holds their records. Caller must hold {@code ioLock}.
+     */
+    private void settleOwedUnits() {
+        while (!owedUnits.isEmpty()) {
+            OwedUnit<ID, T> unit = owedUnits.get(0);
+            unit.log.complete(unit.id, Collections.singleton(filePath));
+            owedUnits.remove(0);
+        }
+    }
+
+    /**
+     * Rewrites the CSV file from the given map and discards the journal and any
+     * snapshot, which no longer match. Caller must hold {@code ioLock}.
+     *
+     * @param entities The complete entity map
+     */
+    private void writeFull(Map<ID, T> entities) {
+        try {
+            if (snapshotCodec != null) {
+                Files.deleteIfExists(Paths.get(snapshotPath));
+            }
+            FileUtil.writeCsvLines(filePath, entities.values(), rowSerializer::toRow, csvHeader);
+            discardJournal();
         } catch (IOException e) {
             throw new DataAccessException("Error saving data to file: " + filePath + " - " + e.getMessage(), e);
+        } catch (DataAccessException e) {
+            throw e;
         } catch (Exception e) { // Catch potential serialization errors
             throw new DataAccessException("Error serializing data for file: " + filePath + " - " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Appends records to the journal and compacts it once it is large enough.
+     * Caller must hold {@code ioLock}.
+     *
+     * @param records  Journal records to append
+     * @param entities The complete entity map, used if compaction is due, or
+     *                 null to defer compaction to a later write
+     */
+    private void appendToJournal(List<String[]> records, Map<ID, T> entities) {
+        try {
+            FileUtil.appendCsvLines(journalPath, records, baseStamp());
+        } catch (IOException e) {
+            throw new DataAccessException("Error appending to journal: " + journalPath + " - " + e.getMessage(), e);
+        }
+        int count;
+        synchronized (this) {
+            journalRecordCount += records.size();
+            count = journalRecordCount;
+        }
+        if (entities != null && count >= compactionThreshold) {
+            writeFull(entities);
+        }
+    }
+
+    /**
+     * Reads the journal, keeping only the last record for each entity.
+     * <p>
+     * A journal whose recorded base stamp does not match the current CSV was
+     * written against an older CSV and has already been folded in, so it is
+     * dropped. A journal without any valid records is removed as well.
+     * </p>
+     *
+     * @return The last put or delete record for each journaled identifier, in
+     *         journal order, or null if there is nothing to replay
+     * @throws IOException If the journal cannot be read or removed
+     */
+    private Map<String, CsvRecord> readJournal() throws IOException {
+        synchronized (this) {
+            journalRecordCount = 0;
+        }
+        if (!Files.exists(Paths.get(journalPath))) {
+            return null;
+        }
+        String[] header = FileUtil.readCsvHeader(journalPath);
+        if (header == null || !Arrays.equals(header, baseStamp())) {
+            System.err.println("Warning: Discarding stale journal " + journalPath);
+            discardJournal();
+            return null;
+        }
+
+        Map<String, CsvRecord> recordsById = new LinkedHashMap<>();
+        for (CsvRecord record : FileUtil.readCsvRecords(journalPath)) {
+            String op = record.get(0);
+            if ((OP_PUT.equals(op) || OP_DELETE.equals(op)) && record.size() > 1) {
+                String id = record.get(1);
+                recordsById.remove(id); // keep journal order of the latest record
+                recordsById.put(id, record);
+            } else {
+                System.err.println("Warning: Skipping malformed journal record in " + journalPath);
+            }
+        }
+        if (recordsById.isEmpty()) {
+            discardJournal();
+            return null;
+        }
+        return recordsById;
+    }
+
+    /**
+     * Describes the current CSV file so a journal can be tied to it.
+     *
+     * @return The journal header row: marker, file size and last-modified time
+     * @throws IOException If the file attributes cannot be read
+     */
+    private String[] baseStamp() throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            return new String[] { JOURNAL_MARKER, "-1", "-1" };
+        }
+        return new String[] { JOURNAL_MARKER, String.valueOf(Files.size(path)),
+                String.valueOf(Files.getLastModifiedTime(path).toMillis()) };
+    }
+
+    /**
+     * Deletes the journal file, if any, and resets the record count.
+     *
+     * @throws IOException If the file cannot be deleted
+     */
+    private void discardJournal() throws IOException {
+        Files.deleteIfExists(Paths.get(journalPath));
+        synchronized (this) {
+            journalRecordCount = 0;
+        }
+    }
+
+    private static String[] prepend(String first, String[] row) {
+        String[] record = new String[row.length + 1];
+        record[0] = first;
+        System.arraycopy(row, 0, record, 1, row.length);
+        return record;
+    }
+}
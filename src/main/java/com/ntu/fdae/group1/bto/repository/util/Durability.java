@@ -0,0 +1,139 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+/**
+ * Describes when a repository mutation is considered durable.
+ * <p>
+ * Three levels are supported:
+ * <ul>
+ * <li>{@link Level#SYNC} - the caller writes to disk before returning</li>
+ * <li>{@link Level#GROUP_COMMIT} - mutations made within the commit window are
+ * merged into one physical write by the background flusher; the caller blocks
+ * until the write containing its mutation has completed</li>
+ * <li>{@link Level#ASYNC} - like group commit, but the caller returns
+ * immediately and the write happens in the background</li>
+ * </ul>
+ * </p>
+ * <p>
+ * The process-wide default is read from the {@code bto.durability} system
+ * property, e.g. {@code -Dbto.durability=GROUP_COMMIT:20} or
+ * {@code -Dbto.durability=ASYNC}. When unset, {@link #SYNC} is used.
+ * </p>
+ */
+public final class Durability {
+
+    /**
+     * The durability levels.
+     */
+    public enum Level {
+        SYNC, GROUP_COMMIT, ASYNC
+    }
+
+    /**
+     * Name of the system property holding the default durability.
+     */
+    public static final String PROPERTY_NAME = "bto.durability";
+
+    /**
+     * Commit window used when a level is given without an explicit window.
+     */
+    public static final long DEFAULT_WINDOW_MILLIS = 10;
+
+    /**
+     * Synchronous durability, the original behaviour.
+     */
+    public static final Durability SYNC = new Durability(Level.SYNC, 0);
+
+    /**
+     * Asynchronous durability with the default commit window.
+     */
+    public static final Durability ASYNC = new Durability(Level.ASYNC, DEFAULT_WINDOW_MILLIS);
+
+    private final Level level;
+    private final long windowMillis;
+
+    private Durability(Level level, long windowMillis) {
+        this.level = level;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Creates a group-commit durability with the given commit window.
+     *
+     * @param windowMillis How long the flusher collects mutations before writing,
+     *                     in milliseconds
+     * @return The durability setting
+     */
+    public static Durability groupCommit(long windowMillis) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("Commit window cannot be negative.");
+        }
+        return new Durability(Level.GROUP_COMMIT, windowMillis);
+    }
+
+    /**
+     * Creates an asynchronous durability with the given commit window.
+     *
+     * @param windowMillis How long the flusher collects mutations before writing,
+     *                     in milliseconds
+     * @return The durability setting
+     */
+    public static Durability async(long windowMillis) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("Commit window cannot be negative.");
+        }
+        return new Durability(Level.ASYNC, windowMillis);
+    }
+
+    /**
+     * Parses a durability from text of the form {@code LEVEL} or
+     * {@code LEVEL:windowMillis} (case-insensitive).
+     *
+     * @param value The text to parse
+     * @return The parsed durability, or {@link #SYNC} if the value is empty or
+     *         invalid
+     */
+    public static Durability parse(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return SYNC;
+        }
+        String[] parts = value.trim().split(":", 2);
+        try {
+            Level level = Level.valueOf(parts[0].trim().toUpperCase());
+            long window = parts.length > 1 ? Long.parseLong(parts[1].trim()) : DEFAULT_WINDOW_MILLIS;
+            switch (level) {
+                case GROUP_COMMIT:
+                    return groupCommit(window);
+                case ASYNC:
+                    return async(window);
+                default:
+                    return SYNC;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Warning: Invalid durability '" + value + "'. Using SYNC.");
+            return SYNC;
+        }
+    }
+
+    /**
+     * Returns the durability configured through the {@code bto.durability}
+     * system property.
+     *
+     * @return The configured durability, {@link #SYNC} by default
+     */
+    public static Durability configured() {
+        return parse(System.getProperty(PROPERTY_NAME));
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    @Override
+    public String toString() {
+        return level == Level.SYNC ? level.name() : level.name() + "(" + windowMillis + "ms)";
+    }
+}
@@ -0,0 +1,1634 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import com.ntu.fdae.group1.bto.exceptions.DuplicateEntityException;
+import com.ntu.fdae.group1.bto.exceptions.VersionConflictException;
+
+/**
+ * In-memory entity map with secondary indexes, shared by the repositories.
+ * <p>
+ * A repository creates a store with the function that extracts an entity's
+ * identifier, then declares its indexes once, each with a key extractor:
+ * </p>
+ *
+ * <pre>
+ * store = new IndexedStore&lt;&gt;(Booking::getBookingId);
+ * byApplicationId = store.addUniqueIndex("applicationId", Booking::getApplicationId);
+ * byProjectId = store.addMultiIndex("projectId", Booking::getProjectId);
+ * </pre>
+ * <p>
+ * Every index is maintained on {@link #put}, {@link #remove} and
+ * {@link #replaceAll}, and answers lookups in constant time (or in time
+ * proportional to the result, for multi-valued indexes). An entity whose key
+ * extractor returns null is simply left out of that index. Composite keys are
+ * built with {@link #key(Object...)}. Interval indexes answer range-overlap
+ * queries within a partition, such as the projects of one manager whose
+ * application periods overlap given dates. Text indexes answer ranked
+ * keyword searches. Sorted indexes return entities in key order, such as
+ * the cheapest flats of a type. Bitmap indexes combine several yes/no
+ * attributes with bitwise operations.
+ * </p>
+ * <p>
+ * The store records the keys each entity was indexed under. Entities are
+ * mutable, so when an entity that was changed in place is put again, it is
+ * removed from the buckets of its old keys before being added under the new
+ * ones. Until then, lookups reflect the entity as it was last put.
+ * </p>
+ * <p>
+ * The store is safe for concurrent readers and writers and guards its
+ * indexes with one {@link StampedLock}. Writes hold it exclusively, so an
+ * entity and all its index entries change together. The entity map itself is
+ * a {@link PersistentMap}: each write publishes a new version of it, so
+ * lookups by identifier and {@link #snapshot() snapshots} of all entities
+ * never lock. Unique index lookups read a concurrent map and never lock
+ * either; such a lookup made while a write is in progress may already see
+ * the entity being written. All other index lookups, scans and counts hold
+ * the read lock, so they can run side by side but always see a state between
+ * two writes; the indexes' own maps are plain collections and are never read
+ * without it. The lock is not reentrant:
+ * key extractors and filters must not call back into the same store.
+ * </p>
+ * <p>
+ * A store can be made {@link #enableVersioning versioned}. Each entity then
+ * carries the number of times it has been saved, and {@link #putIfCurrent}
+ * only replaces the stored entity if the new one was based on it.
+ * </p>
+ *
+ * @param <ID> The type of identifier used for entities
+ * @param <T>  The entity type
+ */
+public final class IndexedStore<ID, T> {
+
+    /**
+     * A secondary index over the store's entities.
+     *
+     * @param <K> The index key type
+     * @param <T> The entity type
+     */
+    public abstract static class Index<K, T> {
+        private final String name;
+        private final Function<? super T, ? extends K> keyExtractor;
+        final StampedLock lock;
+
+        Index(String name, Function<? super T, ? extends K> keyExtractor, StampedLock lock) {
+            this.name = name;
+            this.keyExtractor = keyExtractor;
+            this.lock = lock;
+        }
+
+        /**
+         * @return The name given when the index was declared
+         */
+        public String getName() {
+            return name;
+        }
+
+        K keyOf(T entity) {
+            return keyExtractor.apply(entity);
+        }
+
+        /**
+         * Runs a lookup on this index holding the store's read lock.
+         */
+        <R> R lockedRead(Supplier<R> lookup) {
+            return IndexedStore.lockedRead(lock, lookup);
+        }
+
+        abstract void add(K key, Object id, T entity);
+
+        abstract void remove(K key, Object id);
+
+        abstract boolean contains(K key, Object id, T entity);
+
+        abstract int entryCount();
+
+        abstract void clear();
+
+        /**
+         * @return The number of entries that adding an entity under this key
+         *         creates
+         */
+        int entriesFor(K key) {
+            return 1;
+        }
+    }
+
+    /**
+     * An index in which each key identifies at most one entity.
+     * <p>
+     * If two entities share a key, the one put last is indexed and a warning
+     * is printed; {@link IndexedStore#verify()} reports the conflict. An index
+     * declared with {@link IndexedStore#addUniqueConstraint} instead makes
+     * {@link IndexedStore#put} reject the second entity.
+     * </p>
+     *
+     * @param <K> The index key type
+     * @param <T> The entity type
+     */
+    public static final class UniqueIndex<K, T> extends Index<K, T> {
+        private final Map<K, Object> ids = new HashMap<>();
+        /** Written under the write lock, read without any lock. */
+        private final Map<K, T> entities = new ConcurrentHashMap<>();
+        private final boolean enforced;
+
+        UniqueIndex(String name, Function<? super T, ? extends K> keyExtractor, StampedLock lock,
+                boolean enforced) {
+            super(name, keyExtractor, lock);
+            this.enforced = enforced;
+        }
+
+        /**
+         * @return true if {@link IndexedStore#put} rejects duplicate keys
+         */
+        public boolean isEnforced() {
+            return enforced;
+        }
+
+        /**
+         * Throws if an entity other than the given one already has the key that
+         * the given entity would be indexed under.
+         */
+        void checkAvailable(Object id, T entity) {
+            K key = keyOf(entity);
+            if (key == null) {
+                return;
+            }
+            Object owner = ids.get(key);
+            if (owner != null && !owner.equals(id)) {
+                throw new DuplicateEntityException(getName(), key, owner);
+            }
+        }
+
+        /**
+         * Looks up the entity with the given key.
+         *
+         * @param key The key
+         * @return The entity, or null if none has this key
+         */
+        public T get(K key) {
+            return entities.get(key);
+        }
+
+        /**
+         * @param key The key
+         * @return true if an entity has this key
+         */
+        public boolean containsKey(K key) {
+            return entities.containsKey(key);
+        }
+
+        @Override
+        void add(K key, Object id, T entity) {
+            Object previousId = ids.put(key, id);
+            if (previousId != null && !previousId.equals(id)) {
+                System.err.println("Warning: Duplicate key " + key + " in index " + getName() + ": " + id
+                        + " replaces " + previousId);
+            }
+            entities.put(key, entity);
+        }
+
+        @Override
+        void remove(K key, Object id) {
+            if (id.equals(ids.get(key))) {
+                ids.remove(key);
+                entities.remove(key);
+            }
+        }
+
+        @Override
+        boolean contains(K key, Object id, T entity) {
+            return id.equals(ids.get(key)) && entities.get(key) == entity;
+        }
+
+        @Override
+        int entryCount() {
+            return entities.size();
+        }
+
+        @Override
+        void clear() {
+            ids.clear();
+            entities.clear();
+        }
+    }
+
+    /**
+     * An index in which a key may identify any number of entities.
+     *
+     * @param <K> The index key type
+     * @param <T> The entity type
+     */
+    public static final class MultiIndex<K, T> extends Index<K, T> {
+        private final Map<K, Map<Object, T>> buckets = new HashMap<>();
+
+        MultiIndex(String name, Function<? super T, ? extends K> keyExtractor, StampedLock lock) {
+            super(name, keyExtractor, lock);
+        }
+
+        /**
+         * Looks up all entities with the given key.
+         *
+         * @param key The key
+         * @return A new list of the entities, empty if there are none
+         */
+        public List<T> get(K key) {
+            return lockedRead(() -> {
+                Map<Object, T> bucket = buckets.get(key);
+                return bucket == null ? new ArrayList<>() : new ArrayList<>(bucket.values());
+            });
+        }
+
+        /**
+         * @param key The key
+         * @return The number of entities with this key
+         */
+        public int count(K key) {
+            return lockedRead(() -> {
+                Map<Object, T> bucket = buckets.get(key);
+                return bucket == null ? 0 : bucket.size();
+            });
+        }
+
+        /**
+         * @return A new set of the keys that currently have at least one entity
+         */
+        public Set<K> keys() {
+            return lockedRead(() -> new HashSet<>(buckets.keySet()));
+        }
+
+        @Override
+        void add(K key, Object id, T entity) {
+            buckets.computeIfAbsent(key, k -> new HashMap<>()).put(id, entity);
+        }
+
+        @Override
+        void remove(K key, Object id) {
+            Map<Object, T> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(id);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+
+        @Override
+        boolean contains(K key, Object id, T entity) {
+            Map<Object, T> bucket = buckets.get(key);
+            return bucket != null && bucket.get(id) == entity;
+        }
+
+        @Override
+        int entryCount() {
+            int count = 0;
+            for (Map<Object, T> bucket : buckets.values()) {
+                count += bucket.size();
+            }
+            return count;
+        }
+
+        @Override
+        void clear() {
+            buckets.clear();
+        }
+    }
+
+    /**
+     * The key of an entity in an {@link IntervalIndex}: its partitions and its
+     * interval.
+     *
+     * @param <P> The partition key type
+     * @param <C> The interval bound type
+     */
+    static final class Span<P, C> {
+        final List<P> partitions;
+        final C start;
+        final C end;
+
+        Span(List<P> partitions, C start, C end) {
+            this.partitions = partitions;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Span)) {
+                return false;
+            }
+            Span<?, ?> other = (Span<?, ?>) o;
+            return partitions.equals(other.partitions) && start.equals(other.start) && end.equals(other.end);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(partitions, start, end);
+        }
+
+        @Override
+        public String toString() {
+            return partitions + " [" + start + ", " + end + "]";
+        }
+    }
+
+    /**
+     * An index of closed intervals, such as date ranges, kept in one
+     * {@link IntervalTree} per partition key. An entity may belong to several
+     * partitions, and is then found through each of them.
+     *
+     * @param <P> The partition key type
+     * @param <C> The interval bound type
+     * @param <T> The entity type
+     */
+    public static final class IntervalIndex<P, C extends Comparable<? super C>, T> extends Index<Span<P, C>, T> {
+        private final Map<P, IntervalTree<C, T>> trees = new HashMap<>();
+
+        IntervalIndex(String name, Function<? super T, Span<P, C>> keyExtractor, StampedLock lock) {
+            super(name, keyExtractor, lock);
+        }
+
+        /**
+         * Finds the entities in a partition whose interval shares at least one
+         * point with [from, to].
+         *
+         * @param partition The partition key
+         * @param from      The first point of the range
+         * @param to        The last point of the range
+         * @return A new list of the entities, empty if there are none
+         */
+        public List<T> findOverlapping(P partition, C from, C to) {
+            return lockedRead(() -> {
+                List<T> result = new ArrayList<>();
+                IntervalTree<C, T> tree = trees.get(partition);
+                if (tree != null) {
+                    tree.findOverlapping(from, to, result);
+                }
+                return result;
+            });
+        }
+
+        /**
+         * Returns whether any entity in a partition, other than the one with
+         * the given identifier, has an interval sharing a point with [from, to].
+         *
+         * @param partition The partition key
+         * @param from      The first point of the range
+         * @param to        The last point of the range
+         * @param excludeId The identifier of an entity to ignore, or null
+         * @return true if an overlapping entity exists
+         */
+        public boolean overlapsAny(P partition, C from, C to, Object excludeId) {
+            return lockedRead(() -> {
+                IntervalTree<C, T> tree = trees.get(partition);
+                return tree != null && tree.overlapsAny(from, to, excludeId);
+            });
+        }
+
+        @Override
+        void add(Span<P, C> key, Object id, T entity) {
+            for (P partition : key.partitions) {
+                trees.computeIfAbsent(partition, p -> new IntervalTree<>()).add(key.start, key.end, id, entity);
+            }
+        }
+
+        @Override
+        void remove(Span<P, C> key, Object id) {
+            for (P partition : key.partitions) {
+                IntervalTree<C, T> tree = trees.get(partition);
+                if (tree != null) {
+                    tree.remove(key.start, id);
+                    if (tree.isEmpty()) {
+                        trees.remove(partition);
+                    }
+                }
+            }
+        }
+
+        @Override
+        boolean contains(Span<P, C> key, Object id, T entity) {
+            for (P partition : key.partitions) {
+                IntervalTree<C, T> tree = trees.get(partition);
+                if (tree == null || tree.get(key.start, id) != entity) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int entryCount() {
+            int count = 0;
+            for (IntervalTree<C, T> tree : trees.values()) {
+                count += tree.size();
+            }
+            return count;
+        }
+
+        @Override
+        void clear() {
+            trees.clear();
+        }
+
+        @Override
+        int entriesFor(Span<P, C> key) {
+            return key.partitions.size();
+        }
+    }
+
+    /**
+     * An inverted index from words to the entities whose text contains them,
+     * for ranked keyword search.
+     * <p>
+     * Text is split into lower-case words of letters and digits. A search
+     * returns the entities containing every word of the query, ranked by a
+     * BM25-style score: words that are rare across the index, and words that
+     * occur several times in an entity, weigh more.
+     * </p>
+     * <p>
+     * Only the posting list of the rarest query word is walked; the other
+     * words are probed by identifier. Each posting list is also grouped by
+     * how often the word occurs, most often first, so once enough results
+     * have been found the walk stops as soon as no remaining entity could
+     * score higher. Among entities with equal scores, those found first are
+     * kept.
+     * </p>
+     *
+     * @param <T> The entity type
+     */
+    public static final class TextIndex<T> extends Index<Map<String, Integer>, T> {
+        /**
+         * BM25 term frequency saturation.
+         */
+        private static final double K1 = 1.2;
+
+        private static final class Posting<T> {
+            final T entity;
+            final int frequency;
+
+            Posting(T entity, int frequency) {
+                this.entity = entity;
+                this.frequency = frequency;
+            }
+        }
+
+        /**
+         * The entities containing one word, by identifier and grouped by the
+         * number of occurrences.
+         */
+        private static final class PostingList<T> {
+            final Map<Object, Posting<T>> byId = new HashMap<>();
+            final TreeMap<Integer, Map<Object, T>> byFrequency = new TreeMap<>(Collections.reverseOrder());
+
+            void put(Object id, Posting<T> posting) {
+                byId.put(id, posting);
+                byFrequency.computeIfAbsent(posting.frequency, f -> new HashMap<>()).put(id, posting.entity);
+            }
+
+            void remove(Object id) {
+                Posting<T> posting = byId.remove(id);
+                if (posting != null) {
+                    Map<Object, T> bucket = byFrequency.get(posting.frequency);
+                    bucket.remove(id);
+                    if (bucket.isEmpty()) {
+                        byFrequency.remove(posting.frequency);
+                    }
+                }
+            }
+
+            int maxFrequency() {
+                return byFrequency.firstKey();
+            }
+        }
+
+        private static final class Hit<T> {
+            final T entity;
+            final double score;
+            final int order;
+
+            Hit(T entity, double score, int order) {
+                this.entity = entity;
+                this.score = score;
+                this.order = order;
+            }
+        }
+
+        private final Map<String, PostingList<T>> postings = new HashMap<>();
+        private int documents;
+
+        TextIndex(String name, Function<? super T, Map<String, Integer>> keyExtractor, StampedLock lock) {
+            super(name, keyExtractor, lock);
+        }
+
+        /**
+         * Splits text into the words the index is built from.
+         *
+         * @param text The text; may be null
+         * @return The lower-case words, in order, with repeats
+         */
+        public static List<String> tokenize(String text) {
+            List<String> words = new ArrayList<>();
+            if (text == null) {
+                return words;
+            }
+            int start = -1;
+            for (int i = 0; i <= text.length(); i++) {
+                boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+                if (wordChar && start < 0) {
+                    start = i;
+                } else if (!wordChar && start >= 0) {
+                    words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                    start = -1;
+                }
+            }
+            return words;
+        }
+
+        /**
+         * Counts the words of a text.
+         *
+         * @param text The text; may be null
+         * @return The number of times each word occurs, or null if there are no
+         *         words
+         */
+        static Map<String, Integer> termFrequencies(String text) {
+            List<String> words = tokenize(text);
+            if (words.isEmpty()) {
+                return null;
+            }
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String word : words) {
+                frequencies.merge(word, 1, Integer::sum);
+            }
+            return frequencies;
+        }
+
+        /**
+         * Finds the entities containing every word of a query, best match
+         * first.
+         *
+         * @param query  The search text
+         * @param filter Further condition an entity must meet, or null
+         * @param limit  The maximum number of results
+         * @return A new list of at most limit entities; empty if the query has
+         *         no words or nothing matches
+         */
+        public List<T> search(String query, Predicate<? super T> filter, int limit) {
+            Set<String> words = new LinkedHashSet<>(tokenize(query));
+            if (words.isEmpty() || limit <= 0) {
+                return new ArrayList<>();
+            }
+            PriorityQueue<Hit<T>> best = new PriorityQueue<>(TextIndex::compareHits);
+            long stamp = lock.readLock();
+            try {
+                List<PostingList<T>> lists = new ArrayList<>();
+                for (String word : words) {
+                    PostingList<T> list = postings.get(word);
+                    if (list == null) {
+                        return new ArrayList<>();
+                    }
+                    lists.add(list);
+                }
+                lists.sort((a, b) -> Integer.compare(a.byId.size(), b.byId.size()));
+                double[] weights = new double[lists.size()];
+                double otherWordsBound = 0;
+                for (int i = 0; i < weights.length; i++) {
+                    int df = lists.get(i).byId.size();
+                    weights[i] = Math.log(1 + (documents - df + 0.5) / (df + 0.5));
+                    if (i > 0) {
+                        otherWordsBound += weights[i] * saturate(lists.get(i).maxFrequency());
+                    }
+                }
+
+                int found = 0;
+                buckets: for (Map.Entry<Integer, Map<Object, T>> bucket : lists.get(0).byFrequency.entrySet()) {
+                    double firstWordScore = weights[0] * saturate(bucket.getKey());
+                    double bound = firstWordScore + otherWordsBound;
+                    candidates: for (Map.Entry<Object, T> candidate : bucket.getValue().entrySet()) {
+                        Object id = candidate.getKey();
+                        double score = firstWordScore;
+                        for (int i = 1; i < weights.length; i++) {
+                            Posting<T> posting = lists.get(i).byId.get(id);
+                            if (posting == null) {
+                                continue candidates; // Lacks one of the words
+                            }
+                            score += weights[i] * saturate(posting.frequency);
+                        }
+                        T entity = candidate.getValue();
+                        if (filter != null && !filter.test(entity)) {
+                            continue;
+                        }
+                        Hit<T> hit = new Hit<>(entity, score, found++);
+                        if (best.size() < limit) {
+                            best.add(hit);
+                        } else if (compareHits(hit, best.peek()) > 0) {
+                            best.poll();
+                            best.add(hit);
+                        }
+                        if (best.size() == limit && bound <= best.peek().score) {
+                            break buckets; // Nothing further down the list can make the cut
+                        }
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            List<T> result = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                result.add(best.poll().entity);
+            }
+            Collections.reverse(result);
+            return result;
+        }
+
+        /**
+         * BM25 term frequency component, which grows with the number of
+         * occurrences but levels off.
+         */
+        private static double saturate(int frequency) {
+            return frequency * (K1 + 1) / (frequency + K1);
+        }
+
+        /**
+         * Orders hits from worst to best: by score, then earliest found.
+         */
+        private static int compareHits(Hit<?> a, Hit<?> b) {
+            int byScore = Double.compare(a.score, b.score);
+            return byScore != 0 ? byScore : Integer.compare(b.order, a.order);
+        }
+
+        @Override
+        void add(Map<String, Integer> key, Object id, T entity) {
+            for (Map.Entry<String, Integer> term : key.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), k -> new PostingList<>()).put(id,
+                        new Posting<>(entity, term.getValue()));
+            }
+            documents++;
+        }
+
+        @Override
+        void remove(Map<String, Integer> key, Object id) {
+            for (String word : key.keySet()) {
+                PostingList<T> list = postings.get(word);
+                if (list != null) {
+                    list.remove(id);
+                    if (list.byId.isEmpty()) {
+                        postings.remove(word);
+                    }
+                }
+            }
+            documents--;
+        }
+
+        @Override
+        boolean contains(Map<String, Integer> key, Object id, T entity) {
+            for (Map.Entry<String, Integer> term : key.entrySet()) {
+                PostingList<T> list = postings.get(term.getKey());
+                Posting<T> posting = list == null ? null : list.byId.get(id);
+                if (posting == null || posting.entity != entity || posting.frequency != term.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int entryCount() {
+            int count = 0;
+            for (PostingList<T> list : postings.values()) {
+                count += list.byId.size();
+            }
+            return count;
+        }
+
+        @Override
+        void clear() {
+            postings.clear();
+            documents = 0;
+        }
+
+        @Override
+        int entriesFor(Map<String, Integer> key) {
+            return key.size();
+        }
+    }
+
+    /**
+     * The key of an entity in a {@link SortedIndex}: its partition and its
+     * sort key.
+     *
+     * @param <P> The partition key type
+     * @param <S> The sort key type
+     */
+    static final class Ranked<P, S> {
+        final P partition;
+        final S sortKey;
+
+        Ranked(P partition, S sortKey) {
+            this.partition = partition;
+            this.sortKey = sortKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Ranked)) {
+                return false;
+            }
+            Ranked<?, ?> other = (Ranked<?, ?>) o;
+            return partition.equals(other.partition) && sortKey.equals(other.sortKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(partition, sortKey);
+        }
+
+        @Override
+        public String toString() {
+            return partition + " @ " + sortKey;
+        }
+    }
+
+    /**
+     * An index that keeps the entities of each partition ordered by a sort
+     * key, such as flats of one type ordered by price.
+     * <p>
+     * Each partition is a {@link TreeMap} from sort key to the entities with
+     * that key, in the order they were indexed. The first k entities of a
+     * partition, or those with keys in a range, are found in O(log n + k)
+     * time.
+     * </p>
+     *
+     * @param <P> The partition key type
+     * @param <S> The sort key type
+     * @param <T> The entity type
+     */
+    public static final class SortedIndex<P, S extends Comparable<? super S>, T> extends Index<Ranked<P, S>, T> {
+        private final Map<P, TreeMap<S, Map<Object, T>>> partitions = new HashMap<>();
+        private int size;
+
+        SortedIndex(String name, Function<? super T, Ranked<P, S>> keyExtractor, StampedLock lock) {
+            super(name, keyExtractor, lock);
+        }
+
+        /**
+         * Returns the entities of a partition whose sort keys lie in a range,
+         * in ascending order of sort key.
+         * <p>
+         * The filter is called with the store's read lock held, so it must not
+         * call back into the same store: the lock is not reentrant, and a
+         * writer waiting for it would block the nested read.
+         * </p>
+         *
+         * @param partition The partition key
+         * @param from      The smallest sort key to include, or null for no
+         *                  lower bound
+         * @param to        The largest sort key to include, or null for no
+         *                  upper bound
+         * @param filter    Further condition on the entities, or null for none
+         * @param limit     The maximum number of entities to return, or 0 for no
+         *                  limit
+         * @return A new list of the entities
+         */
+        public List<T> range(P partition, S from, S to, Predicate<? super T> filter, int limit) {
+            List<T> result = new ArrayList<>();
+            long stamp = lock.readLock();
+            try {
+                TreeMap<S, Map<Object, T>> tree = partitions.get(partition);
+                if (tree == null) {
+                    return result;
+                }
+                NavigableMap<S, Map<Object, T>> view = tree;
+                if (from != null && to != null) {
+                    if (from.compareTo(to) > 0) {
+                        return result;
+                    }
+                    view = tree.subMap(from, true, to, true);
+                } else if (from != null) {
+                    view = tree.tailMap(from, true);
+                } else if (to != null) {
+                    view = tree.headMap(to, true);
+                }
+                for (Map<Object, T> bucket : view.values()) {
+                    for (T entity : bucket.values()) {
+                        if (filter == null || filter.test(entity)) {
+                            result.add(entity);
+                            if (limit > 0 && result.size() >= limit) {
+                                return result;
+                            }
+                        }
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            return result;
+        }
+
+        /**
+         * @param partition The partition key
+         * @return The number of entities in the partition
+         */
+        public int count(P partition) {
+            return lockedRead(() -> {
+                TreeMap<S, Map<Object, T>> tree = partitions.get(partition);
+                if (tree == null) {
+                    return 0;
+                }
+                int count = 0;
+                for (Map<Object, T> bucket : tree.values()) {
+                    count += bucket.size();
+                }
+                return count;
+            });
+        }
+
+        @Override
+        void add(Ranked<P, S> key, Object id, T entity) {
+            partitions.computeIfAbsent(key.partition, p -> new TreeMap<>())
+                    .computeIfAbsent(key.sortKey, k -> new LinkedHashMap<>()).put(id, entity);
+            size++;
+        }
+
+        @Override
+        void remove(Ranked<P, S> key, Object id) {
+            TreeMap<S, Map<Object, T>> tree = partitions.get(key.partition);
+            if (tree == null) {
+                return;
+            }
+            Map<Object, T> bucket = tree.get(key.sortKey);
+            if (bucket != null && bucket.remove(id) != null) {
+                size--;
+                if (bucket.isEmpty()) {
+                    tree.remove(key.sortKey);
+                    if (tree.isEmpty()) {
+                        partitions.remove(key.partition);
+                    }
+                }
+            }
+        }
+
+        @Override
+        boolean contains(Ranked<P, S> key, Object id, T entity) {
+            TreeMap<S, Map<Object, T>> tree = partitions.get(key.partition);
+            Map<Object, T> bucket = tree == null ? null : tree.get(key.sortKey);
+            return bucket != null && bucket.get(id) == entity;
+        }
+
+        @Override
+        int entryCount() {
+            return size;
+        }
+
+        @Override
+        void clear() {
+            partitions.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * An index of labels, each kept as a bitset over entity ordinals.
+     * <p>
+     * Every stored entity is given a small ordinal (the lowest free one) and
+     * may carry any number of labels, such as "visible" or "offers two-room
+     * flats". Each label has a {@link BitSet} with a bit set for every entity
+     * that carries it, so entities carrying several labels are found with a
+     * few word-wide AND operations instead of a scan, and are then
+     * materialized in ordinal order.
+     * </p>
+     *
+     * @param <K> The label type
+     * @param <T> The entity type
+     */
+    public static final class BitmapIndex<K, T> extends Index<Set<K>, T> {
+        private final Map<K, BitSet> bitmaps = new HashMap<>();
+        private final Map<Object, Integer> ordinals = new HashMap<>();
+        private final List<T> byOrdinal = new ArrayList<>();
+        private final BitSet used = new BitSet();
+
+        BitmapIndex(String name, Function<? super T, Set<K>> keyExtractor, StampedLock lock) {
+            super(name, keyExtractor, lock);
+        }
+
+        /**
+         * Returns the entities that carry every label of one collection and at
+         * least one label of another. The bitsets are combined and the result
+         * materialized under one read lock: ordinals are reused, so a bitset
+         * computed under one lock may name different entities under the next.
+         *
+         * @param allOf Labels every entity must carry, combined with AND; with
+         *              none, every indexed entity qualifies
+         * @param anyOf Labels of which an entity must carry at least one,
+         *              combined with OR, or null for no such condition
+         * @return A new list of the matching entities, in ordinal order
+         */
+        public List<T> select(Collection<? extends K> allOf, Collection<? extends K> anyOf) {
+            return lockedRead(() -> {
+                BitSet bits = combine(allOf, anyOf);
+                List<T> result = new ArrayList<>(bits.cardinality());
+                for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                    result.add(byOrdinal.get(i));
+                }
+                return result;
+            });
+        }
+
+        /**
+         * Counts the entities {@link #select} would return.
+         *
+         * @param allOf Labels every entity must carry, combined with AND
+         * @param anyOf Labels of which an entity must carry at least one, or
+         *              null for no such condition
+         * @return The number of matching entities
+         */
+        public int count(Collection<? extends K> allOf, Collection<? extends K> anyOf) {
+            return lockedRead(() -> combine(allOf, anyOf).cardinality());
+        }
+
+        /**
+         * @param label The label
+         * @return The number of entities carrying the label
+         */
+        public int cardinality(K label) {
+            return lockedRead(() -> {
+                BitSet bits = bitmaps.get(label);
+                return bits == null ? 0 : bits.cardinality();
+            });
+        }
+
+        /**
+         * Combines the bitsets of the given labels. Called with the read lock
+         * held.
+         */
+        private BitSet combine(Collection<? extends K> allOf, Collection<? extends K> anyOf) {
+            BitSet result = (BitSet) used.clone();
+            for (K label : allOf) {
+                BitSet bits = bitmaps.get(label);
+                if (bits == null) {
+                    return new BitSet();
+                }
+                result.and(bits);
+            }
+            if (anyOf != null) {
+                BitSet any = new BitSet();
+                for (K label : anyOf) {
+                    BitSet bits = bitmaps.get(label);
+                    if (bits != null) {
+                        any.or(bits);
+                    }
+                }
+                result.and(any);
+            }
+            return result;
+        }
+
+        @Override
+        void add(Set<K> labels, Object id, T entity) {
+            int ordinal = used.nextClearBit(0);
+            used.set(ordinal);
+            ordinals.put(id, ordinal);
+            while (byOrdinal.size() <= ordinal) {
+                byOrdinal.add(null);
+            }
+            byOrdinal.set(ordinal, entity);
+            for (K label : labels) {
+                bitmaps.computeIfAbsent(label, k -> new BitSet()).set(ordinal);
+            }
+        }
+
+        @Override
+        void remove(Set<K> labels, Object id) {
+            Integer ordinal = ordinals.remove(id);
+            if (ordinal == null) {
+                return;
+            }
+            used.clear(ordinal);
+            byOrdinal.set(ordinal, null);
+            for (K label : labels) {
+                BitSet bits = bitmaps.get(label);
+                if (bits != null) {
+                    bits.clear(ordinal);
+                    if (bits.isEmpty()) {
+                        bitmaps.remove(label);
+                    }
+                }
+            }
+        }
+
+        @Override
+        boolean contains(Set<K> labels, Object id, T entity) {
+            Integer ordinal = ordinals.get(id);
+            if (ordinal == null || byOrdinal.get(ordinal) != entity) {
+                return false;
+            }
+            for (K label : labels) {
+                BitSet bits = bitmaps.get(label);
+                if (bits == null || !bits.get(ordinal)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int entryCount() {
+            return ordinals.size();
+        }
+
+        @Override
+        void clear() {
+            bitmaps.clear();
+            ordinals.clear();
+            byOrdinal.clear();
+            used.clear();
+        }
+    }
+
+    private final Function<? super T, ? extends ID> idExtractor;
+    private final StampedLock lock = new StampedLock();
+    private final List<Index<?, T>> indexes = new ArrayList<>();
+    /** The current version of the entity map, replaced (never changed) by writes. */
+    private volatile PersistentMap<ID, T> entities = PersistentMap.empty();
+    private Map<ID, Object[]> indexedKeys = new HashMap<>();
+    private ToIntFunction<? super T> versionGetter = null;
+    private ObjIntConsumer<? super T> versionSetter = null;
+
+    /**
+     * Creates an empty store.
+     *
+     * @param idExtractor Returns the identifier an entity is stored under
+     */
+    public IndexedStore(Function<? super T, ? extends ID> idExtractor) {
+        this.idExtractor = idExtractor;
+    }
+
+    /**
+     * Builds a composite index key. Keys built from equal parts are equal.
+     *
+     * @param parts The key components, in a fixed order
+     * @return The composite key
+     */
+    public static List<Object> key(Object... parts) {
+        return Arrays.asList(parts);
+    }
+
+    /**
+     * Makes the store versioned, for optimistic concurrency control. Must be
+     * called before any entity is stored.
+     *
+     * @param versionGetter Returns the number of times an entity has been
+     *                      saved
+     * @param versionSetter Sets that number
+     */
+    public void enableVersioning(ToIntFunction<? super T> versionGetter, ObjIntConsumer<? super T> versionSetter) {
+        this.versionGetter = versionGetter;
+        this.versionSetter = versionSetter;
+    }
+
+    /**
+     * Declares an index in which each key identifies at most one entity.
+     * Indexes must be declared before any entity is stored.
+     *
+     * @param name         A name used in warnings and verification reports
+     * @param keyExtractor Returns an entity's key, or null to leave it out
+     * @param <K>          The index key type
+     * @return The index, for lookups
+     */
+    public <K> UniqueIndex<K, T> addUniqueIndex(String name,
+            Function<? super T, ? extends K> keyExtractor) {
+        return register(new UniqueIndex<>(name, keyExtractor, lock, false));
+    }
+
+    /**
+     * Declares a unique index that {@link #put} enforces: putting an entity
+     * whose key already belongs to another entity throws
+     * {@link DuplicateEntityException} and leaves the store unchanged. The
+     * check and the insert happen under the store's lock, so two threads
+     * cannot both claim a key. {@link #replaceAll} does not enforce the
+     * constraint, so data loaded from disk is never rejected; conflicts there
+     * are reported as for {@link #addUniqueIndex}. Indexes must be declared
+     * before any entity is stored.
+     *
+     * @param name         A name used in error messages and verification
+     *                     reports
+     * @param keyExtractor Returns an entity's key, or null to leave it out
+     * @param <K>          The index key type
+     * @return The index, for lookups
+     */
+    public <K> UniqueIndex<K, T> addUniqueConstraint(String name,
+            Function<? super T, ? extends K> keyExtractor) {
+        return register(new UniqueIndex<>(name, keyExtractor, lock, true));
+    }
+
+    /**
+     * Declares an index in which a key may identify any number of entities.
+     * Indexes must be declared before any entity is stored.
+     *
+     * @param name         A name used in verification reports
+     * @param keyExtractor Returns an entity's key, or null to leave it out
+     * @param <K>          The index key type
+     * @return The index, for lookups
+     */
+    public <K> MultiIndex<K, T> addMultiIndex(String name,
+            Function<? super T, ? extends K> keyExtractor) {
+        return register(new MultiIndex<>(name, keyExtractor, lock));
+    }
+
+    /**
+     * Declares an interval index, partitioned by one or more keys per entity.
+     * An entity without partitions or without both bounds, or whose interval
+     * ends before it starts, is left out of the index. Indexes must be
+     * declared before any entity is stored.
+     *
+     * @param name                A name used in verification reports
+     * @param partitionsExtractor Returns the partitions an entity belongs to
+     * @param startExtractor      Returns the first point of an entity's interval
+     * @param endExtractor        Returns the last point of an entity's interval
+     * @param <P>                 The partition key type
+     * @param <C>                 The interval bound type
+     * @return The index, for lookups
+     */
+    public <P, C extends Comparable<? super C>> IntervalIndex<P, C, T> addIntervalIndex(String name,
+            Function<? super T, ? extends Collection<? extends P>> partitionsExtractor,
+            Function<? super T, ? extends C> startExtractor, Function<? super T, ? extends C> endExtractor) {
+        Function<T, Span<P, C>> keyExtractor = entity -> {
+            C start = startExtractor.apply(entity);
+            C end = endExtractor.apply(entity);
+            Collection<? extends P> partitions = partitionsExtractor.apply(entity);
+            if (start == null || end == null || end.compareTo(start) < 0 || partitions == null) {
+                return null;
+            }
+            Set<P> distinct = new LinkedHashSet<>(partitions);
+            distinct.remove(null);
+            return distinct.isEmpty() ? null : new Span<>(new ArrayList<>(distinct), start, end);
+        };
+        return register(new IntervalIndex<>(name, keyExtractor, lock));
+    }
+
+    /**
+     * Declares a text index for keyword search. An entity whose text has no
+     * words is left out of the index. Indexes must be declared before any
+     * entity is stored.
+     *
+     * @param name          A name used in verification reports
+     * @param textExtractor Returns the text to index for an entity; may return
+     *                      null
+     * @return The index, for searches
+     */
+    public TextIndex<T> addTextIndex(String name, Function<? super T, String> textExtractor) {
+        return register(new TextIndex<T>(name, entity -> TextIndex.termFrequencies(textExtractor.apply(entity)),
+                lock));
+    }
+
+    /**
+     * Declares a sorted index, partitioned by one key per entity. An entity
+     * whose partition or sort key is null is left out of the index, which
+     * lets an index track only entities in some state, such as flats with
+     * units remaining. Indexes must be declared before any entity is stored.
+     *
+     * @param name               A name used in verification reports
+     * @param partitionExtractor Returns the partition of an entity
+     * @param sortKeyExtractor   Returns the sort key of an entity
+     * @param <P>                The partition key type
+     * @param <S>                The sort key type
+     * @return The index, for lookups
+     */
+    public <P, S extends Comparable<? super S>> SortedIndex<P, S, T> addSortedIndex(String name,
+            Function<? super T, ? extends P> partitionExtractor, Function<? super T, ? extends S> sortKeyExtractor) {
+        Function<T, Ranked<P, S>> keyExtractor = entity -> {
+            P partition = partitionExtractor.apply(entity);
+            S sortKey = sortKeyExtractor.apply(entity);
+            return partition == null || sortKey == null ? null : new Ranked<>(partition, sortKey);
+        };
+        return register(new SortedIndex<>(name, keyExtractor, lock));
+    }
+
+    /**
+     * Declares a bitmap index. Every entity is indexed, under the labels the
+     * extractor returns for it; null labels are ignored. Indexes must be
+     * declared before any entity is stored.
+     *
+     * @param name            A name used in verification reports
+     * @param labelsExtractor Returns the labels an entity carries; may return
+     *                        null or an empty collection
+     * @param <K>             The label type
+     * @return The index, for lookups
+     */
+    public <K> BitmapIndex<K, T> addBitmapIndex(String name,
+            Function<? super T, ? extends Collection<? extends K>> labelsExtractor) {
+        Function<T, Set<K>> keyExtractor = entity -> {
+            Collection<? extends K> labels = labelsExtractor.apply(entity);
+            Set<K> distinct = labels == null ? new LinkedHashSet<>() : new LinkedHashSet<>(labels);
+            distinct.remove(null);
+            return distinct;
+        };
+        return register(new BitmapIndex<>(name, keyExtractor, lock));
+    }
+
+    private <I extends Index<?, T>> I register(I index) {
+        long stamp = lock.writeLock();
+        try {
+            if (!entities.isEmpty()) {
+                throw new IllegalStateException("Indexes must be declared before entities are stored.");
+            }
+            indexes.add(index);
+            return index;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Runs a lookup holding the store's read lock.
+     *
+     * @param lock   The store's lock
+     * @param lookup The lookup
+     * @param <R>    The result type
+     * @return The lookup's result
+     */
+    static <R> R lockedRead(StampedLock lock, Supplier<R> lookup) {
+        long stamp = lock.readLock();
+        try {
+            return lookup.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Looks up an entity by its identifier.
+     *
+     * @param id The identifier
+     * @return The entity, or null if there is none
+     */
+    public T get(ID id) {
+        return entities.get(id);
+    }
+
+    /**
+     * @param id The identifier
+     * @return true if an entity with this identifier is stored
+     */
+    public boolean containsId(ID id) {
+        return entities.containsKey(id);
+    }
+
+    /**
+     * @return The number of stored entities
+     */
+    public int size() {
+        return entities.size();
+    }
+
+    /**
+     * @return A new list of all stored entities
+     */
+    public List<T> values() {
+        return new ArrayList<>(entities.values());
+    }
+
+    /**
+     * @return A new, modifiable copy of the entity map
+     */
+    public Map<ID, T> copy() {
+        return new HashMap<>(entities);
+    }
+
+    /**
+     * Returns the entity map as of the last completed write. This takes
+     * constant time: the map is immutable and shared with the store, whose
+     * writes publish new versions instead of changing it. It can be read,
+     * iterated and kept for as long as the caller likes without locking, and
+     * it never reflects later writes.
+     *
+     * @return The immutable snapshot
+     */
+    public PersistentMap<ID, T> snapshot() {
+        return entities;
+    }
+
+    /**
+     * Stores an entity, replacing any entity with the same identifier, and
+     * re-indexes it under its current keys.
+     *
+     * @param entity The entity
+     * @return The entity previously stored under the same identifier, or null
+     * @throws DuplicateEntityException if the entity's key in a unique
+     *                                  constraint belongs to another entity;
+     *                                  the store is then unchanged
+     */
+    public T put(T entity) {
+        ID id = idExtractor.apply(entity);
+        long stamp = lock.writeLock();
+        try {
+            checkUnique(id, entity);
+            T previous = entities.get(id);
+            unindex(id);
+            index(id, entity);
+            entities = entities.plus(id, entity);
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Stores an entity only if it is based on the stored one, and advances its
+     * version. This is the compare-and-set of a versioned store: the entity's
+     * version must equal that of the entity stored under its identifier (or 0
+     * if there is none). The check, the new version and the store happen as
+     * one step with respect to other threads. In a store that is not
+     * versioned, this is the same as {@link #put}.
+     *
+     * @param entity The entity
+     * @return The entity previously stored under the same identifier, or null
+     * @throws VersionConflictException if the stored entity has a different
+     *                                  version; the store and the entity are
+     *                                  then unchanged
+     * @throws DuplicateEntityException if the entity's key in a unique
+     *                                  constraint belongs to another entity;
+     *                                  the store and the entity are then
+     *                                  unchanged
+     */
+    public T putIfCurrent(T entity) {
+        ID id = idExtractor.apply(entity);
+        long stamp = lock.writeLock();
+        try {
+            checkVersion(id, entity);
+            checkUnique(id, entity);
+            if (versionSetter != null) {
+                versionSetter.accept(entity, versionGetter.applyAsInt(entity) + 1);
+            }
+            T previous = entities.get(id);
+            unindex(id);
+            index(id, entity);
+            entities = entities.plus(id, entity);
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Checks that {@link #putIfCurrent} would accept an entity, without
+     * storing it. The result only holds while no other thread puts entities,
+     * so callers must serialize their writes, as the repositories do.
+     *
+     * @param entity The entity
+     * @throws VersionConflictException if the stored entity has a different
+     *                                  version
+     * @throws DuplicateEntityException if the entity's key in a unique
+     *                                  constraint belongs to another entity
+     */
+    public void checkConstraints(T entity) {
+        ID id = idExtractor.apply(entity);
+        long stamp = lock.readLock();
+        try {
+            checkVersion(id, entity);
+            checkUnique(id, entity);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Advances an entity's version by one, as {@link #putIfCurrent} does, for
+     * callers that serialize the entity before storing it with {@link #put}.
+     *
+     * @param entity The entity
+     * @return The entity's previous version, for {@link #resetVersion}; 0 if
+     *         the store is not versioned
+     */
+    public int advanceVersion(T entity) {
+        if (versionSetter == null) {
+            return 0;
+        }
+        int previous = versionGetter.applyAsInt(entity);
+        versionSetter.accept(entity, previous + 1);
+        return previous;
+    }
+
+    /**
+     * Restores a version returned by {@link #advanceVersion} when the entity
+     * could not be stored after all.
+     *
+     * @param entity  The entity
+     * @param version The version to restore
+     */
+    public void resetVersion(T entity, int version) {
+        if (versionSetter != null) {
+            versionSetter.accept(entity, version);
+        }
+    }
+
+    /**
+     * Checks that an entity is based on the stored entity with its identifier.
+     * Called with the lock held.
+     */
+    private void checkVersion(ID id, T entity) {
+        if (versionGetter == null) {
+            return;
+        }
+        T stored = entities.get(id);
+        int expected = versionGetter.applyAsInt(entity);
+        int actual = stored != null ? versionGetter.applyAsInt(stored) : 0;
+        if (expected != actual) {
+            throw new VersionConflictException(id, expected, actual);
+        }
+    }
+
+    /**
+     * Checks an entity's keys in the enforced unique indexes. Called with the
+     * lock held.
+     */
+    private void checkUnique(ID id, T entity) {
+        for (Index<?, T> index : indexes) {
+            if (index instanceof UniqueIndex && ((UniqueIndex<?, T>) index).isEnforced()) {
+                ((UniqueIndex<?, T>) index).checkAvailable(id, entity);
+            }
+        }
+    }
+
+    /**
+     * Removes an entity and all its index entries.
+     *
+     * @param id The identifier
+     * @return The removed entity, or null if there was none
+     */
+    public T remove(ID id) {
+        long stamp = lock.writeLock();
+        try {
+            T removed = entities.get(id);
+            unindex(id);
+            entities = entities.minus(id);
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces all stored entities and rebuilds every index, as one step with
+     * respect to other threads.
+     *
+     * @param replacement The new entity map; the store keeps an immutable copy
+     */
+    public void replaceAll(Map<ID, T> replacement) {
+        long stamp = lock.writeLock();
+        try {
+            entities = PersistentMap.copyOf(replacement);
+            indexedKeys = new HashMap<>(Math.max(16, replacement.size() * 4 / 3 + 1));
+            for (Index<?, T> index : indexes) {
+                index.clear();
+            }
+            for (Map.Entry<ID, T> entry : replacement.entrySet()) {
+                index(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Re-indexes every stored entity under its current keys. This is needed
+     * when keys depend on something other than the entities themselves, such
+     * as today's date, and that has changed.
+     */
+    public void refresh() {
+        long stamp = lock.writeLock();
+        try {
+            for (Map.Entry<ID, T> entry : entities.entrySet()) {
+                unindex(entry.getKey());
+                index(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Checks that every index agrees with the stored entities.
+     * <p>
+     * Reports entities that are missing from an index, entities changed in
+     * place since they were last put (stale keys), unique keys shared by
+     * several entities, and index entries that do not belong to any stored
+     * entity.
+     * </p>
+     *
+     * @return A description of each inconsistency found; empty if consistent
+     */
+    public List<String> verify() {
+        List<String> problems = new ArrayList<>();
+        long stamp = lock.readLock();
+        try {
+            int[] expectedEntries = new int[indexes.size()];
+            for (Map.Entry<ID, T> entry : entities.entrySet()) {
+                ID id = entry.getKey();
+                T entity = entry.getValue();
+                Object[] keys = indexedKeys.get(id);
+                if (keys == null) {
+                    problems.add(id + " is not indexed");
+                    continue;
+                }
+                for (int i = 0; i < indexes.size(); i++) {
+                    Index<?, T> index = indexes.get(i);
+                    if (!Objects.equals(keys[i], index.keyOf(entity))) {
+                        problems.add(id + " is indexed under stale " + index.getName() + " key " + keys[i]);
+                    }
+                    if (keys[i] != null) {
+                        expectedEntries[i] += entriesFor(index, keys[i]);
+                        if (!containsEntry(index, keys[i], id, entity)) {
+                            problems.add(id + " is missing from the " + index.getName() + " index");
+                        }
+                    }
+                }
+            }
+            if (indexedKeys.size() != entities.size()) {
+                problems.add("Indexes cover " + indexedKeys.size() + " entities, store holds " + entities.size());
+            }
+            for (int i = 0; i < indexes.size(); i++) {
+                Index<?, T> index = indexes.get(i);
+                if (index.entryCount() != expectedEntries[i]) {
+                    problems.add("The " + index.getName() + " index holds " + index.entryCount()
+                            + " entries, expected " + expectedEntries[i]);
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return problems;
+    }
+
+    private void index(ID id, T entity) {
+        Object[] keys = new Object[indexes.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = addEntry(indexes.get(i), id, entity);
+        }
+        indexedKeys.put(id, keys);
+    }
+
+    private void unindex(ID id) {
+        Object[] keys = indexedKeys.remove(id);
+        if (keys == null) {
+            return;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                removeEntry(indexes.get(i), keys[i], id);
+            }
+        }
+    }
+
+    private static <K, T> Object addEntry(Index<K, T> index, Object id, T entity) {
+        K key = index.keyOf(entity);
+        if (key != null) {
+            index.add(key, id, entity);
+        }
+        return key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, T> void removeEntry(Index<K, T> index, Object key, Object id) {
+        index.remove((K) key, id);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, T> int entriesFor(Index<K, T> index, Object key) {
+        return index.entriesFor((K) key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, T> boolean containsEntry(Index<K, T> index, Object key, Object id, T entity) {
+        return index.contains((K) key, id, entity);
+    }
+}
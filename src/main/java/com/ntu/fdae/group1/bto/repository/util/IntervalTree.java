@@ -0,0 +1,306 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of closed intervals [start, end] that can be searched for overlaps.
+ * <p>
+ * The intervals are kept in a balanced (AVL) binary search tree ordered by
+ * start, in which every node also records the greatest end in its subtree.
+ * Intervals with the same start share a node. Adding or removing an interval
+ * takes O(log n) time, and finding the intervals that overlap a range takes
+ * O(log n + k) time for k results, because subtrees whose greatest end lies
+ * before the range, or whose starts lie after it, are skipped.
+ * </p>
+ * <p>
+ * Each interval is stored with an identifier, which must be unique within the
+ * tree, and a value that is returned by searches. The class is not thread
+ * safe; {@link IndexedStore} guards it with the store's lock.
+ * </p>
+ *
+ * @param <C> The type of the interval bounds
+ * @param <V> The type of the values stored with the intervals
+ */
+public final class IntervalTree<C extends Comparable<? super C>, V> {
+
+    private static final class Entry<C, V> {
+        final C end;
+        final V value;
+
+        Entry(C end, V value) {
+            this.end = end;
+            this.value = value;
+        }
+    }
+
+    private static final class Node<C, V> {
+        final C start;
+        final Map<Object, Entry<C, V>> entries = new HashMap<>(2);
+        Node<C, V> left;
+        Node<C, V> right;
+        int height = 1;
+        C maxEnd;
+
+        Node(C start) {
+            this.start = start;
+        }
+    }
+
+    private Node<C, V> root;
+    private int size;
+
+    /**
+     * @return The number of intervals in the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the tree holds no intervals
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds an interval. An interval already stored under the same identifier
+     * and start is replaced.
+     *
+     * @param start The first point of the interval
+     * @param end   The last point of the interval; not before start
+     * @param id    The identifier of the interval
+     * @param value The value returned by searches
+     * @throws IllegalArgumentException if end is before start
+     */
+    public void add(C start, C end, Object id, V value) {
+        if (end.compareTo(start) < 0) {
+            throw new IllegalArgumentException("Interval ends before it starts: [" + start + ", " + end + "]");
+        }
+        root = insert(root, start, id, new Entry<>(end, value));
+    }
+
+    /**
+     * Removes the interval with the given start and identifier.
+     *
+     * @param start The first point of the interval, as it was added
+     * @param id    The identifier of the interval
+     * @return true if the interval was found and removed
+     */
+    public boolean remove(C start, Object id) {
+        int before = size;
+        root = delete(root, start, id);
+        return size < before;
+    }
+
+    /**
+     * Looks up the value of an interval.
+     *
+     * @param start The first point of the interval, as it was added
+     * @param id    The identifier of the interval
+     * @return The value, or null if no such interval is stored
+     */
+    public V get(C start, Object id) {
+        Node<C, V> node = root;
+        while (node != null) {
+            int cmp = start.compareTo(node.start);
+            if (cmp == 0) {
+                Entry<C, V> entry = node.entries.get(id);
+                return entry == null ? null : entry.value;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Removes all intervals.
+     */
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * Finds the intervals that share at least one point with [from, to].
+     *
+     * @param from   The first point of the range
+     * @param to     The last point of the range
+     * @param result The list the values of the overlapping intervals are added to
+     */
+    public void findOverlapping(C from, C to, List<? super V> result) {
+        collect(root, from, to, result);
+    }
+
+    /**
+     * Returns whether any interval shares at least one point with [from, to],
+     * ignoring the interval with the given identifier.
+     *
+     * @param from      The first point of the range
+     * @param to        The last point of the range
+     * @param excludeId The identifier of an interval to ignore, or null
+     * @return true if an overlapping interval exists
+     */
+    public boolean overlapsAny(C from, C to, Object excludeId) {
+        return anyOverlap(root, from, to, excludeId);
+    }
+
+    private void collect(Node<C, V> node, C from, C to, List<? super V> result) {
+        if (node == null || node.maxEnd.compareTo(from) < 0) {
+            return;
+        }
+        collect(node.left, from, to, result);
+        if (node.start.compareTo(to) > 0) {
+            return; // This node and everything to its right start after the range
+        }
+        for (Entry<C, V> entry : node.entries.values()) {
+            if (entry.end.compareTo(from) >= 0) {
+                result.add(entry.value);
+            }
+        }
+        collect(node.right, from, to, result);
+    }
+
+    private boolean anyOverlap(Node<C, V> node, C from, C to, Object excludeId) {
+        if (node == null || node.maxEnd.compareTo(from) < 0) {
+            return false;
+        }
+        if (anyOverlap(node.left, from, to, excludeId)) {
+            return true;
+        }
+        if (node.start.compareTo(to) > 0) {
+            return false;
+        }
+        for (Map.Entry<Object, Entry<C, V>> entry : node.entries.entrySet()) {
+            if (entry.getValue().end.compareTo(from) >= 0 && !entry.getKey().equals(excludeId)) {
+                return true;
+            }
+        }
+        return anyOverlap(node.right, from, to, excludeId);
+    }
+
+    private Node<C, V> insert(Node<C, V> node, C start, Object id, Entry<C, V> entry) {
+        if (node == null) {
+            Node<C, V> created = new Node<>(start);
+            created.entries.put(id, entry);
+            created.maxEnd = entry.end;
+            size++;
+            return created;
+        }
+        int cmp = start.compareTo(node.start);
+        if (cmp < 0) {
+            node.left = insert(node.left, start, id, entry);
+        } else if (cmp > 0) {
+            node.right = insert(node.right, start, id, entry);
+        } else {
+            if (node.entries.put(id, entry) == null) {
+                size++;
+            }
+            update(node);
+            return node;
+        }
+        return rebalance(node);
+    }
+
+    private Node<C, V> delete(Node<C, V> node, C start, Object id) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = start.compareTo(node.start);
+        if (cmp < 0) {
+            node.left = delete(node.left, start, id);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, start, id);
+        } else {
+            if (node.entries.remove(id) == null) {
+                return node;
+            }
+            size--;
+            if (!node.entries.isEmpty()) {
+                update(node);
+                return node;
+            }
+            if (node.left == null || node.right == null) {
+                return node.left != null ? node.left : node.right;
+            }
+            // Replace the emptied node with its in-order successor
+            Node<C, V> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = detachMin(node.right);
+            successor.left = node.left;
+            return rebalance(successor);
+        }
+        return rebalance(node);
+    }
+
+    private Node<C, V> detachMin(Node<C, V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = detachMin(node.left);
+        return rebalance(node);
+    }
+
+    private Node<C, V> rebalance(Node<C, V> node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private Node<C, V> rotateRight(Node<C, V> node) {
+        Node<C, V> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private Node<C, V> rotateLeft(Node<C, V> node) {
+        Node<C, V> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private void update(Node<C, V> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        C max = null;
+        for (Entry<C, V> entry : node.entries.values()) {
+            max = later(max, entry.end);
+        }
+        if (node.left != null) {
+            max = later(max, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            max = later(max, node.right.maxEnd);
+        }
+        node.maxEnd = max;
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <C extends Comparable<? super C>> C later(C a, C b) {
+        return a == null || b.compareTo(a) > 0 ? b : a;
+    }
+}
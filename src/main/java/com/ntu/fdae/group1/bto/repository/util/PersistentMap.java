@@ -0,0 +1,497 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable hash map whose updated versions share structure with the
+ * original, used by {@link IndexedStore} to hand out point-in-time snapshots.
+ * <p>
+ * The map is a hash array mapped trie: each level of the tree consumes five
+ * bits of a key's hash and keeps only the slots that are in use, as a bitmap
+ * plus a packed array. {@link #plus} and {@link #minus} return a new map that
+ * copies only the nodes on the path to the changed key - a handful of small
+ * arrays - and shares everything else with the original, which stays
+ * unchanged. Lookups take a few steps whatever the size of the map.
+ * </p>
+ * <p>
+ * Because no version ever changes, a map can be handed to any number of
+ * readers without copying or locking, and iterating it never fails with a
+ * {@link java.util.ConcurrentModificationException}. The {@link Map} methods
+ * that would modify it throw {@link UnsupportedOperationException}. Keys must
+ * not be null; values may be.
+ * </p>
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public final class PersistentMap<K, V> extends AbstractMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    /** Bitmap levels needed to consume 32 hash bits, plus one collision level. */
+    private static final int MAX_DEPTH = 32 / BITS + 2;
+    private static final Object NOT_FOUND = new Object();
+
+    private static final PersistentMap<Object, Object> EMPTY = new PersistentMap<>(BitmapNode.EMPTY, 0);
+
+    /**
+     * A node of the trie. Its array holds pairs of slots: a key and its value,
+     * or null and a child node.
+     */
+    private abstract static class Node {
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        abstract Object find(int shift, int hash, Object key);
+
+        /**
+         * @return This node if the key already maps to the value, otherwise
+         *         the updated copy; added[0] is set if the key was new
+         */
+        abstract Node put(int shift, int hash, Object key, Object value, boolean[] added);
+
+        /**
+         * @return This node if the key is absent, null if the node is left
+         *         empty, otherwise the updated copy
+         */
+        abstract Node remove(int shift, int hash, Object key);
+    }
+
+    /**
+     * A node whose slots are selected by five bits of the hash.
+     */
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return NOT_FOUND;
+            }
+            int slot = slot(bit);
+            Object storedKey = array[slot];
+            if (storedKey == null) {
+                return ((Node) array[slot + 1]).find(shift + BITS, hash, key);
+            }
+            return key.equals(storedKey) ? array[slot + 1] : NOT_FOUND;
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bit(hash, shift);
+            int slot = slot(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[array.length + 2];
+                System.arraycopy(array, 0, copy, 0, slot);
+                copy[slot] = key;
+                copy[slot + 1] = value;
+                System.arraycopy(array, slot, copy, slot + 2, array.length - slot);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, copy);
+            }
+            Object storedKey = array[slot];
+            Object stored = array[slot + 1];
+            if (storedKey == null) {
+                Node child = ((Node) stored).put(shift + BITS, hash, key, value, added);
+                return child == stored ? this : new BitmapNode(bitmap, with(array, slot + 1, child));
+            }
+            if (key.equals(storedKey)) {
+                return stored == value ? this : new BitmapNode(bitmap, with(array, slot + 1, value));
+            }
+            added[0] = true;
+            Node child = pair(shift + BITS, storedKey, stored, hash, key, value);
+            Object[] copy = with(array, slot + 1, child);
+            copy[slot] = null;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        @Override
+        Node remove(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int slot = slot(bit);
+            Object storedKey = array[slot];
+            if (storedKey == null) {
+                Node child = (Node) array[slot + 1];
+                Node updated = child.remove(shift + BITS, hash, key);
+                if (updated == child) {
+                    return this;
+                }
+                if (updated != null) {
+                    return new BitmapNode(bitmap, with(array, slot + 1, updated));
+                }
+            } else if (!key.equals(storedKey)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            return new BitmapNode(bitmap ^ bit, without(array, slot));
+        }
+
+        private int slot(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    /**
+     * A node holding keys whose hashes are all equal.
+     */
+    private static final class CollisionNode extends Node {
+        final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int slot = indexOf(key);
+            return hash == this.hash && slot >= 0 ? array[slot + 1] : NOT_FOUND;
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Push this node one level down, next to the new key
+                return new BitmapNode(bit(this.hash, shift), new Object[] { null, this })
+                        .put(shift, hash, key, value, added);
+            }
+            int slot = indexOf(key);
+            if (slot >= 0) {
+                return array[slot + 1] == value ? this : new CollisionNode(hash, with(array, slot + 1, value));
+            }
+            Object[] copy = Arrays.copyOf(array, array.length + 2);
+            copy[array.length] = key;
+            copy[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        Node remove(int shift, int hash, Object key) {
+            int slot = hash == this.hash ? indexOf(key) : -1;
+            if (slot < 0) {
+                return this;
+            }
+            return array.length == 2 ? null : new CollisionNode(hash, without(array, slot));
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private final Node root;
+    private final int size;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @param <K> The key type
+     * @param <V> The value type
+     * @return The empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Returns a persistent map with the same entries as the given map. A
+     * persistent map is returned as it is; any other map is copied, building
+     * the trie in one pass rather than one {@link #plus} per entry.
+     *
+     * @param source The map to copy
+     * @param <K>    The key type
+     * @param <V>    The value type
+     * @return The persistent map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> source) {
+        if (source instanceof PersistentMap) {
+            return (PersistentMap<K, V>) source;
+        }
+        int count = source.size();
+        if (count == 0) {
+            return empty();
+        }
+        Object[] keys = new Object[count];
+        Object[] values = new Object[count];
+        int[] hashes = new int[count];
+        int[] order = new int[count];
+        int i = 0;
+        for (Map.Entry<? extends K, ? extends V> entry : source.entrySet()) {
+            keys[i] = Objects.requireNonNull(entry.getKey(), "key");
+            values[i] = entry.getValue();
+            hashes[i] = hash(keys[i]);
+            order[i] = i;
+            i++;
+        }
+        Node root = build(0, keys, values, hashes, order, new int[count], 0, count);
+        return new PersistentMap<>(root, count);
+    }
+
+    /**
+     * Builds the node for the entries order[from..to), which share the hash
+     * bits below {@code shift} and number at least two.
+     */
+    private static Node build(int shift, Object[] keys, Object[] values, int[] hashes, int[] order, int[] scratch,
+            int from, int to) {
+        if (sameHash(hashes, order, from, to)) {
+            Object[] array = new Object[2 * (to - from)];
+            for (int i = from; i < to; i++) {
+                array[2 * (i - from)] = keys[order[i]];
+                array[2 * (i - from) + 1] = values[order[i]];
+            }
+            return new CollisionNode(hashes[order[from]], array);
+        }
+        // Counting sort of the range by the five hash bits of this level
+        int[] starts = new int[MASK + 2];
+        for (int i = from; i < to; i++) {
+            starts[((hashes[order[i]] >>> shift) & MASK) + 1]++;
+        }
+        int bitmap = 0;
+        int slots = 0;
+        for (int b = 0; b <= MASK; b++) {
+            if (starts[b + 1] > 0) {
+                bitmap |= 1 << b;
+                slots++;
+            }
+            starts[b + 1] += starts[b];
+        }
+        int[] next = Arrays.copyOf(starts, starts.length);
+        for (int i = from; i < to; i++) {
+            int entry = order[i];
+            scratch[from + next[(hashes[entry] >>> shift) & MASK]++] = entry;
+        }
+        System.arraycopy(scratch, from, order, from, to - from);
+
+        Object[] array = new Object[2 * slots];
+        int slot = 0;
+        for (int b = 0; b <= MASK; b++) {
+            int start = from + starts[b];
+            int end = from + starts[b + 1];
+            if (end - start == 1) {
+                array[slot] = keys[order[start]];
+                array[slot + 1] = values[order[start]];
+                slot += 2;
+            } else if (end - start > 1) {
+                array[slot + 1] = build(shift + BITS, keys, values, hashes, order, scratch, start, end);
+                slot += 2;
+            }
+        }
+        return new BitmapNode(bitmap, array);
+    }
+
+    private static boolean sameHash(int[] hashes, int[] order, int from, int to) {
+        int first = hashes[order[from]];
+        for (int i = from + 1; i < to; i++) {
+            if (hashes[order[i]] != first) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a map with the given entry added or replaced. This map is not
+     * changed.
+     *
+     * @param key   The key, not null
+     * @param value The value
+     * @return The new map, or this map if the key already maps to the value
+     */
+    public PersistentMap<K, V> plus(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        boolean[] added = new boolean[1];
+        Node updated = root.put(0, hash(key), key, value, added);
+        return updated == root ? this : new PersistentMap<>(updated, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map without the given key. This map is not changed.
+     *
+     * @param key The key
+     * @return The new map, or this map if the key is absent
+     */
+    public PersistentMap<K, V> minus(Object key) {
+        if (key == null) {
+            return this;
+        }
+        Node updated = root.remove(0, hash(key), key);
+        if (updated == root) {
+            return this;
+        }
+        return updated == null ? empty() : new PersistentMap<>(updated, size - 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        Object value = root.find(0, hash(key), key);
+        return value == NOT_FOUND ? null : (V) value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && root.find(0, hash(key), key) != NOT_FOUND;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> entries = entrySet;
+        if (entries == null) {
+            entries = new AbstractSet<Map.Entry<K, V>>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new EntryIterator<>(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    if (!(o instanceof Map.Entry)) {
+                        return false;
+                    }
+                    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+                    Object key = entry.getKey();
+                    return containsKey(key) && Objects.equals(get(key), entry.getValue());
+                }
+            };
+            entrySet = entries;
+        }
+        return entries;
+    }
+
+    /**
+     * Walks the trie depth-first with an explicit stack of node arrays.
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth = 0;
+        private Map.Entry<K, V> next;
+
+        EntryIterator(Node root) {
+            arrays[0] = root.array;
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int position = positions[depth];
+                if (position >= array.length) {
+                    depth--;
+                    continue;
+                }
+                positions[depth] = position + 2;
+                if (array[position] != null) {
+                    next = new AbstractMap.SimpleImmutableEntry<>((K) array[position], (V) array[position + 1]);
+                    return;
+                }
+                depth++;
+                arrays[depth] = ((Node) array[position + 1]).array;
+                positions[depth] = 0;
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> entry = next;
+            advance();
+            return entry;
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * Creates the node for two different keys found at the same slot.
+     */
+    private static Node pair(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+        int hash1 = hash(key1);
+        if (hash1 == hash2) {
+            return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+        }
+        boolean[] added = new boolean[1];
+        return BitmapNode.EMPTY.put(shift, hash1, key1, value1, added).put(shift, hash2, key2, value2, added);
+    }
+
+    private static Object[] with(Object[] array, int index, Object value) {
+        Object[] copy = array.clone();
+        copy[index] = value;
+        return copy;
+    }
+
+    private static Object[] without(Object[] array, int slot) {
+        Object[] copy = new Object[array.length - 2];
+        System.arraycopy(array, 0, copy, 0, slot);
+        System.arraycopy(array, slot + 2, copy, slot, array.length - slot - 2);
+        return copy;
+    }
+}
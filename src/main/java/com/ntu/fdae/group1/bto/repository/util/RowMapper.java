@@ -0,0 +1,25 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+import com.ntu.fdae.group1.bto.utils.CsvRecord;
+
+/**
+ * Converts one CSV row into an entity.
+ * <p>
+ * {@link CsvRepositoryHelper} calls the mapper once per row as the file is
+ * scanned and adds the result to the entity map straight away, so no list of
+ * rows is kept. The record is only valid during the call and must not be
+ * stored.
+ * </p>
+ *
+ * @param <T> The entity type
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    /**
+     * Maps a row to an entity.
+     *
+     * @param row The row, excluding the header
+     * @return The entity, or null to skip an invalid row
+     */
+    T map(CsvRecord row);
+}
@@ -0,0 +1,22 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+/**
+ * Converts one entity into a CSV row.
+ * <p>
+ * {@link CsvRepositoryHelper} serializes entities one at a time while writing
+ * the file or a journal record, so the complete set of rows is never held in
+ * memory.
+ * </p>
+ *
+ * @param <T> The entity type
+ */
+@FunctionalInterface
+public interface RowSerializer<T> {
+    /**
+     * Serializes an entity.
+     *
+     * @param entity The entity, never null
+     * @return The row, with the entity's identifier in the first column
+     */
+    String[] toRow(T entity);
+}
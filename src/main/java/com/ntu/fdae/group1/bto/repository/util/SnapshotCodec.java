@@ -0,0 +1,91 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * Describes how one repository's entities are stored in a binary snapshot.
+ * <p>
+ * Repositories build a codec from method references, in the same way they
+ * pass their row mapper and row serializer to {@link CsvRepositoryHelper}:
+ * </p>
+ *
+ * <pre>
+ * SnapshotCodec.of(1, User::getNric, this::writeUserSnapshot, this::readUserSnapshot)
+ * </pre>
+ * <p>
+ * The version must be increased whenever the field layout changes, or when an
+ * enum used by the codec is reordered, since ordinals are stored. Snapshots
+ * written with a different version are ignored.
+ * </p>
+ *
+ * @param <ID> The type of identifier used for entities
+ * @param <T>  The entity type
+ */
+public final class SnapshotCodec<ID, T> {
+
+    /**
+     * Writes one entity's fields.
+     *
+     * @param <T> The entity type
+     */
+    @FunctionalInterface
+    public interface EntityWriter<T> {
+        void write(T entity, SnapshotOutput out) throws IOException;
+    }
+
+    /**
+     * Reads one entity's fields, in the order they were written.
+     *
+     * @param <T> The entity type
+     */
+    @FunctionalInterface
+    public interface EntityReader<T> {
+        T read(SnapshotInput in) throws IOException;
+    }
+
+    private final int version;
+    private final Function<T, ID> idExtractor;
+    private final EntityWriter<T> writer;
+    private final EntityReader<T> reader;
+
+    private SnapshotCodec(int version, Function<T, ID> idExtractor, EntityWriter<T> writer,
+            EntityReader<T> reader) {
+        this.version = version;
+        this.idExtractor = idExtractor;
+        this.writer = writer;
+        this.reader = reader;
+    }
+
+    /**
+     * Creates a codec.
+     *
+     * @param version     Layout version stored in the snapshot header
+     * @param idExtractor Returns the key under which an entity is stored
+     * @param writer      Writes an entity's fields
+     * @param reader      Reads an entity's fields
+     * @param <ID>        The type of identifier used for entities
+     * @param <T>         The entity type
+     * @return The codec
+     */
+    public static <ID, T> SnapshotCodec<ID, T> of(int version, Function<T, ID> idExtractor, EntityWriter<T> writer,
+            EntityReader<T> reader) {
+        return new SnapshotCodec<>(version, idExtractor, writer, reader);
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    ID idOf(T entity) {
+        return idExtractor.apply(entity);
+    }
+
+    void write(T entity, SnapshotOutput out) throws IOException {
+        writer.write(entity, out);
+    }
+
+    T read(SnapshotInput in) throws IOException {
+        return reader.read(in);
+    }
+}
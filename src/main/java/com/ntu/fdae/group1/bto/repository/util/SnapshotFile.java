@@ -0,0 +1,189 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.ntu.fdae.group1.bto.utils.FileUtil;
+
+/**
+ * Reads and writes the binary snapshot files used by
+ * {@link CsvRepositoryHelper}.
+ * <p>
+ * Layout (all integers big-endian):
+ * </p>
+ *
+ * <pre>
+ * int     magic "BTOS"
+ * short   format version
+ * int     codec version
+ * int     source file count, then per file: path, size, last-modified millis
+ * int     string table size, then per string: length and UTF-8 bytes
+ * int     entity count, then the entities as written by the codec
+ * long    CRC32 of everything above
+ * </pre>
+ * <p>
+ * A snapshot is only used if its checksum is valid, its format and codec
+ * versions match, and every source file still has the recorded size and
+ * modification time. Otherwise {@link #read} returns null and the caller
+ * falls back to the CSV files.
+ * </p>
+ */
+final class SnapshotFile {
+    private static final int MAGIC = 0x42544F53; // "BTOS"
+    private static final short FORMAT_VERSION = 1;
+    private static final int TRAILER_BYTES = 8;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes a snapshot of the given entities.
+     *
+     * @param snapshotPath Where to write the snapshot
+     * @param sourcePaths  The files the snapshot mirrors; they must already hold
+     *                     the same state as {@code entities}
+     * @param entities     The complete entity map
+     * @param codec        The repository's codec
+     * @param <ID>         The type of identifier used for entities
+     * @param <T>          The entity type
+     * @throws IOException If encoding or writing fails
+     */
+    static <ID, T> void write(String snapshotPath, List<String> sourcePaths, Map<ID, T> entities,
+            SnapshotCodec<ID, T> codec) throws IOException {
+        SnapshotOutput entityOutput = new SnapshotOutput();
+        for (T entity : entities.values()) {
+            codec.write(entity, entityOutput);
+        }
+        byte[] entityBytes = entityOutput.toByteArray();
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(entityBytes.length + 1024);
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeInt(codec.getVersion());
+        out.writeInt(sourcePaths.size());
+        for (String sourcePath : sourcePaths) {
+            long[] stamp = stamp(sourcePath);
+            writeText(out, sourcePath);
+            out.writeLong(stamp[0]);
+            out.writeLong(stamp[1]);
+        }
+        List<String> strings = entityOutput.getStrings();
+        out.writeInt(strings.size());
+        for (String value : strings) {
+            writeText(out, value);
+        }
+        out.writeInt(entities.size());
+        out.write(entityBytes);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.toByteArray(), 0, buffer.size());
+        out.writeLong(crc.getValue());
+        out.flush();
+        FileUtil.writeBytes(snapshotPath, buffer.toByteArray());
+    }
+
+    /**
+     * Reads a snapshot if it is valid and still matches its source files.
+     *
+     * @param snapshotPath The snapshot file
+     * @param sourcePaths  The files the snapshot must mirror
+     * @param codec        The repository's codec
+     * @param <ID>         The type of identifier used for entities
+     * @param <T>          The entity type
+     * @return The entities, or null if the snapshot is missing, stale or corrupt
+     */
+    static <ID, T> Map<ID, T> read(String snapshotPath, List<String> sourcePaths, SnapshotCodec<ID, T> codec) {
+        Path path = Paths.get(snapshotPath);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            if (bytes.length < TRAILER_BYTES) {
+                throw new IOException("truncated file");
+            }
+            int bodyLength = bytes.length - TRAILER_BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bodyLength);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            in.mark(0);
+            in.skipBytes(bodyLength);
+            if (in.readLong() != crc.getValue()) {
+                throw new IOException("checksum mismatch");
+            }
+            in.reset();
+
+            if (in.readInt() != MAGIC || in.readShort() != FORMAT_VERSION || in.readInt() != codec.getVersion()) {
+                return null;
+            }
+            int sourceCount = in.readInt();
+            if (sourceCount != sourcePaths.size()) {
+                return null;
+            }
+            for (String sourcePath : sourcePaths) {
+                long[] stamp = stamp(sourcePath);
+                if (!sourcePath.equals(readText(in)) || in.readLong() != stamp[0] || in.readLong() != stamp[1]) {
+                    return null;
+                }
+            }
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readText(in);
+            }
+            int entityCount = in.readInt();
+            SnapshotInput entityInput = new SnapshotInput(in, strings);
+            Map<ID, T> entities = new HashMap<>(Math.max(16, entityCount * 4 / 3 + 1));
+            for (int i = 0; i < entityCount; i++) {
+                T entity = codec.read(entityInput);
+                entities.put(codec.idOf(entity), entity);
+            }
+            return entities;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Warning: Ignoring unreadable snapshot " + snapshotPath + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return The size and last-modified time of a file, or -1 for both if it
+     *         does not exist
+     */
+    private static long[] stamp(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            return new long[] { -1, -1 };
+        }
+        return new long[] { Files.size(path), Files.getLastModifiedTime(path).toMillis() };
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
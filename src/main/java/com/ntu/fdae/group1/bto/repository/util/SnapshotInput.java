@@ -0,0 +1,130 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes entity fields written by {@link SnapshotOutput}.
+ * <p>
+ * Fields must be read in exactly the order they were written. Any
+ * inconsistency (an out-of-range string index or ordinal) is reported as an
+ * {@link IOException}, which makes the repository fall back to its CSV file.
+ * </p>
+ */
+public final class SnapshotInput {
+    private final DataInputStream in;
+    private final String[] strings;
+    private final Map<Class<?>, Object[]> enumConstants = new HashMap<>();
+
+    /**
+     * Package-private; instances are created by {@link SnapshotFile}.
+     *
+     * @param in      The stream positioned at the first entity
+     * @param strings The snapshot's string table
+     */
+    SnapshotInput(DataInputStream in, String[] strings) {
+        this.in = in;
+        this.strings = strings;
+    }
+
+    /**
+     * Reads a string written by {@link SnapshotOutput#writeString(String)}.
+     *
+     * @return The string, or null
+     * @throws IOException If the data is invalid
+     */
+    public String readString() throws IOException {
+        int reference = readVarInt();
+        if (reference == 0) {
+            return null;
+        }
+        if (reference > strings.length) {
+            throw new IOException("String index out of range: " + (reference - 1));
+        }
+        return strings[reference - 1];
+    }
+
+    /**
+     * Reads a list written by {@link SnapshotOutput#writeStringList(List)}.
+     *
+     * @return A new modifiable list
+     * @throws IOException If the data is invalid
+     */
+    public List<String> readStringList() throws IOException {
+        int size = readVarInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString());
+        }
+        return values;
+    }
+
+    /**
+     * Reads a date written by {@link SnapshotOutput#writeDate(LocalDate)}.
+     *
+     * @return The date, or null
+     * @throws IOException If reading fails
+     */
+    public LocalDate readDate() throws IOException {
+        int epochDay = in.readInt();
+        return epochDay == SnapshotOutput.NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * Reads an enum constant written by {@link SnapshotOutput#writeEnum(Enum)}.
+     *
+     * @param enumClass The class of the enum
+     * @param <E>       The enum type
+     * @return The constant, or null
+     * @throws IOException If the ordinal is out of range
+     */
+    public <E extends Enum<E>> E readEnum(Class<E> enumClass) throws IOException {
+        int reference = readVarInt();
+        if (reference == 0) {
+            return null;
+        }
+        Object[] constants = enumConstants.computeIfAbsent(enumClass, Class::getEnumConstants);
+        if (reference > constants.length) {
+            throw new IOException("Ordinal out of range for " + enumClass.getSimpleName() + ": " + (reference - 1));
+        }
+        return enumClass.cast(constants[reference - 1]);
+    }
+
+    public int readInt() throws IOException {
+        return in.readInt();
+    }
+
+    public double readDouble() throws IOException {
+        return in.readDouble();
+    }
+
+    public boolean readBoolean() throws IOException {
+        return in.readBoolean();
+    }
+
+    /**
+     * Reads an integer written by {@link SnapshotOutput#writeVarInt(int)}.
+     *
+     * @return The value
+     * @throws IOException If the encoding is invalid
+     */
+    int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Negative variable-length integer");
+                }
+                return value;
+            }
+        }
+        throw new IOException("Variable-length integer too long");
+    }
+}
@@ -0,0 +1,137 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes entity fields into the binary snapshot format.
+ * <p>
+ * Strings are not written inline: each distinct string is added once to a
+ * string table and fields refer to it by index, so the NRICs and project IDs
+ * repeated across thousands of rows are stored only once. Dates are written
+ * as epoch days and enums as ordinals. Small non-negative numbers (string
+ * indexes, ordinals, list sizes) use a variable-length encoding.
+ * </p>
+ */
+public final class SnapshotOutput {
+    /**
+     * Epoch day written for a null date.
+     */
+    static final int NULL_DATE = Integer.MIN_VALUE;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(buffer);
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * Package-private; instances are created by {@link SnapshotFile}.
+     */
+    SnapshotOutput() {
+    }
+
+    /**
+     * Writes a string by reference to the string table.
+     *
+     * @param value The string, may be null
+     * @throws IOException If writing fails
+     */
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        Integer index = stringIndexes.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.add(value);
+            stringIndexes.put(value, index);
+        }
+        writeVarInt(index + 1);
+    }
+
+    /**
+     * Writes a list of strings, each by reference to the string table.
+     *
+     * @param values The strings, may be null (read back as an empty list)
+     * @throws IOException If writing fails
+     */
+    public void writeStringList(List<String> values) throws IOException {
+        if (values == null) {
+            writeVarInt(0);
+            return;
+        }
+        writeVarInt(values.size());
+        for (String value : values) {
+            writeString(value);
+        }
+    }
+
+    /**
+     * Writes a date as its epoch day.
+     *
+     * @param value The date, may be null
+     * @throws IOException If writing fails
+     */
+    public void writeDate(LocalDate value) throws IOException {
+        out.writeInt(value == null ? NULL_DATE : Math.toIntExact(value.toEpochDay()));
+    }
+
+    /**
+     * Writes an enum constant as its ordinal.
+     *
+     * @param value The constant, may be null
+     * @throws IOException If writing fails
+     */
+    public void writeEnum(Enum<?> value) throws IOException {
+        writeVarInt(value == null ? 0 : value.ordinal() + 1);
+    }
+
+    public void writeInt(int value) throws IOException {
+        out.writeInt(value);
+    }
+
+    public void writeDouble(double value) throws IOException {
+        out.writeDouble(value);
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        out.writeBoolean(value);
+    }
+
+    /**
+     * Writes a non-negative integer in 7-bit groups, least significant first.
+     *
+     * @param value The value, must not be negative
+     * @throws IOException If writing fails
+     */
+    void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * @return The strings referenced so far, in index order
+     */
+    List<String> getStrings() {
+        return strings;
+    }
+
+    /**
+     * @return The encoded fields written so far
+     * @throws IOException If flushing fails
+     */
+    byte[] toByteArray() throws IOException {
+        out.flush();
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,354 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
+import com.ntu.fdae.group1.bto.utils.CsvRecord;
+import com.ntu.fdae.group1.bto.utils.FileUtil;
+
+/**
+ * Append-only log of committed {@link UnitOfWork units of work}, shared by all
+ * repositories.
+ * <p>
+ * A unit of work is committed by appending one row to this file. The row
+ * holds the journal records for every CSV file the unit changes, followed by
+ * a checksum; a row cut short by a crash fails the checksum and is ignored,
+ * so a unit is either recovered completely or not at all. The row is forced
+ * to disk before the unit is applied, whatever the fsync policy of
+ * {@link FileUtil}. Once a unit's records have been written to one of the
+ * repositories' own files, that file is removed from the unit's row; the row
+ * is removed when no files remain, and the log file is deleted when no rows
+ * remain. These removals are forced to disk as well, so a stale row can never
+ * be replayed over later writes to the same file.
+ * </p>
+ * <p>
+ * Rows still present at start-up belong to units that were committed but may
+ * not have reached every repository file. Each {@link CsvRepositoryHelper}
+ * applies the records for its file while loading, after its own journal, and
+ * then reports the file as recovered; a row is dropped once all of its files
+ * have been recovered.
+ * </p>
+ * <p>
+ * {@link UnitOfWork Units of work} synchronize on the log object to commit
+ * one at a time. The log guards its own state with a separate lock, which is
+ * never held while calling out, so repositories can update the log while
+ * holding their own locks.
+ * </p>
+ */
+public final class TransactionLog {
+    /**
+     * Location of the log used by the repositories.
+     */
+    public static final String DEFAULT_PATH = "data/transactions.journal";
+
+    private static final String MARKER = "#tx";
+    private static final String[] HEADER = new String[] { "#transactions" };
+    private static final TransactionLog DEFAULT = new TransactionLog(DEFAULT_PATH);
+
+    /**
+     * One unit of work in the log.
+     */
+    private static final class Entry {
+        String[] row;
+        /** Records for the files the unit has not reached yet. */
+        final Map<String, List<String[]>> recordsByFile;
+
+        Entry(String[] row, Map<String, List<String[]>> recordsByFile) {
+            this.row = row;
+            this.recordsByFile = recordsByFile;
+        }
+
+        /**
+         * Forgets the given files.
+         *
+         * @return true if any of them were pending
+         */
+        boolean removeFiles(Collection<String> files, String id) {
+            if (!recordsByFile.keySet().removeAll(files)) {
+                return false;
+            }
+            if (!recordsByFile.isEmpty()) {
+                row = buildRow(id, recordsByFile);
+            }
+            return true;
+        }
+    }
+
+    private final String path;
+    private final Object stateLock = new Object();
+
+    // --- State below is guarded by 'stateLock' ---
+    private Map<String, Entry> entries = null;
+    private long nextId = System.currentTimeMillis();
+
+    /**
+     * Creates a log stored at the given path. Nothing is read until the log is
+     * first used.
+     *
+     * @param path The log file
+     */
+    public TransactionLog(String path) {
+        this.path = path;
+    }
+
+    /**
+     * @return The log used by the repositories, stored at {@link #DEFAULT_PATH}
+     */
+    public static TransactionLog getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Appends a committed unit of work. When this returns, the unit is on disk
+     * and survives a crash, unless the fsync policy is
+     * {@link FileUtil.FsyncPolicy#NEVER}.
+     *
+     * @param recordsByFile Journal records, each an operation followed by a CSV
+     *                      row, keyed by the CSV file they belong to
+     * @return The identifier of the unit, for {@link #complete}
+     * @throws DataAccessException If the log cannot be written; the unit is
+     *                             then not committed
+     */
+    String append(Map<String, List<String[]>> recordsByFile) throws DataAccessException {
+        synchronized (stateLock) {
+            load();
+            String id = Long.toString(nextId++);
+            String[] row = buildRow(id, recordsByFile);
+            try {
+                FileUtil.appendCsvLines(path, Collections.singletonList(row), HEADER);
+                FileUtil.force(path);
+            } catch (IOException e) {
+                throw new DataAccessException("Error appending to transaction log: " + path + " - " + e.getMessage(),
+                        e);
+            }
+            entries.put(id, new Entry(row, new LinkedHashMap<>(recordsByFile)));
+            return id;
+        }
+    }
+
+    /**
+     * Records that a unit of work's records have been written to the given
+     * repository files. The unit is removed once it has reached all of its
+     * files.
+     *
+     * @param id    The identifier returned by {@link #append(Map)}
+     * @param files The CSV files now holding the unit's records
+     */
+    void complete(String id, Collection<String> files) {
+        synchronized (stateLock) {
+            load();
+            Entry entry = entries.get(id);
+            if (entry == null || !entry.removeFiles(files, id)) {
+                return;
+            }
+            if (entry.recordsByFile.isEmpty()) {
+                entries.remove(id);
+            }
+            rewrite();
+        }
+    }
+
+    /**
+     * Returns the records for one CSV file from the units of work that have not
+     * reached it yet, in commit order. At start-up these are the units
+     * interrupted by a crash.
+     *
+     * @param filePath The CSV file
+     * @return The journal records, each an operation followed by a CSV row;
+     *         empty if there are none
+     */
+    List<CsvRecord> recoveredRecords(String filePath) {
+        synchronized (stateLock) {
+            load();
+            List<CsvRecord> records = new ArrayList<>();
+            for (Entry entry : entries.values()) {
+                List<String[]> fileRecords = entry.recordsByFile.get(filePath);
+                if (fileRecords != null) {
+                    for (String[] record : fileRecords) {
+                        records.add(CsvRecord.of(record));
+                    }
+                }
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Records that a CSV file now contains the records returned by
+     * {@link #recoveredRecords(String)}. Units that have reached all of their
+     * files are removed from the log.
+     *
+     * @param filePath The CSV file
+     */
+    void markRecovered(String filePath) {
+        synchronized (stateLock) {
+            load();
+            boolean changed = false;
+            for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<String, Entry> entry = it.next();
+                if (entry.getValue().removeFiles(Collections.singleton(filePath), entry.getKey())) {
+                    changed = true;
+                    if (entry.getValue().recordsByFile.isEmpty()) {
+                        it.remove();
+                    }
+                }
+            }
+            if (changed) {
+                rewrite();
+            }
+        }
+    }
+
+    /**
+     * Builds the log row for a unit of work: marker, identifier, checksum and
+     * the records per file.
+     */
+    private static String[] buildRow(String id, Map<String, List<String[]>> recordsByFile) {
+        List<String> fields = new ArrayList<>();
+        fields.add(String.valueOf(recordsByFile.size()));
+        for (Map.Entry<String, List<String[]>> file : recordsByFile.entrySet()) {
+            fields.add(file.getKey());
+            fields.add(String.valueOf(file.getValue().size()));
+            for (String[] record : file.getValue()) {
+                fields.add(String.valueOf(record.length));
+                for (String field : record) {
+                    fields.add(field != null ? field : ""); // Written as an empty field either way
+                }
+            }
+        }
+        String[] row = new String[fields.size() + 3];
+        row[0] = MARKER;
+        row[1] = id;
+        row[2] = checksum(id, fields);
+        for (int i = 0; i < fields.size(); i++) {
+            row[i + 3] = fields.get(i);
+        }
+        return row;
+    }
+
+    /**
+     * Reads the log file the first time the log is used. Rows with a wrong
+     * checksum or layout, such as a row cut short by a crash, are skipped and
+     * removed from the file.
+     */
+    private void load() {
+        if (entries != null) {
+            return;
+        }
+        entries = new LinkedHashMap<>();
+        if (!Files.exists(Paths.get(path))) {
+            return;
+        }
+        List<CsvRecord> rows;
+        try {
+            rows = FileUtil.readCsvRecords(path);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not read transaction log " + path + ": " + e.getMessage());
+            return;
+        }
+        boolean skipped = false;
+        for (CsvRecord row : rows) {
+            Entry entry = parse(row);
+            if (entry == null) {
+                System.err.println("Warning: Skipping incomplete transaction in " + path);
+                skipped = true;
+                continue;
+            }
+            entries.put(row.get(1), entry);
+            nextId = Math.max(nextId, Long.parseLong(row.get(1)) + 1);
+        }
+        if (skipped) {
+            try {
+                rewrite(); // So that later rows are not appended to a torn one
+            } catch (DataAccessException e) {
+                entries = null; // Try again on next use
+                throw e;
+            }
+        }
+    }
+
+    private static Entry parse(CsvRecord row) {
+        try {
+            if (row.size() < 4 || !MARKER.equals(row.get(0))) {
+                return null;
+            }
+            String id = row.get(1);
+            Long.parseLong(id);
+            List<String> fields = new ArrayList<>();
+            for (int i = 3; i < row.size(); i++) {
+                fields.add(row.get(i));
+            }
+            if (!checksum(id, fields).equals(row.get(2))) {
+                return null;
+            }
+            Map<String, List<String[]>> recordsByFile = new LinkedHashMap<>();
+            int pos = 3;
+            int fileCount = Integer.parseInt(row.get(pos++));
+            for (int f = 0; f < fileCount; f++) {
+                String file = row.get(pos++);
+                int recordCount = Integer.parseInt(row.get(pos++));
+                List<String[]> records = new ArrayList<>();
+                for (int r = 0; r < recordCount; r++) {
+                    int length = Integer.parseInt(row.get(pos++));
+                    records.add(row.slice(pos, pos + length).toArray());
+                    pos += length;
+                }
+                recordsByFile.put(file, records);
+            }
+            return pos == row.size() ? new Entry(row.toArray(), recordsByFile) : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the remaining units back to the log, or deletes it if none
+     * remain, and forces the change to disk before any later write to the
+     * files it no longer covers.
+     *
+     * @throws DataAccessException If the log cannot be updated; a stale row
+     *                             would be replayed over later writes, so
+     *                             those writes must not happen
+     */
+    private void rewrite() {
+        try {
+            if (entries.isEmpty()) {
+                Files.deleteIfExists(Paths.get(path));
+            } else {
+                List<String[]> rows = new ArrayList<>();
+                for (Entry entry : entries.values()) {
+                    rows.add(entry.row);
+                }
+                FileUtil.writeCsvLines(path, rows, HEADER);
+            }
+            FileUtil.force(path);
+        } catch (IOException e) {
+            throw new DataAccessException("Error updating transaction log: " + path + " - " + e.getMessage(), e);
+        }
+    }
+
+    private static String checksum(String id, List<String> fields) {
+        CRC32 crc = new CRC32();
+        crc.update(id.getBytes(StandardCharsets.UTF_8));
+        for (String field : fields) {
+            byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+            crc.update(bytes.length >>> 24);
+            crc.update(bytes.length >>> 16);
+            crc.update(bytes.length >>> 8);
+            crc.update(bytes.length);
+            crc.update(bytes);
+        }
+        return Long.toHexString(crc.getValue());
+    }
+}
@@ -0,0 +1,263 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
+import com.ntu.fdae.group1.bto.exceptions.DuplicateEntityException;
+import com.ntu.fdae.group1.bto.exceptions.VersionConflictException;
+
+/**
+ * A group of entity saves, possibly across several repositories, that take
+ * effect together.
+ * <p>
+ * A service registers each save with the repository that owns the entity and
+ * then commits the unit once, e.g.
+ * </p>
+ *
+ * <pre>
+ * UnitOfWork work = new UnitOfWork();
+ * bookingRepo.save(booking, work);
+ * applicationRepo.save(application, work);
+ * work.commit();
+ * </pre>
+ * <p>
+ * Nothing is stored or written until {@link #commit()}, which:
+ * </p>
+ * <ol>
+ * <li>locks the repositories involved, in a fixed order, so no other write
+ * to them can interleave;</li>
+ * <li>validates every save against the repositories' unique constraints and,
+ * for versioned entities, checks that each entity is based on the stored
+ * one;</li>
+ * <li>appends one record holding all the saves to the
+ * {@link TransactionLog} and forces it to disk - the unit is committed once
+ * this record is written;</li>
+ * <li>updates the repositories' in-memory stores and writes each
+ * repository's records to its own file, one write per file;</li>
+ * <li>removes the files written from the log record, and the record once it
+ * covers no files.</li>
+ * </ol>
+ * <p>
+ * If validation or the log write fails, commit throws and nothing has
+ * changed. A failure in step 4 does not undo the commit: it is reported, and
+ * the unit's records are owed to the affected files. The next write to such a
+ * file writes them first and is refused while it cannot, so the log record is
+ * never replayed over newer saves; a file not written again before a crash
+ * is completed from the log when it is next loaded.
+ * </p>
+ * <p>
+ * The entities are serialized when the unit commits, so changes made to them
+ * after they are registered are included. A unit can be committed only once
+ * and is not meant to be shared between threads.
+ * </p>
+ */
+public final class UnitOfWork {
+
+    /**
+     * One registered save.
+     */
+    private static final class Change<ID, T> {
+        final Object owner;
+        final CsvRepositoryHelper<ID, T> helper;
+        final IndexedStore<ID, T> store;
+        final T entity;
+        final Runnable afterApply;
+        int previousVersion;
+
+        Change(Object owner, CsvRepositoryHelper<ID, T> helper, IndexedStore<ID, T> store, T entity,
+                Runnable afterApply) {
+            this.owner = owner;
+            this.helper = helper;
+            this.store = store;
+            this.entity = entity;
+            this.afterApply = afterApply;
+        }
+
+        void advanceVersion() {
+            previousVersion = store.advanceVersion(entity);
+        }
+
+        void resetVersion() {
+            store.resetVersion(entity, previousVersion);
+        }
+
+        void apply() {
+            store.put(entity);
+            if (afterApply != null) {
+                afterApply.run();
+            }
+        }
+
+        void persist(List<String[]> records) {
+            helper.applyCommitted(records, store.snapshot());
+        }
+
+        void defer(TransactionLog log, String id, List<String[]> records) {
+            helper.deferCommitted(log, id, records, store.snapshot());
+        }
+    }
+
+    private final TransactionLog log;
+    private final List<Change<?, ?>> changes = new ArrayList<>();
+    private boolean committed = false;
+
+    /**
+     * Creates an empty unit of work that commits through the
+     * {@link TransactionLog#getDefault() default log}.
+     */
+    public UnitOfWork() {
+        this(TransactionLog.getDefault());
+    }
+
+    /**
+     * Creates an empty unit of work that commits through the given log.
+     *
+     * @param log The transaction log
+     */
+    public UnitOfWork(TransactionLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Registers a save. Called by repositories, not by services.
+     *
+     * @param owner      The repository; its monitor is held during the commit,
+     *                   so it must be the object its other writes synchronize
+     *                   on
+     * @param helper     The repository's helper for the entity's file
+     * @param store      The repository's store for the entity
+     * @param entity     The entity to save
+     * @param afterApply Further in-memory updates to make once the entity is
+     *                   stored, such as re-indexing a related entity, or null
+     * @param <ID>       The type of identifier used for entities
+     * @param <T>        The entity type
+     * @throws IllegalStateException if the unit has already been committed
+     */
+    public <ID, T> void stage(Object owner, CsvRepositoryHelper<ID, T> helper, IndexedStore<ID, T> store,
+            T entity, Runnable afterApply) {
+        if (committed) {
+            throw new IllegalStateException("Unit of work has already been committed.");
+        }
+        changes.add(new Change<>(owner, helper, store, entity, afterApply));
+    }
+
+    /**
+     * @return true if no saves are registered
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Commits all registered saves as one atomic step.
+     *
+     * @throws DuplicateEntityException if a save would break a unique
+     *                                  constraint; nothing is changed
+     * @throws VersionConflictException if an entity was changed by someone
+     *                                  else since it was read; nothing is
+     *                                  changed
+     * @throws DataAccessException      if a save cannot be serialized or the
+     *                                  transaction log cannot be written;
+     *                                  nothing is changed
+     * @throws IllegalStateException    if the unit has already been committed
+     */
+    public void commit() throws DataAccessException {
+        if (committed) {
+            throw new IllegalStateException("Unit of work has already been committed.");
+        }
+        committed = true;
+        if (changes.isEmpty()) {
+            return;
+        }
+        Map<Object, Boolean> distinct = new IdentityHashMap<>();
+        List<Object> owners = new ArrayList<>();
+        for (Change<?, ?> change : changes) {
+            if (distinct.put(change.owner, Boolean.TRUE) == null) {
+                owners.add(change.owner);
+            }
+        }
+        // A fixed order, so that two units locking the same repositories cannot deadlock
+        owners.sort(Comparator.comparing((Object owner) -> owner.getClass().getName())
+                .thenComparingInt(System::identityHashCode));
+        commitLocked(owners, 0);
+    }
+
+    /**
+     * Takes the monitor of each owner in turn, then commits.
+     */
+    private void commitLocked(List<Object> owners, int next) {
+        if (next < owners.size()) {
+            synchronized (owners.get(next)) {
+                commitLocked(owners, next + 1);
+            }
+            return;
+        }
+        // Also serializes units with disjoint repositories, which share the log
+        synchronized (log) {
+            for (Change<?, ?> change : changes) {
+                validate(change);
+            }
+            for (Change<?, ?> change : changes) {
+                change.advanceVersion();
+            }
+            Map<CsvRepositoryHelper<?, ?>, List<String[]>> recordsByHelper = new LinkedHashMap<>();
+            Map<CsvRepositoryHelper<?, ?>, Change<?, ?>> firstByHelper = new LinkedHashMap<>();
+            Map<String, List<String[]>> recordsByFile = new LinkedHashMap<>();
+            String id;
+            try {
+                for (Change<?, ?> change : changes) {
+                    String[] record = record(change);
+                    recordsByHelper.computeIfAbsent(change.helper, h -> new ArrayList<>()).add(record);
+                    firstByHelper.putIfAbsent(change.helper, change);
+                    recordsByFile.computeIfAbsent(change.helper.getFilePath(), f -> new ArrayList<>()).add(record);
+                }
+                id = log.append(recordsByFile); // The commit point
+            } catch (RuntimeException e) {
+                for (Change<?, ?> change : changes) {
+                    change.resetVersion();
+                }
+                throw e;
+            }
+
+            for (Change<?, ?> change : changes) {
+                change.apply();
+            }
+            List<String> persistedFiles = new ArrayList<>();
+            for (Map.Entry<CsvRepositoryHelper<?, ?>, List<String[]>> entry : recordsByHelper.entrySet()) {
+                Change<?, ?> change = firstByHelper.get(entry.getKey());
+                try {
+                    change.persist(entry.getValue());
+                    persistedFiles.add(entry.getKey().getFilePath());
+                } catch (DataAccessException e) {
+                    change.defer(log, id, entry.getValue());
+                    System.err.println("Warning: Committed changes to " + entry.getKey().getFilePath()
+                            + " will be written before its next save: " + e.getMessage());
+                }
+            }
+            try {
+                log.complete(id, persistedFiles);
+            } catch (DataAccessException e) {
+                // The log still covers these files, so their next writes must settle it first
+                for (Map.Entry<CsvRepositoryHelper<?, ?>, List<String[]>> entry : recordsByHelper.entrySet()) {
+                    if (persistedFiles.contains(entry.getKey().getFilePath())) {
+                        firstByHelper.get(entry.getKey()).defer(log, id, entry.getValue());
+                    }
+                }
+                System.err.println("Warning: Could not complete unit of work " + id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static <ID, T> void validate(Change<ID, T> change) {
+        change.store.checkConstraints(change.entity);
+    }
+
+    private static <ID, T> String[] record(Change<ID, T> change) {
+        return change.helper.putRecord(change.entity);
+    }
+}
@@ -0,0 +1,96 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background flusher shared by all {@link CsvRepositoryHelper} instances that
+ * use a non-synchronous {@link Durability}.
+ * <p>
+ * A single daemon thread runs the scheduled flushes. Each helper schedules at
+ * most one flush per commit window, so every mutation staged during that
+ * window is written by the same physical write.
+ * </p>
+ * <p>
+ * {@link #shutdown(long, TimeUnit)} must be called before the application
+ * exits, otherwise mutations staged in ASYNC mode may be lost.
+ * </p>
+ */
+public final class WriteBehindFlusher {
+
+    private static final Set<CsvRepositoryHelper<?, ?>> HELPERS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Lazily created so that SYNC-only applications never start the thread.
+     */
+    private static final class ExecutorHolder {
+        private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "csv-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private WriteBehindFlusher() {
+    }
+
+    /**
+     * Schedules a flush of the given helper after the commit window.
+     * <p>
+     * If the flusher has already been shut down, the helper is flushed on the
+     * calling thread instead.
+     * </p>
+     *
+     * @param helper      The helper with staged mutations
+     * @param delayMillis The commit window in milliseconds
+     */
+    static void schedule(CsvRepositoryHelper<?, ?> helper, long delayMillis) {
+        HELPERS.add(helper);
+        try {
+            ExecutorHolder.EXECUTOR.schedule(helper::flush, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            helper.flush();
+        }
+    }
+
+    /**
+     * Flushes every helper that has used the flusher, on the calling thread.
+     *
+     * @return true if all flushes succeeded, false if any write failed
+     */
+    public static boolean flushAll() {
+        boolean allFlushed = true;
+        for (CsvRepositoryHelper<?, ?> helper : HELPERS) {
+            allFlushed &= helper.flush();
+        }
+        return allFlushed;
+    }
+
+    /**
+     * Flushes all staged mutations and stops the background thread.
+     *
+     * @param timeout How long to wait for in-flight flushes to finish
+     * @param unit    The unit of the timeout
+     * @return true if everything was flushed and the thread stopped in time
+     */
+    public static boolean shutdown(long timeout, TimeUnit unit) {
+        boolean allFlushed = flushAll();
+        if (HELPERS.isEmpty()) {
+            return allFlushed;
+        }
+        ExecutorHolder.EXECUTOR.shutdown();
+        try {
+            return ExecutorHolder.EXECUTOR.awaitTermination(timeout, unit) && allFlushed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+/**
+ * Persistence strategies supported by {@link CsvRepositoryHelper}.
+ * <p>
+ * The mode decides what happens on a single-entity save or delete. Bulk
+ * operations such as {@code saveAll} always rewrite the whole CSV file.
+ * </p>
+ */
+public enum WriteMode {
+    /**
+     * Every mutation re-serializes the full entity map and rewrites the CSV
+     * file. This is the original behaviour and keeps the CSV current at all
+     * times.
+     */
+    FULL_REWRITE,
+
+    /**
+     * Mutations are appended as single records to a per-repository journal
+     * file next to the CSV. The journal is folded back into the CSV once it
+     * grows past the compaction threshold, and replayed over the CSV on load.
+     */
+    JOURNALED
+}
@@ -0,0 +1,258 @@
+package com.ntu.fdae.group1.bto.server;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Opens many concurrent sessions against a running {@link SessionServer} to
+ * check that it holds them.
+ * <p>
+ * Each simulated user connects, logs in, and then waits until every other
+ * user has logged in too, so that all sessions are open and logged in at the
+ * same moment. All users then log out and exit together. The generator
+ * reports how many sessions were logged in at once, how many failed, and the
+ * latencies of connecting (until the main menu appears) and logging in (until
+ * the role menu appears).
+ * </p>
+ * <p>
+ * Usage: {@code LoadGenerator [host] [port] [sessions] [nric] [password]},
+ * by default 1000 sessions to localhost:{@value SessionServer#DEFAULT_PORT}
+ * as the sample applicant S4321098C. The process exits with status 1 if any
+ * session failed.
+ * </p>
+ */
+public class LoadGenerator {
+    private static final String DEFAULT_HOST = "localhost";
+    private static final int DEFAULT_SESSIONS = 1000;
+    private static final String DEFAULT_NRIC = "S4321098C";
+    private static final String DEFAULT_PASSWORD = "password";
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 30_000;
+    private static final int READ_TIMEOUT_MILLIS = 120_000;
+    private static final long HOLD_TIMEOUT_MINUTES = 10;
+    private static final long CLIENT_STACK_SIZE = 128 * 1024;
+
+    // --- Prompts the simulated users wait for ---
+    private static final String MAIN_MENU_PROMPT = "Please select an option:";
+    private static final String NRIC_PROMPT = "Enter NRIC";
+    private static final String SHOW_PASSWORD_PROMPT = "Show password while typing?";
+    private static final String PASSWORD_PROMPT = "Enter Password:";
+    private static final String ROLE_MENU_PROMPT = "Enter your choice";
+    private static final String GOODBYE = "Thank you for using the BTO Management System!";
+    private static final String ERROR_MARKER = "ERROR:";
+
+    private final String host;
+    private final int port;
+    private final int sessions;
+    private final String nric;
+    private final String password;
+
+    private final CountDownLatch arrived;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger loggedIn = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicReference<String> firstFailure = new AtomicReference<>();
+    private final long[] connectNanos;
+    private final long[] loginNanos;
+
+    /**
+     * Creates a load generator.
+     *
+     * @param host     The server's host
+     * @param port     The server's port
+     * @param sessions The number of concurrent sessions to open
+     * @param nric     The NRIC every simulated user logs in with
+     * @param password The password for that NRIC
+     */
+    public LoadGenerator(String host, int port, int sessions, String nric, String password) {
+        this.host = host;
+        this.port = port;
+        this.sessions = sessions;
+        this.nric = nric;
+        this.password = password;
+        this.arrived = new CountDownLatch(sessions);
+        this.connectNanos = new long[sessions];
+        this.loginNanos = new long[sessions];
+    }
+
+    /**
+     * Runs the load test and prints its report.
+     *
+     * @return true if every session succeeded
+     * @throws InterruptedException If interrupted while waiting for sessions
+     */
+    public boolean run() throws InterruptedException {
+        System.out.println("Opening " + sessions + " sessions to " + host + ":" + port + "...");
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            final int index = i;
+            Thread thread = new Thread(null, () -> runUser(index), "load-" + i, CLIENT_STACK_SIZE);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+
+        arrived.await();
+        long allArrived = System.nanoTime();
+        int concurrent = loggedIn.get();
+        System.out.printf("%d of %d sessions logged in concurrently after %.1f s.%n", concurrent, sessions,
+                (allArrived - start) / 1e9);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long end = System.nanoTime();
+
+        System.out.printf("Completed: %d, failed: %d, total time %.1f s.%n", completed.get(), failed.get(),
+                (end - start) / 1e9);
+        System.out.println("Connect to main menu: " + describe(connectNanos));
+        System.out.println("Login to role menu:   " + describe(loginNanos));
+        if (firstFailure.get() != null) {
+            System.out.println("First failure: " + firstFailure.get());
+        }
+        return failed.get() == 0 && concurrent == sessions;
+    }
+
+    /**
+     * Plays one simulated user on the calling thread.
+     */
+    private void runUser(int index) {
+        boolean arrivedCounted = false;
+        try (Socket socket = new Socket()) {
+            long start = System.nanoTime();
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            Reader in = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
+            OutputStream out = socket.getOutputStream();
+            StringBuilder screen = new StringBuilder();
+
+            expect(in, screen, MAIN_MENU_PROMPT);
+            connectNanos[index] = System.nanoTime() - start;
+
+            long loginStart = System.nanoTime();
+            send(out, "1");
+            expect(in, screen, NRIC_PROMPT);
+            send(out, nric);
+            expect(in, screen, SHOW_PASSWORD_PROMPT);
+            send(out, "Y");
+            expect(in, screen, PASSWORD_PROMPT);
+            send(out, password);
+            expect(in, screen, ROLE_MENU_PROMPT);
+            loginNanos[index] = System.nanoTime() - loginStart;
+
+            loggedIn.incrementAndGet();
+            arrived.countDown();
+            arrivedCounted = true;
+            if (!release.await(HOLD_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                throw new IOException("Timed out waiting for the other sessions");
+            }
+
+            send(out, "0"); // Logout
+            expect(in, screen, MAIN_MENU_PROMPT);
+            send(out, "0"); // Exit
+            expect(in, screen, GOODBYE);
+            completed.incrementAndGet();
+        } catch (IOException | InterruptedException e) {
+            failed.incrementAndGet();
+            firstFailure.compareAndSet(null, Thread.currentThread().getName() + ": " + e);
+        } finally {
+            if (!arrivedCounted) {
+                arrived.countDown();
+            }
+        }
+    }
+
+    private static void send(OutputStream out, String line) throws IOException {
+        out.write((line + "\r\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Reads until the screen shows the given text, then discards the screen up
+     * to and including it.
+     *
+     * @throws IOException If the server reports an error or closes the
+     *                     connection first
+     */
+    private static void expect(Reader in, StringBuilder screen, String text) throws IOException {
+        char[] buffer = new char[4096];
+        int searchFrom = 0;
+        while (true) {
+            int found = screen.indexOf(text, searchFrom);
+            if (found >= 0) {
+                screen.delete(0, found + text.length());
+                return;
+            }
+            int error = screen.indexOf(ERROR_MARKER);
+            if (error >= 0) {
+                int lineEnd = screen.indexOf("\n", error);
+                throw new IOException("Server reported " + screen.substring(error,
+                        lineEnd >= 0 ? lineEnd : screen.length()).trim() + " while waiting for '" + text + "'");
+            }
+            searchFrom = Math.max(0, screen.length() - text.length() + 1);
+            int read = in.read(buffer);
+            if (read < 0) {
+                throw new IOException("Connection closed while waiting for '" + text + "'");
+            }
+            screen.append(buffer, 0, read);
+        }
+    }
+
+    /**
+     * Summarises the recorded latencies of the sessions that got that far.
+     */
+    private static String describe(long[] nanos) {
+        long[] recorded = Arrays.stream(nanos).filter(n -> n > 0).sorted().toArray();
+        if (recorded.length == 0) {
+            return "no samples";
+        }
+        return String.format("p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms (%d samples)",
+                percentile(recorded, 50) / 1e6, percentile(recorded, 95) / 1e6, percentile(recorded, 99) / 1e6,
+                recorded[recorded.length - 1] / 1e6, recorded.length);
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Runs the load generator from the command line.
+     *
+     * @param args Optional host, port, number of sessions, NRIC and password
+     * @throws InterruptedException If interrupted while waiting for sessions
+     */
+    public static void main(String[] args) throws InterruptedException {
+        try {
+            String host = args.length > 0 ? args[0] : DEFAULT_HOST;
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : SessionServer.DEFAULT_PORT;
+            int sessions = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SESSIONS;
+            String nric = args.length > 3 ? args[3] : DEFAULT_NRIC;
+            String password = args.length > 4 ? args[4] : DEFAULT_PASSWORD;
+            if (sessions < 1) {
+                throw new NumberFormatException("sessions must be at least 1");
+            }
+            boolean ok = new LoadGenerator(host, port, sessions, nric, password).run();
+            System.exit(ok ? 0 : 1);
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: LoadGenerator [host] [port] [sessions] [nric] [password] (" + e.getMessage()
+                    + ")");
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.ntu.fdae.group1.bto.server;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ntu.fdae.group1.bto.App;
+import com.ntu.fdae.group1.bto.controllers.ControllerContainer;
+
+/**
+ * Serves the text user interface to many concurrent users over TCP.
+ * <p>
+ * Users connect with a line-based client such as {@code telnet} or
+ * {@code nc}. Each connection runs one {@link App} session, with its own
+ * screens bound to the connection's streams, on a thread of its own with a
+ * small stack. All sessions share one {@link ControllerContainer}, whose
+ * controllers keep no per-user state.
+ * </p>
+ * <p>
+ * Output is buffered and sent whenever the session waits for input, with
+ * line endings translated to CRLF for terminal clients. A session ends when
+ * the user exits, disconnects, or sends nothing for
+ * {@link #IDLE_TIMEOUT_MILLIS}. Connections beyond the session limit are
+ * told the server is busy and closed.
+ * </p>
+ * <p>
+ * The session limit is read from the {@value #MAX_SESSIONS_PROPERTY} system
+ * property, e.g. {@code -Dbto.maxSessions=5000}; when unset,
+ * {@value #DEFAULT_MAX_SESSIONS} is used.
+ * </p>
+ * <p>
+ * Logins, passwords included, travel over the connection in plain text, so
+ * the server only listens on the loopback interface unless another address is
+ * chosen explicitly through the {@value #BIND_ADDRESS_PROPERTY} system
+ * property, e.g. {@code -Dbto.serverBind=0.0.0.0} for every interface.
+ * </p>
+ */
+public class SessionServer {
+    /**
+     * Port used when none is given.
+     */
+    public static final int DEFAULT_PORT = 2323;
+
+    /**
+     * Session limit used when the system property is unset.
+     */
+    public static final int DEFAULT_MAX_SESSIONS = 2000;
+
+    /**
+     * System property holding the maximum number of concurrent sessions.
+     */
+    public static final String MAX_SESSIONS_PROPERTY = "bto.maxSessions";
+
+    /**
+     * System property holding the address to listen on.
+     */
+    public static final String BIND_ADDRESS_PROPERTY = "bto.serverBind";
+
+    /**
+     * Time a session may wait for input before it is ended.
+     */
+    public static final int IDLE_TIMEOUT_MILLIS = 30 * 60 * 1000;
+
+    /**
+     * Stack size requested for session threads; the UI's call depth is small.
+     */
+    private static final long SESSION_STACK_SIZE = 256 * 1024;
+
+    private static final int ACCEPT_BACKLOG = 1024;
+
+    private final ControllerContainer controllers;
+    private final InetAddress bindAddress;
+    private final int requestedPort;
+    private final int maxSessions;
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicLong sessionCount = new AtomicLong();
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+    private final Set<Thread> sessionThreads = ConcurrentHashMap.newKeySet();
+    private volatile ServerSocket serverSocket = null;
+    private volatile Thread acceptor = null;
+    private volatile boolean running = false;
+
+    /**
+     * Creates a server that listens on the loopback interface only. Nothing is
+     * bound until {@link #start()} is called.
+     *
+     * @param controllers The controllers shared by all sessions
+     * @param port        The port to listen on, or 0 for any free port
+     * @param maxSessions The maximum number of concurrent sessions, at least 1
+     * @throws IllegalArgumentException if maxSessions is less than 1
+     */
+    public SessionServer(ControllerContainer controllers, int port, int maxSessions) {
+        this(controllers, InetAddress.getLoopbackAddress(), port, maxSessions);
+    }
+
+    /**
+     * Creates a server that listens on the given address. Nothing is bound
+     * until {@link #start()} is called.
+     *
+     * @param controllers The controllers shared by all sessions
+     * @param bindAddress The address to listen on; the wildcard address
+     *                    listens on every interface
+     * @param port        The port to listen on, or 0 for any free port
+     * @param maxSessions The maximum number of concurrent sessions, at least 1
+     * @throws IllegalArgumentException if bindAddress is null or maxSessions
+     *                                  is less than 1
+     */
+    public SessionServer(ControllerContainer controllers, InetAddress bindAddress, int port, int maxSessions) {
+        if (bindAddress == null) {
+            throw new IllegalArgumentException("Bind address cannot be null");
+        }
+        if (controllers == null) {
+            throw new IllegalArgumentException("ControllerContainer cannot be null");
+        }
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("Session limit must be at least 1: " + maxSessions);
+        }
+        this.controllers = controllers;
+        this.bindAddress = bindAddress;
+        this.requestedPort = port;
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Returns the session limit configured through the
+     * {@value #MAX_SESSIONS_PROPERTY} system property.
+     *
+     * @return The configured limit, or {@link #DEFAULT_MAX_SESSIONS} if the
+     *         property is unset or invalid
+     */
+    public static int configuredMaxSessions() {
+        String value = System.getProperty(MAX_SESSIONS_PROPERTY);
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_MAX_SESSIONS;
+        }
+        try {
+            int limit = Integer.parseInt(value.trim());
+            if (limit >= 1) {
+                return limit;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        System.err.println("Warning: Invalid session limit '" + value + "'. Using " + DEFAULT_MAX_SESSIONS + ".");
+        return DEFAULT_MAX_SESSIONS;
+    }
+
+    /**
+     * Returns the address configured through the {@value #BIND_ADDRESS_PROPERTY}
+     * system property.
+     *
+     * @return The configured address, or the loopback address if the property
+     *         is unset
+     * @throws UnknownHostException If the property names an unknown host
+     */
+    public static InetAddress configuredBindAddress() throws UnknownHostException {
+        String value = System.getProperty(BIND_ADDRESS_PROPERTY);
+        if (value == null || value.trim().isEmpty()) {
+            return InetAddress.getLoopbackAddress();
+        }
+        return InetAddress.getByName(value.trim());
+    }
+
+    /**
+     * Binds the port and starts accepting sessions on a background thread. The
+     * thread keeps the JVM alive until {@link #stop()} is called.
+     *
+     * @throws IOException           If the port cannot be bound
+     * @throws IllegalStateException If the server was already started
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        ServerSocket socket = new ServerSocket();
+        socket.setReuseAddress(true);
+        socket.bind(new InetSocketAddress(bindAddress, requestedPort), ACCEPT_BACKLOG);
+        if (!bindAddress.isLoopbackAddress()) {
+            System.err.println("Warning: Listening on " + bindAddress.getHostAddress()
+                    + "; logins are sent unencrypted.");
+        }
+        serverSocket = socket;
+        running = true;
+        acceptor = new Thread(this::acceptLoop, "session-acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * Stops accepting sessions and disconnects every open session. Sessions
+     * end as soon as they next read input; use {@link #awaitSessions(long)}
+     * to wait for that.
+     */
+    public synchronized void stop() {
+        running = false;
+        ServerSocket socket = serverSocket;
+        if (socket != null) {
+            closeQuietly(socket);
+        }
+        for (Socket session : openSockets) {
+            closeQuietly(session);
+        }
+    }
+
+    /**
+     * Waits for the session threads to end after {@link #stop()}, so that no
+     * session is still changing data while the caller cleans up.
+     *
+     * @param timeoutMillis Maximum time to wait in total
+     * @return true if every session ended in time
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean awaitSessions(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Thread acceptorThread = acceptor;
+        if (acceptorThread != null && !join(acceptorThread, deadline)) {
+            return false; // It may still start sessions
+        }
+        for (Thread thread : sessionThreads) {
+            if (!join(thread, deadline)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The address the server listens on
+     */
+    public InetAddress getBindAddress() {
+        return bindAddress;
+    }
+
+    /**
+     * @return The port the server listens on, or the requested port if it has
+     *         not been started
+     */
+    public int getPort() {
+        ServerSocket socket = serverSocket;
+        return socket != null ? socket.getLocalPort() : requestedPort;
+    }
+
+    /**
+     * @return The number of sessions currently open
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * @return The number of sessions accepted since the server started
+     */
+    public long getSessionCount() {
+        return sessionCount.get();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Warning: Failed to accept a session: " + e.getMessage());
+                    continue;
+                }
+                return; // Closed by stop()
+            }
+            if (activeSessions.incrementAndGet() > maxSessions) {
+                activeSessions.decrementAndGet();
+                reject(socket);
+                continue;
+            }
+            long id = sessionCount.incrementAndGet();
+            openSockets.add(socket);
+            if (!running) { // stop() ran after the accept and missed this socket
+                endSession(socket);
+                return;
+            }
+            try {
+                Thread thread = new Thread(null, () -> runSession(socket), "session-" + id, SESSION_STACK_SIZE);
+                thread.setDaemon(true);
+                sessionThreads.add(thread);
+                try {
+                    thread.start();
+                } catch (Error e) {
+                    sessionThreads.remove(thread);
+                    throw e;
+                }
+            } catch (Error e) { // e.g. OutOfMemoryError: unable to create new native thread
+                System.err.println("Warning: Could not start a session thread: " + e.getMessage());
+                endSession(socket);
+            }
+        }
+    }
+
+    /**
+     * Runs one session on the calling thread and closes the connection when it
+     * ends.
+     */
+    private void runSession(Socket socket) {
+        try {
+            socket.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            PrintStream out = sessionOutput(socket.getOutputStream());
+            Scanner scanner = new Scanner(new FlushingInputStream(socket.getInputStream(), out),
+                    StandardCharsets.UTF_8.name());
+            new App(controllers, scanner, out).runSession();
+            out.flush();
+        } catch (NoSuchElementException e) {
+            // The user disconnected or timed out while being prompted
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Warning: Session " + Thread.currentThread().getName() + " failed: "
+                        + e.getMessage());
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Warning: Session " + Thread.currentThread().getName() + " ended with an error: "
+                    + e);
+        } finally {
+            endSession(socket);
+            sessionThreads.remove(Thread.currentThread());
+        }
+    }
+
+    /**
+     * Waits for a thread to end, until the deadline.
+     *
+     * @return true if the thread ended
+     */
+    private static boolean join(Thread thread, long deadline) throws InterruptedException {
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMillis > 0) {
+            thread.join(remainingMillis);
+        }
+        return !thread.isAlive();
+    }
+
+    private void endSession(Socket socket) {
+        closeQuietly(socket);
+        if (openSockets.remove(socket)) {
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    private static void reject(Socket socket) {
+        try {
+            PrintStream out = sessionOutput(socket.getOutputStream());
+            out.println("The server is busy. Please try again later.");
+            out.flush();
+        } catch (IOException e) {
+            // The client is gone already
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    private static PrintStream sessionOutput(OutputStream socketOutput) throws UnsupportedEncodingException {
+        return new PrintStream(new CrlfOutputStream(new BufferedOutputStream(socketOutput)), false,
+                StandardCharsets.UTF_8.name());
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to do
+        }
+    }
+
+    /**
+     * Input stream that sends the session's pending output before every read,
+     * so that prompts reach the user before the session waits for an answer.
+     */
+    private static final class FlushingInputStream extends FilterInputStream {
+        private final PrintStream output;
+
+        FlushingInputStream(InputStream in, PrintStream output) {
+            super(in);
+            this.output = output;
+        }
+
+        @Override
+        public int read() throws IOException {
+            output.flush();
+            try {
+                return super.read();
+            } catch (SocketException e) {
+                return -1; // Closed by stop(): end the session like a disconnect
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            output.flush();
+            try {
+                return super.read(b, off, len);
+            } catch (SocketException e) {
+                return -1; // Closed by stop(): end the session like a disconnect
+            }
+        }
+    }
+
+    /**
+     * Output stream that writes each LF as CRLF, the line ending terminal
+     * clients expect.
+     */
+    private static final class CrlfOutputStream extends FilterOutputStream {
+        CrlfOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (b == '\n') {
+                out.write('\r');
+            }
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    out.write(b, start, i - start);
+                    out.write('\r');
+                    start = i;
+                }
+            }
+            out.write(b, start, off + len - start);
+        }
+    }
+}
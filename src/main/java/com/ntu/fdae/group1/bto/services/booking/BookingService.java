@@ -9,6 +9,8 @@ import com.ntu.fdae.group1.bto.enums.ApplicationStatus;
 import com.ntu.fdae.group1.bto.enums.FlatType;
 import com.ntu.fdae.group1.bto.exceptions.BookingException;
 import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
+import com.ntu.fdae.group1.bto.exceptions.DuplicateEntityException;
+import com.ntu.fdae.group1.bto.exceptions.VersionConflictException;
 import com.ntu.fdae.group1.bto.models.booking.Booking;
 import com.ntu.fdae.group1.bto.models.project.Application;
 import com.ntu.fdae.group1.bto.models.project.Project;
@@ -19,7 +21,9 @@ import com.ntu.fdae.group1.bto.repository.booking.IBookingRepository;
 import com.ntu.fdae.group1.bto.repository.project.IApplicationRepository;
 import com.ntu.fdae.group1.bto.repository.project.IProjectRepository;
 import com.ntu.fdae.group1.bto.repository.user.IUserRepository;
+import com.ntu.fdae.group1.bto.repository.util.UnitOfWork;
 import com.ntu.fdae.group1.bto.utils.IdGenerator;
+import com.ntu.fdae.group1.bto.utils.RetryUtil;
 
 /**
  * Implementation of the IBookingService interface that provides booking
@@ -79,10 +83,32 @@ public class BookingService implements IBookingService {
      * - Validates the applicant exists and has an application for the project
      * - Checks if the flat type requested is available
      * - Creates and saves a booking record
+     * - Starts over if the application is changed by someone else meanwhile,
+     * keeping the booking ID generated for the first attempt
      * </p>
      */
     @Override
     public Booking performBooking(HDBOfficer officer, String applicantNRIC, FlatType flatType) throws BookingException {
+        // Generated once, so that retries do not use up further IDs
+        String bookingId = IdGenerator.generateBookingId();
+        try {
+            return RetryUtil.retryOnConflict(RetryUtil.DEFAULT_ATTEMPTS,
+                    () -> performBookingOnce(officer, applicantNRIC, flatType, bookingId));
+        } catch (VersionConflictException e) {
+            throw new BookingException("The application of applicant " + applicantNRIC
+                    + " keeps being changed by someone else. Please try again.", e);
+        }
+    }
+
+    /**
+     * Makes one attempt at {@link #performBooking}.
+     *
+     * @param bookingId The ID to give the new booking
+     * @throws VersionConflictException if the application was saved by
+     *                                  someone else after it was read
+     */
+    private Booking performBookingOnce(HDBOfficer officer, String applicantNRIC, FlatType flatType,
+            String bookingId) throws BookingException {
 
         // 1. Validate officer details
         if (officer == null) {
@@ -172,19 +198,30 @@ public class BookingService implements IBookingService {
             );
         }
 
-        // 11. Create and save the new booking record
-        String bookingId = IdGenerator.generateBookingId(); // Assuming static utility method
+        // 11. Create the new booking record
         LocalDate bookingDate = LocalDate.now();
         Booking newBooking = new Booking(bookingId, application.getApplicationId(), applicantNRIC,
                 project.getProjectId(), flatType, bookingDate);
-        bookingRepo.save(newBooking);
-
-        // 12. Update the application status to BOOKED and save the application
-        // (FAQ clarifies Officer manually sets status, system handles consequences -
-        // this service method represents the whole transaction triggered by Officer UI
-        // action)
-        application.setStatus(ApplicationStatus.BOOKED);
-        applicationRepo.save(application);
+
+        // 12. Update the application status to BOOKED. The booking and the
+        // application are saved as one unit, so neither is recorded without the
+        // other (FAQ clarifies Officer manually sets status, system handles
+        // consequences - this service method represents the whole transaction
+        // triggered by Officer UI action). The change is made to a copy, which
+        // is only saved if the application is still as checked above.
+        Application bookedApplication = new Application(application);
+        bookedApplication.setStatus(ApplicationStatus.BOOKED);
+        UnitOfWork work = new UnitOfWork();
+        bookingRepo.save(newBooking, work);
+        applicationRepo.save(bookedApplication, work);
+        try {
+            // The repository rejects a second booking for the same applicant or
+            // application atomically, closing the gap since the check in step 4
+            work.commit();
+        } catch (DuplicateEntityException e) {
+            throw new BookingException("Applicant " + applicantNRIC + " already has an existing booking (ID: "
+                    + e.getExistingId() + "). Cannot book another flat.", e);
+        }
 
         // 13. Return the newly created booking object
         return newBooking;
@@ -124,11 +124,18 @@ public class EligibilityService implements IEligibilityService {
      * 2. The officer must not be handling another project with an overlapping
      * application period
      * </p>
+     * <p>
+     * Projects the officer is already approved for are found through the
+     * repository's officer period index; only the officer's pending
+     * registrations are checked one by one.
+     * </p>
      *
      * @param officer          The HDB Officer to check eligibility for
      * @param project          The project the officer wishes to register for
-     * @param allRegistrations Collection of all officer registrations in the system
-     * @param allApplications  Collection of all applications in the system
+     * @param allRegistrations Officer registrations to consider; at least those of
+     *                         this officer
+     * @param allApplications  Applications to consider; at least those for this
+     *                         project
      * @return true if the officer is eligible to register for the project, false
      *         otherwise
      */
@@ -162,10 +169,14 @@ public class EligibilityService implements IEligibilityService {
 
         // Rule 2: Not an HDB Officer (PENDING or APPROVED) for another project
         // within the *same application period* (inclusive dates).
-        boolean handlingAnotherProjectInPeriod = allRegistrations.stream()
+        // Approved officers are listed on their projects, which are indexed by period
+        boolean handlingAnotherProjectInPeriod = projectRepository
+                .findByOfficerWithOverlappingPeriod(officerNric, projectOpen, projectClose).stream()
+                .anyMatch(otherProject -> !projectId.equals(otherProject.getProjectId()));
+        // Pending registrations are not yet on their projects, so check them directly
+        handlingAnotherProjectInPeriod = handlingAnotherProjectInPeriod || allRegistrations.stream()
                 .filter(reg -> officerNric.equals(reg.getOfficerNric()) && !projectId.equals(reg.getProjectId()))
-                .filter(reg -> reg.getStatus() == OfficerRegStatus.PENDING
-                        || reg.getStatus() == OfficerRegStatus.APPROVED)
+                .filter(reg -> reg.getStatus() == OfficerRegStatus.PENDING)
                 .anyMatch(otherReg -> {
                     // <<< USE Injected Repository to find the other project >>>
                     Project otherProject = projectRepository.findById(otherReg.getProjectId());
@@ -206,36 +217,30 @@ public class EligibilityService implements IEligibilityService {
      * specified dates.
      * <p>
      * A manager is eligible if they are not already managing a project with an
-     * overlapping application period.
+     * overlapping application period. The manager's projects are looked up in
+     * the repository's manager period index.
      * </p>
      * <p>
-     * Application periods overlap when: (StartA &lt; EndB) AND (EndA &gt; StartB)
+     * Application periods overlap when: (StartA &lt;= EndB) AND (EndA &gt;= StartB)
      * </p>
      *
      * @param manager             The HDB Manager to check eligibility for
      * @param newProjectOpenDate  The opening date of the new project
      * @param newProjectCloseDate The closing date of the new project
-     * @param allExistingProjects Collection of all existing projects in the system
+     * @param excludedProjectId   The ID of a project to ignore, such as the one
+     *                            being edited, or null
      * @return true if the manager is eligible to handle the new project, false
      *         otherwise
      */
     @Override
     public boolean checkManagerProjectHandlingEligibility(HDBManager manager, LocalDate newProjectOpenDate,
-            LocalDate newProjectCloseDate, Collection<Project> allExistingProjects) {
-        if (manager == null || newProjectOpenDate == null || newProjectCloseDate == null || allExistingProjects == null)
+            LocalDate newProjectCloseDate, String excludedProjectId) {
+        if (manager == null || newProjectOpenDate == null || newProjectCloseDate == null)
             return false;
-        String managerNric = manager.getNric();
-        boolean overlaps = allExistingProjects.stream()
-                .filter(existingProject -> managerNric.equals(existingProject.getManagerNric()))
-                .filter(existingProject -> existingProject.getOpeningDate() != null
-                        && existingProject.getClosingDate() != null)
-                .anyMatch(existingProject -> {
-                    LocalDate existingOpen = existingProject.getOpeningDate();
-                    LocalDate existingClose = existingProject.getClosingDate();
-                    boolean startABeforeEndB = !newProjectOpenDate.isAfter(existingClose);
-                    boolean endAAfterStartB = !newProjectCloseDate.isBefore(existingOpen);
-                    return startABeforeEndB && endAAfterStartB;
-                });
+        boolean overlaps = projectRepository
+                .findByManagerWithOverlappingPeriod(manager.getNric(), newProjectOpenDate, newProjectCloseDate)
+                .stream()
+                .anyMatch(existingProject -> !existingProject.getProjectId().equals(excludedProjectId));
         // if (overlaps) System.out.println("Eligibility Fail: Manager " + managerNric +
         // " already manages overlapping project."); // Optional logging
         return !overlaps;
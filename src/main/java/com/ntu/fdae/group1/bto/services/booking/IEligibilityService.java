@@ -78,8 +78,10 @@ public interface IEligibilityService {
          * 
          * @param officer          The officer requesting registration
          * @param project          The project the officer wants to register for
-         * @param allRegistrations All existing officer registrations in the system
-         * @param allApplications  All existing applications in the system
+         * @param allRegistrations Officer registrations to consider; must include
+         *                         all of this officer's registrations
+         * @param allApplications  Applications to consider; must include all
+         *                         applications for this project
          * @return true if the officer can register for the project, false otherwise
          */
         boolean canOfficerRegister(HDBOfficer officer, Project project,
@@ -94,12 +96,12 @@ public interface IEligibilityService {
          * @param manager             The manager creating/handling the project.
          * @param newProjectOpenDate  The opening date of the project being considered.
          * @param newProjectCloseDate The closing date of the project being considered.
-         * @param allExistingProjects A collection of all projects currently in the
-         *                            system.
+         * @param excludedProjectId   The ID of a project to leave out of the check,
+         *                            such as the project being edited, or null.
          * @return true if the manager can handle this new project concurrently, false
          *         otherwise.
          */
         boolean checkManagerProjectHandlingEligibility(HDBManager manager, LocalDate newProjectOpenDate,
                         LocalDate newProjectCloseDate,
-                        Collection<Project> allExistingProjects);
+                        String excludedProjectId);
 }
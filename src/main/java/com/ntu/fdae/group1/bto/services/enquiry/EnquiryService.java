@@ -1,14 +1,17 @@
 package com.ntu.fdae.group1.bto.services.enquiry;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import com.ntu.fdae.group1.bto.exceptions.VersionConflictException;
 import com.ntu.fdae.group1.bto.models.enquiry.Enquiry;
 import com.ntu.fdae.group1.bto.models.user.HDBStaff;
 import com.ntu.fdae.group1.bto.models.user.User;
 import com.ntu.fdae.group1.bto.repository.enquiry.IEnquiryRepository;
 import com.ntu.fdae.group1.bto.utils.IdGenerator;
+import com.ntu.fdae.group1.bto.utils.RetryUtil;
 
 /**
  * Service for managing enquiries in the BTO Management System.
@@ -65,18 +68,44 @@ public class EnquiryService implements IEnquiryService {
     /**
      * Edits the content of an existing enquiry.
      * <p>
-     * Updates the enquiry's content and saves the changes to the repository.
+     * Updates the content of a copy of the enquiry and saves the copy. If the
+     * enquiry is saved by someone else in between, for example replied to, the
+     * edit is checked again against the new state.
      * </p>
      *
      * @param enquiryId  The ID of the enquiry to edit
      * @param newContent The new content for the enquiry
      * @param user       The user attempting to edit the enquiry
-     * @return true if the edit was successful
+     * @return true if the edit was successful, false if the enquiry doesn't
+     *         exist, has already been replied to, or keeps being changed by
+     *         someone else
      */
     @Override
     public boolean editEnquiry(String enquiryId, String newContent, User user) {
+        try {
+            return RetryUtil.retryOnConflict(RetryUtil.DEFAULT_ATTEMPTS,
+                    () -> editEnquiryOnce(enquiryId, newContent));
+        } catch (VersionConflictException e) {
+            System.err.println("Service Error: Enquiry " + enquiryId
+                    + " keeps being changed by someone else. Edit failed.");
+            return false;
+        }
+    }
+
+    /**
+     * Makes one attempt at {@link #editEnquiry}, on a copy of the stored
+     * enquiry.
+     *
+     * @throws VersionConflictException if the enquiry was saved by someone
+     *                                  else after it was read
+     */
+    private boolean editEnquiryOnce(String enquiryId, String newContent) {
         Enquiry enquiry = enquiryRepo.findById(enquiryId);
+        if (enquiry == null || enquiry.isReplied()) {
+            return false;
+        }
 
+        enquiry = new Enquiry(enquiry);
         enquiry.editContent(newContent);
         enquiryRepo.save(enquiry);
         return true;
@@ -107,18 +136,38 @@ public class EnquiryService implements IEnquiryService {
      * Adds a reply to an enquiry.
      * <p>
      * Verifies that the enquiry exists and has not been previously replied to,
-     * then adds the reply with the current date and saves the updated enquiry.
+     * then adds the reply with the current date to a copy of the enquiry and
+     * saves the copy. If two staff reply at once, only the first reply is saved;
+     * the other attempt is checked again and finds the enquiry already replied.
      * </p>
      *
      * @param enquiryId    The ID of the enquiry to reply to
      * @param replyContent The content of the reply
      * @param staff        The HDB staff member providing the reply
      * @return true if the reply was successfully added, false if the enquiry
-     *         doesn't
-     *         exist or already has a reply
+     *         doesn't exist, already has a reply, or keeps being changed by
+     *         someone else
      */
     @Override
     public boolean replyToEnquiry(String enquiryId, String replyContent, HDBStaff staff) {
+        try {
+            return RetryUtil.retryOnConflict(RetryUtil.DEFAULT_ATTEMPTS,
+                    () -> replyToEnquiryOnce(enquiryId, replyContent));
+        } catch (VersionConflictException e) {
+            System.err.println("Service Error: Enquiry " + enquiryId
+                    + " keeps being changed by someone else. Reply failed.");
+            return false;
+        }
+    }
+
+    /**
+     * Makes one attempt at {@link #replyToEnquiry}, on a copy of the stored
+     * enquiry.
+     *
+     * @throws VersionConflictException if the enquiry was saved by someone
+     *                                  else after it was read
+     */
+    private boolean replyToEnquiryOnce(String enquiryId, String replyContent) {
         Enquiry enquiry = enquiryRepo.findById(enquiryId);
 
         // Check if enquiry exists
@@ -131,6 +180,7 @@ public class EnquiryService implements IEnquiryService {
             return false;
         }
 
+        enquiry = new Enquiry(enquiry);
         enquiry.addReply(replyContent, LocalDate.now());
         enquiryRepo.save(enquiry);
         return true;
@@ -172,6 +222,23 @@ public class EnquiryService implements IEnquiryService {
         return enquiryRepo.findByProjectId(projectId);
     }
 
+    /**
+     * Searches enquiries by keywords, using the repository's word index.
+     *
+     * @param query         The words to search for
+     * @param projectId     The ID of the project to search within, or null for
+     *                      all enquiries
+     * @param unrepliedOnly Whether to return only unreplied enquiries
+     * @return The matching enquiries, best match first
+     */
+    @Override
+    public List<Enquiry> searchEnquiries(String query, String projectId, boolean unrepliedOnly) {
+        if (query == null || query.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        return enquiryRepo.search(query, projectId, unrepliedOnly, MAX_SEARCH_RESULTS);
+    }
+
     /**
      * Finds an enquiry by its unique identifier.
      *
@@ -26,6 +26,12 @@ import com.ntu.fdae.group1.bto.models.user.User;
  */
 public interface IEnquiryService {
 
+    /**
+     * The maximum number of enquiries returned by
+     * {@link #searchEnquiries(String, String, boolean)}.
+     */
+    int MAX_SEARCH_RESULTS = 50;
+
     /**
      * Creates a new enquiry in the system.
      * <p>
@@ -108,6 +114,22 @@ public interface IEnquiryService {
      */
     List<Enquiry> viewProjectEnquiries(String projectId);
 
+    /**
+     * Searches enquiries by keywords in their content and replies.
+     * <p>
+     * Enquiries containing all the words of the query are returned, most
+     * relevant first. At most {@link #MAX_SEARCH_RESULTS} enquiries are
+     * returned.
+     * </p>
+     * 
+     * @param query         The words to search for, e.g. "swimming pool"
+     * @param projectId     ID of the project to search within, or null to search
+     *                      all enquiries
+     * @param unrepliedOnly true to return only enquiries not yet replied to
+     * @return List of matching enquiries, best match first
+     */
+    List<Enquiry> searchEnquiries(String query, String projectId, boolean unrepliedOnly);
+
     /**
      * Finds an enquiry by its unique identifier.
      * 
@@ -11,6 +11,8 @@ import com.ntu.fdae.group1.bto.enums.OfficerRegStatus;
 import com.ntu.fdae.group1.bto.enums.UserRole;
 import com.ntu.fdae.group1.bto.exceptions.ApplicationException;
 import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
+import com.ntu.fdae.group1.bto.exceptions.DuplicateEntityException;
+import com.ntu.fdae.group1.bto.exceptions.VersionConflictException;
 import com.ntu.fdae.group1.bto.models.project.Application;
 import com.ntu.fdae.group1.bto.models.project.Project;
 import com.ntu.fdae.group1.bto.models.project.ProjectFlatInfo;
@@ -20,8 +22,10 @@ import com.ntu.fdae.group1.bto.models.user.User;
 import com.ntu.fdae.group1.bto.repository.project.IApplicationRepository;
 import com.ntu.fdae.group1.bto.repository.project.IOfficerRegistrationRepository;
 import com.ntu.fdae.group1.bto.repository.project.IProjectRepository;
+import com.ntu.fdae.group1.bto.repository.util.UnitOfWork;
 import com.ntu.fdae.group1.bto.services.booking.IEligibilityService;
 import com.ntu.fdae.group1.bto.utils.IdGenerator;
+import com.ntu.fdae.group1.bto.utils.RetryUtil;
 
 /**
  * Implementation of the IApplicationService interface that manages the
@@ -174,11 +178,11 @@ public class ApplicationService implements IApplicationService {
 
         // --- 7. Check Officer Restrictions ---
         if (user.getRole() == UserRole.HDB_OFFICER) {
-            List<OfficerRegistration> registrations = officerRegRepo.findByOfficerNric(user.getNric());
-            boolean isRegisteredForThisProject = registrations.stream()
-                    .filter(reg -> reg.getProjectId().equals(projectId))
-                    .anyMatch(reg -> reg.getStatus() == OfficerRegStatus.PENDING
-                            || reg.getStatus() == OfficerRegStatus.APPROVED);
+            OfficerRegistration registration = officerRegRepo.findByOfficerNricAndProjectId(user.getNric(),
+                    projectId);
+            boolean isRegisteredForThisProject = registration != null
+                    && (registration.getStatus() == OfficerRegStatus.PENDING
+                            || registration.getStatus() == OfficerRegStatus.APPROVED);
 
             if (isRegisteredForThisProject) {
                 throw new ApplicationException("As an HDB Officer registered for project '"
@@ -193,7 +197,14 @@ public class ApplicationService implements IApplicationService {
         newApplication.setPreferredFlatType(preferredFlatType);
 
         // --- 9. Save Application ---
-        applicationRepo.save(newApplication);
+        // The repository allows one active application per applicant in the same
+        // step as the save, so a concurrent submission cannot slip past step 4
+        try {
+            applicationRepo.save(newApplication);
+        } catch (DuplicateEntityException e) {
+            throw new ApplicationException("You already have an active application (ID: " + e.getExistingId()
+                    + "). You cannot submit a new one until it is concluded.", e);
+        }
         System.out.println("ApplicationService: Saved new application " + newAppId);
 
         return newApplication;
@@ -213,16 +224,37 @@ public class ApplicationService implements IApplicationService {
      * Note that this method only requests the withdrawal, which must be reviewed
      * by a manager before becoming finalized.
      * </p>
+     * <p>
+     * If the application is changed by someone else meanwhile, the request
+     * starts over on the new state.
+     * </p>
      */
     @Override
     public boolean requestWithdrawal(User user) throws ApplicationException {
         Objects.requireNonNull(user, "Applicant cannot be null");
+        try {
+            return RetryUtil.retryOnConflict(RetryUtil.DEFAULT_ATTEMPTS, () -> requestWithdrawalOnce(user));
+        } catch (VersionConflictException e) {
+            throw new ApplicationException("The application of applicant " + user.getNric()
+                    + " keeps being changed by someone else. Please try again.", e);
+        }
+    }
 
-        Application app = applicationRepo.findByApplicantNric(user.getNric());
-        if (app == null) {
+    /**
+     * Makes one attempt at {@link #requestWithdrawal}, on a copy of the
+     * stored application.
+     *
+     * @throws VersionConflictException if the application was saved by
+     *                                  someone else after it was read
+     */
+    private boolean requestWithdrawalOnce(User user) throws ApplicationException {
+        Application stored = applicationRepo.findByApplicantNric(user.getNric());
+        if (stored == null) {
             throw new ApplicationException(
                     "No active application found for applicant " + user.getNric() + " to withdraw.");
         }
+        // Change a copy: it is only saved if the application is still as read
+        Application app = new Application(stored);
 
         // Check if already requested or in a final state
         if (app.getRequestedWithdrawalDate() != null) {
@@ -268,17 +300,38 @@ public class ApplicationService implements IApplicationService {
      * <li>Updates the application status to SUCCESSFUL</li>
      * </ul>
      * 
+     * If the application is changed by someone else during the review, the
+     * review starts over on the new state.
      */
     @Override
     public boolean reviewApplication(HDBManager manager, String applicationId, boolean approve)
             throws ApplicationException { // <<< ADD throws ApplicationException >>>
         Objects.requireNonNull(manager, "Manager cannot be null");
         Objects.requireNonNull(applicationId, "Application ID cannot be null");
+        try {
+            return RetryUtil.retryOnConflict(RetryUtil.DEFAULT_ATTEMPTS,
+                    () -> reviewApplicationOnce(manager, applicationId, approve));
+        } catch (VersionConflictException e) {
+            throw new ApplicationException("Application " + applicationId
+                    + " keeps being changed by someone else. Please try again.", e);
+        }
+    }
 
-        Application application = applicationRepo.findById(applicationId);
-        if (application == null) {
+    /**
+     * Makes one attempt at {@link #reviewApplication}, on a copy of the
+     * stored application.
+     *
+     * @throws VersionConflictException if the application was saved by
+     *                                  someone else after it was read
+     */
+    private boolean reviewApplicationOnce(HDBManager manager, String applicationId, boolean approve)
+            throws ApplicationException {
+        Application stored = applicationRepo.findById(applicationId);
+        if (stored == null) {
             throw new ApplicationException("Application ID " + applicationId + " not found.");
         }
+        // Review a copy: it is only saved if the application is still as read
+        Application application = new Application(stored);
         Project project = projectRepo.findById(application.getProjectId());
         if (project == null) {
             throw new ApplicationException("Associated project " + application.getProjectId()
@@ -321,26 +374,32 @@ public class ApplicationService implements IApplicationService {
                         + requestedType + " units available. Application rejected.");
             }
 
-            // Decrease unit count upon HDBManager's approval
-            boolean unitsDecremented = flatInfo.decreaseRemainingUnits();
-
-            if (!unitsDecremented) {
-                // This might happen in a concurrent scenario if units hit 0 between check and
-                // decrease.
-                // Or if decreaseRemainingUnits has internal logic preventing decrease below 0
-                // (which it should).
+            // Take a unit upon HDBManager's approval. The take is atomic, so concurrent
+            // approvals of the last unit cannot both succeed.
+            if (!flatInfo.tryReserve()) {
                 application.setStatus(ApplicationStatus.UNSUCCESSFUL);
                 applicationRepo.save(application);
-                System.err.println("Service Error: Failed to decrease remaining units for " + requestedType
-                        + " for application " + applicationId + ". Application rejected.");
+                System.err.println("Service Error: No " + requestedType + " unit left to reserve for application "
+                        + applicationId + ". Application rejected.");
                 throw new ApplicationException(
                         "Failed to reserve unit due to availability change. Application rejected.");
             }
+            // Complete the take before saving: the saved count still includes an
+            // uncommitted reservation. A failed save undoes the take below.
+            flatInfo.commit();
 
-            // If units were successfully decremented:
+            // The new status and the unit count are saved together, so neither is
+            // recorded without the other
             application.setStatus(ApplicationStatus.SUCCESSFUL);
-            applicationRepo.save(application); // Save updated application status FIRST
-            projectRepo.save(project); // THEN save the project with updated unit count
+            UnitOfWork work = new UnitOfWork();
+            applicationRepo.save(application, work);
+            projectRepo.saveFlatInfo(flatInfo, work);
+            try {
+                work.commit();
+            } catch (DataAccessException e) {
+                giveBackUnit(flatInfo, application); // The approval was not recorded
+                throw e;
+            }
             System.out.println("Service: Application " + applicationId + " approved by manager " + manager.getNric()
                     + ". Remaining " + requestedType + " units for project " + project.getProjectId() + ": "
                     + flatInfo.getRemainingUnits());
@@ -348,10 +407,9 @@ public class ApplicationService implements IApplicationService {
 
         else { // Reject
             application.setStatus(ApplicationStatus.UNSUCCESSFUL);
+            applicationRepo.save(application);
             System.out.println("Service: Application " + applicationId + " rejected by manager " + manager.getNric());
         }
-
-        applicationRepo.save(application);
         return true;
     }
 
@@ -371,6 +429,8 @@ public class ApplicationService implements IApplicationService {
      * <ul>
      * <li>The application status is set to UNSUCCESSFUL</li>
      * <li>The withdrawal request date is cleared</li>
+     * <li>If the application had been approved but not booked, the unit
+     * reserved for it is returned to the project</li>
      * </ul>
      * 
      * 
@@ -381,17 +441,38 @@ public class ApplicationService implements IApplicationService {
      * <li>The application continues in its original process</li>
      * </ul>
      * 
+     * If the application is changed by someone else during the review, the
+     * review starts over on the new state.
      */
     @Override
     public boolean reviewWithdrawal(HDBManager manager, String applicationId, boolean approve)
             throws ApplicationException {
         Objects.requireNonNull(manager, "Manager cannot be null");
         Objects.requireNonNull(applicationId, "Application ID cannot be null");
+        try {
+            return RetryUtil.retryOnConflict(RetryUtil.DEFAULT_ATTEMPTS,
+                    () -> reviewWithdrawalOnce(manager, applicationId, approve));
+        } catch (VersionConflictException e) {
+            throw new ApplicationException("Application " + applicationId
+                    + " keeps being changed by someone else. Please try again.", e);
+        }
+    }
 
-        Application application = applicationRepo.findById(applicationId);
-        if (application == null) {
+    /**
+     * Makes one attempt at {@link #reviewWithdrawal}, on a copy of the stored
+     * application.
+     *
+     * @throws VersionConflictException if the application was saved by
+     *                                  someone else after it was read
+     */
+    private boolean reviewWithdrawalOnce(HDBManager manager, String applicationId, boolean approve)
+            throws ApplicationException {
+        Application stored = applicationRepo.findById(applicationId);
+        if (stored == null) {
             throw new ApplicationException("Application ID " + applicationId + " not found.");
         }
+        // Review a copy: it is only saved if the application is still as read
+        Application application = new Application(stored);
         Project project = projectRepo.findById(application.getProjectId());
         if (project == null) {
             throw new ApplicationException("Associated project " + application.getProjectId()
@@ -410,13 +491,35 @@ public class ApplicationService implements IApplicationService {
         }
 
         if (approve) {
-            // Business Rule: If status was SUCCESSFUL, the number of flat units do NOT
-            // change. It only changes when Manager affirms booking.
+            // A SUCCESSFUL application holds the unit reserved at approval; return it.
+            // A BOOKED application keeps its unit, since its booking stands.
+            ProjectFlatInfo returned = application.getStatus() == ApplicationStatus.SUCCESSFUL
+                    ? returnReservedUnit(project, application)
+                    : null;
 
             // Final state after approved withdrawal is UNSUCCESSFUL
             application.setStatus(ApplicationStatus.UNSUCCESSFUL);
             application.setRequestedWithdrawalDate(null); // Clear the request flag
-            applicationRepo.save(application);
+
+            // The new status and the unit count are saved together, so neither is
+            // recorded without the other
+            UnitOfWork work = new UnitOfWork();
+            applicationRepo.save(application, work);
+            if (returned != null) {
+                projectRepo.saveFlatInfo(returned, work);
+            }
+            try {
+                work.commit();
+            } catch (DataAccessException e) {
+                if (returned != null) {
+                    takeBackUnit(returned, application); // The withdrawal was not recorded
+                }
+                throw e;
+            }
+            if (returned != null) {
+                System.out.println("Service: Returned one " + application.getPreferredFlatType() + " unit to project "
+                        + project.getProjectId() + ". Remaining: " + returned.getRemainingUnits());
+            }
             System.out.println("Service: Withdrawal request for application " + applicationId
                     + " approved. Application marked unsuccessful.");
 
@@ -430,6 +533,74 @@ public class ApplicationService implements IApplicationService {
         return true;
     }
 
+    /**
+     * Returns the unit reserved for an approved application to its project's
+     * remaining units. The caller saves the new count.
+     *
+     * @param project     The application's project
+     * @param application The withdrawn application
+     * @return The flat info the unit was returned to, or null if there was no
+     *         unit to return
+     */
+    private ProjectFlatInfo returnReservedUnit(Project project, Application application) {
+        ProjectFlatInfo flatInfo = project.getFlatInfo(application.getPreferredFlatType());
+        if (flatInfo == null || !flatInfo.returnUnit()) {
+            System.err.println("Service Warning: No reserved " + application.getPreferredFlatType()
+                    + " unit to return for withdrawn application " + application.getApplicationId());
+            return null;
+        }
+        return flatInfo;
+    }
+
+    /**
+     * Takes back a unit returned by {@link #returnReservedUnit} because the
+     * withdrawal could not be saved, so that a retry does not return it twice.
+     *
+     * @param flatInfo    The flat info the unit was returned to
+     * @param application The application whose withdrawal failed
+     */
+    private void takeBackUnit(ProjectFlatInfo flatInfo, Application application) {
+        if (!flatInfo.tryReserve() || !flatInfo.commit()) {
+            // Another approval took the returned unit in the meantime
+            System.err.println("Service Warning: Could not take back the " + application.getPreferredFlatType()
+                    + " unit returned for application " + application.getApplicationId());
+            return;
+        }
+        resaveUnitCount(flatInfo);
+    }
+
+    /**
+     * Gives back the unit committed for an approval that could not be saved.
+     *
+     * @param flatInfo    The flat info the unit was committed from
+     * @param application The application whose approval failed
+     */
+    private void giveBackUnit(ProjectFlatInfo flatInfo, Application application) {
+        if (!flatInfo.returnUnit()) {
+            System.err.println("Service Warning: Could not give back the " + application.getPreferredFlatType()
+                    + " unit committed for application " + application.getApplicationId());
+            return;
+        }
+        resaveUnitCount(flatInfo);
+    }
+
+    /**
+     * Saves a flat's unit count after a failed operation has undone its change
+     * in memory. Another save of the flat may have written the changed count
+     * meanwhile, and the file would otherwise keep it until the flat is next
+     * saved.
+     *
+     * @param flatInfo The flat info whose count was restored
+     */
+    private void resaveUnitCount(ProjectFlatInfo flatInfo) {
+        try {
+            projectRepo.saveFlatInfo(flatInfo);
+        } catch (DataAccessException e) {
+            System.err.println("Service Warning: Could not save the restored unit count of flat "
+                    + flatInfo.getFlatInfoId() + ": " + e.getMessage());
+        }
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -4,8 +4,10 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
+import com.ntu.fdae.group1.bto.enums.FlatType;
 import com.ntu.fdae.group1.bto.models.project.Project;
 import com.ntu.fdae.group1.bto.models.project.ProjectFlatInfo;
+import com.ntu.fdae.group1.bto.models.project.ProjectQuery;
 import com.ntu.fdae.group1.bto.models.user.*;
 
 /**
@@ -112,12 +114,11 @@ public interface IProjectService {
          * flat type, and visibility.
          * </p>
          *
-         * @param user    The user requesting the projects
-         * @param filters A map of optional filters to apply (neighborhood, flat type,
-         *                visibility)
+         * @param user  The user requesting the projects
+         * @param query The criteria, order and limit of the listing
          * @return A list of projects matching the criteria
          */
-        List<Project> getAllProjects(User user, Map<String, Object> filters);
+        List<Project> getAllProjects(User user, ProjectQuery query);
 
         /**
          * Retrieves all projects managed by a specific manager.
@@ -131,12 +132,12 @@ public interface IProjectService {
          * Retrieves all projects managed by a specific manager with optional filters.
          *
          * @param managerNRIC The NRIC of the manager
-         * @param filters     A map of optional filters to apply (neighborhood, flat
-         *                    type, visibility)
+         * @param query       The criteria, order and limit of the listing; any
+         *                    manager criterion in it is replaced by managerNRIC
          * @return A list of projects managed by the manager that match the filter
          *         criteria
          */
-        List<Project> getProjectsManagedBy(String managerNRIC, Map<String, Object> filters);
+        List<Project> getProjectsManagedBy(String managerNRIC, ProjectQuery query);
 
         /**
          * Retrieves a project by its unique identifier.
@@ -150,8 +151,8 @@ public interface IProjectService {
          * Retrieves all currently visible projects for which the user is eligible to
          * apply.
          * <p>
-         * This is a convenience overload that calls getVisibleProjectsForUser with an
-         * empty filter map.
+         * This is a convenience overload that calls getVisibleProjectsForUser with
+         * {@link ProjectQuery#all()}.
          * </p>
          *
          * @param user The user for whom to filter the projects
@@ -169,12 +170,50 @@ public interface IProjectService {
          * offered.
          * </p>
          *
-         * @param user    The user for whom to filter the projects
-         * @param filters A map of optional filters to apply (neighborhood, flat type)
+         * @param user  The user for whom to filter the projects
+         * @param query The criteria, order and limit of the listing; its visibility
+         *              and manager criteria are ignored
          * @return A list of visible projects for which the user is eligible that match
          *         the filters
          */
-        List<Project> getVisibleProjectsForUser(User user, Map<String, Object> filters);
+        List<Project> getVisibleProjectsForUser(User user, ProjectQuery query);
+
+        /**
+         * Finds the cheapest flats of a type that still have units remaining.
+         * <p>
+         * Applicants and officers only see flats in visible projects that are
+         * open for applications today, and only of flat types they may apply
+         * for. Managers see flats in every project.
+         * </p>
+         *
+         * @param user     The user searching
+         * @param flatType The flat type
+         * @param limit    The maximum number of flats to return
+         * @return The flats, cheapest first
+         */
+        List<ProjectFlatInfo> findCheapestAvailableFlats(User user, FlatType flatType, int limit);
+
+        /**
+         * Finds the flats of a type, within a price range, that still have units
+         * remaining. The same visibility rules apply as for
+         * {@link #findCheapestAvailableFlats(User, FlatType, int)}.
+         *
+         * @param user     The user searching
+         * @param flatType The flat type
+         * @param minPrice The lowest price to include
+         * @param maxPrice The highest price to include
+         * @return The flats, cheapest first
+         */
+        List<ProjectFlatInfo> findAvailableFlatsInPriceRange(User user, FlatType flatType, double minPrice,
+                        double maxPrice);
+
+        /**
+         * Describes how a project query would be executed, for diagnostics.
+         *
+         * @param query The query to explain
+         * @return The plan, one step per line
+         */
+        String explainProjectQuery(ProjectQuery query);
 
         /**
          * Retrieves all projects available for an HDB Officer to register for.
@@ -1,7 +1,6 @@
 package com.ntu.fdae.group1.bto.services.project;
 
 import java.util.List;
-import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.Objects;
 import java.util.Arrays;
@@ -12,11 +11,13 @@ import java.time.LocalDate;
 import com.ntu.fdae.group1.bto.enums.OfficerRegStatus;
 import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
 import com.ntu.fdae.group1.bto.exceptions.RegistrationException;
+import com.ntu.fdae.group1.bto.exceptions.VersionConflictException;
 import com.ntu.fdae.group1.bto.models.user.HDBManager;
 import com.ntu.fdae.group1.bto.models.user.HDBOfficer;
 import com.ntu.fdae.group1.bto.repository.project.IApplicationRepository;
 import com.ntu.fdae.group1.bto.repository.project.IOfficerRegistrationRepository;
 import com.ntu.fdae.group1.bto.repository.project.IProjectRepository;
+import com.ntu.fdae.group1.bto.repository.util.UnitOfWork;
 import com.ntu.fdae.group1.bto.services.booking.IEligibilityService;
 import com.ntu.fdae.group1.bto.utils.*;
 import com.ntu.fdae.group1.bto.models.project.*;
@@ -94,13 +95,13 @@ public class OfficerRegistrationService implements IOfficerRegistrationService {
         Project project = projectRepo.findById(projectId);
         if (project == null)
             throw new RegistrationException("Project with ID " + projectId + " not found.");
-        boolean alreadyRegistered = registrationRepo.findByOfficerNric(officer.getNric()).stream()
-                .anyMatch(reg -> reg.getProjectId().equals(projectId));
+        boolean alreadyRegistered = registrationRepo.findByOfficerNricAndProjectId(officer.getNric(),
+                projectId) != null;
         if (alreadyRegistered)
             throw new RegistrationException(
                     "Officer " + officer.getNric() + " is already registered for project " + projectId);
         boolean isEligible = eligibilityService.canOfficerRegister(officer, project,
-                registrationRepo.findAll().values(), applicationRepo.findAll().values());
+                registrationRepo.findByOfficerNric(officer.getNric()), applicationRepo.findByProjectId(projectId));
         if (!isEligible)
             throw new RegistrationException(
                     "Officer " + officer.getNric() + " is not eligible to register for project " + projectId);
@@ -123,19 +124,45 @@ public class OfficerRegistrationService implements IOfficerRegistrationService {
      * When a registration is approved or rejected, a response date is automatically
      * captured in the registration record.
      * </p>
+     * <p>
+     * If the registration or its project is changed by someone else during the
+     * review, for example by another approval taking an officer slot, the
+     * review starts over on the new state.
+     * </p>
      */
     @Override
     public boolean reviewRegistration(HDBManager manager, String registrationId, boolean approve)
             throws RegistrationException {
         Objects.requireNonNull(manager, "Manager cannot be null");
         Objects.requireNonNull(registrationId, "Registration ID cannot be null");
-        OfficerRegistration registration = registrationRepo.findById(registrationId);
-        if (registration == null)
+        try {
+            return RetryUtil.retryOnConflict(RetryUtil.DEFAULT_ATTEMPTS,
+                    () -> reviewRegistrationOnce(manager, registrationId, approve));
+        } catch (VersionConflictException e) {
+            throw new RegistrationException("Registration " + registrationId
+                    + " or its project keeps being changed by someone else. Please try again.", e);
+        }
+    }
+
+    /**
+     * Makes one attempt at {@link #reviewRegistration}, on copies of the stored
+     * registration and project.
+     *
+     * @throws VersionConflictException if the registration or the project was
+     *                                  saved by someone else after it was read
+     */
+    private boolean reviewRegistrationOnce(HDBManager manager, String registrationId, boolean approve)
+            throws RegistrationException {
+        OfficerRegistration storedRegistration = registrationRepo.findById(registrationId);
+        if (storedRegistration == null)
             throw new RegistrationException("Registration ID " + registrationId + " not found.");
-        Project project = projectRepo.findById(registration.getProjectId());
-        if (project == null)
-            throw new RegistrationException("Associated project " + registration.getProjectId()
+        Project storedProject = projectRepo.findById(storedRegistration.getProjectId());
+        if (storedProject == null)
+            throw new RegistrationException("Associated project " + storedRegistration.getProjectId()
                     + " not found for registration " + registrationId);
+        // Review copies: they are only saved if neither has changed since read
+        OfficerRegistration registration = new OfficerRegistration(storedRegistration);
+        Project project = new Project(storedProject);
         if (!project.getManagerNric().equals(manager.getNric()))
             throw new RegistrationException(
                     "Manager " + manager.getNric() + " does not have permission for project " + project.getProjectId());
@@ -155,8 +182,14 @@ public class OfficerRegistrationService implements IOfficerRegistrationService {
                 // Ensure Project class has this method implemented correctly
                 boolean added = project.addApprovedOfficer(registration.getOfficerNric());
                 if (added) {
-                    projectRepo.save(project);
+                    // The project's officer list and the registration are saved
+                    // together, so neither is recorded without the other
+                    UnitOfWork work = new UnitOfWork();
+                    projectRepo.save(project, work);
+                    registrationRepo.save(registration, work);
+                    work.commit();
                     System.out.println("Service: Registration " + registrationId + " approved.");
+                    return true;
                 } else {
                     registration.setStatus(OfficerRegStatus.REJECTED); // Revert if add failed
                     System.err.println("Service Error: Failed add officer " + registration.getOfficerNric()
@@ -194,18 +227,10 @@ public class OfficerRegistrationService implements IOfficerRegistrationService {
         }
 
         try {
-            List<OfficerRegistration> officerRegistrations = registrationRepo.findByOfficerNric(officer.getNric());
-
-            if (officerRegistrations == null || officerRegistrations.isEmpty()) {
-                return null; // Officer has no registrations at all
-            }
-
-            // Filter the list for the specific project ID
-            Optional<OfficerRegistration> specificRegistration = officerRegistrations.stream()
-                    .filter(reg -> projectId.equals(reg.getProjectId()))
-                    .findFirst(); // There should only be one registration per officer per
-
-            return specificRegistration.map(OfficerRegistration::getStatus).orElse(null);
+            // There is at most one registration per officer per project
+            OfficerRegistration registration = registrationRepo.findByOfficerNricAndProjectId(officer.getNric(),
+                    projectId);
+            return registration == null ? null : registration.getStatus();
 
         } catch (DataAccessException e) {
             System.err.println("Data access error fetching registration status for officer " + officer.getNric()
@@ -253,19 +278,7 @@ public class OfficerRegistrationService implements IOfficerRegistrationService {
             return Collections.emptyList(); // Return empty list for invalid input
         }
         try {
-            // Assuming findByProjectId returns a List<OfficerRegistration>
-            // If it returns null, handle that case.
-            List<OfficerRegistration> projectRegistrations = registrationRepo.findByProjectId(projectId);
-
-            if (projectRegistrations == null || projectRegistrations.isEmpty()) {
-                return Collections.emptyList();
-            }
-
-            // Filter the results for PENDING status
-            return projectRegistrations.stream()
-                    .filter(reg -> reg != null && reg.getStatus() == OfficerRegStatus.PENDING) // Add null check just in
-                                                                                               // case
-                    .collect(Collectors.toList());
+            return registrationRepo.findByProjectIdAndStatus(projectId, OfficerRegStatus.PENDING);
 
         } catch (DataAccessException e) {
             System.err.println("Service DataAccess ERROR: Failed to get registrations for project " + projectId + ": "
@@ -292,11 +305,13 @@ public class OfficerRegistrationService implements IOfficerRegistrationService {
      */
     @Override
     public int getPendingRegistrationCountForProject(String projectId) {
-        // Simply call the other method and get the size.
-        // This avoids duplicating the filtering logic.
-        // If performance becomes an issue AND the repository supports a direct count,
-        // this could be optimized later.
-        return getPendingRegistrationsForProject(projectId).size();
+        if (projectId == null || projectId.trim().isEmpty()) {
+            System.err.println(
+                    "Service Warning: getPendingRegistrationCountForProject called with invalid projectId.");
+            return 0;
+        }
+        // Read from the repository's project and status index; no list is built
+        return registrationRepo.countByProjectIdAndStatus(projectId, OfficerRegStatus.PENDING);
     }
 
     /**
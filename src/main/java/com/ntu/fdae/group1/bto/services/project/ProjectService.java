@@ -1,32 +1,34 @@
 package com.ntu.fdae.group1.bto.services.project;
 
 import java.time.LocalDate;
-import java.util.Arrays;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import com.ntu.fdae.group1.bto.enums.ApplicationStatus;
 import com.ntu.fdae.group1.bto.enums.FlatType;
 import com.ntu.fdae.group1.bto.enums.MaritalStatus;
 import com.ntu.fdae.group1.bto.enums.OfficerRegStatus;
 import com.ntu.fdae.group1.bto.enums.UserRole;
+import com.ntu.fdae.group1.bto.exceptions.VersionConflictException;
 import com.ntu.fdae.group1.bto.models.project.Application;
 import com.ntu.fdae.group1.bto.models.project.OfficerRegistration;
 import com.ntu.fdae.group1.bto.models.project.Project;
 import com.ntu.fdae.group1.bto.models.project.ProjectFlatInfo;
+import com.ntu.fdae.group1.bto.models.project.ProjectQuery;
 import com.ntu.fdae.group1.bto.models.user.*;
 import com.ntu.fdae.group1.bto.repository.project.IApplicationRepository;
 import com.ntu.fdae.group1.bto.repository.project.IOfficerRegistrationRepository;
 import com.ntu.fdae.group1.bto.repository.project.IProjectRepository;
 import com.ntu.fdae.group1.bto.services.booking.IEligibilityService;
 import com.ntu.fdae.group1.bto.utils.IdGenerator;
+import com.ntu.fdae.group1.bto.utils.RetryUtil;
 
 /**
  * Service class for managing project-related operations in the BTO Management
@@ -127,11 +129,8 @@ public class ProjectService implements IProjectService {
             return null;
         }
 
-        // Eligibility Check
-        // Need to handle Collection<Project> type potentially returned by findAll()
-        Map<String, Project> projectMap = projectRepo.findAll();
-        Collection<Project> allProjects = (projectMap != null) ? projectMap.values() : Arrays.asList();
-        if (!eligibilityService.checkManagerProjectHandlingEligibility(manager, openDate, closeDate, allProjects)) {
+        // Eligibility Check against the manager's existing projects
+        if (!eligibilityService.checkManagerProjectHandlingEligibility(manager, openDate, closeDate, null)) {
             System.err.println("Service Error: Manager " + manager.getNric()
                     + " is already handling another project during this application period. Project creation failed.");
             return null;
@@ -139,13 +138,14 @@ public class ProjectService implements IProjectService {
 
         String projectId = IdGenerator.generateProjectId();
 
-        // Convert Map<String, ProjectFlatInfo> to Map<FlatType, ProjectFlatInfo>
+        // Convert Map<String, ProjectFlatInfo> to Map<FlatType, ProjectFlatInfo>,
+        // giving each flat info a stable ID tied to the new project
         Map<FlatType, ProjectFlatInfo> typedFlatInfoMap;
         try {
             typedFlatInfoMap = flatInfoMap.entrySet().stream()
                     .collect(Collectors.toMap(
                             entry -> FlatType.valueOf(entry.getKey().trim().toUpperCase()),
-                            Map.Entry::getValue));
+                            entry -> withIdentity(entry.getValue(), projectId)));
         } catch (IllegalArgumentException e) {
             System.err.println("Service Error: Invalid FlatType string found in flatInfoMap keys: " + e.getMessage());
             return null;
@@ -167,6 +167,19 @@ public class ProjectService implements IProjectService {
         return newProject;
     }
 
+    /**
+     * Copies flat details entered for a new project, assigning a new flat info
+     * ID and the project's ID.
+     *
+     * @param details   The flat details as entered
+     * @param projectId The ID of the project being created
+     * @return A flat info with a stable identity
+     */
+    private ProjectFlatInfo withIdentity(ProjectFlatInfo details, String projectId) {
+        return new ProjectFlatInfo(IdGenerator.generateFlatInfoId(), projectId, details.getFlatType(),
+                details.getTotalUnits(), details.getRemainingUnits(), details.getPrice());
+    }
+
     /**
      * Edits the core details of an existing project.
      * <p>
@@ -186,6 +199,26 @@ public class ProjectService implements IProjectService {
     @Override
     public boolean editCoreProjectDetails(HDBManager manager, String projectId, String name, String neighborhood,
             LocalDate openDate, LocalDate closeDate, int officerSlots) {
+        try {
+            // If the project changes meanwhile, check and apply the edit again on the new state
+            return RetryUtil.retryOnConflict(RetryUtil.DEFAULT_ATTEMPTS, () -> editCoreProjectDetailsOnce(manager,
+                    projectId, name, neighborhood, openDate, closeDate, officerSlots));
+        } catch (VersionConflictException e) {
+            System.err.println("Service Error: Project " + projectId
+                    + " keeps being changed by someone else. Project edit failed.");
+            return false;
+        }
+    }
+
+    /**
+     * Makes one attempt at {@link #editCoreProjectDetails}, on a copy of the
+     * stored project.
+     *
+     * @throws VersionConflictException if the project was saved by someone
+     *                                  else after it was read
+     */
+    private boolean editCoreProjectDetailsOnce(HDBManager manager, String projectId, String name,
+            String neighborhood, LocalDate openDate, LocalDate closeDate, int officerSlots) {
         Project project = projectRepo.findById(projectId);
 
         // Input validation
@@ -224,21 +257,16 @@ public class ProjectService implements IProjectService {
             return false;
         }
 
-        // Check Manager Concurrency Eligibility with NEW dates
-        Map<String, Project> projectMap = projectRepo.findAll();
-        // Exclude the current project being edited from the check list
-        final String currentProjectId = projectId; // Final variable for lambda
-        Collection<Project> otherProjects = (projectMap != null) ? projectMap.values().stream()
-                .filter(p -> !p.getProjectId().equals(currentProjectId)) // Exclude self
-                .collect(Collectors.toList())
-                : Arrays.asList();
-
-        if (!eligibilityService.checkManagerProjectHandlingEligibility(manager, openDate, closeDate, otherProjects)) {
+        // Check Manager Concurrency Eligibility with NEW dates, excluding the
+        // project being edited
+        if (!eligibilityService.checkManagerProjectHandlingEligibility(manager, openDate, closeDate, projectId)) {
             System.err.println("Service Error: The new dates for project " + projectId
                     + " overlap with another project managed by " + manager.getNric() + ". Edit failed.");
             return false;
         }
 
+        // Edit a copy, so that readers never see a partly edited project
+        project = new Project(project);
         // Use try-catch for potential validation errors from setters
         try {
             project.setProjectName(name);
@@ -251,7 +279,7 @@ public class ProjectService implements IProjectService {
             return false;
         }
 
-        projectRepo.save(project);
+        projectRepo.save(project); // Also re-indexes the project under its new dates
         System.out.println("Service: Project " + projectId + " updated successfully.");
         return true;
     }
@@ -280,10 +308,9 @@ public class ProjectService implements IProjectService {
             return false;
         }
 
-        List<Application> projectApps = this.applicationRepo.findByProjectId(projectId);
-        boolean hasActiveApps = projectApps.stream()
-                .anyMatch(app -> app.getStatus() == ApplicationStatus.PENDING ||
-                        app.getStatus() == ApplicationStatus.SUCCESSFUL);
+        boolean hasActiveApps = !this.applicationRepo
+                .findByProjectIdAndStatus(projectId, ApplicationStatus.PENDING).isEmpty()
+                || !this.applicationRepo.findByProjectIdAndStatus(projectId, ApplicationStatus.SUCCESSFUL).isEmpty();
 
         if (hasActiveApps) {
             System.err.println("Service Error: Cannot delete project " + projectId
@@ -311,7 +338,9 @@ public class ProjectService implements IProjectService {
      * Toggles the visibility of a project.
      * <p>
      * Allows the manager to make a project visible or hidden, depending on its
-     * current state.
+     * current state. If the project changes meanwhile, the toggle is applied
+     * again to the new state, so two managers toggling at once each flip it
+     * once.
      * </p>
      *
      * @param manager   The HDB manager requesting the visibility change
@@ -320,6 +349,24 @@ public class ProjectService implements IProjectService {
      */
     @Override
     public boolean toggleVisibility(HDBManager manager, String projectId) {
+        try {
+            return RetryUtil.retryOnConflict(RetryUtil.DEFAULT_ATTEMPTS,
+                    () -> toggleVisibilityOnce(manager, projectId));
+        } catch (VersionConflictException e) {
+            System.err.println("Service Error: Project " + projectId
+                    + " keeps being changed by someone else. Visibility change failed.");
+            return false;
+        }
+    }
+
+    /**
+     * Makes one attempt at {@link #toggleVisibility}, on a copy of the stored
+     * project.
+     *
+     * @throws VersionConflictException if the project was saved by someone
+     *                                  else after it was read
+     */
+    private boolean toggleVisibilityOnce(HDBManager manager, String projectId) {
         Project project = projectRepo.findById(projectId);
         if (project == null) {
             System.err.println("Service Error: Project not found with ID: " + projectId);
@@ -330,7 +377,7 @@ public class ProjectService implements IProjectService {
                     + " does not have permission to change visibility for project " + projectId);
             return false;
         }
-        // Use the setter from Project.java
+        project = new Project(project);
         project.setVisibility(!project.isVisible());
         projectRepo.save(project);
         System.out.println(
@@ -339,33 +386,20 @@ public class ProjectService implements IProjectService {
     }
 
     /**
-     * Retrieves all projects visible to a specific user, with optional filters.
+     * Retrieves all projects matching a query, for staff.
      * <p>
-     * Filters can include criteria such as neighborhood, flat type, and visibility.
+     * The query is planned by the project repository, which reads the most
+     * selective index for its criteria (neighborhood, flat type, visibility).
      * </p>
      *
-     * @param user    The user requesting the projects
-     * @param filters A map of optional filters to apply
+     * @param user  The user requesting the projects
+     * @param query The criteria, order and limit of the listing
      * @return A list of projects matching the criteria
      */
     @Override
-    public List<Project> getAllProjects(User user, Map<String, Object> filters) {
+    public List<Project> getAllProjects(User user, ProjectQuery query) {
         // Authorization should be in Controller
-        Map<String, Project> projectMap = projectRepo.findAll();
-        if (projectMap == null || projectMap.isEmpty()) {
-            return Collections.emptyList();
-        }
-        List<Project> allProjects = new ArrayList<>(projectMap.values());
-
-        Stream<Project> stream = allProjects.stream(); // Start with full stream
-
-        // Apply optional filters from the map (Neighbourhood, Flat Type, Visibility)
-        stream = applyOptionalFilters(stream, filters, true); // isStaffView = true
-
-        // Apply DEFAULT Sorting by Project ID (last step before collect)
-        stream = stream.sorted(Comparator.comparing(Project::getProjectId)); // Default sort
-
-        return stream.collect(Collectors.toList());
+        return projectRepo.plan(query).execute();
     }
 
     /**
@@ -379,35 +413,18 @@ public class ProjectService implements IProjectService {
         if (managerNRIC == null || managerNRIC.trim().isEmpty()) {
             return new ArrayList<>();
         }
-        Map<String, Project> projectMap = projectRepo.findAll();
-        if (projectMap == null || projectMap.isEmpty()) {
-            return new ArrayList<>();
-        }
-        return projectMap.values().stream()
-                .filter(p -> managerNRIC.equals(p.getManagerNric()))
-                .collect(Collectors.toList());
+        return getProjectsManagedBy(managerNRIC, ProjectQuery.all());
     }
 
     @Override
-    public List<Project> getProjectsManagedBy(String managerNRIC, Map<String, Object> filters) { // Add filters param
+    public List<Project> getProjectsManagedBy(String managerNRIC, ProjectQuery query) {
         if (managerNRIC == null || managerNRIC.trim().isEmpty()) {
             return Collections.emptyList(); // Use Collections.emptyList() for Java 8
         }
-        Map<String, Project> projectMap = projectRepo.findAll();
-        if (projectMap == null || projectMap.isEmpty()) {
-            return Collections.emptyList();
+        if (query == null) {
+            query = ProjectQuery.all();
         }
-
-        Stream<Project> stream = projectMap.values().stream()
-                .filter(p -> managerNRIC.equals(p.getManagerNric())); // Mandatory filter first
-
-        // Apply optional filters (pass isStaffView=true as manager is staff)
-        stream = applyOptionalFilters(stream, filters, true);
-
-        // Apply default sorting (e.g., by Project ID or Name)
-        stream = stream.sorted(Comparator.comparing(Project::getProjectId));
-
-        return stream.collect(Collectors.toList());
+        return projectRepo.plan(query.withManager(managerNRIC)).execute();
     }
 
     /**
@@ -424,61 +441,105 @@ public class ProjectService implements IProjectService {
         return projectRepo.findById(projectId);
     }
 
-    // Overload without filters (calls the one with filters using empty map)
+    // Overload without filters (calls the one with filters using the unrestricted query)
     @Override
     public List<Project> getVisibleProjectsForUser(User user) {
-        return getVisibleProjectsForUser(user, Collections.emptyMap()); // Delegate to filter version
+        return getVisibleProjectsForUser(user, ProjectQuery.all()); // Delegate to filter version
     }
 
     /**
      * Gets a list of projects that are currently visible and eligible for a
      * specific user
      * (typically an Applicant or Officer acting as one) to potentially apply for.
-     * Filters based on project visibility, application closing date, and user
+     * Filters based on project visibility, application period, and user
      * eligibility rules.
-     * The list is sorted alphabetically by project name.
+     * <p>
+     * All of these are criteria of the planned query, so the repository answers
+     * them by combining its project bitsets rather than checking every project.
+     * </p>
      *
-     * @param user    The user for whom to filter the projects.
-     * @param filters A map of optional filters (e.g., neighbourhood, flat type).
-     * @return A List of eligible and visible Project objects, sorted by name.
+     * @param user  The user for whom to filter the projects.
+     * @param query The criteria, order and limit of the listing (e.g.,
+     *              neighbourhood, flat type).
+     * @return A List of eligible and visible Project objects.
      */
     @Override
-    public List<Project> getVisibleProjectsForUser(User user, Map<String, Object> filters) {
-        LocalDate currentDate = LocalDate.now();
-        Map<String, Project> projectMap = projectRepo.findAll();
-
-        if (projectMap == null || projectMap.isEmpty()) {
+    public List<Project> getVisibleProjectsForUser(User user, ProjectQuery query) {
+        Set<FlatType> eligibleTypes = getEligibleFlatTypes(user);
+        if (eligibleTypes.isEmpty()) {
             return Collections.emptyList();
         }
+        if (query == null) {
+            query = ProjectQuery.all();
+        }
+        // Applicants only see visible projects in their application period, whoever manages them
+        ProjectQuery visibleQuery = query.withVisibility(true)
+                .withManager(null)
+                .withOpenOn(LocalDate.now())
+                .withAnyOfferedFlatType(eligibleTypes);
+        return projectRepo.plan(visibleQuery).execute();
+    }
 
-        List<Project> allProjects = new ArrayList<>(projectMap.values());
-        Stream<Project> stream = allProjects.stream()
-                // --- Base Filters ---
-                // 1. Must be marked as Visible
-                .filter(Project::isVisible)
-
-                // 2. Must be within the Active Application Period
-                .filter(project -> {
-                    // Check for non-null dates first
-                    if (project.getOpeningDate() == null || project.getClosingDate() == null) {
-                        return false; // Cannot apply if dates are missing
-                    }
-                    // Check if currentDate is ON or AFTER openingDate AND ON or BEFORE closingDate
-                    return !currentDate.isBefore(project.getOpeningDate()) &&
-                            !currentDate.isAfter(project.getClosingDate());
-                })
-
-                // 3. User must meet basic eligibility for the project (age, marital status vs
-                // flat types offered)
-                .filter(project -> isProjectEligibleForApplicant(user, project));
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Answered from the repository's price index over flats with units
+     * remaining, stopping after the first {@code limit} matches.
+     * </p>
+     */
+    @Override
+    public List<ProjectFlatInfo> findCheapestAvailableFlats(User user, FlatType flatType, int limit) {
+        if (user == null || flatType == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        return findAvailableFlats(user, flatType, null, null, limit);
+    }
 
-        // Apply optional filters from the map (Neighbourhood, Flat Type)
-        stream = applyOptionalFilters(stream, filters, false); // isStaffView = false
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Answered from the repository's price index over flats with units
+     * remaining; only flats within the range are inspected.
+     * </p>
+     */
+    @Override
+    public List<ProjectFlatInfo> findAvailableFlatsInPriceRange(User user, FlatType flatType, double minPrice,
+            double maxPrice) {
+        if (user == null || flatType == null || minPrice > maxPrice) {
+            return Collections.emptyList();
+        }
+        return findAvailableFlats(user, flatType, minPrice, maxPrice, 0);
+    }
 
-        // Apply DEFAULT Sorting by Project ID (last step before collect)
-        stream = stream.sorted(Comparator.comparing(Project::getProjectId)); // Default sort
+    /**
+     * Searches the price index, restricted to the projects the user may see.
+     *
+     * @param user     The user searching
+     * @param flatType The flat type
+     * @param minPrice The lowest price, or null
+     * @param maxPrice The highest price, or null
+     * @param limit    The maximum number of flats, or 0 for no limit
+     * @return The flats, cheapest first
+     */
+    private List<ProjectFlatInfo> findAvailableFlats(User user, FlatType flatType, Double minPrice,
+            Double maxPrice, int limit) {
+        if (user.getRole() == UserRole.HDB_MANAGER) {
+            return projectRepo.findAvailableFlatsByPrice(flatType, minPrice, maxPrice, null, limit);
+        }
+        if (!getEligibleFlatTypes(user).contains(flatType)) {
+            return Collections.emptyList();
+        }
+        LocalDate today = LocalDate.now();
+        return projectRepo.findAvailableFlatsByPrice(flatType, minPrice, maxPrice,
+                project -> project.isVisible() && project.getOpeningDate() != null
+                        && project.getClosingDate() != null
+                        && !today.isBefore(project.getOpeningDate()) && !today.isAfter(project.getClosingDate()),
+                limit);
+    }
 
-        return stream.collect(Collectors.toList());
+    @Override
+    public String explainProjectQuery(ProjectQuery query) {
+        return projectRepo.plan(query).explain();
     }
 
     @Override
@@ -502,9 +563,13 @@ public class ProjectService implements IProjectService {
                         || reg.getStatus() == OfficerRegStatus.APPROVED)
                 .collect(Collectors.toMap(OfficerRegistration::getProjectId, reg -> reg, (reg1, reg2) -> reg1));
 
-        // Fetch projects corresponding to these pending/approved registrations to get
-        // their dates
-        Map<String, Project> projectsOfExistingRegs = pendingOrApprovedRegsMap.keySet().stream()
+        // Fetch projects corresponding to the pending registrations to get their
+        // dates
+        List<String> pendingRegProjectIds = pendingOrApprovedRegsMap.values().stream()
+                .filter(reg -> reg.getStatus() == OfficerRegStatus.PENDING)
+                .map(OfficerRegistration::getProjectId)
+                .collect(Collectors.toList());
+        Map<String, Project> projectsOfExistingRegs = pendingRegProjectIds.stream()
                 .map(projectRepo::findById) // Assumes findById returns Project or null
                 .filter(Objects::nonNull)
                 .collect(Collectors.toMap(Project::getProjectId, proj -> proj));
@@ -531,8 +596,14 @@ public class ProjectService implements IProjectService {
                     if (pendingOrApprovedRegsMap.isEmpty()) {
                         return true;
                     }
-                    // Check against each existing pending/approved registration's project period
-                    for (String existingRegProjectId : pendingOrApprovedRegsMap.keySet()) {
+                    // Projects the officer is approved for are found through the period index
+                    if (targetProject.getOpeningDate() != null && targetProject.getClosingDate() != null
+                            && !projectRepo.findByOfficerWithOverlappingPeriod(officerNric,
+                                    targetProject.getOpeningDate(), targetProject.getClosingDate()).isEmpty()) {
+                        return false;
+                    }
+                    // Pending registrations are not on their projects yet; check them directly
+                    for (String existingRegProjectId : pendingRegProjectIds) {
                         Project existingRegProject = projectsOfExistingRegs.get(existingRegProjectId);
                         if (existingRegProject != null) { // Ensure we have project details for the existing reg
                             if (periodsOverlap(targetProject, existingRegProject)) {
@@ -586,17 +657,18 @@ public class ProjectService implements IProjectService {
     }
 
     /**
-     * Helper method to check if a specific project is eligible for a given user
-     * based on the BTO application rules (age, marital status, flat types offered).
+     * Helper method to determine which flat types a user may apply for, based
+     * on the BTO application rules (age, marital status). A project is
+     * eligible for the user if it offers at least one of these types.
      *
-     * @param user    The user (Applicant or Officer) applying.
-     * @param project The project being checked.
-     * @return true if the user is eligible for this project, false otherwise.
+     * @param user The user (Applicant or Officer) applying.
+     * @return The flat types the user may apply for; empty if the user cannot
+     *         apply for any project.
      */
-    private boolean isProjectEligibleForApplicant(User user, Project project) {
+    private Set<FlatType> getEligibleFlatTypes(User user) {
         // Managers cannot apply for BTOs.
         if (user.getRole() == UserRole.HDB_MANAGER) {
-            return false;
+            return EnumSet.noneOf(FlatType.class);
         }
 
         // Consider both Applicants and Officers (who can act as applicants)
@@ -610,94 +682,22 @@ public class ProjectService implements IProjectService {
 
             int age = user.getAge();
             MaritalStatus status = user.getMaritalStatus();
-            Map<FlatType, ProjectFlatInfo> flats = project.getFlatTypes();
-
-            // Check if the project actually offers any flats
-            if (flats == null || flats.isEmpty()) {
-                return false; // Cannot apply to a project with no flats defined
-            }
 
             // Apply rules from Assignment PDF Page 3:
             if (status == MaritalStatus.SINGLE && age >= 35) {
                 // Singles >= 35: Eligible ONLY IF the project offers 2-Room flats.
-                return project.getFlatTypes().containsKey(FlatType.TWO_ROOM);
+                return EnumSet.of(FlatType.TWO_ROOM);
             } else if (status == MaritalStatus.MARRIED && age >= 21) {
                 // Married >= 21: Eligible for projects offering ANY flat type (2-Room or
                 // 3-Room).
-                // Since we checked above that getFlatTypes is not empty, they are eligible.
-                return true;
+                return EnumSet.allOf(FlatType.class);
             } else {
                 // User does not meet the minimum criteria (e.g., Single < 35, Married < 21)
-                return false;
-            }
-        }
-
-        // Default case for any other unforeseen roles? Return false.
-        return false;
-    }
-
-    /**
-     * Applies optional filters to a stream of projects.
-     * <p>
-     * Filters can include neighborhood, flat type, and visibility, depending on
-     * the user's role and the provided criteria.
-     * </p>
-     *
-     * @param stream      The stream of projects to filter
-     * @param filters     A map of filter criteria
-     * @param isStaffView true if the user is a staff member, false otherwise
-     * @return The filtered stream of projects
-     */
-    private Stream<Project> applyOptionalFilters(Stream<Project> stream, Map<String, Object> filters,
-            boolean isStaffView) {
-        if (filters == null || filters.isEmpty()) {
-            return stream; // No filters to apply
-        }
-
-        // Neighbourhood
-        if (filters.containsKey("neighborhood")) {
-            String neighborhood = (String) filters.get("neighborhood");
-            if (neighborhood != null && !neighborhood.trim().isEmpty()) {
-                stream = stream.filter(p -> p.getNeighborhood().equalsIgnoreCase(neighborhood.trim()));
-            }
-        }
-
-        // Flat Type (Checks if project *offers* this type AND has units > 0)
-        if (filters.containsKey("flatType")) {
-            try {
-                FlatType flatType = (FlatType) filters.get("flatType");
-                if (flatType != null) {
-                    stream = stream.filter(project -> {
-                        // Check 1: Does the project have flat info
-                        if (project.getFlatTypes() == null)
-                            return false;
-                        // Check 2: Does the project offer this specific flat type?
-                        ProjectFlatInfo info = project.getFlatTypes().get(flatType);
-                        // Check 3: Does this flat type actually have units defined?
-                        // Filter based on whether units are CURRENTLY available (remaining > 0)
-                        return info != null && info.getRemainingUnits() > 0;
-                    });
-                }
-            } catch (ClassCastException e) {
-                System.err.println("Filter Error: Invalid object type for flatType filter.");
-            }
-        }
-
-        // --- Staff Only Filters ---
-        if (isStaffView) {
-            // Visibility Filter
-            if (filters.containsKey("visibility")) {
-                try {
-                    Boolean isVisible = (Boolean) filters.get("visibility");
-                    if (isVisible != null) {
-                        stream = stream.filter(p -> p.isVisible() == isVisible);
-                    }
-                } catch (ClassCastException e) {
-                    System.err.println("Filter Error: Invalid object type for visibility filter.");
-                }
+                return EnumSet.noneOf(FlatType.class);
             }
         }
 
-        return stream;
+        // Default case for any other unforeseen roles? Not eligible.
+        return EnumSet.noneOf(FlatType.class);
     }
 }
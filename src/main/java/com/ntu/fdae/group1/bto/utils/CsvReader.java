@@ -0,0 +1,230 @@
+package com.ntu.fdae.group1.bto.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Byte-level CSV reader that hands out {@link CsvRecord} views instead of
+ * split strings.
+ * <p>
+ * The whole file is made available as a single {@link ByteBuffer}: files of at
+ * least {@link #MAP_THRESHOLD_BYTES} are memory-mapped, smaller ones are read
+ * onto the heap in one call (mapping has a fixed cost that only pays off for
+ * larger files). The buffer is then scanned once for line and field
+ * boundaries, which are stored in a single shared {@code int[]}. No strings
+ * are created while reading; each field is decoded only when a deserializer
+ * asks for it.
+ * </p>
+ * <p>
+ * {@link #read(Path, Consumer)} streams records to a callback instead of
+ * collecting them, reusing the boundary array from one record to the next, so
+ * the only per-row allocation is the record view itself.
+ * </p>
+ * <p>
+ * Fields are tokenized according to RFC 4180, the inverse of
+ * {@link CsvWriter}: quoted fields may contain delimiters, doubled quotes and
+ * line breaks. The first record is treated as the header and skipped, lines
+ * that are empty or contain only whitespace are ignored, and both {@code \n}
+ * and {@code \r\n} line endings are accepted.
+ * </p>
+ */
+public final class CsvReader {
+    /**
+     * Files of this size or larger are memory-mapped rather than read onto the
+     * heap.
+     */
+    public static final int MAP_THRESHOLD_BYTES = 1 << 20;
+
+    private static final byte DELIMITER = ',';
+    private static final byte QUOTE = '"';
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private CsvReader() {
+    }
+
+    /**
+     * Reads all records from a CSV file, skipping the header line.
+     *
+     * @param path The CSV file, which must exist
+     * @return The records in file order
+     * @throws IOException If the file cannot be read or is too large to map
+     */
+    public static List<CsvRecord> read(Path path) throws IOException {
+        List<CsvRecord> records = new ArrayList<>();
+        ByteBuffer data = open(path);
+        if (data != null) {
+            parse(data, records::add, true);
+        }
+        return records;
+    }
+
+    /**
+     * Reads a CSV file one record at a time, skipping the header line.
+     * <p>
+     * Each record is only valid for the duration of the callback: its field
+     * bounds are overwritten by the next record, so the consumer must decode
+     * whatever it needs before returning and must not keep the record.
+     * </p>
+     *
+     * @param path     The CSV file, which must exist
+     * @param consumer Receives each record in file order
+     * @throws IOException If the file cannot be read or is too large to map
+     */
+    public static void read(Path path, Consumer<CsvRecord> consumer) throws IOException {
+        ByteBuffer data = open(path);
+        if (data != null) {
+            parse(data, consumer, false);
+        }
+    }
+
+    /**
+     * Makes the file's contents available as a buffer, mapping it if it is
+     * large enough.
+     *
+     * @return The contents, or null if the file is empty
+     */
+    private static ByteBuffer open(Path path) throws IOException {
+        long size = Files.size(path);
+        if (size == 0) {
+            return null;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("CSV file too large to read: " + path + " (" + size + " bytes)");
+        }
+        if (size < MAP_THRESHOLD_BYTES) {
+            return ByteBuffer.wrap(Files.readAllBytes(path));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Splits the buffer into records in a single pass.
+     * <p>
+     * Fields follow RFC 4180: a field that starts with a double quote runs until
+     * the matching closing quote and may contain delimiters, line breaks and
+     * doubled quotes. The stored bounds of a quoted field exclude the
+     * enclosing quotes; if the field contains doubled quotes its end is stored
+     * as {@code ~end} so that {@link CsvRecord} knows to unescape it. Any text
+     * between a closing quote and the next delimiter is ignored. Double quotes
+     * inside unquoted fields are kept literally.
+     * </p>
+     *
+     * @param data   The file contents
+     * @param sink   Receives each record, excluding the header line
+     * @param retain Whether records must stay valid after the sink returns; if
+     *               false, the boundary array is reused for every record
+     */
+    private static void parse(ByteBuffer data, Consumer<CsvRecord> sink, boolean retain) {
+        int limit = data.limit();
+        int position = skipRecord(data, 0, limit);
+
+        // Rough guess of ~64 bytes and ~6 fields per row; the array grows as needed
+        int[] bounds = new int[retain ? Math.max(16, limit / 64) * 12 : 64];
+        int used = 0;
+
+        while (position < limit) {
+            int recordOffset = used;
+            boolean blank = true;
+            boolean endOfRecord = false;
+            while (!endOfRecord) {
+                int fieldStart = position;
+                int fieldEnd;
+                boolean escaped = false;
+                if (position < limit && data.get(position) == QUOTE) {
+                    blank = false;
+                    fieldStart = ++position;
+                    while (true) {
+                        if (position >= limit) {
+                            // Unterminated quote: take the rest of the file
+                            fieldEnd = limit;
+                            break;
+                        }
+                        if (data.get(position) == QUOTE) {
+                            if (position + 1 < limit && data.get(position + 1) == QUOTE) {
+                                escaped = true;
+                                position += 2;
+                                continue;
+                            }
+                            fieldEnd = position++;
+                            break;
+                        }
+                        position++;
+                    }
+                    // Skip anything between the closing quote and the delimiter
+                    while (position < limit && data.get(position) != DELIMITER && data.get(position) != LINE_FEED) {
+                        position++;
+                    }
+                } else {
+                    while (position < limit && data.get(position) != DELIMITER && data.get(position) != LINE_FEED) {
+                        if ((data.get(position) & 0xFF) > ' ') {
+                            blank = false;
+                        }
+                        position++;
+                    }
+                    fieldEnd = position;
+                    if (fieldEnd > fieldStart && data.get(fieldEnd - 1) == CARRIAGE_RETURN
+                            && (fieldEnd == limit || data.get(fieldEnd) == LINE_FEED)) {
+                        fieldEnd--;
+                    }
+                }
+
+                if (position < limit && data.get(position) == DELIMITER) {
+                    blank = false;
+                } else {
+                    endOfRecord = true;
+                }
+                position++;
+
+                if (used + 2 > bounds.length) {
+                    bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                }
+                bounds[used++] = fieldStart;
+                bounds[used++] = escaped ? ~fieldEnd : fieldEnd;
+            }
+
+            if (blank) {
+                used = recordOffset;
+                continue;
+            }
+            // Records keep a reference to the array they were created with, so
+            // growing it later never invalidates earlier retained records
+            sink.accept(new CsvRecord(data, bounds, recordOffset, (used - recordOffset) / 2));
+            if (!retain) {
+                used = 0;
+            }
+        }
+    }
+
+    /**
+     * Skips one record, honouring quoted fields that span several lines.
+     *
+     * @return The position just after the record's terminating line feed, or
+     *         the limit
+     */
+    private static int skipRecord(ByteBuffer data, int position, int limit) {
+        boolean quoted = false;
+        for (int i = position; i < limit; i++) {
+            byte b = data.get(i);
+            if (b == QUOTE) {
+                quoted = !quoted;
+            } else if (b == LINE_FEED && !quoted) {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+}
@@ -0,0 +1,384 @@
+package com.ntu.fdae.group1.bto.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * A single row of a CSV file, backed directly by the bytes it was read from.
+ * <p>
+ * A record does not copy or decode its fields when it is created; it only
+ * remembers where each field starts and ends in the underlying buffer. Fields
+ * are turned into Java values on demand, so a deserializer only pays for the
+ * fields it actually keeps. The typed accessors ({@link #getInt},
+ * {@link #getDate}, {@link #getEnum}, {@link #getBoolean}) parse the bytes in
+ * place and do not create intermediate strings for well-formed values.
+ * </p>
+ * <p>
+ * Field values follow RFC 4180: the enclosing quotes of a quoted field are
+ * not part of its value and doubled quotes inside it stand for a single
+ * quote. Surrounding whitespace is kept by {@link #get(int)} but ignored by
+ * the typed accessors.
+ * </p>
+ * <p>
+ * Records are produced by {@link CsvReader} and are read-only. They keep the
+ * source buffer reachable, so they should be converted to entities and
+ * discarded rather than stored.
+ * </p>
+ */
+public final class CsvRecord {
+    private static final byte QUOTE = '"';
+
+    private final ByteBuffer data;
+    private final int[] bounds;
+    private final int offset;
+    private final int fieldCount;
+
+    /**
+     * Creates a record over the given buffer.
+     *
+     * @param data       The buffer holding the file contents
+     * @param bounds     Field boundaries: start and end (exclusive) positions,
+     *                   two entries per field
+     * @param offset     Index in {@code bounds} of this record's first field start
+     * @param fieldCount Number of fields in this record
+     */
+    CsvRecord(ByteBuffer data, int[] bounds, int offset, int fieldCount) {
+        this.data = data;
+        this.bounds = bounds;
+        this.offset = offset;
+        this.fieldCount = fieldCount;
+    }
+
+    /**
+     * Creates a record holding the given values, for rows that were not read
+     * from a file.
+     *
+     * @param fields The field values; null is stored as an empty field
+     * @return The record
+     */
+    public static CsvRecord of(String... fields) {
+        byte[][] encoded = new byte[fields.length][];
+        int length = 0;
+        for (int i = 0; i < fields.length; i++) {
+            encoded[i] = (fields[i] != null ? fields[i] : "").getBytes(StandardCharsets.UTF_8);
+            length += encoded[i].length;
+        }
+        byte[] data = new byte[length];
+        int[] bounds = new int[2 * fields.length];
+        int position = 0;
+        for (int i = 0; i < fields.length; i++) {
+            System.arraycopy(encoded[i], 0, data, position, encoded[i].length);
+            bounds[2 * i] = position;
+            position += encoded[i].length;
+            bounds[2 * i + 1] = position;
+        }
+        return new CsvRecord(ByteBuffer.wrap(data), bounds, 0, fields.length);
+    }
+
+    /**
+     * @return Number of fields in this record
+     */
+    public int size() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns a view of this record without its first {@code from} fields.
+     *
+     * @param from Number of leading fields to drop
+     * @return The remaining fields as a record
+     */
+    public CsvRecord tail(int from) {
+        if (from < 0 || from > fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + from + " of " + fieldCount);
+        }
+        return new CsvRecord(data, bounds, offset + 2 * from, fieldCount - from);
+    }
+
+    /**
+     * Returns a view of a run of this record's fields.
+     *
+     * @param from Index of the first field to include
+     * @param to   Index after the last field to include
+     * @return The fields from {@code from} up to {@code to} as a record
+     */
+    public CsvRecord slice(int from, int to) {
+        if (from < 0 || to < from || to > fieldCount) {
+            throw new IndexOutOfBoundsException("Fields " + from + " to " + to + " of " + fieldCount);
+        }
+        return new CsvRecord(data, bounds, offset + 2 * from, to - from);
+    }
+
+    /**
+     * Decodes a field as a string.
+     *
+     * @param index The zero-based field index
+     * @return The field value, never null
+     */
+    public String get(int index) {
+        int start = start(index);
+        int end = end(index);
+        if (!isEscaped(index)) {
+            if (data.hasArray()) {
+                return new String(data.array(), data.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+            }
+            byte[] bytes = new byte[end - start];
+            for (int i = start; i < end; i++) {
+                bytes[i - start] = data.get(i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        // Collapse each doubled quote into one
+        byte[] bytes = new byte[end - start];
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            byte b = data.get(i);
+            bytes[length++] = b;
+            if (b == QUOTE) {
+                i++;
+            }
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks whether a field is empty or contains only whitespace, without
+     * decoding it.
+     *
+     * @param index The zero-based field index
+     * @return true if the field is blank
+     */
+    public boolean isBlank(int index) {
+        int end = end(index);
+        for (int i = start(index); i < end; i++) {
+            if ((data.get(i) & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a field as a string, or null if the field is blank.
+     *
+     * @param index The zero-based field index
+     * @return The trimmed field value, or null
+     */
+    public String getOrNull(int index) {
+        return isBlank(index) ? null : get(index).trim();
+    }
+
+    /**
+     * Parses a field as an integer.
+     *
+     * @param index        The zero-based field index
+     * @param defaultValue The value to return if the field is blank or invalid
+     * @return The parsed integer or the default value
+     */
+    public int getInt(int index, int defaultValue) {
+        int start = trimStart(index);
+        int end = trimEnd(index, start);
+        if (start == end) {
+            return defaultValue;
+        }
+        boolean negative = false;
+        int i = start;
+        byte first = data.get(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+        // Nine digits always fit in an int; longer values take the checked path
+        if (i == end || end - i > 9) {
+            return FileUtil.parseIntOrDefault(get(index), defaultValue);
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = data.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return FileUtil.parseIntOrDefault(get(index), defaultValue);
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a field as a double.
+     *
+     * @param index        The zero-based field index
+     * @param defaultValue The value to return if the field is blank or invalid
+     * @return The parsed double or the default value
+     */
+    public double getDouble(int index, double defaultValue) {
+        if (isBlank(index)) {
+            return defaultValue;
+        }
+        return FileUtil.parseDoubleOrDefault(get(index), defaultValue);
+    }
+
+    /**
+     * Parses a field as a boolean, following {@link Boolean#parseBoolean}.
+     *
+     * @param index The zero-based field index
+     * @return true if the field is "true", ignoring case and surrounding
+     *         whitespace
+     */
+    public boolean getBoolean(int index) {
+        return matchesIgnoreCase(index, "TRUE");
+    }
+
+    /**
+     * Parses a field as an ISO-8601 date ({@code yyyy-MM-dd}).
+     *
+     * @param index The zero-based field index
+     * @return The date, or null if the field is blank or invalid
+     */
+    public LocalDate getDate(int index) {
+        int start = trimStart(index);
+        int end = trimEnd(index, start);
+        if (start == end) {
+            return null;
+        }
+        if (end - start == 10 && data.get(start + 4) == '-' && data.get(start + 7) == '-') {
+            int year = digits(start, 4);
+            int month = digits(start + 5, 2);
+            int day = digits(start + 8, 2);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                try {
+                    return LocalDate.of(year, month, day);
+                } catch (DateTimeException e) {
+                    // Fall through so the standard parser reports the problem
+                }
+            }
+        }
+        return FileUtil.parseLocalDate(get(index));
+    }
+
+    /**
+     * Parses a field as an enum constant (case-insensitive).
+     *
+     * @param enumClass    The class of the enum
+     * @param index        The zero-based field index
+     * @param defaultValue The value to return if the field is blank or invalid
+     * @param <E>          The enum type
+     * @return The enum constant, or the default value
+     */
+    public <E extends Enum<E>> E getEnum(Class<E> enumClass, int index, E defaultValue) {
+        if (isBlank(index)) {
+            return defaultValue;
+        }
+        for (E constant : enumClass.getEnumConstants()) {
+            if (matchesIgnoreCase(index, constant.name())) {
+                return constant;
+            }
+        }
+        return FileUtil.parseEnum(enumClass, get(index), defaultValue);
+    }
+
+    /**
+     * Decodes every field.
+     *
+     * @return The field values as an array
+     */
+    public String[] toArray() {
+        String[] fields = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = get(i);
+        }
+        return fields;
+    }
+
+    /**
+     * @return The record's fields joined with commas, for diagnostics
+     */
+    @Override
+    public String toString() {
+        return String.join(",", toArray());
+    }
+
+    private int start(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + index + " of " + fieldCount);
+        }
+        return bounds[offset + 2 * index];
+    }
+
+    private int end(int index) {
+        int end = bounds[offset + 2 * index + 1];
+        return end < 0 ? ~end : end;
+    }
+
+    /**
+     * @return true if the field was quoted and contains doubled quotes
+     */
+    private boolean isEscaped(int index) {
+        return bounds[offset + 2 * index + 1] < 0;
+    }
+
+    /**
+     * @return Position of the first non-whitespace byte
+     */
+    private int trimStart(int index) {
+        int i = start(index);
+        int end = end(index);
+        while (i < end && isIgnorable(data.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return Position after the last non-whitespace byte
+     */
+    private int trimEnd(int index, int trimmedStart) {
+        int i = end(index);
+        while (i > trimmedStart && isIgnorable(data.get(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    private static boolean isIgnorable(byte b) {
+        return (b & 0xFF) <= ' ';
+    }
+
+    /**
+     * Compares a trimmed field with an ASCII upper-case constant, ignoring case.
+     */
+    private boolean matchesIgnoreCase(int index, String upperCase) {
+        int start = trimStart(index);
+        int end = trimEnd(index, start);
+        if (end - start != upperCase.length()) {
+            return false;
+        }
+        for (int i = 0; i < upperCase.length(); i++) {
+            int b = data.get(start + i) & 0xFF;
+            if (b >= 'a' && b <= 'z') {
+                b -= 'a' - 'A';
+            }
+            if (b != upperCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The value of {@code count} ASCII digits, or -1 if any byte is not a
+     *         digit
+     */
+    private int digits(int position, int count) {
+        int value = 0;
+        for (int i = position; i < position + count; i++) {
+            int digit = data.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
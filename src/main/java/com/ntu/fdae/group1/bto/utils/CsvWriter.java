@@ -0,0 +1,92 @@
+package com.ntu.fdae.group1.bto.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes rows in RFC 4180 CSV format.
+ * <p>
+ * A field is written as-is unless it contains a comma, a double quote, a
+ * carriage return or a line feed. Such fields are enclosed in double quotes
+ * and every embedded double quote is doubled. This is the exact inverse of
+ * the tokenizer in {@link CsvReader}, so any string - including free text
+ * typed by users - survives a write and read unchanged. Null fields are
+ * written as empty fields.
+ * </p>
+ * <p>
+ * Each field is scanned once to decide whether it needs quoting and, if so,
+ * once more while it is written; no intermediate strings are created.
+ * </p>
+ */
+public final class CsvWriter {
+    private static final char DELIMITER = ',';
+    private static final char QUOTE = '"';
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private CsvWriter() {
+    }
+
+    /**
+     * Writes one row followed by a line separator.
+     *
+     * @param writer The destination
+     * @param row    The field values; null entries are written as empty fields
+     * @throws IOException If the writer fails
+     */
+    public static void writeRow(Writer writer, String[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                writer.write(DELIMITER);
+            }
+            writeField(writer, row[i]);
+        }
+        writer.write(System.lineSeparator());
+    }
+
+    /**
+     * Writes a single field, quoting it if necessary.
+     *
+     * @param writer The destination
+     * @param value  The field value, or null for an empty field
+     * @throws IOException If the writer fails
+     */
+    public static void writeField(Writer writer, String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        if (!needsQuoting(value)) {
+            writer.write(value);
+            return;
+        }
+        writer.write(QUOTE);
+        int runStart = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == QUOTE) {
+                // Write up to and including the quote, then repeat it
+                writer.write(value, runStart, i + 1 - runStart);
+                writer.write(QUOTE);
+                runStart = i + 1;
+            }
+        }
+        writer.write(value, runStart, value.length() - runStart);
+        writer.write(QUOTE);
+    }
+
+    /**
+     * Checks whether a value must be quoted to be read back unchanged.
+     *
+     * @param value The field value
+     * @return true if the value contains a delimiter, quote or line break
+     */
+    public static boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == DELIMITER || c == QUOTE || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,13 +1,28 @@
 package com.ntu.fdae.group1.bto.utils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -17,7 +32,8 @@ import java.util.stream.Collectors;
  * 
  * This class offers static methods for:
  * <ul>
- * <li>Reading from and writing to CSV files</li>
+ * <li>Reading from and writing to CSV files, with atomic replacement and a
+ * configurable {@link FsyncPolicy}</li>
  * <li>Parsing dates and enum values from strings</li>
  * <li>Handling string operations common in file processing</li>
  * <li>Safely parsing numeric types with default values</li>
@@ -33,6 +49,26 @@ public final class FileUtil { // Make final, prevent instantiation if all method
 
     private static final String CSV_DELIMITER = ","; // Or configure if needed
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final IoStats IO_STATS = new IoStats();
+
+    /**
+     * Per-path sync bookkeeping: [unsynced write count, last sync time millis,
+     * 1 if a deferred sync is scheduled].
+     */
+    private static final Map<Path, long[]> SYNC_STATES = new ConcurrentHashMap<>();
+    private static volatile FsyncPolicy fsyncPolicy = FsyncPolicy.configured();
+
+    /**
+     * Runs deferred syncs for batched writes. Lazily created so that
+     * applications that never defer a sync never start the thread.
+     */
+    private static final class SyncTimerHolder {
+        private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fsync-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
     /**
      * Private constructor to prevent instantiation of this utility class.
@@ -40,17 +76,68 @@ public final class FileUtil { // Make final, prevent instantiation if all method
     private FileUtil() {
     }
 
+    /**
+     * Reads all records from a CSV file, skipping the header.
+     * 
+     * This is the preferred way for repositories to load data:
+     * <ul>
+     * <li>The file is scanned as bytes by {@link CsvReader}, memory-mapped when
+     * large</li>
+     * <li>Each row is returned as a {@link CsvRecord} view, so only the fields a
+     * deserializer reads are decoded</li>
+     * <li>Empty lines are ignored</li>
+     * <li>A missing file yields an empty list and a warning</li>
+     * </ul>
+     * 
+     * 
+     * @param filePath Path to the CSV file
+     * @return List of records, one per data row
+     * @throws IOException If an I/O error occurs reading from the file
+     */
+    public static List<CsvRecord> readCsvRecords(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            // Handle missing files (e.g., return empty list or throw specific exception)
+            System.err.println("Warning: File not found: " + filePath);
+            return new ArrayList<>(); // Return empty list
+        }
+        return CsvReader.read(path);
+    }
+
+    /**
+     * Streams the records of a CSV file to a consumer, skipping the header.
+     * 
+     * Unlike {@link #readCsvRecords(String)}, no list of records is built: each
+     * record is handed to the consumer as soon as it has been scanned and is
+     * only valid until the consumer returns. A missing file produces no records
+     * and a warning.
+     * 
+     * 
+     * @param filePath Path to the CSV file
+     * @param consumer Receives each data row in file order
+     * @throws IOException If an I/O error occurs reading from the file
+     */
+    public static void readCsvRecords(String filePath, Consumer<CsvRecord> consumer) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            System.err.println("Warning: File not found: " + filePath);
+            return;
+        }
+        CsvReader.read(path, consumer);
+    }
+
     /**
      * Reads all lines from a CSV file, skipping the header.
      * 
      * This method reads a CSV file, processes each line by:
      * <ul>
      * <li>Skipping the header line</li>
-     * <li>Splitting each line by the CSV delimiter</li>
-     * <li>Removing double quotes from each field</li>
+     * <li>Splitting each line into fields according to RFC 4180, so quoted
+     * fields may contain delimiters, escaped quotes and line breaks</li>
      * <li>Ignoring empty lines</li>
      * </ul>
-     * All file operations use UTF-8 encoding.
+     * Every field is decoded eagerly; use {@link #readCsvRecords(String)} when
+     * only some fields are needed.
      * 
      * 
      * @param filePath Path to the CSV file
@@ -58,44 +145,27 @@ public final class FileUtil { // Make final, prevent instantiation if all method
      * @throws IOException If an I/O error occurs reading from the file
      */
     public static List<String[]> readCsvLines(String filePath) throws IOException {
-        List<String[]> lines = new ArrayList<>();
-        Path path = Paths.get(filePath);
-        if (!Files.exists(path)) {
-            // Handle missing files (e.g., return empty list or throw specific exception)
-            System.err.println("Warning: File not found: " + filePath);
-            return lines; // Return empty list
-        }
-        try (BufferedReader reader = Files.newBufferedReader(path)) {
-            // Skip header line
-            reader.readLine();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) { // Skip empty lines
-                    // Split the line based on the CSV delimiter
-                    String[] fields = line.split(CSV_DELIMITER, -1); // -1 to keep trailing empty strings
-
-                    // Remove double quotes from each field
-                    for (int i = 0; i < fields.length; i++) {
-                        fields[i] = fields[i].replace("\"", "");
-                    }
-
-                    // Add the cleaned fields to the list
-                    lines.add(fields);
-                }
-            }
+        List<CsvRecord> records = readCsvRecords(filePath);
+        List<String[]> lines = new ArrayList<>(records.size());
+        for (CsvRecord record : records) {
+            lines.add(record.toArray());
         }
         return lines;
     }
 
     /**
-     * Writes data to a CSV file, overwriting existing content.
+     * Writes data to a CSV file, atomically replacing existing content.
      * 
      * This method handles the complete process of writing data to a CSV file:
      * <ul>
      * <li>Creates parent directories if they don't exist</li>
-     * <li>Writes the header row first</li>
-     * <li>Writes each data row, joining column values with the CSV delimiter</li>
-     * <li>Overwrites the file if it already exists</li>
+     * <li>Writes the header and data rows to a temporary file in the same
+     * directory, quoting fields as described in {@link CsvWriter}</li>
+     * <li>Forces the temporary file to disk, unless the fsync policy is
+     * NEVER</li>
+     * <li>Moves the temporary file over the target in one atomic step, so a
+     * crash or full disk never leaves a truncated file behind</li>
+     * <li>Syncs the parent directory when the fsync policy says it is due</li>
      * </ul>
      * All file operations use UTF-8 encoding.
      * 
@@ -106,21 +176,348 @@ public final class FileUtil { // Make final, prevent instantiation if all method
      * @throws IOException If an I/O error occurs writing to the file
      */
     public static void writeCsvLines(String filePath, List<String[]> data, String[] header) throws IOException {
-        Path path = Paths.get(filePath);
+        writeCsvLines(filePath, data, Function.identity(), header);
+    }
+
+    /**
+     * Writes items to a CSV file, converting each one to a row only as it is
+     * written.
+     * 
+     * This behaves exactly like {@link #writeCsvLines(String, List, String[])},
+     * but never holds more than one serialized row in memory, so repositories
+     * can write their entity maps without first building a list of rows.
+     * 
+     * 
+     * @param filePath  Path to the CSV file to write to
+     * @param items     The items to write, in order
+     * @param rowMapper Converts an item to its row (excluding header)
+     * @param header    Array of strings for the header row
+     * @param <T>       The item type
+     * @throws IOException If an I/O error occurs writing to the file
+     */
+    public static <T> void writeCsvLines(String filePath, Iterable<? extends T> items,
+            Function<? super T, String[]> rowMapper, String[] header) throws IOException {
+        replaceFile(filePath, channel -> {
+            BufferedWriter writer = new BufferedWriter(
+                    Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1));
+            // Write header
+            CsvWriter.writeRow(writer, header);
+            // Write data, quoting fields that contain delimiters, quotes or line breaks
+            for (T item : items) {
+                CsvWriter.writeRow(writer, rowMapper.apply(item));
+            }
+            writer.flush();
+        });
+    }
+
+    /**
+     * Writes binary data to a file, atomically replacing existing content.
+     * 
+     * The same temporary-file, fsync and atomic-move sequence as
+     * {@link #writeCsvLines(String, List, String[])} is used.
+     * 
+     * 
+     * @param filePath Path to the file to write to
+     * @param data     The complete file contents
+     * @throws IOException If an I/O error occurs writing to the file
+     */
+    public static void writeBytes(String filePath, byte[] data) throws IOException {
+        replaceFile(filePath, channel -> {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        });
+    }
+
+    /**
+     * Replaces a file by writing a temporary sibling and moving it into place.
+     * 
+     * @param filePath Path to the file to replace
+     * @param content  Writes the new contents to the temporary file's channel
+     * @throws IOException If an I/O error occurs
+     */
+    private static void replaceFile(String filePath, ChannelWriter content) throws IOException {
+        long startNanos = System.nanoTime();
+        Path path = Paths.get(filePath).toAbsolutePath();
+        Path directory = path.getParent();
         // Ensure parent directory exists (optional but good practice)
+        Files.createDirectories(directory);
+
+        FsyncPolicy policy = fsyncPolicy;
+        Path tempPath = Files.createTempFile(directory, path.getFileName().toString() + ".", ".tmp");
+        try {
+            copyPermissions(path, tempPath);
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                content.write(channel);
+                if (policy.getMode() != FsyncPolicy.Mode.NEVER) {
+                    // The new content must be on disk before the rename can be
+                    channel.force(false);
+                    IO_STATS.recordFileSync();
+                }
+            }
+            try {
+                Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+        if (isSyncDue(directory, policy)) {
+            syncDirectory(directory);
+        }
+        IO_STATS.recordReplace(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gives a temporary file the permissions of the file it will replace, or
+     * the usual rw-r--r-- for a new file, instead of the owner-only permissions
+     * temporary files are created with. Non-POSIX file systems are skipped.
+     * 
+     * @param target   The file being replaced
+     * @param tempPath The temporary file
+     */
+    private static void copyPermissions(Path target, Path tempPath) {
+        try {
+            Set<PosixFilePermission> permissions = Files.exists(target) ? Files.getPosixFilePermissions(target)
+                    : PosixFilePermissions.fromString("rw-r--r--");
+            Files.setPosixFilePermissions(tempPath, permissions);
+        } catch (UnsupportedOperationException | IOException e) {
+            // Not a POSIX file system, keep the defaults
+        }
+    }
+
+    /**
+     * Writes file contents to an open channel.
+     */
+    private interface ChannelWriter {
+        void write(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * Appends rows to the end of a CSV file, creating it if necessary.
+     * 
+     * This method is intended for append-only logs such as repository journals:
+     * <ul>
+     * <li>Creates parent directories if they don't exist</li>
+     * <li>Writes the header row only when the file is newly created</li>
+     * <li>Appends each data row, quoting fields as described in
+     * {@link CsvWriter}</li>
+     * <li>Forces the file to disk when the fsync policy says it is due</li>
+     * </ul>
+     * All file operations use UTF-8 encoding.
+     * 
+     * 
+     * @param filePath Path to the CSV file to append to
+     * @param data     List of String arrays representing rows to append
+     * @param header   Header row written if the file does not exist yet, or null
+     *                 for none
+     * @throws IOException If an I/O error occurs writing to the file
+     */
+    public static void appendCsvLines(String filePath, List<String[]> data, String[] header) throws IOException {
+        long startNanos = System.nanoTime();
+        Path path = Paths.get(filePath).toAbsolutePath();
         Files.createDirectories(path.getParent());
+        boolean isNewFile = !Files.exists(path);
 
-        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING)) {
-            // Write header
-            writer.write(String.join(CSV_DELIMITER, header));
-            writer.newLine();
-            // Write data
+        FsyncPolicy policy = fsyncPolicy;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+                BufferedWriter writer = new BufferedWriter(
+                        Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1))) {
+            if (isNewFile && header != null) {
+                CsvWriter.writeRow(writer, header);
+            }
             for (String[] row : data) {
-                // Handle potential nulls in row array if necessary before joining
-                writer.write(String.join(CSV_DELIMITER, row));
-                writer.newLine();
+                CsvWriter.writeRow(writer, row);
             }
+            writer.flush();
+            if (isSyncDue(path, policy)) {
+                channel.force(false);
+                IO_STATS.recordFileSync();
+            }
+        }
+        if (isNewFile && isSyncDue(path.getParent(), policy)) {
+            syncDirectory(path.getParent());
+        }
+        IO_STATS.recordAppend(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the write counters for all CSV writes made through this class.
+     * 
+     * @return The live I/O statistics
+     */
+    public static IoStats getIoStats() {
+        return IO_STATS;
+    }
+
+    /**
+     * Returns the fsync policy currently applied to writes.
+     * 
+     * @return The active fsync policy
+     */
+    public static FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    /**
+     * Replaces the fsync policy applied to subsequent writes.
+     * 
+     * @param policy The new policy; null restores {@link FsyncPolicy#DEFAULT}
+     */
+    public static void setFsyncPolicy(FsyncPolicy policy) {
+        fsyncPolicy = policy != null ? policy : FsyncPolicy.DEFAULT;
+    }
+
+    /**
+     * Forces a file and its directory entry to disk now, even if the fsync
+     * policy would defer it. For a file that no longer exists, only the
+     * directory is synced, which makes the deletion durable. Does nothing
+     * under {@link FsyncPolicy#NEVER}.
+     * <p>
+     * Intended for files whose changes must be on disk before later writes to
+     * other files, such as a commit log.
+     * </p>
+     * 
+     * @param filePath Path to the file
+     * @throws IOException If the file cannot be synced
+     */
+    public static void force(String filePath) throws IOException {
+        if (fsyncPolicy.getMode() == FsyncPolicy.Mode.NEVER) {
+            return;
+        }
+        Path path = Paths.get(filePath).toAbsolutePath();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(false);
+            IO_STATS.recordFileSync();
+        } catch (NoSuchFileException e) {
+            // Deleted; syncing the directory makes that durable
+        }
+        syncDirectory(path.getParent());
+    }
+
+    /**
+     * Forces every file and directory with unsynced writes to disk, without
+     * waiting for their deferred syncs. Intended for clean shutdown.
+     */
+    public static void syncPending() {
+        for (Path path : SYNC_STATES.keySet()) {
+            syncIfPending(path);
+        }
+    }
+
+    /**
+     * Records a write to the given path and decides whether it must be synced.
+     * <p>
+     * When a batched policy defers the sync, a sync of the path is scheduled
+     * for when the policy's delay runs out, so the write reaches the disk
+     * within that delay even if no further write arrives.
+     * </p>
+     * 
+     * @param path   The file or directory that was written
+     * @param policy The policy to apply
+     * @return true if the caller should sync the path now
+     */
+    private static boolean isSyncDue(Path path, FsyncPolicy policy) {
+        long now = System.currentTimeMillis();
+        long[] state = SYNC_STATES.computeIfAbsent(path, p -> new long[] { 0, now, 0 });
+        synchronized (state) {
+            state[0]++;
+            if (policy.isSyncDue((int) Math.min(Integer.MAX_VALUE, state[0]), now - state[1])) {
+                state[0] = 0;
+                state[1] = now;
+                return true;
+            }
+            if (policy.getMode() == FsyncPolicy.Mode.BATCHED && state[2] == 0) {
+                state[2] = 1;
+                scheduleSync(path, Math.max(0, policy.getMaxDelayMillis() - (now - state[1])));
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Schedules a sync of a path with deferred writes. If the timer has been
+     * shut down, the path is synced on the calling thread instead.
+     * 
+     * @param path        The file or directory to sync
+     * @param delayMillis How long to wait before syncing
+     */
+    private static void scheduleSync(Path path, long delayMillis) {
+        try {
+            SyncTimerHolder.TIMER.schedule(() -> syncIfPending(path), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            syncIfPending(path);
+        }
+    }
+
+    /**
+     * Syncs a path if writes to it are still unsynced. Writes are counted only
+     * once their data has been handed to the operating system, so every
+     * counted write is covered by the sync.
+     * 
+     * @param path The file or directory to sync
+     */
+    private static void syncIfPending(Path path) {
+        long[] state = SYNC_STATES.get(path);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            state[2] = 0;
+            if (state[0] == 0) {
+                return;
+            }
+            state[0] = 0;
+            state[1] = System.currentTimeMillis();
+        }
+        if (Files.isDirectory(path)) {
+            syncDirectory(path);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(false);
+            IO_STATS.recordFileSync();
+        } catch (NoSuchFileException e) {
+            // Deleted since it was written, e.g. a compacted journal
+        } catch (IOException e) {
+            System.err.println("Warning: Deferred sync failed for " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forces a directory's entries to disk so that renames and file creations
+     * inside it survive a power loss. Platforms that cannot open a directory
+     * for syncing (e.g. Windows) are silently skipped.
+     * 
+     * @param directory The directory to sync
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+            IO_STATS.recordDirectorySync();
+        } catch (IOException e) {
+            // Directory sync is not supported on this platform
+        }
+    }
+
+    /**
+     * Reads the header (first line) of a CSV file.
+     * 
+     * @param filePath Path to the CSV file
+     * @return The header columns, or null if the file is missing or empty
+     * @throws IOException If an I/O error occurs reading from the file
+     */
+    public static String[] readCsvHeader(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String line = reader.readLine();
+            return line == null ? null : line.split(CSV_DELIMITER, -1);
         }
     }
 
@@ -0,0 +1,159 @@
+package com.ntu.fdae.group1.bto.utils;
+
+/**
+ * Controls how often {@link FileUtil} forces written data to stable storage.
+ * <p>
+ * Three policies are supported:
+ * <ul>
+ * <li>{@link Mode#ALWAYS} - every write fsyncs the file, and every file
+ * replacement also fsyncs the parent directory</li>
+ * <li>{@link Mode#BATCHED} - file replacements always fsync the new file
+ * before it is moved into place, but the directory sync (and the fsync of
+ * appended data) only happens once {@code maxPendingWrites} writes have
+ * accumulated or {@code maxDelayMillis} has passed since the last sync. If no
+ * further write arrives, a background timer syncs the path when that delay
+ * runs out, so no write stays unsynced for longer than
+ * {@code maxDelayMillis}</li>
+ * <li>{@link Mode#NEVER} - nothing is forced; replacements are still atomic
+ * with respect to process crashes, but not power loss</li>
+ * </ul>
+ * </p>
+ * <p>
+ * The process-wide default is read from the {@code bto.fsync} system property,
+ * e.g. {@code -Dbto.fsync=ALWAYS} or {@code -Dbto.fsync=BATCHED:32:500}. When
+ * unset, {@code BATCHED:16:1000} is used.
+ * </p>
+ */
+public final class FsyncPolicy {
+
+    /**
+     * The fsync modes.
+     */
+    public enum Mode {
+        ALWAYS, BATCHED, NEVER
+    }
+
+    /**
+     * Name of the system property holding the default policy.
+     */
+    public static final String PROPERTY_NAME = "bto.fsync";
+
+    /**
+     * Syncs on every write.
+     */
+    public static final FsyncPolicy ALWAYS = new FsyncPolicy(Mode.ALWAYS, 1, 0);
+
+    /**
+     * Never syncs explicitly.
+     */
+    public static final FsyncPolicy NEVER = new FsyncPolicy(Mode.NEVER, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    /**
+     * The policy used when none is configured.
+     */
+    public static final FsyncPolicy DEFAULT = batched(16, 1000);
+
+    private final Mode mode;
+    private final int maxPendingWrites;
+    private final long maxDelayMillis;
+
+    private FsyncPolicy(Mode mode, int maxPendingWrites, long maxDelayMillis) {
+        this.mode = mode;
+        this.maxPendingWrites = maxPendingWrites;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Creates a batched policy.
+     *
+     * @param maxPendingWrites Number of unsynced writes to a path after which a
+     *                         sync is forced
+     * @param maxDelayMillis   Time since the last sync of a path after which the
+     *                         next write forces a sync; also the longest a
+     *                         write stays unsynced when no further write
+     *                         arrives
+     * @return The policy
+     */
+    public static FsyncPolicy batched(int maxPendingWrites, long maxDelayMillis) {
+        if (maxPendingWrites < 1 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Invalid batched fsync parameters.");
+        }
+        return new FsyncPolicy(Mode.BATCHED, maxPendingWrites, maxDelayMillis);
+    }
+
+    /**
+     * Parses a policy from text of the form {@code ALWAYS}, {@code NEVER} or
+     * {@code BATCHED[:maxPendingWrites[:maxDelayMillis]]} (case-insensitive).
+     *
+     * @param value The text to parse
+     * @return The parsed policy, or {@link #DEFAULT} if the value is empty or
+     *         invalid
+     */
+    public static FsyncPolicy parse(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT;
+        }
+        String[] parts = value.trim().split(":");
+        try {
+            switch (Mode.valueOf(parts[0].trim().toUpperCase())) {
+                case ALWAYS:
+                    return ALWAYS;
+                case NEVER:
+                    return NEVER;
+                default:
+                    int writes = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : DEFAULT.maxPendingWrites;
+                    long delay = parts.length > 2 ? Long.parseLong(parts[2].trim()) : DEFAULT.maxDelayMillis;
+                    return batched(writes, delay);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Warning: Invalid fsync policy '" + value + "'. Using " + DEFAULT + ".");
+            return DEFAULT;
+        }
+    }
+
+    /**
+     * Returns the policy configured through the {@code bto.fsync} system
+     * property.
+     *
+     * @return The configured policy
+     */
+    public static FsyncPolicy configured() {
+        return parse(System.getProperty(PROPERTY_NAME));
+    }
+
+    /**
+     * Decides whether a write should be followed by a sync.
+     *
+     * @param pendingWrites       Unsynced writes to the path, including the
+     *                            current one
+     * @param millisSinceLastSync Time since the path was last synced
+     * @return true if the write should be synced now
+     */
+    public boolean isSyncDue(int pendingWrites, long millisSinceLastSync) {
+        switch (mode) {
+            case ALWAYS:
+                return true;
+            case NEVER:
+                return false;
+            default:
+                return pendingWrites >= maxPendingWrites || millisSinceLastSync >= maxDelayMillis;
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getMaxPendingWrites() {
+        return maxPendingWrites;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    @Override
+    public String toString() {
+        return mode == Mode.BATCHED ? "BATCHED:" + maxPendingWrites + ":" + maxDelayMillis : mode.name();
+    }
+}
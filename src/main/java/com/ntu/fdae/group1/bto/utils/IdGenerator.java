@@ -1,12 +1,27 @@
 package com.ntu.fdae.group1.bto.utils;
 
+import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
 import com.ntu.fdae.group1.bto.repository.booking.IBookingRepository;
 import com.ntu.fdae.group1.bto.repository.enquiry.IEnquiryRepository;
 import com.ntu.fdae.group1.bto.repository.project.IApplicationRepository;
 import com.ntu.fdae.group1.bto.repository.project.IOfficerRegistrationRepository;
 import com.ntu.fdae.group1.bto.repository.project.IProjectRepository;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -19,21 +34,63 @@ import java.util.regex.Pattern;
  * entity-specific prefix followed by a zero-padded sequential number.
  * </p>
  * <p>
- * The class maintains separate counters for each entity type and ensures that
- * IDs remain unique across application restarts by examining existing IDs in
- * the repositories during initialization.
+ * Each prefix hands out numbers from a block it has reserved, using an
+ * {@link AtomicLong}, so generating an ID takes no lock. When a block runs out,
+ * the next one is reserved by raising the prefix's high-water mark in
+ * {@value #SEQUENCE_FILE_PATH}; numbers below the mark are never handed out
+ * again, so IDs remain unique across application restarts. Only the marks are
+ * stored, one row per prefix. The file is locked while a block is reserved,
+ * which lets several processes sharing the data directory each take their
+ * own ranges.
  * </p>
  * <p>
- * IMPORTANT: The initialize() method MUST be called once at application startup
+ * Blocks hold {@value #DEFAULT_BLOCK_SIZE} numbers by default, so the file is
+ * locked and rewritten once per {@value #DEFAULT_BLOCK_SIZE} IDs rather than
+ * for every ID; the unused rest of a block is skipped when the application
+ * stops. A block size of 1 (see {@link #setBlockSize(int)} and the
+ * {@value #BLOCK_SIZE_PROPERTY} system property) keeps IDs gap-free at the
+ * cost of one file write per ID.
+ * </p>
+ * <p>
+ * At startup the counters continue from the stored marks, so the repositories'
+ * IDs are only scanned for prefixes without a usable mark, or for all
+ * prefixes if the {@value #RESCAN_PROPERTY} system property is true (for
+ * example after restoring the data files from a backup older than the mark
+ * file).
+ * </p>
+ * <p>
+ * IMPORTANT: The initialise() method MUST be called once at application startup
  * AFTER data repositories have been loaded to ensure ID uniqueness across
- * restarts.
+ * restarts. Until then, IDs are only counted in memory.
  * </p>
  */
 public final class IdGenerator {
 
+    /**
+     * Location of the file holding the high-water mark of each prefix.
+     */
+    public static final String SEQUENCE_FILE_PATH = "data/id_sequences.csv";
+
+    /**
+     * System property giving the default number of IDs reserved per block.
+     */
+    public static final String BLOCK_SIZE_PROPERTY = "bto.idBlockSize";
+
+    /**
+     * System property that, when true, makes {@link #initialise} check the
+     * stored marks against the existing IDs and raise any that are stale.
+     */
+    public static final String RESCAN_PROPERTY = "bto.idRescan";
+
+    /**
+     * Number of IDs reserved per block unless configured otherwise.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+
     // --- Configuration ---
     private static final int ID_NUMBER_LENGTH = 3;
-    private static final String PADDING_FORMAT = "%0" + ID_NUMBER_LENGTH + "d";
+    private static final String[] SEQUENCE_FILE_HEADER = { "prefix", "nextId" };
+    private static final String SEQUENCE_LOCK_SUFFIX = ".lock";
 
     // --- Prefixes ---
     private static final String PROJECT_PREFIX = "PROJ";
@@ -43,22 +100,65 @@ public final class IdGenerator {
     private static final String ENQUIRY_PREFIX = "ENQ";
     private static final String REGISTRATION_PREFIX = "REG";
 
-    // --- Counters (initialize to 1, but will be updated by initialize()) ---
-    private static int nextProjectId = 1;
-    private static int nextFlatInfoId = 1;
-    private static int nextApplicationId = 1;
-    private static int nextBookingId = 1;
-    private static int nextEnquiryId = 1;
-    private static int nextRegistrationId = 1;
+    // --- Sequences (counting in memory from 1 until initialise()) ---
+    private static final Sequence PROJECTS = new Sequence(PROJECT_PREFIX);
+    private static final Sequence FLAT_INFOS = new Sequence(FLAT_INFO_PREFIX);
+    private static final Sequence APPLICATIONS = new Sequence(APPLICATION_PREFIX);
+    private static final Sequence BOOKINGS = new Sequence(BOOKING_PREFIX);
+    private static final Sequence ENQUIRIES = new Sequence(ENQUIRY_PREFIX);
+    private static final Sequence REGISTRATIONS = new Sequence(REGISTRATION_PREFIX);
+    private static final Sequence[] SEQUENCES = { PROJECTS, FLAT_INFOS, APPLICATIONS, BOOKINGS, ENQUIRIES,
+            REGISTRATIONS };
 
-    // --- Patterns for extracting numbers from existing IDs ---
-    // Adjust pattern if prefix characters can appear in the number part (unlikely)
-    private static final Pattern PROJECT_PATTERN = Pattern.compile("^" + PROJECT_PREFIX + "(\\d+)$");
-    private static final Pattern FLAT_INFO_PATTERN = Pattern.compile("^" + FLAT_INFO_PREFIX + "(\\d+)$");
-    private static final Pattern APPLICATION_PATTERN = Pattern.compile("^" + APPLICATION_PREFIX + "(\\d+)$");
-    private static final Pattern BOOKING_PATTERN = Pattern.compile("^" + BOOKING_PREFIX + "(\\d+)$");
-    private static final Pattern ENQUIRY_PATTERN = Pattern.compile("^" + ENQUIRY_PREFIX + "(\\d+)$");
-    private static final Pattern REGISTRATION_PATTERN = Pattern.compile("^" + REGISTRATION_PREFIX + "(\\d+)$");
+    /**
+     * Serialises block reservations within this process; the file lock only
+     * excludes other processes.
+     */
+    private static final Object RESERVATION_LOCK = new Object();
+
+    private static volatile String sequenceFilePath = null;
+    private static volatile int blockSize = parseBlockSize(System.getProperty(BLOCK_SIZE_PROPERTY));
+
+    /**
+     * A range of numbers reserved for one prefix. Numbers are taken with
+     * {@code next.getAndIncrement()}; values at or beyond {@code end} mean the
+     * block is used up.
+     */
+    private static final class Block {
+        final AtomicLong next;
+        final long end;
+
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+
+    /**
+     * The numbers of one prefix.
+     */
+    private static final class Sequence {
+        final String prefix;
+        final Pattern pattern;
+        volatile Block block = new Block(1, Long.MAX_VALUE);
+
+        Sequence(String prefix) {
+            this.prefix = prefix;
+            // Adjust pattern if prefix characters can appear in the number part (unlikely)
+            this.pattern = Pattern.compile("^" + prefix + "(\\d+)$");
+        }
+
+        long next() {
+            while (true) {
+                Block current = block;
+                long number = current.next.getAndIncrement();
+                if (number < current.end) {
+                    return number;
+                }
+                reserveBlock(this, current);
+            }
+        }
+    }
 
     /**
      * Private constructor to prevent instantiation.
@@ -71,13 +171,16 @@ public final class IdGenerator {
     }
 
     /**
-     * Initialises the ID counters by scanning existing IDs from loaded
-     * repositories.
+     * Initialises the ID counters from the stored high-water marks.
      * <p>
-     * This method examines all existing IDs in the provided repositories and
-     * sets each ID counter to one more than the highest existing ID of that type.
-     * This ensures that new IDs will not collide with existing ones, even after
-     * application restarts.
+     * Each counter continues from the mark stored for its prefix in
+     * {@value #SEQUENCE_FILE_PATH}. Only a prefix with no usable mark (the file
+     * is missing or unreadable, or has no valid row for the prefix) starts
+     * from one more than the highest existing ID of that type, found by
+     * scanning the repository. If the {@value #RESCAN_PROPERTY} system property
+     * is true, every prefix is scanned and stale marks are raised, so a mark
+     * file restored from an older backup never hands out an existing ID. Marks
+     * that were added or raised are written back.
      * </p>
      * <p>
      * This MUST be called once at startup after repositories are loaded to ensure
@@ -94,20 +197,96 @@ public final class IdGenerator {
      *                         IDs
      * @param registrationRepo Loaded IOfficerRegistrationRepository containing
      *                         existing registration IDs
+     * @throws DataAccessException If the high-water marks cannot be written
      */
-    public static synchronized void initialise(
+    public static void initialise(
             IProjectRepository projectRepo,
             IApplicationRepository applicationRepo,
             IBookingRepository bookingRepo,
             IEnquiryRepository enquiryRepo,
             IOfficerRegistrationRepository registrationRepo) {
+        Map<Sequence, Supplier<Collection<String>>> existingIds = new HashMap<>();
+        existingIds.put(PROJECTS, () -> projectRepo.findAll().keySet());
+        existingIds.put(FLAT_INFOS, projectRepo::findAllFlatInfoIds);
+        existingIds.put(APPLICATIONS, () -> applicationRepo.findAll().keySet());
+        existingIds.put(BOOKINGS, () -> bookingRepo.findAll().keySet());
+        existingIds.put(ENQUIRIES, () -> enquiryRepo.findAll().keySet());
+        existingIds.put(REGISTRATIONS, () -> registrationRepo.findAll().keySet());
+        initialise(SEQUENCE_FILE_PATH, existingIds, Boolean.getBoolean(RESCAN_PROPERTY));
+    }
+
+    /**
+     * Initialises the ID counters from a high-water mark file alone, with no
+     * existing IDs, for benchmarks that must not touch the data directory.
+     *
+     * @param path The high-water mark file
+     * @throws DataAccessException If the high-water marks cannot be written
+     */
+    static void initialise(String path) {
+        Map<Sequence, Supplier<Collection<String>>> existingIds = new HashMap<>();
+        for (Sequence sequence : SEQUENCES) {
+            existingIds.put(sequence, Collections::emptyList);
+        }
+        initialise(path, existingIds, false);
+    }
 
-        nextProjectId = findNextId(projectRepo.findAll().keySet(), PROJECT_PATTERN);
-        nextFlatInfoId = findNextId(projectRepo.findAllFlatInfoIds(), FLAT_INFO_PATTERN);
-        nextApplicationId = findNextId(applicationRepo.findAll().keySet(), APPLICATION_PATTERN);
-        nextBookingId = findNextId(bookingRepo.findAll().keySet(), BOOKING_PATTERN);
-        nextEnquiryId = findNextId(enquiryRepo.findAll().keySet(), ENQUIRY_PATTERN);
-        nextRegistrationId = findNextId(registrationRepo.findAll().keySet(), REGISTRATION_PATTERN);
+    /**
+     * Loads the high-water marks, fills in missing ones (and, when rescanning,
+     * raises stale ones) from the existing IDs, and starts every sequence at
+     * its mark, with no numbers reserved yet.
+     *
+     * @param path        The high-water mark file
+     * @param existingIds Supplies the existing IDs of each sequence; only
+     *                    called for sequences that are scanned
+     * @param rescan      Whether to scan every sequence, not just those
+     *                    without a mark
+     */
+    private static void initialise(String path, Map<Sequence, Supplier<Collection<String>>> existingIds,
+            boolean rescan) {
+        synchronized (RESERVATION_LOCK) {
+            try (FileChannel lockChannel = openLockChannel(path)) {
+                FileLock lock = lockChannel.lock();
+                try {
+                    Map<String, Long> marks;
+                    try {
+                        marks = readMarks(path);
+                    } catch (IOException e) {
+                        System.err.println("Warning: Cannot read ID marks from " + path + " (" + e.getMessage()
+                                + "). Scanning existing IDs.");
+                        marks = new HashMap<>();
+                    }
+                    boolean changed = false;
+                    for (Sequence sequence : SEQUENCES) {
+                        Long stored = marks.get(sequence.prefix);
+                        if (stored != null && !rescan) {
+                            continue; // The mark is trusted: no scan
+                        }
+                        long next = findNextId(existingIds.get(sequence).get(), sequence.pattern);
+                        if (stored == null || stored < next) {
+                            if (stored != null) {
+                                System.err.println("Warning: Stored " + sequence.prefix + " ID mark " + stored
+                                        + " is below existing IDs. Continuing from " + next + ".");
+                            }
+                            marks.put(sequence.prefix, next);
+                            changed = true;
+                        }
+                    }
+                    if (changed) {
+                        writeMarks(path, marks);
+                    }
+                    for (Sequence sequence : SEQUENCES) {
+                        long mark = marks.get(sequence.prefix);
+                        sequence.block = new Block(mark, mark);
+                    }
+                    sequenceFilePath = path;
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new DataAccessException("Error initialising ID sequences from " + path + ": " + e.getMessage(),
+                        e);
+            }
+        }
     }
 
     /**
@@ -116,16 +295,17 @@ public final class IdGenerator {
      * This method examines a collection of existing IDs, extracts their numeric
      * parts using the provided pattern, and finds the maximum value. It then
      * returns one more than this maximum, ensuring the next generated ID will
-     * be unique.
+     * be unique. IDs that do not follow the pattern cannot collide with
+     * generated ones and are skipped with a warning.
      * </p>
      *
      * @param existingIds Collection of existing IDs (e.g., from
      *                    repository.findAll().keySet()).
      * @param pattern     The regex Pattern to extract the numeric part of the ID.
-     * @return The next integer ID to use (max found + 1, or 1 if none found).
+     * @return The next ID number to use (max found + 1, or 1 if none found).
      */
-    private static int findNextId(Collection<String> existingIds, Pattern pattern) {
-        int maxId = 0;
+    private static long findNextId(Collection<String> existingIds, Pattern pattern) {
+        long maxId = 0;
         if (existingIds != null) {
             for (String id : existingIds) {
                 if (id == null)
@@ -133,7 +313,7 @@ public final class IdGenerator {
                 Matcher matcher = pattern.matcher(id);
                 if (matcher.matches()) {
                     try {
-                        int currentIdNum = Integer.parseInt(matcher.group(1));
+                        long currentIdNum = Long.parseLong(matcher.group(1));
                         if (currentIdNum > maxId) {
                             maxId = currentIdNum;
                         }
@@ -142,14 +322,160 @@ public final class IdGenerator {
                         System.err.println("Warning: Malformed ID detected during initialization: " + id);
                     }
                 } else {
-                    // This should never happen, but if it does, we just put a large maxId
-                    maxId = 9999; // This will force the next ID to be 10000
+                    System.err.println("Warning: ID does not match " + pattern.pattern()
+                            + " and is ignored during initialization: " + id);
                 }
             }
         }
         return maxId + 1; // Start from max + 1, or 1 if maxId remained 0
     }
 
+    /**
+     * Reserves a new block for a sequence whose block has run out, unless
+     * another thread already did.
+     *
+     * @param sequence  The sequence
+     * @param exhausted The block found to be used up
+     * @throws DataAccessException If the high-water mark cannot be raised
+     */
+    private static void reserveBlock(Sequence sequence, Block exhausted) {
+        synchronized (RESERVATION_LOCK) {
+            if (sequence.block != exhausted) {
+                return;
+            }
+            String path = sequenceFilePath;
+            int size = blockSize;
+            try (FileChannel lockChannel = openLockChannel(path)) {
+                FileLock lock = lockChannel.lock();
+                try {
+                    Map<String, Long> marks = readMarks(path);
+                    Long stored = marks.get(sequence.prefix);
+                    long start = stored == null ? exhausted.end : Math.max(stored, exhausted.end);
+                    long end = start + size;
+                    marks.put(sequence.prefix, end);
+                    writeMarks(path, marks);
+                    sequence.block = new Block(start, end);
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new DataAccessException("Error reserving " + sequence.prefix + " IDs in " + path + ": "
+                        + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Opens the lock file guarding a high-water mark file, creating it if
+     * necessary. The mark file itself is replaced on every write, so it cannot
+     * carry the lock.
+     */
+    private static FileChannel openLockChannel(String path) throws IOException {
+        Path lockPath = Paths.get(path + SEQUENCE_LOCK_SUFFIX);
+        Path directory = lockPath.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        return FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Reads the stored high-water marks. Rows that cannot be parsed are
+     * skipped with a warning, so their prefixes are treated as missing.
+     */
+    private static Map<String, Long> readMarks(String path) throws IOException {
+        Map<String, Long> marks = new HashMap<>();
+        if (!Files.exists(Paths.get(path))) {
+            return marks;
+        }
+        for (CsvRecord row : FileUtil.readCsvRecords(path)) {
+            try {
+                long mark = Long.parseLong(row.get(1).trim());
+                if (mark < 1) {
+                    throw new NumberFormatException("not positive");
+                }
+                marks.put(row.get(0).trim(), mark);
+            } catch (RuntimeException e) {
+                System.err.println("Warning: Skipping invalid ID sequence row in " + path + ": " + row);
+            }
+        }
+        return marks;
+    }
+
+    /**
+     * Writes the high-water marks, in the fixed order of the prefixes followed
+     * by any other prefixes found in the file.
+     */
+    private static void writeMarks(String path, Map<String, Long> marks) throws IOException {
+        Map<String, Long> remaining = new HashMap<>(marks);
+        List<String[]> rows = new ArrayList<>();
+        for (Sequence sequence : SEQUENCES) {
+            Long mark = remaining.remove(sequence.prefix);
+            if (mark != null) {
+                rows.add(new String[] { sequence.prefix, Long.toString(mark) });
+            }
+        }
+        for (Map.Entry<String, Long> entry : remaining.entrySet()) {
+            rows.add(new String[] { entry.getKey(), Long.toString(entry.getValue()) });
+        }
+        FileUtil.writeCsvLines(path, rows, SEQUENCE_FILE_HEADER);
+    }
+
+    /**
+     * Parses the configured block size, falling back to
+     * {@value #DEFAULT_BLOCK_SIZE}.
+     */
+    private static int parseBlockSize(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_BLOCK_SIZE;
+        }
+        try {
+            int size = Integer.parseInt(value.trim());
+            if (size >= 1) {
+                return size;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        System.err.println("Warning: Invalid ID block size '" + value + "'. Using " + DEFAULT_BLOCK_SIZE + ".");
+        return DEFAULT_BLOCK_SIZE;
+    }
+
+    /**
+     * Sets how many IDs of a prefix are reserved at a time. The new size
+     * applies from the next reservation onwards.
+     *
+     * @param size The block size, at least 1
+     * @throws IllegalArgumentException If the size is less than 1
+     */
+    public static void setBlockSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1: " + size);
+        }
+        blockSize = size;
+    }
+
+    /**
+     * @return The number of IDs of a prefix reserved at a time
+     */
+    public static int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Formats an ID from its prefix and number, zero-padding the number to
+     * {@value #ID_NUMBER_LENGTH} digits.
+     */
+    private static String format(String prefix, long number) {
+        String digits = Long.toString(number);
+        StringBuilder id = new StringBuilder(prefix.length() + Math.max(digits.length(), ID_NUMBER_LENGTH));
+        id.append(prefix);
+        for (int i = digits.length(); i < ID_NUMBER_LENGTH; i++) {
+            id.append('0');
+        }
+        return id.append(digits).toString();
+    }
+
     /**
      * Generates a new unique application ID.
      * <p>
@@ -159,10 +485,10 @@ public final class IdGenerator {
      * </p>
      *
      * @return A new unique application ID string (e.g., "APP001", "APP002")
+     * @throws DataAccessException If a new block of IDs cannot be reserved
      */
-    public static synchronized String generateApplicationId() {
-        String numberPart = String.format(PADDING_FORMAT, nextApplicationId++);
-        return APPLICATION_PREFIX + numberPart;
+    public static String generateApplicationId() {
+        return format(APPLICATION_PREFIX, APPLICATIONS.next());
     }
 
     /**
@@ -174,10 +500,10 @@ public final class IdGenerator {
      * </p>
      *
      * @return A new unique booking ID string (e.g., "BOOK001", "BOOK002")
+     * @throws DataAccessException If a new block of IDs cannot be reserved
      */
-    public static synchronized String generateBookingId() {
-        String numberPart = String.format(PADDING_FORMAT, nextBookingId++);
-        return BOOKING_PREFIX + numberPart;
+    public static String generateBookingId() {
+        return format(BOOKING_PREFIX, BOOKINGS.next());
     }
 
     /**
@@ -189,10 +515,10 @@ public final class IdGenerator {
      * </p>
      *
      * @return A new unique enquiry ID string (e.g., "ENQ001", "ENQ002")
+     * @throws DataAccessException If a new block of IDs cannot be reserved
      */
-    public static synchronized String generateEnquiryId() {
-        String numberPart = String.format(PADDING_FORMAT, nextEnquiryId++);
-        return ENQUIRY_PREFIX + numberPart;
+    public static String generateEnquiryId() {
+        return format(ENQUIRY_PREFIX, ENQUIRIES.next());
     }
 
     /**
@@ -204,10 +530,10 @@ public final class IdGenerator {
      * </p>
      *
      * @return A new unique registration ID string (e.g., "REG001", "REG002")
+     * @throws DataAccessException If a new block of IDs cannot be reserved
      */
-    public static synchronized String generateOfficerRegId() {
-        String numberPart = String.format(PADDING_FORMAT, nextRegistrationId++);
-        return REGISTRATION_PREFIX + numberPart;
+    public static String generateOfficerRegId() {
+        return format(REGISTRATION_PREFIX, REGISTRATIONS.next());
     }
 
     /**
@@ -219,10 +545,10 @@ public final class IdGenerator {
      * </p>
      *
      * @return A new unique project ID string (e.g., "PROJ001", "PROJ002")
+     * @throws DataAccessException If a new block of IDs cannot be reserved
      */
-    public static synchronized String generateProjectId() {
-        String numberPart = String.format(PADDING_FORMAT, nextProjectId++);
-        return PROJECT_PREFIX + numberPart;
+    public static String generateProjectId() {
+        return format(PROJECT_PREFIX, PROJECTS.next());
     }
 
     /**
@@ -234,9 +560,9 @@ public final class IdGenerator {
      * </p>
      *
      * @return A new unique flat information ID string (e.g., "FLAT001", "FLAT002")
+     * @throws DataAccessException If a new block of IDs cannot be reserved
      */
-    public static synchronized String generateFlatInfoId() {
-        String numberPart = String.format(PADDING_FORMAT, nextFlatInfoId++);
-        return FLAT_INFO_PREFIX + numberPart;
+    public static String generateFlatInfoId() {
+        return format(FLAT_INFO_PREFIX, FLAT_INFOS.next());
     }
-}
\ No newline at end of file
+}
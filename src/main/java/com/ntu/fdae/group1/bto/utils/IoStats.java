@@ -0,0 +1,116 @@
+package com.ntu.fdae.group1.bto.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing the file writes performed by {@link FileUtil}.
+ * <p>
+ * These figures are intended for tuning the {@link FsyncPolicy}: comparing the
+ * number of writes with the number of file and directory syncs shows how much
+ * batching is taking place, and the latency figures show what each write
+ * costs. All counters are cumulative since start-up or the last
+ * {@link #reset()}.
+ * </p>
+ */
+public final class IoStats {
+    private final AtomicLong replaceCount = new AtomicLong();
+    private final AtomicLong appendCount = new AtomicLong();
+    private final AtomicLong fileSyncCount = new AtomicLong();
+    private final AtomicLong directorySyncCount = new AtomicLong();
+    private final AtomicLong totalWriteNanos = new AtomicLong();
+    private final AtomicLong maxWriteNanos = new AtomicLong();
+
+    /**
+     * Package-private; the only instance is owned by {@link FileUtil}.
+     */
+    IoStats() {
+    }
+
+    void recordReplace(long nanos) {
+        replaceCount.incrementAndGet();
+        recordLatency(nanos);
+    }
+
+    void recordAppend(long nanos) {
+        appendCount.incrementAndGet();
+        recordLatency(nanos);
+    }
+
+    void recordFileSync() {
+        fileSyncCount.incrementAndGet();
+    }
+
+    void recordDirectorySync() {
+        directorySyncCount.incrementAndGet();
+    }
+
+    private void recordLatency(long nanos) {
+        totalWriteNanos.addAndGet(nanos);
+        long currentMax;
+        do {
+            currentMax = maxWriteNanos.get();
+        } while (nanos > currentMax && !maxWriteNanos.compareAndSet(currentMax, nanos));
+    }
+
+    /**
+     * @return Number of atomic whole-file replacements
+     */
+    public long getReplaceCount() {
+        return replaceCount.get();
+    }
+
+    /**
+     * @return Number of append operations
+     */
+    public long getAppendCount() {
+        return appendCount.get();
+    }
+
+    /**
+     * @return Number of file fsyncs issued
+     */
+    public long getFileSyncCount() {
+        return fileSyncCount.get();
+    }
+
+    /**
+     * @return Number of directory fsyncs issued
+     */
+    public long getDirectorySyncCount() {
+        return directorySyncCount.get();
+    }
+
+    /**
+     * @return Mean latency of a replace or append, in microseconds
+     */
+    public double getMeanWriteMicros() {
+        long writes = replaceCount.get() + appendCount.get();
+        return writes == 0 ? 0.0 : totalWriteNanos.get() / 1000.0 / writes;
+    }
+
+    /**
+     * @return Worst latency of a replace or append, in microseconds
+     */
+    public double getMaxWriteMicros() {
+        return maxWriteNanos.get() / 1000.0;
+    }
+
+    /**
+     * Resets all counters to zero.
+     */
+    public void reset() {
+        replaceCount.set(0);
+        appendCount.set(0);
+        fileSyncCount.set(0);
+        directorySyncCount.set(0);
+        totalWriteNanos.set(0);
+        maxWriteNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IoStats{replaces=%d, appends=%d, fileSyncs=%d, dirSyncs=%d, meanWriteUs=%.1f, "
+                + "maxWriteUs=%.1f}", getReplaceCount(), getAppendCount(), getFileSyncCount(),
+                getDirectorySyncCount(), getMeanWriteMicros(), getMaxWriteMicros());
+    }
+}
@@ -0,0 +1,71 @@
+package com.ntu.fdae.group1.bto.utils;
+
+import com.ntu.fdae.group1.bto.exceptions.VersionConflictException;
+
+/**
+ * Utility class for retrying operations that save versioned entities.
+ * <p>
+ * A service operation that reads an entity, checks it, changes a copy and
+ * saves the copy fails with a {@link VersionConflictException} if someone
+ * else saved the entity in between. Such an operation can simply be run
+ * again: it then reads the newer entity and checks it afresh, so it either
+ * succeeds on up-to-date data or fails with the usual error for the new
+ * state (for example, an application that has meanwhile been booked).
+ * </p>
+ */
+public class RetryUtil {
+    /**
+     * Number of attempts services make before giving up on an operation that
+     * keeps conflicting.
+     */
+    public static final int DEFAULT_ATTEMPTS = 3;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private RetryUtil() {
+        throw new AssertionError(); // Prevent instantiation
+    }
+
+    /**
+     * One attempt at an operation.
+     *
+     * @param <R> The result type
+     * @param <E> The checked exception the operation may throw
+     */
+    @FunctionalInterface
+    public interface Attempt<R, E extends Exception> {
+        /**
+         * Runs the operation once, reading everything it depends on afresh.
+         *
+         * @return The result
+         * @throws E If the operation fails
+         */
+        R run() throws E;
+    }
+
+    /**
+     * Runs an operation, running it again if it fails with a version conflict.
+     *
+     * @param attempts  The maximum number of attempts, at least 1
+     * @param operation The operation; it must read the entities it changes
+     *                  anew on every attempt
+     * @param <R>       The result type
+     * @param <E>       The checked exception the operation may throw
+     * @return The result of the first attempt that does not conflict
+     * @throws E                        If an attempt fails with it
+     * @throws VersionConflictException If every attempt conflicts
+     */
+    public static <R, E extends Exception> R retryOnConflict(int attempts, Attempt<R, E> operation) throws E {
+        for (int attempt = 1;; attempt++) {
+            try {
+                return operation.run();
+            } catch (VersionConflictException e) {
+                if (attempt >= attempts) {
+                    throw e;
+                }
+                System.err.println("Warning: " + e.getMessage() + "; retrying.");
+            }
+        }
+    }
+}
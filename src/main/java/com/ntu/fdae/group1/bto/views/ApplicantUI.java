@@ -9,15 +9,16 @@ import com.ntu.fdae.group1.bto.enums.ApplicationStatus;
 import com.ntu.fdae.group1.bto.models.enquiry.Enquiry;
 import com.ntu.fdae.group1.bto.models.project.Application;
 import com.ntu.fdae.group1.bto.models.project.Project;
+import com.ntu.fdae.group1.bto.models.project.ProjectQuery;
 import com.ntu.fdae.group1.bto.models.user.Applicant;
 import com.ntu.fdae.group1.bto.enums.MaritalStatus;
 
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.io.PrintStream;
 import java.util.Scanner;
 import java.util.Objects;
 
@@ -96,7 +97,7 @@ public class ApplicantUI extends BaseUI {
     /**
      * Current filters applied to project listings.
      */
-    private Map<String, Object> currentProjectFilters;
+    private ProjectQuery currentProjectFilters;
 
     /**
      * Constructs a new ApplicantUI with the specified dependencies.
@@ -117,7 +118,32 @@ public class ApplicantUI extends BaseUI {
             EnquiryController enqCtrl,
             AuthenticationController authCtrl,
             Scanner scanner) {
-        super(scanner);
+        this(user, userCtrl, projCtrl, appCtrl, enqCtrl, authCtrl, scanner, null);
+    }
+
+    /**
+     * Constructs a new ApplicantUI with the specified dependencies.
+     *
+     * @param user     The authenticated applicant user
+     * @param userCtrl Controller for user operations
+     * @param projCtrl Controller for project operations
+     * @param appCtrl  Controller for application operations
+     * @param enqCtrl  Controller for enquiry operations
+     * @param authCtrl Controller for authentication operations
+     * @param scanner  Scanner for reading user input
+     * @param session  Stream of the remote session the UI serves, or null
+     *                 for the local console
+     * @throws NullPointerException if any parameter other than session is null
+     */
+    public ApplicantUI(Applicant user,
+            UserController userCtrl,
+            ProjectController projCtrl,
+            ApplicationController appCtrl,
+            EnquiryController enqCtrl,
+            AuthenticationController authCtrl,
+            Scanner scanner,
+            PrintStream session) {
+        super(scanner, session);
         this.user = Objects.requireNonNull(user);
         this.userController = Objects.requireNonNull(userCtrl);
         this.projectController = Objects.requireNonNull(projCtrl);
@@ -128,7 +154,7 @@ public class ApplicantUI extends BaseUI {
         this.projectUIHelper = new ProjectUIHelper(this, userCtrl, projCtrl);
         this.enquiryUIHelper = new EnquiryUIHelper(this, userCtrl, projCtrl);
         this.applicationUIHelper = new ApplicationUIHelper(this, appCtrl, projCtrl, userCtrl);
-        this.currentProjectFilters = new HashMap<>();
+        this.currentProjectFilters = ProjectQuery.all();
     }
 
     /**
@@ -149,19 +175,19 @@ public class ApplicantUI extends BaseUI {
                 displayHeader("Applicant Menu - Welcome User (Age, Marital Status)");
             }
 
-            System.out.println("--- BTO Projects & Application ---");
-            System.out.println("[1] View & Apply for Available Projects");
-            System.out.println("[2] View My Application Status & Request Withdrawal");
-            System.out.println("----------------------------------");
-            System.out.println("--- Enquiries ---");
-            System.out.println("[3] Submit Enquiry");
-            System.out.println("[4] Manage My Enquiries (View/Edit/Delete)");
-            System.out.println("----------------------------------");
-            System.out.println("--- Account ---");
-            System.out.println("[5] Change Password");
-            System.out.println("----------------------------------");
-            System.out.println("[0] Logout");
-            System.out.println("==================================");
+            out.println("--- BTO Projects & Application ---");
+            out.println("[1] View & Apply for Available Projects");
+            out.println("[2] View My Application Status & Request Withdrawal");
+            out.println("----------------------------------");
+            out.println("--- Enquiries ---");
+            out.println("[3] Submit Enquiry");
+            out.println("[4] Manage My Enquiries (View/Edit/Delete)");
+            out.println("----------------------------------");
+            out.println("--- Account ---");
+            out.println("[5] Change Password");
+            out.println("----------------------------------");
+            out.println("[0] Logout");
+            out.println("==================================");
 
             int choice = promptForInt("Enter your choice: ");
 
@@ -240,20 +266,16 @@ public class ApplicantUI extends BaseUI {
 
         boolean filtersWereActive = !currentProjectFilters.isEmpty(); // Check if filters exist *before* asking
         if (filtersWereActive) {
-            System.out.println("Current filters are active:");
-            for (Map.Entry<String, Object> entry : currentProjectFilters.entrySet()) {
-                String key = entry.getKey();
-                Object value = entry.getValue();
-                // Format the value nicely (especially for enums)
-                String valueStr = (value instanceof Enum) ? ((Enum<?>) value).name() : value.toString();
-                System.out.println("  - " + key + ": " + valueStr);
+            out.println("Current filters are active:");
+            for (String line : currentProjectFilters.describe()) {
+                out.println("  - " + line);
             }
-            System.out.println("----------------------------------");
-            System.out.println("\nFilter Options:");
-            System.out.println("[1] Keep current filters");
-            System.out.println("[2] Clear current filters and view all");
-            System.out.println("[3] Change/Set new filters");
-            System.out.println("[0] Back"); // Option to back out entirely
+            out.println("----------------------------------");
+            out.println("\nFilter Options:");
+            out.println("[1] Keep current filters");
+            out.println("[2] Clear current filters and view all");
+            out.println("[3] Change/Set new filters");
+            out.println("[0] Back"); // Option to back out entirely
 
             int filterAction = promptForInt("Choose filter action: ");
 
@@ -264,7 +286,7 @@ public class ApplicantUI extends BaseUI {
                     break;
                 case 2:
                     // Clear filters and view all
-                    this.currentProjectFilters.clear();
+                    this.currentProjectFilters = ProjectQuery.all();
                     displayMessage("Filters cleared.");
                     // Proceed with empty filters map
                     break;
@@ -285,7 +307,7 @@ public class ApplicantUI extends BaseUI {
                 boolean isSingle = (this.user != null && this.user.getMaritalStatus() == MaritalStatus.SINGLE);
                 this.currentProjectFilters = projectUIHelper.promptForProjectFilters(false, isSingle);
             } else {
-                this.currentProjectFilters.clear(); // Ensure empty if they say no
+                this.currentProjectFilters = ProjectQuery.all(); // Ensure empty if they say no
             }
         }
 
@@ -300,9 +322,9 @@ public class ApplicantUI extends BaseUI {
             projectUIHelper.displayApplicantProjectDetails(selectedProject); // Use the tailored view
 
             // --- Contextual Action ---
-            System.out.println("\nOptions:");
-            System.out.println("[1] Apply for " + selectedProject.getProjectName());
-            System.out.println("[0] Back");
+            out.println("\nOptions:");
+            out.println("[1] Apply for " + selectedProject.getProjectName());
+            out.println("[0] Back");
 
             int actionChoice = promptForInt("Enter option: ");
             if (actionChoice == 1) {
@@ -429,10 +451,10 @@ public class ApplicantUI extends BaseUI {
             boolean canManage = !selectedEnquiry.isReplied();
 
             if (canManage) {
-                System.out.println("\nOptions:");
-                System.out.println("[1] Edit Enquiry Content");
-                System.out.println("[2] Delete Enquiry");
-                System.out.println("[0] Back");
+                out.println("\nOptions:");
+                out.println("[1] Edit Enquiry Content");
+                out.println("[2] Delete Enquiry");
+                out.println("[0] Back");
 
                 int actionChoice = promptForInt("Enter option: ");
                 switch (actionChoice) {
@@ -271,9 +271,9 @@ public class ApplicationUIHelper {
                     app.getStatus() == ApplicationStatus.BOOKED);
 
             if (canWithdraw) {
-                System.out.println("\nOptions:");
-                System.out.println("[1] Request Application Withdrawal");
-                System.out.println("[0] Back");
+                baseUI.displayMessage("\nOptions:");
+                baseUI.displayMessage("[1] Request Application Withdrawal");
+                baseUI.displayMessage("[0] Back");
 
                 int actionChoice = baseUI.promptForInt("Enter option: ");
                 if (actionChoice == 1) {
@@ -1,5 +1,6 @@
 package com.ntu.fdae.group1.bto.views;
 
+import java.io.PrintStream;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -24,6 +25,12 @@ import java.util.function.Function;
  * All specific UI classes should extend this class to inherit its functionality
  * and maintain a consistent user experience throughout the application.
  * </p>
+ * <p>
+ * A UI either talks to the local console, writing to {@code System.out} and
+ * {@code System.err}, or to one remote session, writing all of its output to
+ * the session's stream. Subclasses must write through {@link #out} and
+ * {@link #err} rather than {@code System.out} so that both work.
+ * </p>
  */
 public abstract class BaseUI {
     /**
@@ -33,6 +40,24 @@ public abstract class BaseUI {
      */
     protected Scanner scanner;
 
+    /**
+     * Stream for normal output: the console's {@code System.out}, or the
+     * session's stream.
+     */
+    protected final PrintStream out;
+
+    /**
+     * Stream for error output: the console's {@code System.err}, or the
+     * session's stream.
+     */
+    protected final PrintStream err;
+
+    /**
+     * Whether this UI runs on the local console, so that
+     * {@link System#console()} belongs to its user.
+     */
+    private final boolean localConsole;
+
     /**
      * Standard date formatter used consistently across the UI for displaying
      * and parsing dates in ISO format (YYYY-MM-DD).
@@ -46,10 +71,25 @@ public abstract class BaseUI {
      * @throws IllegalArgumentException if scanner is null
      */
     public BaseUI(Scanner scanner) {
+        this(scanner, null);
+    }
+
+    /**
+     * Constructs a BaseUI for the local console or for a remote session.
+     *
+     * @param scanner The Scanner object to use for reading user input
+     * @param session The stream of a remote session, which receives both normal
+     *                and error output; null for the local console
+     * @throws IllegalArgumentException if scanner is null
+     */
+    public BaseUI(Scanner scanner, PrintStream session) {
         if (scanner == null) {
             throw new IllegalArgumentException("Scanner cannot be null");
         }
         this.scanner = scanner;
+        this.localConsole = session == null;
+        this.out = session == null ? System.out : session;
+        this.err = session == null ? System.err : session;
     }
 
     /**
@@ -58,7 +98,7 @@ public abstract class BaseUI {
      * @param message The message to display.
      */
     public void displayMessage(String message) {
-        System.out.println(message);
+        out.println(message);
     }
 
     /**
@@ -67,7 +107,7 @@ public abstract class BaseUI {
      * @param message The error message to display.
      */
     protected void displayError(String message) {
-        System.err.println("ERROR: " + message);
+        err.println("ERROR: " + message);
     }
 
     /**
@@ -77,7 +117,7 @@ public abstract class BaseUI {
      * @return The string entered by the user.
      */
     public String promptForInput(String prompt) {
-        System.out.print(prompt + " ");
+        out.print(prompt + " ");
         return scanner.nextLine();
     }
 
@@ -85,19 +125,19 @@ public abstract class BaseUI {
      * Prompts the user for a password input, masking the input for security.
      * <p>
      * This method uses System.console() to read the password securely. If
-     * System.console() is not available (e.g., in some IDEs), it falls back to
-     * regular input.
+     * System.console() is not available (e.g., in some IDEs), or this UI serves
+     * a remote session, it falls back to regular input.
      * </p>
      * 
      * @param prompt The message to display before input.
      * @return The password entered by the user.
      */
     public String promptForPassword(String prompt) {
-        if (System.console() == null) {
+        if (!localConsole || System.console() == null) {
             return promptForInput(prompt);
         }
 
-        System.out.print(prompt + " ");
+        out.print(prompt + " ");
         char[] passwordChars = System.console().readPassword();
         return new String(passwordChars);
     }
@@ -114,7 +154,7 @@ public abstract class BaseUI {
         boolean showPassword = promptForConfirmation("Show password while typing?");
 
         if (showPassword) {
-            System.out.println("Warning: Password input will be visible.");
+            out.println("Warning: Password input will be visible.");
             return promptForInput(prompt);
         } else {
             return promptForPassword(prompt);
@@ -128,12 +168,12 @@ public abstract class BaseUI {
      * @return The integer entered by the user, or -1 if input is invalid.
      */
     public int promptForInt(String prompt) {
-        System.out.print(prompt + " ");
+        out.print(prompt + " ");
         int input = -1; // Default invalid value
         try {
             input = scanner.nextInt();
         } catch (InputMismatchException e) {
-            System.err.println("Invalid input. Please enter a number.");
+            err.println("Invalid input. Please enter a number.");
             // Consume the invalid input
         } finally {
             scanner.nextLine(); // Always consume the rest of the line
@@ -148,12 +188,12 @@ public abstract class BaseUI {
      * @return The double entered by the user, or -1.0 if input is invalid.
      */
     public double promptForDouble(String prompt) {
-        System.out.print(prompt + " ");
+        out.print(prompt + " ");
         double input = -1.0; // Default invalid value
         try {
             input = scanner.nextDouble();
         } catch (InputMismatchException e) {
-            System.err.println("Invalid input. Please enter a number.");
+            err.println("Invalid input. Please enter a number.");
             // Consume the invalid input
         } finally {
             scanner.nextLine(); // Always consume the rest of the line
@@ -172,7 +212,7 @@ public abstract class BaseUI {
         DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
 
         while (date == null) { // Loop until a valid date is parsed
-            System.out.print(prompt + " (YYYY-MM-DD): "); // Show prompt inside loop
+            out.print(prompt + " (YYYY-MM-DD): "); // Show prompt inside loop
             String dateStr = scanner.nextLine().trim();
 
             if (dateStr.isEmpty()) { // Handle empty input specifically
@@ -278,7 +318,7 @@ public abstract class BaseUI {
      */
     public boolean promptForConfirmation(String prompt) {
         while (true) {
-            System.out.print(prompt + " (Y/N, Enter for N): "); 
+            out.print(prompt + " (Y/N, Enter for N): "); 
             String input = scanner.nextLine().trim();
 
             if (input.isEmpty()) {
@@ -297,7 +337,7 @@ public abstract class BaseUI {
      * Pauses execution until the user presses Enter.
      */
     protected void pause() {
-        System.out.print("\nPress Enter to continue...");
+        out.print("\nPress Enter to continue...");
         scanner.nextLine();
     }
 
@@ -307,9 +347,9 @@ public abstract class BaseUI {
      * @param title The title of the menu.
      */
     protected void displayHeader(String title) {
-        System.out.println("\n-----------------------------------------");
-        System.out.println(title);
-        System.out.println("-----------------------------------------");
+        out.println("\n-----------------------------------------");
+        out.println(title);
+        out.println("-----------------------------------------");
     }
 
     /**
@@ -321,12 +361,12 @@ public abstract class BaseUI {
      */
     protected <T> void displayList(List<T> items, Function<T, String> formatter) {
         if (items == null || items.isEmpty()) {
-            System.out.println("No items to display.");
+            out.println("No items to display.");
             return;
         }
 
         for (int i = 0; i < items.size(); i++) {
-            System.out.println((i + 1) + ". " + formatter.apply(items.get(i)));
+            out.println((i + 1) + ". " + formatter.apply(items.get(i)));
         }
     }
 
@@ -336,14 +376,14 @@ public abstract class BaseUI {
     protected void clearConsole() {
         try {
             final String os = System.getProperty("os.name");
-            if (os.contains("Windows")) {
+            if (localConsole && os.contains("Windows")) {
                 new ProcessBuilder("cmd", "/c", "cls").inheritIO().start().waitFor();
             } else {
-                System.out.print("\033[H\033[2J"); // ANSI escape code
-                System.out.flush();
+                out.print("\033[H\033[2J"); // ANSI escape code
+                out.flush();
             }
         } catch (final Exception e) {
-            System.out.println("Error clearing console: " + e.getMessage());
+            out.println("Error clearing console: " + e.getMessage());
         }
     }
 
@@ -147,6 +147,22 @@ public class EnquiryUIHelper {
      *         map if list is null/empty.
      */
     public Map<Integer, Enquiry> displayEnquiryList(List<Enquiry> enquiries, String title) {
+        return displayEnquiryList(enquiries, title, true);
+    }
+
+    /**
+     * Displays a formatted list of enquiries and returns a map for selection.
+     * 
+     * @param enquiries          List of enquiries to display.
+     * @param title              Title for the list header.
+     * @param sortUnrepliedFirst true to sort unreplied first, newest first;
+     *                           false to keep the given order, e.g. search
+     *                           relevance.
+     * @return Map where key is the displayed number, value is the Enquiry. Empty
+     *         map if list is null/empty.
+     */
+    public Map<Integer, Enquiry> displayEnquiryList(List<Enquiry> enquiries, String title,
+            boolean sortUnrepliedFirst) {
         baseUI.displayHeader(title);
         Map<Integer, Enquiry> enquiryMap = new HashMap<>();
         if (enquiries == null || enquiries.isEmpty()) {
@@ -155,7 +171,7 @@ public class EnquiryUIHelper {
         }
 
         // Sort unreplied first, then perhaps by date?
-        List<Enquiry> sortedEnquiries = enquiries.stream()
+        List<Enquiry> sortedEnquiries = !sortUnrepliedFirst ? enquiries : enquiries.stream()
                 .sorted(Comparator.comparing(Enquiry::isReplied) // false (unreplied) comes first
                         .thenComparing(Enquiry::getSubmissionDate, Comparator.nullsLast(Comparator.reverseOrder()))) // Newest
                                                                                                                      // first
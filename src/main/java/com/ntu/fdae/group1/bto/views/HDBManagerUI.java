@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Objects;
+import java.io.PrintStream;
 import java.util.Scanner;
 import java.util.stream.Collectors;
 
@@ -18,6 +19,7 @@ import com.ntu.fdae.group1.bto.models.project.Application;
 import com.ntu.fdae.group1.bto.models.project.OfficerRegistration;
 import com.ntu.fdae.group1.bto.models.project.Project;
 import com.ntu.fdae.group1.bto.models.project.ProjectFlatInfo;
+import com.ntu.fdae.group1.bto.models.project.ProjectQuery;
 import com.ntu.fdae.group1.bto.models.user.HDBManager;
 import com.ntu.fdae.group1.bto.controllers.project.ApplicationController;
 import com.ntu.fdae.group1.bto.controllers.user.AuthenticationController;
@@ -127,7 +129,7 @@ public class HDBManagerUI extends BaseUI {
     /**
      * Current filters applied to project listings.
      */
-    private Map<String, Object> currentProjectFilters;
+    private ProjectQuery currentProjectFilters;
 
     /**
      * Constructs a new HDBManagerUI with the specified dependencies.
@@ -152,7 +154,36 @@ public class HDBManagerUI extends BaseUI {
             ReportController reportCtrl,
             AuthenticationController authCtrl,
             Scanner scanner) {
-        super(scanner);
+        this(user, userCtrl, projCtrl, appCtrl, offRegCtrl, enqCtrl, reportCtrl, authCtrl, scanner, null);
+    }
+
+    /**
+     * Constructs a new HDBManagerUI with the specified dependencies.
+     *
+     * @param user       The authenticated HDB manager user
+     * @param userCtrl   Controller for user operations
+     * @param projCtrl   Controller for project operations
+     * @param appCtrl    Controller for application operations
+     * @param offRegCtrl Controller for officer registration operations
+     * @param enqCtrl    Controller for enquiry operations
+     * @param reportCtrl Controller for report generation operations
+     * @param authCtrl   Controller for authentication operations
+     * @param scanner    Scanner for reading user input
+     * @param session    Stream of the remote session the UI serves, or null
+     *                   for the local console
+     * @throws NullPointerException if any parameter other than session is null
+     */
+    public HDBManagerUI(HDBManager user,
+            UserController userCtrl,
+            ProjectController projCtrl,
+            ApplicationController appCtrl,
+            OfficerRegistrationController offRegCtrl,
+            EnquiryController enqCtrl,
+            ReportController reportCtrl,
+            AuthenticationController authCtrl,
+            Scanner scanner,
+            PrintStream session) {
+        super(scanner, session);
         this.user = Objects.requireNonNull(user);
         this.userController = Objects.requireNonNull(userCtrl);
         this.projectController = Objects.requireNonNull(projCtrl);
@@ -166,7 +197,7 @@ public class HDBManagerUI extends BaseUI {
         this.applicationUIHelper = new ApplicationUIHelper(this, appCtrl, projCtrl, userCtrl);
         this.enquiryUIHelper = new EnquiryUIHelper(this, userCtrl, projCtrl);
         this.officerRegUIHelper = new OfficerRegUIHelper(this, projCtrl, userCtrl);
-        this.currentProjectFilters = new HashMap<>();
+        this.currentProjectFilters = ProjectQuery.all();
     }
 
     /**
@@ -188,25 +219,25 @@ public class HDBManagerUI extends BaseUI {
                 displayHeader("Applicant Menu - Welcome User (Age, Marital Status)");
             }
 
-            System.out.println("--- Manager Project Role ---");
-            System.out.println("[1] Manage My Projects (Create/Edit/Delete/Visbility)"); // Combined
-            System.out.println("[2] View All Created Projects");
-            System.out.println("[3] View My Managed Projects");
-            System.out.println("-------------------------------------");
-            System.out.println("--- Manager Tasks ---");
-            System.out.println("[4] Review Officer Registration (Pending/Approved)");
-            System.out.println("[5] Review Pending BTO Applications (Approve/Reject)");
-            System.out.println("[6] Review Pending Application Withdrawals (Approve/Reject)");
-            System.out.println("-------------------------------------");
-            System.out.println("--- Communication & Reports ---");
-            System.out.println("[7] View/Reply Enquiries");
-            System.out.println("[8] Generate Booking Report");
-            System.out.println("-------------------------------------");
-            System.out.println("--- Account ---");
-            System.out.println("[9] Change Password");
-            System.out.println("-------------------------------------");
-            System.out.println("[0] Logout");
-            System.out.println("=====================================");
+            out.println("--- Manager Project Role ---");
+            out.println("[1] Manage My Projects (Create/Edit/Delete/Visbility)"); // Combined
+            out.println("[2] View All Created Projects");
+            out.println("[3] View My Managed Projects");
+            out.println("-------------------------------------");
+            out.println("--- Manager Tasks ---");
+            out.println("[4] Review Officer Registration (Pending/Approved)");
+            out.println("[5] Review Pending BTO Applications (Approve/Reject)");
+            out.println("[6] Review Pending Application Withdrawals (Approve/Reject)");
+            out.println("-------------------------------------");
+            out.println("--- Communication & Reports ---");
+            out.println("[7] View/Reply Enquiries");
+            out.println("[8] Generate Booking Report");
+            out.println("-------------------------------------");
+            out.println("--- Account ---");
+            out.println("[9] Change Password");
+            out.println("-------------------------------------");
+            out.println("[0] Logout");
+            out.println("=====================================");
 
             int choice = promptForInt("Enter your choice: ");
 
@@ -275,11 +306,11 @@ public class HDBManagerUI extends BaseUI {
      */
     private void handleManageProjects() throws RegistrationException, InvalidInputException {
         displayHeader("Manage BTO Projects");
-        System.out.println("1. Create New Project");
-        System.out.println("2. Edit Existing Project");
-        System.out.println("3. Delete Project");
-        System.out.println("4. Toggle Project Visibility");
-        System.out.println("0. Back to Main Menu");
+        out.println("1. Create New Project");
+        out.println("2. Edit Existing Project");
+        out.println("3. Delete Project");
+        out.println("4. Toggle Project Visibility");
+        out.println("0. Back to Main Menu");
         int choice = promptForInt("Enter choice: ");
 
         switch (choice) {
@@ -329,7 +360,7 @@ public class HDBManagerUI extends BaseUI {
         int officerSlots = promptForInt("Enter Max HDB Officer Slots (1-10): ");
 
         Map<String, ProjectFlatInfo> flatInfoMap = new HashMap<>();
-        System.out.println("--- Enter Flat Details (Enter 0 units if type is not offered) ---");
+        out.println("--- Enter Flat Details (Enter 0 units if type is not offered) ---");
         for (FlatType type : Arrays.asList(FlatType.TWO_ROOM, FlatType.THREE_ROOM)) {
             int totalUnits = promptForInt("Enter Total Units for " + type.name() + ": ");
             if (totalUnits > 0) {
@@ -584,20 +615,16 @@ public class HDBManagerUI extends BaseUI {
 
         boolean filtersWereActive = !currentProjectFilters.isEmpty(); // Check if filters exist *before* asking
         if (filtersWereActive) {
-            System.out.println("Current filters are active:");
-            for (Map.Entry<String, Object> entry : currentProjectFilters.entrySet()) {
-                String key = entry.getKey();
-                Object value = entry.getValue();
-                // Format the value nicely (especially for enums)
-                String valueStr = (value instanceof Enum) ? ((Enum<?>) value).name() : value.toString();
-                System.out.println("  - " + key + ": " + valueStr);
+            out.println("Current filters are active:");
+            for (String line : currentProjectFilters.describe()) {
+                out.println("  - " + line);
             }
-            System.out.println("----------------------------------");
-            System.out.println("\nFilter Options:");
-            System.out.println("[1] Keep current filters");
-            System.out.println("[2] Clear current filters and view all");
-            System.out.println("[3] Change/Set new filters");
-            System.out.println("[0] Back"); // Option to back out entirely
+            out.println("----------------------------------");
+            out.println("\nFilter Options:");
+            out.println("[1] Keep current filters");
+            out.println("[2] Clear current filters and view all");
+            out.println("[3] Change/Set new filters");
+            out.println("[0] Back"); // Option to back out entirely
 
             int filterAction = promptForInt("Choose filter action: ");
 
@@ -608,7 +635,7 @@ public class HDBManagerUI extends BaseUI {
                     break;
                 case 2:
                     // Clear filters and view all
-                    this.currentProjectFilters.clear();
+                    this.currentProjectFilters = ProjectQuery.all();
                     displayMessage("Filters cleared.");
                     // Proceed with empty filters map
                     break;
@@ -627,7 +654,7 @@ public class HDBManagerUI extends BaseUI {
             if (promptForConfirmation("Apply filters before viewing?:")) {
                 this.currentProjectFilters = projectUIHelper.promptForProjectFilters(true, false);
             } else {
-                this.currentProjectFilters.clear(); // Ensure empty if they say no
+                this.currentProjectFilters = ProjectQuery.all(); // Ensure empty if they say no
             }
         }
 
@@ -707,20 +734,16 @@ public class HDBManagerUI extends BaseUI {
 
         boolean filtersWereActive = !currentProjectFilters.isEmpty(); // Check if filters exist *before* asking
         if (filtersWereActive) {
-            System.out.println("Current filters are active:");
-            for (Map.Entry<String, Object> entry : currentProjectFilters.entrySet()) {
-                String key = entry.getKey();
-                Object value = entry.getValue();
-                // Format the value nicely (especially for enums)
-                String valueStr = (value instanceof Enum) ? ((Enum<?>) value).name() : value.toString();
-                System.out.println("  - " + key + ": " + valueStr);
+            out.println("Current filters are active:");
+            for (String line : currentProjectFilters.describe()) {
+                out.println("  - " + line);
             }
-            System.out.println("----------------------------------");
-            System.out.println("\nFilter Options:");
-            System.out.println("[1] Keep current filters");
-            System.out.println("[2] Clear current filters and view all");
-            System.out.println("[3] Change/Set new filters");
-            System.out.println("[0] Back"); // Option to back out entirely
+            out.println("----------------------------------");
+            out.println("\nFilter Options:");
+            out.println("[1] Keep current filters");
+            out.println("[2] Clear current filters and view all");
+            out.println("[3] Change/Set new filters");
+            out.println("[0] Back"); // Option to back out entirely
 
             int filterAction = promptForInt("Choose filter action: ");
 
@@ -731,7 +754,7 @@ public class HDBManagerUI extends BaseUI {
                     break;
                 case 2:
                     // Clear filters and view all
-                    this.currentProjectFilters.clear();
+                    this.currentProjectFilters = ProjectQuery.all();
                     displayMessage("Filters cleared.");
                     // Proceed with empty filters map
                     break;
@@ -750,7 +773,7 @@ public class HDBManagerUI extends BaseUI {
             if (promptForConfirmation("Apply filters before viewing?:")) {
                 this.currentProjectFilters = projectUIHelper.promptForProjectFilters(true, false);
             } else {
-                this.currentProjectFilters.clear(); // Ensure empty if they say no
+                this.currentProjectFilters = ProjectQuery.all(); // Ensure empty if they say no
             }
         }
 
@@ -984,7 +1007,7 @@ public class HDBManagerUI extends BaseUI {
      * Handles the workflow for viewing and replying to enquiries.
      * <p>
      * This method allows managers to:
-     * - View a list of all enquiries in the system
+     * - View a list of all enquiries in the system, or search them by keyword
      * - Select a specific enquiry to view and potentially reply to
      * - Submit a reply for unreplied enquiries
      * </p>
@@ -999,16 +1022,32 @@ public class HDBManagerUI extends BaseUI {
      */
     private void handleViewReplyEnquiries() throws InvalidInputException {
         displayHeader("View/Reply Enquiries");
-        List<Enquiry> allEnquiries = enquiryController.viewAllEnquiries(); // Manager sees all
+        String query = promptForInput("Search enquiries by keyword (leave blank to list all):").trim();
+        Map<Integer, Enquiry> enquiryMap;
+        if (query.isEmpty()) {
+            List<Enquiry> allEnquiries = enquiryController.viewAllEnquiries(); // Manager sees all
+
+            if (allEnquiries.isEmpty()) {
+                displayMessage("No enquiries found in the system.");
+                return;
+            }
 
-        if (allEnquiries.isEmpty()) {
-            displayMessage("No enquiries found in the system.");
-            return;
-        }
+            // Delegate to helper
+            enquiryMap = this.enquiryUIHelper.displayEnquiryList(allEnquiries,
+                    "All Enquiries (Sorted by Unreplied First)");
+        } else {
+            boolean unrepliedOnly = promptForConfirmation("Show unreplied enquiries only?");
+            List<Enquiry> matches = enquiryController.searchEnquiries(query, unrepliedOnly);
 
-        // Delegate to helper
-        Map<Integer, Enquiry> enquiryMap = this.enquiryUIHelper.displayEnquiryList(allEnquiries,
-                "All Enquiries (Sorted by Unreplied First)");
+            if (matches.isEmpty()) {
+                displayMessage("No enquiries match \"" + query + "\".");
+                return;
+            }
+
+            // Keep the search ranking
+            enquiryMap = this.enquiryUIHelper.displayEnquiryList(matches,
+                    "Enquiries Matching \"" + query + "\" (Best Match First)", false);
+        }
         if (enquiryMap.isEmpty())
             return;
 
@@ -1109,7 +1148,7 @@ public class HDBManagerUI extends BaseUI {
         displayMessage("Generating report with filters: " + filters);
         String report = reportController.generateBookingReport(filters);
         displayMessage("\n--- Report Start ---");
-        System.out.println(report);
+        out.println(report);
         displayMessage("--- Report End ---");
         // pause();
     }
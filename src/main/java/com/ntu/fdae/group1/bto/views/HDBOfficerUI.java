@@ -20,11 +20,11 @@ import com.ntu.fdae.group1.bto.enums.MaritalStatus;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.io.PrintStream;
 import java.util.Scanner;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -128,7 +128,7 @@ public class HDBOfficerUI extends BaseUI {
     /**
      * Current filters applied to project listings.
      */
-    private Map<String, Object> currentProjectFilters;
+    private ProjectQuery currentProjectFilters;
 
     /**
      * Constructs a new HDBOfficerUI with the specified dependencies.
@@ -155,7 +155,38 @@ public class HDBOfficerUI extends BaseUI {
             EnquiryController enqCtrl,
             AuthenticationController authCtrl,
             Scanner scanner) {
-        super(scanner);
+        this(user, userCtrl, projCtrl, appCtrl, offRegCtrl, bookCtrl, receiptCtrl, enqCtrl, authCtrl, scanner, null);
+    }
+
+    /**
+     * Constructs a new HDBOfficerUI with the specified dependencies.
+     *
+     * @param user        The authenticated HDB officer user
+     * @param userCtrl    Controller for user operations
+     * @param projCtrl    Controller for project operations
+     * @param appCtrl     Controller for application operations
+     * @param offRegCtrl  Controller for officer registration operations
+     * @param bookCtrl    Controller for booking operations
+     * @param receiptCtrl Controller for receipt operations
+     * @param enqCtrl     Controller for enquiry operations
+     * @param authCtrl    Controller for authentication operations
+     * @param scanner     Scanner for reading user input
+     * @param session     Stream of the remote session the UI serves, or null
+     *                    for the local console
+     * @throws NullPointerException if any parameter other than session is null
+     */
+    public HDBOfficerUI(HDBOfficer user,
+            UserController userCtrl,
+            ProjectController projCtrl,
+            ApplicationController appCtrl,
+            OfficerRegistrationController offRegCtrl,
+            BookingController bookCtrl,
+            ReceiptController receiptCtrl,
+            EnquiryController enqCtrl,
+            AuthenticationController authCtrl,
+            Scanner scanner,
+            PrintStream session) {
+        super(scanner, session);
         this.user = Objects.requireNonNull(user);
         this.userController = Objects.requireNonNull(userCtrl);
         this.projectController = Objects.requireNonNull(projCtrl);
@@ -172,7 +203,7 @@ public class HDBOfficerUI extends BaseUI {
                 userController);
         this.officerRegUIHelper = new OfficerRegUIHelper(this, projectController, userController);
         this.bookingUIHelper = new BookingUIHelper(this, userController);
-        this.currentProjectFilters = new HashMap<>();
+        this.currentProjectFilters = ProjectQuery.all();
     }
 
     /**
@@ -194,24 +225,24 @@ public class HDBOfficerUI extends BaseUI {
                 displayHeader("Applicant Menu - Welcome User (Age, Marital Status)");
             }
 
-            System.out.println("--- View/Apply (Applicant Role) ---");
-            System.out.println("[1] View & Apply for Available Projects"); // Combined
-            System.out.println("[2] View My Application Status & Request Withdrawal"); // Combined
-            System.out.println("-------------------------------------");
-            System.out.println("--- Officer Project Role ---");
-            System.out.println("[3] Register for Project Handling");
-            System.out.println("[4] View My Registration Status");
-            System.out.println("[5] Manage Project Being Handled"); // Combined view/book/receipt/enquiry actions
-            System.out.println("-------------------------------------");
-            System.out.println("--- Enquiries (Personal) ---");
-            System.out.println("[6] Submit Enquiry (My Own)");
-            System.out.println("[7] Manage My Enquiries (View/Edit/Delete)"); // Combined
-            System.out.println("-------------------------------------");
-            System.out.println("--- Account ---");
-            System.out.println("[8] Change Password");
-            System.out.println("-------------------------------------");
-            System.out.println("[0] Logout");
-            System.out.println("=====================================");
+            out.println("--- View/Apply (Applicant Role) ---");
+            out.println("[1] View & Apply for Available Projects"); // Combined
+            out.println("[2] View My Application Status & Request Withdrawal"); // Combined
+            out.println("-------------------------------------");
+            out.println("--- Officer Project Role ---");
+            out.println("[3] Register for Project Handling");
+            out.println("[4] View My Registration Status");
+            out.println("[5] Manage Project Being Handled"); // Combined view/book/receipt/enquiry actions
+            out.println("-------------------------------------");
+            out.println("--- Enquiries (Personal) ---");
+            out.println("[6] Submit Enquiry (My Own)");
+            out.println("[7] Manage My Enquiries (View/Edit/Delete)"); // Combined
+            out.println("-------------------------------------");
+            out.println("--- Account ---");
+            out.println("[8] Change Password");
+            out.println("-------------------------------------");
+            out.println("[0] Logout");
+            out.println("=====================================");
 
             int choice = promptForInt("Enter your choice: ");
 
@@ -308,20 +339,16 @@ public class HDBOfficerUI extends BaseUI {
 
         boolean filtersWereActive = !currentProjectFilters.isEmpty(); // Check if filters exist *before* asking
         if (filtersWereActive) {
-            System.out.println("Current filters are active:");
-            for (Map.Entry<String, Object> entry : currentProjectFilters.entrySet()) {
-                String key = entry.getKey();
-                Object value = entry.getValue();
-                // Format the value nicely (especially for enums)
-                String valueStr = (value instanceof Enum) ? ((Enum<?>) value).name() : value.toString();
-                System.out.println("  - " + key + ": " + valueStr);
+            out.println("Current filters are active:");
+            for (String line : currentProjectFilters.describe()) {
+                out.println("  - " + line);
             }
-            System.out.println("----------------------------------");
-            System.out.println("\nFilter Options:");
-            System.out.println("[1] Keep current filters");
-            System.out.println("[2] Clear current filters and view all");
-            System.out.println("[3] Change/Set new filters");
-            System.out.println("[0] Back"); // Option to back out entirely
+            out.println("----------------------------------");
+            out.println("\nFilter Options:");
+            out.println("[1] Keep current filters");
+            out.println("[2] Clear current filters and view all");
+            out.println("[3] Change/Set new filters");
+            out.println("[0] Back"); // Option to back out entirely
 
             int filterAction = promptForInt("Choose filter action: ");
 
@@ -332,7 +359,7 @@ public class HDBOfficerUI extends BaseUI {
                     break;
                 case 2:
                     // Clear filters and view all
-                    this.currentProjectFilters.clear();
+                    this.currentProjectFilters = ProjectQuery.all();
                     displayMessage("Filters cleared.");
                     // Proceed with empty filters map
                     break;
@@ -354,7 +381,7 @@ public class HDBOfficerUI extends BaseUI {
                 boolean isSingle = (this.user != null && this.user.getMaritalStatus() == MaritalStatus.SINGLE);
                 this.currentProjectFilters = projectUIHelper.promptForProjectFilters(false, isSingle);
             } else {
-                this.currentProjectFilters.clear(); // Ensure empty if they say no
+                this.currentProjectFilters = ProjectQuery.all(); // Ensure empty if they say no
             }
         }
 
@@ -369,9 +396,9 @@ public class HDBOfficerUI extends BaseUI {
             projectUIHelper.displayApplicantProjectDetails(selectedProject); // Use the tailored view
 
             // --- Contextual Action ---
-            System.out.println("\nOptions:");
-            System.out.println("[1] Apply for " + selectedProject.getProjectName());
-            System.out.println("[0] Back");
+            out.println("\nOptions:");
+            out.println("[1] Apply for " + selectedProject.getProjectName());
+            out.println("[0] Back");
 
             int actionChoice = promptForInt("Enter option: ");
             if (actionChoice == 1) {
@@ -500,10 +527,10 @@ public class HDBOfficerUI extends BaseUI {
             boolean canManage = !selectedEnquiry.isReplied();
 
             if (canManage) {
-                System.out.println("\nOptions:");
-                System.out.println("[1] Edit Enquiry Content");
-                System.out.println("[2] Delete Enquiry");
-                System.out.println("[0] Back");
+                out.println("\nOptions:");
+                out.println("[1] Edit Enquiry Content");
+                out.println("[2] Delete Enquiry");
+                out.println("[0] Back");
 
                 int actionChoice = promptForInt("Enter option: ");
                 switch (actionChoice) {
@@ -694,12 +721,12 @@ public class HDBOfficerUI extends BaseUI {
                 statusTag = String.format(" (Past - Closed %s)", project.getClosingDate());
             }
 
-            System.out.printf("  - %s (%s)%s\n",
+            out.printf("  - %s (%s)%s\n",
                     project.getProjectName(),
                     project.getProjectId(),
                     statusTag);
         }
-        System.out.println("-------------------------------------------");
+        out.println("-------------------------------------------");
         pause();
 
         // --- Step 4: Handle scenarios based on the number of ACTIVE projects ---
@@ -719,11 +746,11 @@ public class HDBOfficerUI extends BaseUI {
             // Iterate ONLY over activeManageableProjects for selection menu
             for (int i = 0; i < activeManageableProjects.size(); i++) {
                 Project p = activeManageableProjects.get(i);
-                System.out.printf("[%d] %s (%s)\n", i + 1, p.getProjectName(), p.getProjectId());
+                out.printf("[%d] %s (%s)\n", i + 1, p.getProjectName(), p.getProjectId());
             }
-            System.out.println("-------------------------------------------");
-            System.out.println("[0] Back to Main Officer Menu");
-            System.out.println("===========================================");
+            out.println("-------------------------------------------");
+            out.println("[0] Back to Main Officer Menu");
+            out.println("===========================================");
 
             int choice = -1;
             while (selectedProject == null) {
@@ -762,13 +789,13 @@ public class HDBOfficerUI extends BaseUI {
             projectUIHelper.displayStaffProjectDetails(selectedProject, projectSpecificPendingCount);
 
             // --- Step 5c: Display Contextual Actions Sub-Menu ---
-            System.out.println("\n--- Management Actions for this Active Project ---");
-            System.out.println("[1] Book Flat for Successful Applicant");
-            System.out.println("[2] Generate Booking Receipt for Applicant");
-            System.out.println("[3] View / Reply Enquiries for this Project");
-            System.out.println("-------------------------------------------");
-            System.out.println("[0] Back");
-            System.out.println("===========================================");
+            out.println("\n--- Management Actions for this Active Project ---");
+            out.println("[1] Book Flat for Successful Applicant");
+            out.println("[2] Generate Booking Receipt for Applicant");
+            out.println("[3] View / Reply Enquiries for this Project");
+            out.println("-------------------------------------------");
+            out.println("[0] Back");
+            out.println("===========================================");
 
             int actionChoice = promptForInt("Enter action: ");
 
@@ -994,9 +1021,9 @@ public class HDBOfficerUI extends BaseUI {
 
         // 5. Offer Reply option if applicable (Logic remains in this UI class)
         if (!selectedEnquiry.isReplied()) {
-            System.out.println("\nOptions:");
-            System.out.println("[1] Reply to this Enquiry");
-            System.out.println("[0] Back"); // Back to the project management sub-menu
+            out.println("\nOptions:");
+            out.println("[1] Reply to this Enquiry");
+            out.println("[0] Back"); // Back to the project management sub-menu
 
             int actionChoice = promptForInt("Enter option: ");
             if (actionChoice == 1) {
@@ -1023,7 +1050,7 @@ public class HDBOfficerUI extends BaseUI {
             }
         } else {
             // Already replied, just offer to go back
-            System.out.println("\n[0] Back");
+            out.println("\n[0] Back");
             promptForInt("Enter 0 to go back: "); // Just wait for back input
         }
     }
@@ -8,6 +8,7 @@ import com.ntu.fdae.group1.bto.exceptions.AuthenticationException;
 import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
 
 import java.util.Arrays;
+import java.io.PrintStream;
 import java.util.Scanner;
 
 /**
@@ -39,7 +40,21 @@ public class LoginUI extends BaseUI {
      * @throws IllegalArgumentException if authController is null
      */
     public LoginUI(AuthenticationController authController, Scanner scanner) {
-        super(scanner);
+        this(authController, scanner, null);
+    }
+
+    /**
+     * Constructs a new LoginUI with the specified authentication controller and
+     * scanner.
+     *
+     * @param authController The controller for handling authentication operations
+     * @param scanner        The scanner for reading user input
+     * @param session        Stream of the remote session the UI serves, or null
+     *                       for the local console
+     * @throws IllegalArgumentException if authController is null
+     */
+    public LoginUI(AuthenticationController authController, Scanner scanner, PrintStream session) {
+        super(scanner, session);
         if (authController == null) {
             throw new IllegalArgumentException("AuthenticationController cannot be null");
         }
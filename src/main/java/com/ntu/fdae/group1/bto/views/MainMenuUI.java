@@ -1,5 +1,6 @@
 package com.ntu.fdae.group1.bto.views;
 
+import java.io.PrintStream;
 import java.util.Scanner;
 
 import com.ntu.fdae.group1.bto.controllers.user.AuthenticationController;
@@ -32,11 +33,25 @@ public class MainMenuUI extends BaseUI {
      * @throws IllegalArgumentException if authController is null
      */
     public MainMenuUI(AuthenticationController authController, Scanner scanner) {
-        super(scanner);
+        this(authController, scanner, null);
+    }
+
+    /**
+     * Constructs a new MainMenuUI with the specified authentication controller and
+     * scanner.
+     *
+     * @param authController The controller for handling authentication operations
+     * @param scanner        The scanner for reading user input
+     * @param session        Stream of the remote session the UI serves, or null
+     *                       for the local console
+     * @throws IllegalArgumentException if authController is null
+     */
+    public MainMenuUI(AuthenticationController authController, Scanner scanner, PrintStream session) {
+        super(scanner, session);
         if (authController == null) {
             throw new IllegalArgumentException("AuthenticationController cannot be null");
         }
-        this.loginUI = new LoginUI(authController, scanner);
+        this.loginUI = new LoginUI(authController, scanner, session);
     }
 
     /**
@@ -48,9 +63,9 @@ public class MainMenuUI extends BaseUI {
     public User displayMainMenu() {
         while (true) {
             displayHeader("Main Menu");
-            System.out.println("[1] Login");
-            System.out.println("[2] Register");
-            System.out.println("[0] Exit");
+            out.println("[1] Login");
+            out.println("[2] Register");
+            out.println("[0] Exit");
 
             String choice = promptForInput("Please select an option:");
 
@@ -68,7 +83,7 @@ public class MainMenuUI extends BaseUI {
                 case "0":
                     return null;
                 default:
-                    System.out.println("Invalid choice. Please try again.");
+                    out.println("Invalid choice. Please try again.");
             }
         }
     }
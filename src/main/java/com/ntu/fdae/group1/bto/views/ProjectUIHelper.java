@@ -5,9 +5,9 @@ import com.ntu.fdae.group1.bto.controllers.project.ProjectController;
 import com.ntu.fdae.group1.bto.enums.FlatType;
 import com.ntu.fdae.group1.bto.models.project.Project;
 import com.ntu.fdae.group1.bto.models.project.ProjectFlatInfo;
+import com.ntu.fdae.group1.bto.models.project.ProjectQuery;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -218,17 +218,17 @@ public class ProjectUIHelper {
      * @param allowStaffFilters Set to true if staff-specific filters (like
      *                          visibility) should be offered.
      * @param isSingleApplicant Set to true if the user is a single applicant.
-     * @return A Map containing the filter keys and selected values. Empty map if no
-     *         filters applied.
+     * @return A query with the selected criteria, sorted by project ID. Has no
+     *         criteria if no filters applied.
      */
-    public Map<String, Object> promptForProjectFilters(boolean allowStaffFilters, boolean isSingleApplicant) {
-        Map<String, Object> filters = new HashMap<>();
+    public ProjectQuery promptForProjectFilters(boolean allowStaffFilters, boolean isSingleApplicant) {
+        ProjectQuery filters = ProjectQuery.all();
         baseUI.displayMessage("\n--- Apply Filters (Press Enter to skip) ---");
 
         // Neighbourhood
         String neighborhood = baseUI.promptForInput("Filter by Neighbourhood: ");
         if (!neighborhood.trim().isEmpty()) {
-            filters.put("neighborhood", neighborhood.trim());
+            filters = filters.withNeighborhood(neighborhood);
         }
 
         // --- Flat Type Filtering Logic ---
@@ -253,7 +253,7 @@ public class ProjectUIHelper {
                     allowedFlatTypes);
 
             if (selectedFlatType != null) {
-                filters.put("flatType", selectedFlatType);
+                filters = filters.withAvailableFlatType(selectedFlatType);
             }
         } else {
             baseUI.displayMessage("No applicable flat types available based on your status.");
@@ -263,9 +263,9 @@ public class ProjectUIHelper {
         if (allowStaffFilters) {
             String visibleStr = baseUI.promptForInput("Filter by Visibility (ON/OFF): ").toUpperCase();
             if (visibleStr.equals("ON"))
-                filters.put("visibility", true);
+                filters = filters.withVisibility(true);
             else if (visibleStr.equals("OFF"))
-                filters.put("visibility", false);
+                filters = filters.withVisibility(false);
             // If input is neither ON nor OFF, the filter is simply skipped
         }
 
@@ -274,12 +274,8 @@ public class ProjectUIHelper {
             baseUI.displayMessage("No filters applied.");
         } else {
             baseUI.displayMessage("Filters applied: "); // Show which filters were set
-            for (Map.Entry<String, Object> entry : filters.entrySet()) {
-                String key = entry.getKey();
-                Object value = entry.getValue();
-                // Format the value nicely (especially for enums)
-                String valueStr = (value instanceof Enum) ? ((Enum<?>) value).name() : value.toString();
-                System.out.println("  - " + key + ": " + valueStr);
+            for (String line : filters.describe()) {
+                baseUI.displayMessage("  - " + line);
             }
         }
         return filters;
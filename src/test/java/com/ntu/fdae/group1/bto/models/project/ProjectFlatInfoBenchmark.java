@@ -0,0 +1,49 @@
+package com.ntu.fdae.group1.bto.models.project;
+
+import com.ntu.fdae.group1.bto.enums.FlatType;
+import com.ntu.fdae.group1.bto.testutil.TestSupport;
+
+/**
+ * Measures how flat unit reservations scale with the number of threads when
+ * each thread approves applications for a different project, so the threads
+ * share no inventory.
+ * <p>
+ * Prints the throughput for 1, 2, 4, ... threads up to the number of cores
+ * (at most 16), relative to one thread; it should grow close to linearly. It
+ * is not part of the unit test run. After {@code mvn test-compile}, run it
+ * with
+ * {@code java -cp target/classes:target/test-classes com.ntu.fdae.group1.bto.models.project.ProjectFlatInfoBenchmark [operationsPerThread]}.
+ * </p>
+ */
+public class ProjectFlatInfoBenchmark {
+    private static final int DEFAULT_OPERATIONS_PER_THREAD = 2_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int operationsPerThread = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_OPERATIONS_PER_THREAD;
+        int cores = Runtime.getRuntime().availableProcessors();
+        double singleThreadRate = 0;
+        System.out.println("Flat unit reservations on distinct projects (" + cores + " cores):");
+        for (int threads = 1; threads <= Math.max(1, Math.min(cores, 16)); threads *= 2) {
+            ProjectFlatInfo[] flatInfos = new ProjectFlatInfo[threads];
+            for (int i = 0; i < threads; i++) {
+                flatInfos[i] = new ProjectFlatInfo("FLAT" + i, "PRJ" + i, FlatType.TWO_ROOM, 1, 1, 1.0);
+            }
+            long start = System.nanoTime();
+            TestSupport.runConcurrently(threads, thread -> {
+                ProjectFlatInfo flatInfo = flatInfos[thread];
+                for (int i = 0; i < operationsPerThread; i++) {
+                    // Approve, then withdraw, so the single unit is always available again
+                    if (!flatInfo.tryReserve() || !flatInfo.commit() || !flatInfo.returnUnit()) {
+                        throw new IllegalStateException("Uncontended reservation failed");
+                    }
+                }
+            });
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double rate = threads * (double) operationsPerThread / seconds;
+            if (threads == 1) {
+                singleThreadRate = rate;
+            }
+            System.out.printf("  %2d threads: %,.0f approvals/s (%.1fx)%n", threads, rate, rate / singleThreadRate);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.ntu.fdae.group1.bto.models.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ntu.fdae.group1.bto.enums.FlatType;
+import com.ntu.fdae.group1.bto.testutil.TestSupport;
+
+/**
+ * Lets many threads fight over the units of one flat type and checks that no
+ * unit is ever taken twice or lost, whether it stays taken or is returned,
+ * and that a take in progress still counts as an uncommitted unit. Throughput across projects is measured by
+ * {@link ProjectFlatInfoBenchmark}, outside the unit test run.
+ */
+public class ProjectFlatInfoContentionTest {
+    private static final int THREADS = 16;
+
+    @Test(timeout = 60_000)
+    public void concurrentReservationsNeverOversell() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            int units = 100;
+            ProjectFlatInfo flatInfo = new ProjectFlatInfo("FLAT1", "PRJ1", FlatType.TWO_ROOM, units, units, 1.0);
+            AtomicInteger taken = new AtomicInteger();
+            TestSupport.runConcurrently(THREADS, thread -> {
+                while (flatInfo.tryReserve()) {
+                    assertTrue(flatInfo.commit());
+                    taken.incrementAndGet();
+                }
+            });
+
+            assertEquals(units, taken.get());
+            assertEquals(0, flatInfo.getRemainingUnits());
+            assertFalse(flatInfo.tryReserve());
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void takenAndReturnedUnitsAreNeitherLostNorDuplicated() throws Exception {
+        int units = 50;
+        ProjectFlatInfo flatInfo = new ProjectFlatInfo("FLAT1", "PRJ1", FlatType.THREE_ROOM, units, units, 1.0);
+        AtomicInteger held = new AtomicInteger();
+        TestSupport.runConcurrently(THREADS, thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int mine = 0;
+            for (int i = 0; i < 50_000; i++) {
+                if (flatInfo.tryReserve()) {
+                    assertTrue(flatInfo.commit());
+                    if (random.nextBoolean()) {
+                        assertTrue(flatInfo.returnUnit()); // Approval could not be saved
+                    } else {
+                        mine++;
+                    }
+                }
+                if (mine > 0 && random.nextInt(3) == 0) {
+                    assertTrue(flatInfo.returnUnit()); // Approved application withdrawn
+                    mine--;
+                }
+                int remaining = flatInfo.getRemainingUnits();
+                assertTrue("Remaining units out of range: " + remaining, remaining >= 0 && remaining <= units);
+            }
+            held.addAndGet(mine);
+        });
+
+        assertEquals(units, flatInfo.getRemainingUnits() + held.get());
+    }
+
+    @Test
+    public void uncommittedUnitsIncludeOpenReservations() {
+        ProjectFlatInfo flatInfo = new ProjectFlatInfo("FLAT1", "PRJ1", FlatType.TWO_ROOM, 3, 3, 1.0);
+        assertTrue(flatInfo.tryReserve());
+        assertTrue(flatInfo.commit());
+        assertTrue(flatInfo.tryReserve()); // Another take, not yet committed
+
+        assertEquals(1, flatInfo.getRemainingUnits());
+        assertEquals(2, flatInfo.getUncommittedUnits());
+
+        assertTrue(flatInfo.commit());
+        assertEquals(1, flatInfo.getRemainingUnits());
+        assertEquals(1, flatInfo.getUncommittedUnits());
+    }
+}
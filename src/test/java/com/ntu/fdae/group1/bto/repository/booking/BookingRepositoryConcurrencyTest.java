@@ -0,0 +1,152 @@
+package com.ntu.fdae.group1.bto.repository.booking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ntu.fdae.group1.bto.enums.FlatType;
+import com.ntu.fdae.group1.bto.exceptions.DuplicateEntityException;
+import com.ntu.fdae.group1.bto.models.booking.Booking;
+import com.ntu.fdae.group1.bto.repository.util.Durability;
+import com.ntu.fdae.group1.bto.testutil.TestSupport;
+import com.ntu.fdae.group1.bto.testutil.TestSupport.ThreadTask;
+
+/**
+ * Saves and reads bookings from many threads at once, with group commit
+ * enabled, and checks that the saves share physical writes, that none are
+ * lost, and that the one-booking-per-applicant constraint holds under
+ * contention.
+ */
+public class BookingRepositoryConcurrencyTest {
+    private static final String BOOKING_FILES = "bookings.csv*";
+    private static final long WINDOW_MILLIS = 100;
+    private static final int SAVERS = 16;
+
+    @Before
+    public void setUp() throws IOException {
+        TestSupport.deleteDataFiles(BOOKING_FILES);
+        System.setProperty(Durability.PROPERTY_NAME, "GROUP_COMMIT:" + WINDOW_MILLIS);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        System.clearProperty(Durability.PROPERTY_NAME);
+        TestSupport.deleteDataFiles(BOOKING_FILES);
+    }
+
+    @Test(timeout = 60_000)
+    public void concurrentSavesShareOneGroupCommit() throws Exception {
+        BookingRepository repository = new BookingRepository();
+        repository.loadAll();
+
+        long begin = System.nanoTime();
+        TestSupport.runConcurrently(SAVERS, saver -> repository.save(booking(saver, saver)));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        // Saves that waited for their flush one at a time would need SAVERS commit windows
+        assertTrue("Saves took " + elapsedMillis + " ms; they did not share group commits",
+                elapsedMillis < SAVERS * WINDOW_MILLIS / 2);
+
+        Map<String, Booking> reloaded = new BookingRepository().loadAll();
+        assertEquals(SAVERS, reloaded.size());
+        for (int i = 0; i < SAVERS; i++) {
+            assertNotNull(reloaded.get(bookingId(i)));
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void readersSeeEveryCommittedBookingWhileSavesRun() throws Exception {
+        BookingRepository repository = new BookingRepository();
+        repository.loadAll();
+        int bookingsPerSaver = 20;
+        Queue<String> problems = new ConcurrentLinkedQueue<>();
+        AtomicBoolean saving = new AtomicBoolean(true);
+        AtomicInteger saversLeft = new AtomicInteger(SAVERS);
+        List<ThreadTask> tasks = new ArrayList<>();
+        for (int s = 0; s < SAVERS; s++) {
+            tasks.add(saver -> {
+                try {
+                    for (int i = 0; i < bookingsPerSaver; i++) {
+                        int n = saver * bookingsPerSaver + i;
+                        repository.save(booking(n, n));
+                        // Once save returns, every reader must find the booking
+                        if (repository.findByApplicantNric(nricOf(n)) == null) {
+                            problems.add("Saved booking " + n + " not found by applicant");
+                        }
+                    }
+                } finally {
+                    if (saversLeft.decrementAndGet() == 0) {
+                        saving.set(false);
+                    }
+                }
+            });
+        }
+        for (int r = 0; r < 4; r++) {
+            tasks.add(reader -> {
+                while (saving.get()) {
+                    for (Booking booking : repository.findAll().values()) {
+                        Booking byApplicant = repository.findByApplicantNric(booking.getApplicantNric());
+                        if (byApplicant == null || !byApplicant.getBookingId().equals(booking.getBookingId())) {
+                            problems.add("Applicant index disagrees for " + booking.getBookingId());
+                        }
+                    }
+                }
+            });
+        }
+
+        TestSupport.runConcurrently(tasks);
+
+        assertTrue(problems.toString(), problems.isEmpty());
+        assertEquals(SAVERS * bookingsPerSaver, repository.findAll().size());
+        assertEquals(SAVERS * bookingsPerSaver, new BookingRepository().loadAll().size());
+    }
+
+    @Test(timeout = 60_000)
+    public void applicantIsBookedByExactlyOneConcurrentSave() throws Exception {
+        BookingRepository repository = new BookingRepository();
+        repository.loadAll();
+        AtomicInteger saved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        TestSupport.runConcurrently(SAVERS, saver -> {
+            try {
+                repository.save(booking(saver, 0)); // Different bookings, same applicant
+                saved.incrementAndGet();
+            } catch (DuplicateEntityException e) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, saved.get());
+        assertEquals(SAVERS - 1, rejected.get());
+        assertEquals(1, new BookingRepository().loadAll().size());
+    }
+
+    private static Booking booking(int n, int applicant) {
+        return new Booking(bookingId(n), "APP" + n, nricOf(applicant), "PRJ1", FlatType.TWO_ROOM,
+                LocalDate.of(2025, 3, 1));
+    }
+
+    private static String bookingId(int n) {
+        return "BOOK" + n;
+    }
+
+    private static String nricOf(int n) {
+        return String.format("S%07dA", n);
+    }
+}
@@ -0,0 +1,228 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ntu.fdae.group1.bto.exceptions.DuplicateEntityException;
+import com.ntu.fdae.group1.bto.exceptions.VersionConflictException;
+import com.ntu.fdae.group1.bto.testutil.TestSupport;
+import com.ntu.fdae.group1.bto.testutil.TestSupport.ThreadTask;
+
+/**
+ * Runs concurrent writers and readers against an {@link IndexedStore} and
+ * checks that readers only ever see consistent index entries, that unique
+ * constraints and versioned puts hold under contention, and that the indexes
+ * agree with the entities afterwards.
+ */
+public class IndexedStoreConcurrencyTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int WRITES_PER_WRITER = 20_000;
+    private static final int IDS = 200;
+    private static final int GROUPS = 10;
+    private static final List<String> LABELS = Arrays.asList("a", "b", "c");
+
+    /**
+     * An immutable test entity, apart from its version.
+     */
+    private static final class Item {
+        final String id;
+        final String code;
+        final int group;
+        final Set<String> labels;
+        final int count;
+        int version;
+
+        Item(String id, String code, int group, Set<String> labels, int count) {
+            this.id = id;
+            this.code = code;
+            this.group = group;
+            this.labels = labels;
+            this.count = count;
+        }
+
+        Item withCount(int newCount) {
+            Item copy = new Item(id, code, group, labels, newCount);
+            copy.version = version;
+            return copy;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        int getVersion() {
+            return version;
+        }
+
+        void setVersion(int version) {
+            this.version = version;
+        }
+    }
+
+    @Test(timeout = 120_000)
+    public void readersSeeConsistentIndexesWhileWritersRun() throws Exception {
+        IndexedStore<String, Item> store = new IndexedStore<>(Item::getId);
+        IndexedStore.UniqueIndex<String, Item> byCode = store.addUniqueIndex("code", item -> item.code);
+        IndexedStore.MultiIndex<Integer, Item> byGroup = store.addMultiIndex("group", item -> item.group);
+        IndexedStore.BitmapIndex<String, Item> byLabel = store.addBitmapIndex("labels", item -> item.labels);
+
+        Queue<String> problems = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger writersLeft = new AtomicInteger(WRITERS);
+        AtomicInteger reads = new AtomicInteger();
+        List<ThreadTask> tasks = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            tasks.add(thread -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    for (int i = 0; i < WRITES_PER_WRITER; i++) {
+                        String id = "I" + random.nextInt(IDS);
+                        if (random.nextInt(10) == 0) {
+                            store.remove(id);
+                        } else {
+                            store.put(new Item(id, codeOf(id, random.nextInt(3)), random.nextInt(GROUPS),
+                                    randomLabels(random), 0));
+                        }
+                    }
+                } finally {
+                    if (writersLeft.decrementAndGet() == 0) {
+                        writing.set(false);
+                    }
+                }
+            });
+        }
+        for (int r = 0; r < READERS; r++) {
+            tasks.add(thread -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (writing.get()) {
+                    String code = codeOf("I" + random.nextInt(IDS), random.nextInt(3));
+                    Item byKey = byCode.get(code);
+                    if (byKey != null && !byKey.code.equals(code)) {
+                        problems.add("Unique index returned " + byKey.code + " for " + code);
+                    }
+
+                    int group = random.nextInt(GROUPS);
+                    for (Item item : byGroup.get(group)) {
+                        if (item.group != group) {
+                            problems.add("Multi index returned group " + item.group + " for " + group);
+                        }
+                    }
+                    if (byGroup.count(group) < 0) {
+                        problems.add("Negative count for group " + group);
+                    }
+
+                    for (Item item : byLabel.select(Collections.singletonList("a"), Arrays.asList("b", "c"))) {
+                        if (!item.labels.contains("a") || !(item.labels.contains("b")
+                                || item.labels.contains("c"))) {
+                            problems.add("Bitmap index returned " + item.id + " with labels " + item.labels);
+                        }
+                    }
+                    for (Item item : store.snapshot().values()) {
+                        if (item == null) {
+                            problems.add("Snapshot contained a null entity");
+                        }
+                    }
+                    reads.incrementAndGet();
+                }
+            });
+        }
+
+        TestSupport.runConcurrently(tasks);
+
+        assertTrue(firstProblems(problems), problems.isEmpty());
+        assertTrue("Readers made no progress", reads.get() > 0);
+        assertEquals(Collections.emptyList(), store.verify());
+    }
+
+    @Test(timeout = 60_000)
+    public void enforcedUniqueKeyIsClaimedByExactlyOneThread() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            IndexedStore<String, Item> store = new IndexedStore<>(Item::getId);
+            store.addUniqueConstraint("code", item -> item.code);
+            AtomicInteger claimed = new AtomicInteger();
+            AtomicInteger rejected = new AtomicInteger();
+
+            TestSupport.runConcurrently(8, thread -> {
+                try {
+                    store.put(new Item("I" + thread, "shared", 0, Collections.emptySet(), 0));
+                    claimed.incrementAndGet();
+                } catch (DuplicateEntityException e) {
+                    rejected.incrementAndGet();
+                }
+            });
+
+            assertEquals(1, claimed.get());
+            assertEquals(7, rejected.get());
+            assertEquals(1, store.size());
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void versionedPutsLoseNoUpdates() throws Exception {
+        IndexedStore<String, Item> store = new IndexedStore<>(Item::getId);
+        store.enableVersioning(Item::getVersion, Item::setVersion);
+        store.put(new Item("counter", null, 0, Collections.emptySet(), 0));
+
+        int threadCount = 8;
+        int incrementsPerThread = 2_000;
+        AtomicInteger conflicts = new AtomicInteger();
+
+        TestSupport.runConcurrently(threadCount, thread -> {
+            for (int i = 0; i < incrementsPerThread; i++) {
+                while (true) {
+                    Item current = store.get("counter");
+                    try {
+                        store.putIfCurrent(current.withCount(current.count + 1));
+                        break;
+                    } catch (VersionConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        assertEquals(threadCount * incrementsPerThread, store.get("counter").count);
+        assertEquals(threadCount * incrementsPerThread, store.get("counter").version);
+    }
+
+    private static String codeOf(String id, int variant) {
+        return "C-" + id + "-" + variant;
+    }
+
+    private static Set<String> randomLabels(ThreadLocalRandom random) {
+        Set<String> labels = new LinkedHashSet<>();
+        for (String label : LABELS) {
+            if (random.nextBoolean()) {
+                labels.add(label);
+            }
+        }
+        return labels;
+    }
+
+    private static String firstProblems(Queue<String> problems) {
+        List<String> first = new ArrayList<>();
+        for (String problem : problems) {
+            if (first.size() == 5) {
+                break;
+            }
+            first.add(problem);
+        }
+        return problems.size() + " problems, e.g. " + first;
+    }
+}
@@ -0,0 +1,101 @@
+package com.ntu.fdae.group1.bto.repository.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ntu.fdae.group1.bto.exceptions.DataAccessException;
+import com.ntu.fdae.group1.bto.testutil.TestSupport;
+
+/**
+ * Makes the write of a committed unit of work to its repository file fail,
+ * and checks that later writes to the file are refused until the unit's
+ * records have been written, and that a reload never replays the unit over
+ * newer saves.
+ */
+public class UnitOfWorkRecoveryTest {
+    private static final String FILE = "data/uow-items.csv";
+    private static final String[] HEADER = { "Id", "Value" };
+
+    private Path blocker;
+
+    @Before
+    public void setUp() throws IOException {
+        deleteFiles();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteFiles();
+    }
+
+    @Test(timeout = 60_000)
+    public void owedUnitIsWrittenBeforeLaterRewrites() throws Exception {
+        checkOwedUnit(WriteMode.FULL_REWRITE, Paths.get(FILE));
+    }
+
+    @Test(timeout = 60_000)
+    public void owedUnitIsWrittenBeforeLaterJournalRecords() throws Exception {
+        checkOwedUnit(WriteMode.JOURNALED, Paths.get(FILE + ".journal"));
+    }
+
+    private void checkOwedUnit(WriteMode writeMode, Path target) throws Exception {
+        CsvRepositoryHelper<String, String[]> helper = helper(writeMode);
+        helper.setDurability(Durability.SYNC);
+        IndexedStore<String, String[]> store = new IndexedStore<>(item -> item[0]);
+        store.replaceAll(helper.loadData());
+
+        // A directory in the way makes every write to the file fail
+        blocker = target;
+        Files.createDirectories(target.resolve("blocked"));
+
+        UnitOfWork work = new UnitOfWork();
+        work.stage(this, helper, store, new String[] { "A", "unit" }, null);
+        work.commit(); // Committed to the log; the write to the file fails
+
+        store.put(new String[] { "B", "later" });
+        try {
+            helper.stageEntity("B", store.get("B"), store.snapshot());
+            fail("A write before the owed unit must be refused");
+        } catch (DataAccessException e) {
+            // Expected
+        }
+
+        deleteBlocker();
+        store.put(new String[] { "A", "newer" });
+        helper.stageEntity("A", store.get("A"), store.snapshot());
+
+        Map<String, String[]> reloaded = helper(writeMode).loadData();
+        assertEquals("newer", reloaded.get("A")[1]);
+        assertFalse("The unit should have left the log", Files.exists(Paths.get(TransactionLog.DEFAULT_PATH)));
+    }
+
+    private static CsvRepositoryHelper<String, String[]> helper(WriteMode writeMode) {
+        return new CsvRepositoryHelper<>(FILE, HEADER, row -> row.toArray(), item -> item[0], item -> item,
+                writeMode);
+    }
+
+    private void deleteBlocker() throws IOException {
+        if (blocker != null && Files.isDirectory(blocker)) {
+            Files.deleteIfExists(blocker.resolve("blocked"));
+            Files.delete(blocker);
+        }
+        blocker = null;
+    }
+
+    private void deleteFiles() throws IOException {
+        deleteBlocker();
+        TestSupport.deleteDataFiles("uow-items.csv*");
+        Files.deleteIfExists(Paths.get(TransactionLog.DEFAULT_PATH));
+    }
+}
@@ -0,0 +1,101 @@
+package com.ntu.fdae.group1.bto.services.enquiry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ntu.fdae.group1.bto.enums.MaritalStatus;
+import com.ntu.fdae.group1.bto.models.enquiry.Enquiry;
+import com.ntu.fdae.group1.bto.models.user.HDBManager;
+import com.ntu.fdae.group1.bto.repository.enquiry.EnquiryRepository;
+import com.ntu.fdae.group1.bto.testutil.TestSupport;
+
+/**
+ * Has several staff reply to one enquiry at once and checks that exactly one
+ * reply is saved, with the version stamped once. Also checks that replies and
+ * edits leave the stored enquiry untouched until the changed copy is saved,
+ * and that editing an unknown or replied enquiry fails cleanly.
+ */
+public class EnquiryServiceConcurrencyTest {
+    private static final String ENQUIRY_ID = "ENQ1";
+    private static final int STAFF = 8;
+
+    private final HDBManager manager = new HDBManager("T1234567M", "hash", "Manager", 40, MaritalStatus.MARRIED);
+    private EnquiryRepository enquiryRepo;
+    private EnquiryService service;
+
+    @Before
+    public void setUp() throws IOException {
+        TestSupport.resetDataDirectory();
+        enquiryRepo = new EnquiryRepository();
+        enquiryRepo.loadAll();
+        service = new EnquiryService(enquiryRepo);
+        enquiryRepo.save(new Enquiry(ENQUIRY_ID, "S1234567A", "PRJ1", "When is the launch?",
+                LocalDate.of(2025, 2, 1)));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestSupport.resetDataDirectory();
+    }
+
+    @Test(timeout = 60_000)
+    public void concurrentRepliesAreRecordedOnce() throws Exception {
+        AtomicInteger succeeded = new AtomicInteger();
+        Set<String> replies = ConcurrentHashMap.newKeySet();
+        TestSupport.runConcurrently(STAFF, thread -> {
+            String reply = "Reply " + thread;
+            if (service.replyToEnquiry(ENQUIRY_ID, reply, manager)) {
+                succeeded.incrementAndGet();
+                replies.add(reply);
+            }
+        });
+
+        assertEquals(1, succeeded.get());
+        Enquiry stored = enquiryRepo.findById(ENQUIRY_ID);
+        assertTrue(stored.isReplied());
+        assertTrue(replies.contains(stored.getReply()));
+        assertEquals(2, stored.getVersion());
+
+        // The saved file agrees
+        EnquiryRepository reloaded = new EnquiryRepository();
+        reloaded.loadAll();
+        assertEquals(stored.getReply(), reloaded.findById(ENQUIRY_ID).getReply());
+    }
+
+    @Test(timeout = 60_000)
+    public void storedEnquiryIsNotChangedInPlace() throws Exception {
+        Enquiry before = enquiryRepo.findById(ENQUIRY_ID);
+
+        assertTrue(service.editEnquiry(ENQUIRY_ID, "When does the launch start?", manager));
+        assertTrue(service.replyToEnquiry(ENQUIRY_ID, "In May.", manager));
+
+        assertEquals("When is the launch?", before.getContent());
+        assertFalse(before.isReplied());
+        assertNull(before.getReply());
+        Enquiry after = enquiryRepo.findById(ENQUIRY_ID);
+        assertEquals("When does the launch start?", after.getContent());
+        assertEquals("In May.", after.getReply());
+        assertEquals(3, after.getVersion());
+    }
+
+    @Test(timeout = 60_000)
+    public void unknownOrRepliedEnquiryCannotBeEdited() throws Exception {
+        assertFalse(service.editEnquiry("ENQ404", "Anything", manager));
+
+        assertTrue(service.replyToEnquiry(ENQUIRY_ID, "In May.", manager));
+        assertFalse(service.editEnquiry(ENQUIRY_ID, "Changed after the reply", manager));
+        assertEquals("When is the launch?", enquiryRepo.findById(ENQUIRY_ID).getContent());
+    }
+}
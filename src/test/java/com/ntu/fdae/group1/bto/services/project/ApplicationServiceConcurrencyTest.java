@@ -0,0 +1,214 @@
+package com.ntu.fdae.group1.bto.services.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ntu.fdae.group1.bto.enums.ApplicationStatus;
+import com.ntu.fdae.group1.bto.enums.FlatType;
+import com.ntu.fdae.group1.bto.enums.MaritalStatus;
+import com.ntu.fdae.group1.bto.exceptions.ApplicationException;
+import com.ntu.fdae.group1.bto.exceptions.DuplicateEntityException;
+import com.ntu.fdae.group1.bto.exceptions.VersionConflictException;
+import com.ntu.fdae.group1.bto.models.project.Application;
+import com.ntu.fdae.group1.bto.models.project.Project;
+import com.ntu.fdae.group1.bto.models.project.ProjectFlatInfo;
+import com.ntu.fdae.group1.bto.models.user.Applicant;
+import com.ntu.fdae.group1.bto.models.user.HDBManager;
+import com.ntu.fdae.group1.bto.repository.project.ApplicationRepository;
+import com.ntu.fdae.group1.bto.repository.project.OfficerRegistrationRepository;
+import com.ntu.fdae.group1.bto.repository.project.ProjectRepository;
+import com.ntu.fdae.group1.bto.services.booking.EligibilityService;
+import com.ntu.fdae.group1.bto.testutil.TestSupport;
+
+/**
+ * Has several managers approve applications for the last units of a flat
+ * type at once, and checks that exactly as many applications succeed as
+ * there were units, both in memory and in the saved files. Also checks that
+ * an approved withdrawal returns its unit in the same saved unit of work,
+ * that concurrent changes to one application are each applied once, and that
+ * a conflict that outlasts the retries reaches the caller as an
+ * {@link ApplicationException}.
+ */
+public class ApplicationServiceConcurrencyTest {
+    private static final String PROJECT_ID = "PRJ1";
+    private static final String FLAT_INFO_ID = "FLAT1";
+    private static final int UNITS = 5;
+    private static final int APPLICATIONS = 40;
+    private static final int MANAGERS = 8;
+
+    private final HDBManager manager = new HDBManager("T1234567M", "hash", "Manager", 40, MaritalStatus.MARRIED);
+    private ProjectRepository projectRepo;
+    private ApplicationRepository applicationRepo;
+    private ApplicationService service;
+
+    @Before
+    public void setUp() throws IOException {
+        TestSupport.resetDataDirectory();
+        projectRepo = new ProjectRepository();
+        applicationRepo = new ApplicationRepository();
+        OfficerRegistrationRepository officerRegRepo = new OfficerRegistrationRepository();
+        projectRepo.loadAll();
+        applicationRepo.loadAll();
+        officerRegRepo.loadAll();
+        service = new ApplicationService(applicationRepo, projectRepo, new EligibilityService(projectRepo),
+                officerRegRepo);
+
+        ProjectFlatInfo flatInfo = new ProjectFlatInfo(FLAT_INFO_ID, PROJECT_ID, FlatType.TWO_ROOM, UNITS, UNITS,
+                100_000);
+        Project project = new Project(PROJECT_ID, "Test Project", "Yishun",
+                Collections.singletonMap(FlatType.TWO_ROOM, flatInfo), LocalDate.of(2025, 1, 1),
+                LocalDate.of(2025, 12, 31), manager.getNric(), 2);
+        projectRepo.save(project);
+        for (int i = 0; i < APPLICATIONS; i++) {
+            Application application = new Application(applicationId(i), nricOf(i), PROJECT_ID,
+                    LocalDate.of(2025, 2, 1));
+            application.setPreferredFlatType(FlatType.TWO_ROOM);
+            applicationRepo.save(application);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestSupport.resetDataDirectory();
+    }
+
+    @Test(timeout = 60_000)
+    public void concurrentApprovalsNeverOversell() throws Exception {
+        AtomicInteger approved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger next = new AtomicInteger();
+        TestSupport.runConcurrently(MANAGERS, thread -> {
+            for (int i = next.getAndIncrement(); i < APPLICATIONS; i = next.getAndIncrement()) {
+                try {
+                    service.reviewApplication(manager, applicationId(i), true);
+                    approved.incrementAndGet();
+                } catch (ApplicationException e) {
+                    rejected.incrementAndGet(); // No units left
+                }
+            }
+        });
+
+        assertEquals(UNITS, approved.get());
+        assertEquals(APPLICATIONS - UNITS, rejected.get());
+        assertEquals(0, projectRepo.findById(PROJECT_ID).getFlatInfo(FlatType.TWO_ROOM).getRemainingUnits());
+        assertEquals(UNITS, countSuccessful(applicationRepo));
+
+        // The saved files agree
+        ProjectRepository reloadedProjects = new ProjectRepository();
+        reloadedProjects.loadAll();
+        ApplicationRepository reloadedApplications = new ApplicationRepository();
+        reloadedApplications.loadAll();
+        assertEquals(0, reloadedProjects.findById(PROJECT_ID).getFlatInfo(FlatType.TWO_ROOM).getRemainingUnits());
+        assertEquals(UNITS, countSuccessful(reloadedApplications));
+    }
+
+    @Test(timeout = 60_000)
+    public void approvedWithdrawalReturnsTheUnitWithTheStatus() throws Exception {
+        service.reviewApplication(manager, applicationId(0), true);
+        Application withdrawing = new Application(applicationRepo.findById(applicationId(0)));
+        withdrawing.setRequestedWithdrawalDate(LocalDate.of(2025, 3, 1));
+        applicationRepo.save(withdrawing);
+
+        service.reviewWithdrawal(manager, applicationId(0), true);
+
+        ProjectRepository reloadedProjects = new ProjectRepository();
+        reloadedProjects.loadAll();
+        ApplicationRepository reloadedApplications = new ApplicationRepository();
+        reloadedApplications.loadAll();
+        Application withdrawn = reloadedApplications.findById(applicationId(0));
+        assertEquals(ApplicationStatus.UNSUCCESSFUL, withdrawn.getStatus());
+        assertNull(withdrawn.getRequestedWithdrawalDate());
+        assertEquals(UNITS, reloadedProjects.findById(PROJECT_ID).getFlatInfo(FlatType.TWO_ROOM).getRemainingUnits());
+    }
+
+    @Test(timeout = 60_000)
+    public void concurrentWithdrawalRequestsAreRecordedOnce() throws Exception {
+        Applicant applicant = applicant(0);
+        AtomicInteger requested = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        TestSupport.runConcurrently(MANAGERS, thread -> {
+            try {
+                service.requestWithdrawal(applicant);
+                requested.incrementAndGet();
+            } catch (ApplicationException e) {
+                refused.incrementAndGet(); // Already requested
+            }
+        });
+
+        assertEquals(1, requested.get());
+        assertEquals(MANAGERS - 1, refused.get());
+        // Saved once when created and once for the one request
+        assertEquals(2, applicationRepo.findById(applicationId(0)).getVersion());
+    }
+
+    @Test
+    public void storedApplicationIsNotChangedInPlace() throws Exception {
+        Application stored = applicationRepo.findById(applicationId(0));
+
+        service.requestWithdrawal(applicant(0));
+
+        assertNull("The stored instance was edited in place", stored.getRequestedWithdrawalDate());
+        assertTrue(applicationRepo.findById(applicationId(0)).getRequestedWithdrawalDate() != null);
+    }
+
+    @Test
+    public void persistentConflictBecomesApplicationException() throws Exception {
+        ApplicationRepository conflicting = new ApplicationRepository() {
+            @Override
+            public void save(Application application) {
+                throw new VersionConflictException(application.getApplicationId(), application.getVersion(),
+                        application.getVersion() + 1);
+            }
+        };
+        conflicting.loadAll();
+        ApplicationService conflictingService = new ApplicationService(conflicting, projectRepo,
+                new EligibilityService(projectRepo), new OfficerRegistrationRepository());
+
+        try {
+            conflictingService.requestWithdrawal(applicant(0));
+            fail("An exhausted conflict must not escape as a runtime exception");
+        } catch (ApplicationException e) {
+            assertTrue(e.getCause() instanceof VersionConflictException);
+        }
+    }
+
+    @Test(expected = DuplicateEntityException.class)
+    public void secondActiveApplicationIsRejected() {
+        Application second = new Application("APP-SECOND", applicant(0).getNric(), PROJECT_ID,
+                LocalDate.of(2025, 2, 2));
+        applicationRepo.save(second);
+    }
+
+    private static Applicant applicant(int n) {
+        return new Applicant(nricOf(n), "hash", "Applicant " + n, 35, MaritalStatus.MARRIED);
+    }
+
+    private static String nricOf(int n) {
+        return String.format("S%07dA", n);
+    }
+
+    private static int countSuccessful(ApplicationRepository repository) {
+        int successful = 0;
+        for (Application application : repository.findAll().values()) {
+            if (application.getStatus() == ApplicationStatus.SUCCESSFUL) {
+                successful++;
+            }
+        }
+        return successful;
+    }
+
+    private static String applicationId(int n) {
+        return "APP" + n;
+    }
+}
@@ -0,0 +1,86 @@
+package com.ntu.fdae.group1.bto.services.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ntu.fdae.group1.bto.enums.FlatType;
+import com.ntu.fdae.group1.bto.enums.MaritalStatus;
+import com.ntu.fdae.group1.bto.models.project.Project;
+import com.ntu.fdae.group1.bto.models.project.ProjectFlatInfo;
+import com.ntu.fdae.group1.bto.models.user.HDBManager;
+import com.ntu.fdae.group1.bto.repository.project.ApplicationRepository;
+import com.ntu.fdae.group1.bto.repository.project.OfficerRegistrationRepository;
+import com.ntu.fdae.group1.bto.repository.project.ProjectRepository;
+import com.ntu.fdae.group1.bto.services.booking.EligibilityService;
+import com.ntu.fdae.group1.bto.testutil.TestSupport;
+
+/**
+ * Has several managers toggle a project's visibility at once and checks that
+ * every toggle is applied exactly once, so none cancels out another unseen.
+ * Also checks that a toggle leaves the stored project untouched until the
+ * changed copy is saved.
+ */
+public class ProjectServiceConcurrencyTest {
+    private static final String PROJECT_ID = "PRJ1";
+    private static final int TOGGLES = 8;
+
+    private final HDBManager manager = new HDBManager("T1234567M", "hash", "Manager", 40, MaritalStatus.MARRIED);
+    private ProjectRepository projectRepo;
+    private ProjectService service;
+
+    @Before
+    public void setUp() throws IOException {
+        TestSupport.resetDataDirectory();
+        projectRepo = new ProjectRepository();
+        ApplicationRepository applicationRepo = new ApplicationRepository();
+        OfficerRegistrationRepository officerRegRepo = new OfficerRegistrationRepository();
+        projectRepo.loadAll();
+        applicationRepo.loadAll();
+        officerRegRepo.loadAll();
+        service = new ProjectService(projectRepo, new EligibilityService(projectRepo), applicationRepo,
+                officerRegRepo);
+
+        ProjectFlatInfo flatInfo = new ProjectFlatInfo("FLAT1", PROJECT_ID, FlatType.TWO_ROOM, 5, 5, 100_000);
+        projectRepo.save(new Project(PROJECT_ID, "Test Project", "Yishun",
+                Collections.singletonMap(FlatType.TWO_ROOM, flatInfo), LocalDate.of(2025, 1, 1),
+                LocalDate.of(2025, 12, 31), manager.getNric(), 2));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestSupport.resetDataDirectory();
+    }
+
+    @Test(timeout = 60_000)
+    public void concurrentTogglesAreEachAppliedOnce() throws Exception {
+        TestSupport.runConcurrently(TOGGLES, thread -> {
+            // Under contention a toggle may exhaust its retries; try again, as a manager would
+            while (!service.toggleVisibility(manager, PROJECT_ID)) {
+                Thread.yield();
+            }
+        });
+
+        Project stored = projectRepo.findById(PROJECT_ID);
+        assertTrue(stored.isVisible()); // An even number of toggles
+        assertEquals(1 + TOGGLES, stored.getVersion());
+    }
+
+    @Test(timeout = 60_000)
+    public void storedProjectIsNotChangedInPlace() throws Exception {
+        Project before = projectRepo.findById(PROJECT_ID);
+
+        assertTrue(service.toggleVisibility(manager, PROJECT_ID));
+
+        assertTrue(before.isVisible());
+        assertFalse(projectRepo.findById(PROJECT_ID).isVisible());
+    }
+}
@@ -0,0 +1,126 @@
+package com.ntu.fdae.group1.bto.testutil;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Fixtures shared by the test classes.
+ * <p>
+ * Repositories read and write {@code data/} relative to the working
+ * directory, which Surefire points at {@code target/test-work}, so the tests
+ * can freely reset that directory without touching the real data files.
+ * </p>
+ */
+public final class TestSupport {
+    /**
+     * The data directory the repositories use during tests.
+     */
+    public static final Path DATA_DIR = Paths.get("data");
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private TestSupport() {
+        throw new AssertionError(); // Prevent instantiation
+    }
+
+    /**
+     * Creates the data directory if needed and deletes every file in it.
+     *
+     * @throws IOException If a file cannot be deleted
+     */
+    public static void resetDataDirectory() throws IOException {
+        deleteDataFiles("*");
+    }
+
+    /**
+     * Creates the data directory if needed and deletes the files in it whose
+     * names match a glob.
+     *
+     * @param glob The glob, for example {@code "bookings.csv*"}
+     * @throws IOException If a file cannot be deleted
+     */
+    public static void deleteDataFiles(String glob) throws IOException {
+        Files.createDirectories(DATA_DIR);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(DATA_DIR, glob)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * The work done by one of the threads started by
+     * {@link #runConcurrently(List)}.
+     */
+    @FunctionalInterface
+    public interface ThreadTask {
+        /**
+         * Runs the task.
+         *
+         * @param thread The index of the thread, from 0
+         * @throws Exception If the task fails
+         */
+        void run(int thread) throws Exception;
+    }
+
+    /**
+     * Runs the same task on several threads at once.
+     *
+     * @param threadCount The number of threads
+     * @param task        The task, given the index of its thread
+     * @throws InterruptedException If interrupted while waiting for the threads
+     * @throws AssertionError       If any thread failed
+     * @see #runConcurrently(List)
+     */
+    public static void runConcurrently(int threadCount, ThreadTask task) throws InterruptedException {
+        runConcurrently(Collections.nCopies(threadCount, task));
+    }
+
+    /**
+     * Runs each task on its own thread, releasing all threads at once, and
+     * waits for them to finish.
+     *
+     * @param tasks The tasks; task {@code i} runs on thread {@code i}
+     * @throws InterruptedException If interrupted while waiting for the threads
+     * @throws AssertionError       If any thread failed; the first failure is
+     *                              the cause
+     */
+    public static void runConcurrently(List<? extends ThreadTask> tasks) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < tasks.size(); t++) {
+            int thread = t;
+            ThreadTask task = tasks.get(t);
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    task.run(thread);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!failures.isEmpty()) {
+            Throwable first = failures.peek();
+            throw new AssertionError(failures.size() + " thread(s) failed, first: " + first, first);
+        }
+    }
+}
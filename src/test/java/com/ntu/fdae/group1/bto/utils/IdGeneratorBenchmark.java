@@ -0,0 +1,102 @@
+package com.ntu.fdae.group1.bto.utils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.ntu.fdae.group1.bto.testutil.TestSupport;
+
+/**
+ * Compares the cost of an ID from {@link IdGenerator} with the implementation
+ * it replaced, which formatted every ID with {@code String.format} under one
+ * class-wide lock.
+ * <p>
+ * For 1, 2, 4, ... threads up to the number of cores (at most 8), it prints
+ * the nanoseconds per ID of the old generator and of the new one with blocks
+ * of 1, {@value IdGenerator#DEFAULT_BLOCK_SIZE} and 4096 IDs. The new
+ * generator writes its high-water mark file in a temporary directory once per
+ * block, so the results include that cost. It is not part of the unit test
+ * run. After {@code mvn test-compile}, run it with
+ * {@code java -cp target/classes:target/test-classes com.ntu.fdae.group1.bto.utils.IdGeneratorBenchmark [idsPerThread]}.
+ * </p>
+ */
+public class IdGeneratorBenchmark {
+    private static final int DEFAULT_IDS_PER_THREAD = 200_000;
+    private static final int[] BLOCK_SIZES = { 1, IdGenerator.DEFAULT_BLOCK_SIZE, 4096 };
+
+    /**
+     * The generator as it was before per-prefix atomic counters: one counter
+     * per prefix behind a class-wide lock, formatted with {@code String.format}.
+     */
+    private static final class BaselineIdGenerator {
+        private static final String PADDING_FORMAT = "%03d";
+        private static int nextApplicationId = 1;
+
+        static synchronized String generateApplicationId() {
+            String numberPart = String.format(PADDING_FORMAT, nextApplicationId++);
+            return "APP" + numberPart;
+        }
+    }
+
+    /**
+     * A way of generating IDs.
+     */
+    private interface Generator {
+        String next();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int idsPerThread = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_IDS_PER_THREAD;
+        int maxThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+        Path directory = Files.createTempDirectory("id-benchmark");
+        try {
+            IdGenerator.initialise(directory.resolve("id_sequences.csv").toString());
+            System.out.println("Nanoseconds per ID (" + idsPerThread + " IDs per thread):");
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                StringBuilder line = new StringBuilder(String.format("  %d thread(s): old %,.0f", threads,
+                        measure(threads, idsPerThread, BaselineIdGenerator::generateApplicationId)));
+                for (int blockSize : BLOCK_SIZES) {
+                    // Fewer IDs for tiny blocks, which write the mark file for every ID
+                    int ids = blockSize == 1 ? Math.max(1, idsPerThread / 100) : idsPerThread;
+                    IdGenerator.setBlockSize(blockSize);
+                    IdGenerator.generateApplicationId(); // Move on to a block of the new size
+                    line.append(String.format(", block %d %,.0f", blockSize,
+                            measure(threads, ids, IdGenerator::generateApplicationId)));
+                }
+                System.out.println(line);
+            }
+        } finally {
+            IdGenerator.setBlockSize(IdGenerator.DEFAULT_BLOCK_SIZE);
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Generates IDs on several threads after a warm-up, and returns the
+     * average wall-clock nanoseconds per ID.
+     */
+    private static double measure(int threads, int idsPerThread, Generator generator) throws Exception {
+        TestSupport.runConcurrently(threads, thread -> generate(generator, idsPerThread)); // Warm-up
+        long start = System.nanoTime();
+        TestSupport.runConcurrently(threads, thread -> generate(generator, idsPerThread));
+        return (System.nanoTime() - start) / ((double) threads * idsPerThread);
+    }
+
+    private static void generate(Generator generator, int count) {
+        for (int i = 0; i < count; i++) {
+            if (generator.next() == null) {
+                throw new IllegalStateException("No ID generated");
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,120 @@
+package com.ntu.fdae.group1.bto.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ntu.fdae.group1.bto.enums.FlatType;
+import com.ntu.fdae.group1.bto.models.booking.Booking;
+import com.ntu.fdae.group1.bto.repository.booking.BookingRepository;
+import com.ntu.fdae.group1.bto.repository.enquiry.EnquiryRepository;
+import com.ntu.fdae.group1.bto.repository.project.ApplicationRepository;
+import com.ntu.fdae.group1.bto.repository.project.OfficerRegistrationRepository;
+import com.ntu.fdae.group1.bto.repository.project.ProjectRepository;
+import com.ntu.fdae.group1.bto.testutil.TestSupport;
+
+/**
+ * Checks that the ID generator continues from the stored high-water marks
+ * without scanning, scans the existing IDs when a mark is missing or a rescan
+ * is requested, and gives concurrent callers distinct IDs. The cost of an ID
+ * is measured by {@link IdGeneratorBenchmark}, outside the unit test run.
+ */
+public class IdGeneratorTest {
+    private BookingRepository bookingRepo;
+
+    @Before
+    public void setUp() throws IOException {
+        TestSupport.resetDataDirectory();
+        bookingRepo = new BookingRepository();
+        bookingRepo.loadAll();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        IdGenerator.setBlockSize(IdGenerator.DEFAULT_BLOCK_SIZE);
+        System.clearProperty(IdGenerator.RESCAN_PROPERTY);
+        TestSupport.resetDataDirectory();
+    }
+
+    @Test(timeout = 60_000)
+    public void storedMarksAreUsedWithoutScanning() throws Exception {
+        saveBooking("BOOK050");
+        writeMarks(new String[] { "BOOK", "3" }, new String[] { "ENQ", "7" });
+
+        initialise();
+
+        // The existing BOOK050 was not scanned, so the stale mark stands
+        assertEquals("BOOK003", IdGenerator.generateBookingId());
+        assertEquals("ENQ007", IdGenerator.generateEnquiryId());
+    }
+
+    @Test(timeout = 60_000)
+    public void missingMarksAreFoundByScanning() throws Exception {
+        saveBooking("BOOK050");
+        writeMarks(new String[] { "ENQ", "7" });
+
+        initialise();
+
+        assertEquals("BOOK051", IdGenerator.generateBookingId());
+        assertEquals("ENQ007", IdGenerator.generateEnquiryId());
+    }
+
+    @Test(timeout = 60_000)
+    public void rescanRaisesStaleMarks() throws Exception {
+        saveBooking("BOOK050");
+        writeMarks(new String[] { "BOOK", "3" }, new String[] { "ENQ", "7" });
+        System.setProperty(IdGenerator.RESCAN_PROPERTY, "true");
+
+        initialise();
+
+        assertEquals("BOOK051", IdGenerator.generateBookingId());
+        assertEquals("ENQ007", IdGenerator.generateEnquiryId()); // A mark above the existing IDs is kept
+    }
+
+    @Test(timeout = 60_000)
+    public void concurrentCallersGetDistinctIds() throws Exception {
+        initialise();
+        int threadCount = 8;
+        int idsPerThread = 2_000;
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        TestSupport.runConcurrently(threadCount, thread -> {
+            for (int i = 0; i < idsPerThread; i++) {
+                String id = IdGenerator.generateApplicationId();
+                assertTrue("Duplicate ID " + id, ids.add(id));
+            }
+        });
+
+        assertEquals(threadCount * idsPerThread, ids.size());
+    }
+
+    private void saveBooking(String bookingId) {
+        bookingRepo.save(new Booking(bookingId, "APP1", "S1234567A", "PRJ1", FlatType.TWO_ROOM,
+                LocalDate.of(2025, 3, 1)));
+    }
+
+    private static void writeMarks(String[]... rows) throws IOException {
+        FileUtil.writeCsvLines(IdGenerator.SEQUENCE_FILE_PATH, Arrays.asList(rows),
+                new String[] { "prefix", "nextId" });
+    }
+
+    private void initialise() {
+        ProjectRepository projectRepo = new ProjectRepository();
+        projectRepo.loadAll();
+        ApplicationRepository applicationRepo = new ApplicationRepository();
+        applicationRepo.loadAll();
+        EnquiryRepository enquiryRepo = new EnquiryRepository();
+        enquiryRepo.loadAll();
+        OfficerRegistrationRepository registrationRepo = new OfficerRegistrationRepository();
+        registrationRepo.loadAll();
+        IdGenerator.initialise(projectRepo, applicationRepo, bookingRepo, enquiryRepo, registrationRepo);
+    }
+}